@@ -66,6 +66,14 @@ public final class Constants {
     /** 优先选择的网络接口名称 */
     public static final String GAMER_PREFERRED_NETWORK_INTERFACE =
             "gamer.network.interface.preferred";
+    /** Kryo实例池大小 */
+    public static final String KRYO_POOL_SIZE = "gamer.kryo.pool.size";
+    /** Kryo是否要求类必须注册 */
+    public static final String KRYO_REGISTRATION_REQUIRED = "gamer.kryo.registration.required";
+    /** Kryo是否开启引用追踪 */
+    public static final String KRYO_REFERENCES = "gamer.kryo.references";
+    /** Kryo是否使用Unsafe读写，通信双方需保持一致 */
+    public static final String KRYO_UNSAFE = "gamer.kryo.unsafe";
     /** KeepAlive time */
     public static final String EXECUTOR_KEEP_ALIVE_TIME = "executor.keepAlive.time";
     /** KeyStore 文件位置 */
@@ -78,6 +86,16 @@ public final class Constants {
     public static final String SSL_TRUSTSTORE_PASS = "truststorePass";
     /** */
     public static final String LOADBALANCE_KEY = "loadbalanceKey";
+    /** 负载均衡的全部成员，候选列表是其中排除或摘除部分节点后的子集 */
+    public static final String LOADBALANCE_MEMBERS = "loadbalanceMembers";
+    /** 提供者权重，url参数 */
+    public static final String WEIGHT = "weight";
+    /** 连续失败多少次后熔断，url参数 */
+    public static final String CIRCUIT_FAILURES = "circuitFailures";
+    /** 统计窗口内失败率达到多少百分比后熔断，url参数 */
+    public static final String CIRCUIT_ERROR_PERCENT = "circuitErrorPercent";
+    /** 熔断后首次摘除的毫秒数，再次熔断时翻倍，url参数 */
+    public static final String CIRCUIT_EJECT_MILLIS = "circuitEjectMillis";
 
     /** ; */
     public static final Pattern SEMICOLON_SPLIT_PATTERN = Pattern.compile("\\s*[;]+\\s*");
@@ -125,6 +143,13 @@ public final class Constants {
     public static final String CHANNEL_HANDLERS = "channelHandlers";
     public static final String SERVLET_CONFIG = "servletConfig";
     public static final String EXEC_GROUP_NAME = "execGroupName";
+    public static final String TCP_CODEC = "tcpCodec";
+    /** 客户端批量发送的最大请求数，小于2时不批量 */
+    public static final String BATCH_SIZE = "batchSize";
+    /** 客户端批量发送的最大字节数 */
+    public static final String BATCH_BYTES = "batchBytes";
+    /** 客户端批量发送的等待窗口，微秒 */
+    public static final String BATCH_WINDOW_MICROS = "batchWindowMicros";
 
     public static final int DEFAULT_TCP_PORT = 8777;
     public static final int DEFAULT_HTTP_PORT = 80;
@@ -1,7 +1,5 @@
 package com.thinkerwolf.gamer.common;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -39,77 +37,93 @@ public enum HashAlgorithm {
         return valueOf(name.toUpperCase());
     }
 
-    private static byte[] md5(String k) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("MD5");
-            digest.reset();
-            return digest.digest(k.getBytes(StandardCharsets.UTF_8));
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
+    public long hash(String k) {
+        if (this == NATIVE) {
+            return k.hashCode();
         }
+        byte[] bytes = k.getBytes(StandardCharsets.UTF_8);
+        return hash(bytes, 0, bytes.length);
     }
 
-    public long hash(String k) {
-        long hash = 0;
+    /**
+     * 对字节数组的一段计算hash，ASCII内容与{@link #hash(String)}结果一致
+     *
+     * @param bytes 字节数组
+     * @param off   起始位置
+     * @param len   长度
+     * @return hash
+     */
+    public long hash(byte[] bytes, int off, int len) {
         switch (this) {
             case NATIVE:
-                hash = k.hashCode();
-                break;
+                int h = 0;
+                for (int i = off; i < off + len; i++) {
+                    h = 31 * h + (bytes[i] & 0xFF);
+                }
+                return h;
             case CRC32:
                 CRC32 crc = new CRC32();
-                crc.update(k.getBytes(StandardCharsets.UTF_8));
-                hash = crc.getValue() >> 16 & 0x7fff;
-                break;
+                crc.update(bytes, off, len);
+                return crc.getValue() >> 16 & 0x7fff;
             case KETAMA:
-                byte[] bKey = md5(k);
-                hash = (long) (bKey[3] & 0xFF) << 24 | (long) (bKey[2] & 0xFF) << 16
+                byte[] bKey = md5(bytes, off, len);
+                return (long) (bKey[3] & 0xFF) << 24 | (long) (bKey[2] & 0xFF) << 16
                         | (long) (bKey[1] & 0xFF) << 8 | bKey[0] & 0xFF;
-                break;
             case MURMUR:
-                ByteBuffer buf = ByteBuffer.wrap(k.getBytes());
-                int seed = 0x1234ABCD;
-
-                ByteOrder byteOrder = buf.order();
-                buf.order(ByteOrder.LITTLE_ENDIAN);
+                return murmur(bytes, off, len);
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
 
-                long m = 0xc6a4a7935bd1e995L;
-                int r = 47;
+    private static byte[] md5(byte[] bytes, int off, int len) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(bytes, off, len);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                long rv = seed ^ (buf.remaining() * m);
+    /**
+     * 64位MurmurHash2，按小端读取
+     */
+    private static long murmur(byte[] bytes, int off, int len) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+        long rv = 0x1234ABCD ^ (len * m);
 
-                long ky;
-                while (buf.remaining() >= 8) {
-                    ky = buf.getLong();
+        int i = off;
+        int end = off + (len & ~7);
+        for (; i < end; i += 8) {
+            long ky = littleEndianLong(bytes, i, 8);
+            ky *= m;
+            ky ^= ky >>> r;
+            ky *= m;
 
-                    ky *= m;
-                    ky ^= ky >>> r;
-                    ky *= m;
+            rv ^= ky;
+            rv *= m;
+        }
 
-                    rv ^= ky;
-                    rv *= m;
-                }
+        int remaining = off + len - i;
+        if (remaining > 0) {
+            rv ^= littleEndianLong(bytes, i, remaining);
+            rv *= m;
+        }
 
-                if (buf.remaining() > 0) {
-                    ByteBuffer finish = ByteBuffer.allocate(8).order(
-                            ByteOrder.LITTLE_ENDIAN);
-                    // for big-endian version, do this first:
-                    // finish.position(8-buf.remaining());
-                    finish.put(buf).rewind();
-                    rv ^= finish.getLong();
-                    rv *= m;
-                }
+        rv ^= rv >>> r;
+        rv *= m;
+        rv ^= rv >>> r;
+        return rv;
+    }
 
-                rv ^= rv >>> r;
-                rv *= m;
-                rv ^= rv >>> r;
-                buf.order(byteOrder);
-                hash = rv;
-                break;
-            default:
-                throw new UnsupportedOperationException();
+    private static long littleEndianLong(byte[] bytes, int off, int len) {
+        long v = 0;
+        for (int j = len - 1; j >= 0; j--) {
+            v = v << 8 | (bytes[off + j] & 0xFF);
         }
-        return hash;
+        return v;
     }
 
-
 }
@@ -0,0 +1,224 @@
+package com.thinkerwolf.gamer.common.balance;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 节点熔断器。
+ * <p>
+ * 连续失败达到阈值，或统计窗口内失败率过高时断开（OPEN），节点被摘除一个退避时间。
+ * 退避时间到达后第一个请求作为半开（HALF_OPEN）探测，成功则恢复（CLOSED），失败则以翻倍的退避时间再次断开。
+ * 探测资格在{@link #isAvailable()}中以CAS取得，退避时间到达后的并发请求只有一个成为探测。
+ * 断开后开始的请求成功时同样恢复，断开前发出的请求结果不改变状态。
+ * 调用方也可以按{@link NodeStats}的延迟摘除离群的节点（{@link #eject()}）
+ *
+ * @author wukai
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public static final int DEFAULT_FAILURES = 5;
+    public static final int DEFAULT_ERROR_PERCENT = 50;
+    public static final long DEFAULT_EJECT_MILLIS = 1000;
+
+    /** 失败率统计窗口 */
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /** 窗口内请求数不少于此值时才按失败率熔断 */
+    private static final int MIN_REQUESTS = 20;
+    /** 最长退避时间为首次的倍数 */
+    private static final int MAX_EJECT_MULTIPLE = 32;
+
+    private final int failureThreshold;
+    private final int errorPercent;
+    private final long baseEjectNanos;
+    private final long maxEjectNanos;
+
+    private volatile State state = State.CLOSED;
+    /** 断开状态下允许探测的时间，探测资格以CAS推后此时间取得 */
+    private final AtomicLong retryAt = new AtomicLong();
+    private long openedAt;
+    private boolean everOpened;
+    private long closedAt = System.nanoTime();
+    private long ejectNanos;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long windowStart = System.nanoTime();
+    private final AtomicInteger windowRequests = new AtomicInteger();
+    private final AtomicInteger windowFailures = new AtomicInteger();
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURES, DEFAULT_ERROR_PERCENT, DEFAULT_EJECT_MILLIS);
+    }
+
+    /**
+     * @param failureThreshold 连续失败次数阈值
+     * @param errorPercent     失败率阈值，百分比
+     * @param ejectMillis      首次摘除时间
+     */
+    public CircuitBreaker(int failureThreshold, int errorPercent, long ejectMillis) {
+        this.failureThreshold = failureThreshold;
+        this.errorPercent = errorPercent;
+        this.baseEjectNanos = TimeUnit.MILLISECONDS.toNanos(ejectMillis);
+        this.maxEjectNanos = baseEjectNanos * MAX_EJECT_MULTIPLE;
+        this.ejectNanos = baseEjectNanos;
+    }
+
+    /**
+     * 是否可以接收请求：未断开，或已到达探测时间并取得探测资格。
+     * 返回true时转为半开，调用方应向该节点发出探测请求，探测未返回前其它请求不再选择该节点
+     */
+    public boolean isAvailable() {
+        return state == State.CLOSED || claimProbe();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * 请求开始。未经{@link #isAvailable()}选择的请求在断开且到达探测时间时同样取得探测资格
+     */
+    public void begin() {
+        if (state != State.CLOSED) {
+            claimProbe();
+        }
+    }
+
+    /**
+     * 请求成功
+     *
+     * @param startNanos 请求开始时间
+     * @return 是否因此恢复
+     */
+    public boolean onSuccess(long startNanos) {
+        long now = System.nanoTime();
+        if (state == State.CLOSED) {
+            if (consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+            }
+            record(now, false);
+            return false;
+        }
+        synchronized (this) {
+            if (state != State.CLOSED && startNanos - openedAt >= 0) {
+                state = State.CLOSED;
+                closedAt = now;
+                consecutiveFailures.set(0);
+                resetWindow(now);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 请求失败，包括超时和连接异常，不包括远程业务异常
+     *
+     * @param startNanos 请求开始时间
+     */
+    public void onFailure(long startNanos) {
+        long now = System.nanoTime();
+        if (state == State.CLOSED) {
+            int failures = consecutiveFailures.incrementAndGet();
+            if (record(now, true) || failures >= failureThreshold) {
+                eject();
+            }
+            return;
+        }
+        synchronized (this) {
+            if (state == State.HALF_OPEN && startNanos - openedAt >= 0) {
+                open(now, Math.min(ejectNanos * 2, maxEjectNanos));
+            }
+        }
+    }
+
+    /**
+     * 请求被调用方取消，不计入统计。半开探测被取消时允许立即再次探测
+     */
+    public void onCancel() {
+        if (state == State.HALF_OPEN) {
+            synchronized (this) {
+                if (state == State.HALF_OPEN) {
+                    retryAt.set(System.nanoTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * 断开，摘除一个退避时间。距上次恢复不久又断开时退避时间翻倍
+     */
+    public synchronized void eject() {
+        if (state != State.CLOSED) {
+            return;
+        }
+        long now = System.nanoTime();
+        boolean recent = everOpened && now - closedAt <= maxEjectNanos;
+        open(now, recent ? Math.min(ejectNanos * 2, maxEjectNanos) : baseEjectNanos);
+    }
+
+    private void open(long now, long eject) {
+        ejectNanos = eject;
+        everOpened = true;
+        openedAt = now;
+        retryAt.set(now + eject);
+        state = State.OPEN;
+    }
+
+    /**
+     * 到达探测时间时以CAS推后探测时间，成功的一方取得探测资格并转为半开。
+     * 探测迟迟不返回时，一个退避时间后允许再次探测
+     */
+    private boolean claimProbe() {
+        long at = retryAt.get();
+        long now = System.nanoTime();
+        if (now - at < 0) {
+            return false;
+        }
+        long next = now + ejectNanos;
+        if (!retryAt.compareAndSet(at, next)) {
+            return false;
+        }
+        synchronized (this) {
+            // 期间已恢复或重新断开时不改变状态
+            if (state != State.CLOSED && retryAt.get() == next) {
+                state = State.HALF_OPEN;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 记入当前窗口
+     *
+     * @return 是否达到失败率阈值
+     */
+    private boolean record(long now, boolean failed) {
+        long start = windowStart;
+        if (now - start > WINDOW_NANOS) {
+            synchronized (this) {
+                if (windowStart == start) {
+                    resetWindow(now);
+                }
+            }
+        }
+        int requests = windowRequests.incrementAndGet();
+        if (!failed) {
+            return false;
+        }
+        int failures = windowFailures.incrementAndGet();
+        return requests >= MIN_REQUESTS && failures * 100 >= requests * errorPercent;
+    }
+
+    private void resetWindow(long now) {
+        windowRequests.set(0);
+        windowFailures.set(0);
+        windowStart = now;
+    }
+}
@@ -5,11 +5,16 @@ import com.thinkerwolf.gamer.common.HashAlgorithm;
 import org.apache.commons.collections.MapUtils;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * 一致性hash
+ * 一致性hash，每个服务（{@link Constants#LOADBALANCE_KEY}）一个环。
+ * <p>
+ * 环由{@link Constants#LOADBALANCE_MEMBERS}的全部成员构建，候选列表只是其子集（重试排除、熔断摘除）时
+ * 从key的位置顺时针找第一个候选节点，不因子集重建环
  *
  * @author wukai
  */
@@ -35,13 +40,25 @@ public class ConsistentHashLoadBalancer implements LoadBalancer {
                 MapUtils.getString(props, HASH_ALGORITHM_NAME, HashAlgorithm.MURMUR.name());
         HashAlgorithm hashAlgorithm = HashAlgorithm.nameOf(hashAlg);
         String serviceKey = MapUtils.getString(props, Constants.LOADBALANCE_KEY, "default");
-        int identityHashCode = System.identityHashCode(list);
         ConsistentHashSelector<T> selector = consistentHashSelectorMap.get(serviceKey);
-        if (selector == null || selector.getIdentityHashCode() != identityHashCode) {
-            selector =
-                    new ConsistentHashSelector<>(hashAlgorithm, virtualNum, list, identityHashCode);
+        if (selector == null
+                || selector.getVirtualNum() != virtualNum
+                || selector.getHashAlgorithm() != hashAlgorithm) {
+            selector = new ConsistentHashSelector<>(hashAlgorithm, virtualNum);
             consistentHashSelectorMap.put(serviceKey, selector);
         }
-        return selector.find(searchKey);
+        Collection<T> members = (Collection<T>) MapUtils.getObject(props, Constants.LOADBALANCE_MEMBERS);
+        if (members == null || members == list) {
+            members = list;
+        }
+        // 按成员版本增量更新，列表实例变化不再重建环
+        selector.update(members, ConsistentHashSelector.version(members));
+        if (members == list) {
+            return selector.find(searchKey);
+        }
+        Set<T> candidates = new HashSet<>(list);
+        T owner = selector.find(searchKey, candidates::contains);
+        // 候选不在成员中（成员刚刷新）时退回第一个候选
+        return owner != null ? owner : list.iterator().next();
     }
 }
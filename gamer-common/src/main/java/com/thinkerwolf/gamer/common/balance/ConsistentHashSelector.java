@@ -2,72 +2,251 @@ package com.thinkerwolf.gamer.common.balance;
 
 import com.thinkerwolf.gamer.common.HashAlgorithm;
 
-import java.util.Collection;
-import java.util.TreeMap;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * Consistent hash circle
+ * <p>
+ * 环为按hash排序的long[]及对应节点数组，查找时二分。成员变化时只计算新增节点的虚拟节点，
+ * 与原环归并；删除节点时过滤掉其虚拟节点。每次变更生成新的不可变环，查找无锁。
+ * 虚拟节点的key为节点toString()的字节加上"-"和序号，与"node-i"字符串的hash一致。
  *
  * @param <T> Value type
+ * @author wukai
  */
 public class ConsistentHashSelector<T> {
 
     private final int virtualNum;
 
-    private final TreeMap<Long, T> nodeMap = new TreeMap<>();
-
     private final HashAlgorithm hashAlgorithm;
 
-    private Collection<T> nodes;
-
-    private int identityHashCode;
+    private volatile Ring ring = new Ring(0, Collections.emptySet(), new long[0], new Object[0]);
 
-    public ConsistentHashSelector(HashAlgorithm hashAlgorithm, int virtualNum, Collection<T> nodes, int identityHashCode) {
+    public ConsistentHashSelector(HashAlgorithm hashAlgorithm, int virtualNum) {
         this.hashAlgorithm = hashAlgorithm;
         this.virtualNum = virtualNum;
-        this.nodes = nodes;
-        this.identityHashCode = identityHashCode;
-        for (T t : nodes) {
-            String s = t.toString();
-            for (int i = 0; i < virtualNum; i++) {
-                long nodeKey = this.hashAlgorithm.hash(s + "-" + i);
-                nodeMap.put(nodeKey, t);
+    }
+
+    public ConsistentHashSelector(HashAlgorithm hashAlgorithm, int virtualNum, Collection<T> nodes) {
+        this(hashAlgorithm, virtualNum);
+        update(nodes, version(nodes));
+    }
+
+    /**
+     * 成员版本，与顺序无关，成员相同（equals）时版本相同
+     *
+     * @param nodes 节点
+     * @return version
+     */
+    public static long version(Collection<?> nodes) {
+        long v = nodes.size();
+        for (Object node : nodes) {
+            long h = node.hashCode() * 0x9E3779B97F4A7C15L;
+            v += h ^ (h >>> 32);
+        }
+        return v;
+    }
+
+    /**
+     * 版本变化时按成员差异增量更新环
+     *
+     * @param nodes   当前节点
+     * @param version 成员版本
+     */
+    public void update(Collection<T> nodes, long version) {
+        if (ring.version == version && ring.members.size() == nodes.size()) {
+            return;
+        }
+        synchronized (this) {
+            Ring r = ring;
+            if (r.version == version && r.members.size() == nodes.size()) {
+                return;
+            }
+            Set<T> members = new HashSet<>(nodes);
+            Set<Object> removed = new HashSet<>(r.members);
+            removed.removeAll(members);
+            List<T> added = new ArrayList<>();
+            for (T t : members) {
+                if (!r.members.contains(t)) {
+                    added.add(t);
+                }
             }
+            Ring next = r.remove(removed);
+            for (T t : added) {
+                next = next.add(t, points(t));
+            }
+            this.ring = new Ring(version, Collections.unmodifiableSet(members), next.points, next.owners);
         }
     }
 
-    public void add(T t) {
-        String s = t.toString();
-        for (int i = 0; i < virtualNum; i++) {
-            long nodeKey = this.hashAlgorithm.hash(s + "-" + i);
-            nodeMap.put(nodeKey, t);
+    public synchronized void add(T t) {
+        Ring r = ring;
+        if (r.members.contains(t)) {
+            return;
         }
+        Set<Object> members = new HashSet<>(r.members);
+        members.add(t);
+        Ring next = r.add(t, points(t));
+        this.ring = new Ring(version(members), Collections.unmodifiableSet(members), next.points, next.owners);
     }
 
-    public void remove(T t) {
-        String s = t.toString();
-        for (int i = 0; i < virtualNum; i++) {
-            long nodeKey = this.hashAlgorithm.hash(s + "-" + i);
-            nodeMap.remove(nodeKey);
+    public synchronized void remove(T t) {
+        Ring r = ring;
+        if (!r.members.contains(t)) {
+            return;
         }
+        Set<Object> members = new HashSet<>(r.members);
+        members.remove(t);
+        Ring next = r.remove(Collections.singleton(t));
+        this.ring = new Ring(version(members), Collections.unmodifiableSet(members), next.points, next.owners);
+    }
+
+    public long getVersion() {
+        return ring.version;
     }
 
-    public int getIdentityHashCode() {
-        return identityHashCode;
+    public int getVirtualNum() {
+        return virtualNum;
     }
 
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    @SuppressWarnings("unchecked")
     public T find(String key) {
-        if (nodeMap.isEmpty()) {
+        Ring r = ring;
+        long[] points = r.points;
+        if (points.length == 0) {
             return null;
         }
-        final long hash = hashAlgorithm.hash(key);
-        Long target = hash;
-        if (!nodeMap.containsKey(hash)) {
-            target = nodeMap.ceilingKey(hash);
-            if (target == null) {
-                target = nodeMap.firstKey();
+        int idx = lowerBound(points, hashAlgorithm.hash(key));
+        return (T) r.owners[idx == points.length ? 0 : idx];
+    }
+
+    /**
+     * 从key的位置顺时针查找第一个可选的节点。不可选的节点仍在环上，不影响其它key的归属
+     *
+     * @param key     key
+     * @param allowed 是否可选
+     * @return 没有可选的节点时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public T find(String key, Predicate<? super T> allowed) {
+        Ring r = ring;
+        long[] points = r.points;
+        int n = points.length;
+        int start = lowerBound(points, hashAlgorithm.hash(key));
+        for (int i = 0; i < n; i++) {
+            int idx = start + i;
+            T owner = (T) r.owners[idx >= n ? idx - n : idx];
+            if (allowed.test(owner)) {
+                return owner;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 第一个不小于hash的点，都小于hash时返回points.length
+     */
+    private static int lowerBound(long[] points, long hash) {
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (points[mid] < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 节点的虚拟节点hash，已排序
+     */
+    private long[] points(T t) {
+        byte[] prefix = t.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] buf = Arrays.copyOf(prefix, prefix.length + 12);
+        buf[prefix.length] = '-';
+        long[] points = new long[virtualNum];
+        for (int i = 0; i < virtualNum; i++) {
+            int len = writeDigits(buf, prefix.length + 1, i);
+            points[i] = hashAlgorithm.hash(buf, 0, len);
+        }
+        Arrays.sort(points);
+        return points;
+    }
+
+    /**
+     * 写入非负整数的十进制字符，返回写入后的总长度
+     */
+    private static int writeDigits(byte[] buf, int off, int i) {
+        int digits = 1;
+        for (int n = i; n >= 10; n /= 10) {
+            digits++;
+        }
+        int end = off + digits;
+        int pos = end;
+        do {
+            buf[--pos] = (byte) ('0' + i % 10);
+            i /= 10;
+        } while (i > 0);
+        return end;
+    }
+
+    private static final class Ring {
+        final long version;
+        final Set<?> members;
+        final long[] points;
+        final Object[] owners;
+
+        Ring(long version, Set<?> members, long[] points, Object[] owners) {
+            this.version = version;
+            this.members = members;
+            this.points = points;
+            this.owners = owners;
+        }
+
+        /**
+         * 归并新节点的有序虚拟节点，hash相同时原有的点在前
+         */
+        Ring add(Object owner, long[] added) {
+            long[] np = new long[points.length + added.length];
+            Object[] no = new Object[np.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < points.length || j < added.length) {
+                if (j == added.length || (i < points.length && points[i] <= added[j])) {
+                    np[k] = points[i];
+                    no[k++] = owners[i++];
+                } else {
+                    np[k] = added[j++];
+                    no[k++] = owner;
+                }
+            }
+            return new Ring(version, members, np, no);
+        }
+
+        Ring remove(Set<?> removed) {
+            if (removed.isEmpty()) {
+                return this;
+            }
+            long[] np = new long[points.length];
+            Object[] no = new Object[points.length];
+            int k = 0;
+            for (int i = 0; i < points.length; i++) {
+                if (!removed.contains(owners[i])) {
+                    np[k] = points[i];
+                    no[k++] = owners[i];
+                }
             }
+            return new Ring(version, members, Arrays.copyOf(np, k), Arrays.copyOf(no, k));
         }
-        return nodeMap.get(target);
     }
 }
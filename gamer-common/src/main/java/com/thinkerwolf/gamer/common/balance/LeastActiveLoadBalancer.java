@@ -0,0 +1,63 @@
+package com.thinkerwolf.gamer.common.balance;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 最少活跃数。选择进行中请求最少的节点，多个节点相同时按权重随机
+ *
+ * @author wukai
+ */
+public class LeastActiveLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "leastActive";
+
+    @Override
+    public <T> T select(Collection<T> collection, String searchKey, Map<String, Object> props) {
+        int size = collection.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return LoadBalancers.get(collection, 0);
+        }
+        // 活跃数快照，两次遍历看到的值一致
+        int[] actives = new int[size];
+        int leastActive = Integer.MAX_VALUE;
+        int leastCount = 0;
+        int totalWeight = 0;
+        int lastIndex = 0;
+        int i = 0;
+        for (T node : collection) {
+            int active = LoadBalancers.active(node);
+            actives[i] = active;
+            if (active < leastActive) {
+                leastActive = active;
+                leastCount = 1;
+                totalWeight = LoadBalancers.weight(node);
+                lastIndex = i;
+            } else if (active == leastActive) {
+                leastCount++;
+                totalWeight += LoadBalancers.weight(node);
+            }
+            i++;
+        }
+        if (leastCount == 1) {
+            return LoadBalancers.get(collection, lastIndex);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean weighted = totalWeight > 0;
+        int offset = weighted ? random.nextInt(totalWeight) : random.nextInt(leastCount);
+        i = 0;
+        for (T node : collection) {
+            if (actives[i++] == leastActive) {
+                offset -= weighted ? LoadBalancers.weight(node) : 1;
+                if (offset < 0) {
+                    return node;
+                }
+            }
+        }
+        return LoadBalancers.get(collection, lastIndex);
+    }
+}
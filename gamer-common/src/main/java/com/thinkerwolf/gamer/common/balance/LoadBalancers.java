@@ -0,0 +1,43 @@
+package com.thinkerwolf.gamer.common.balance;
+
+import org.apache.commons.collections.CollectionUtils;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 负载均衡工具
+ *
+ * @author wukai
+ */
+final class LoadBalancers {
+
+    private LoadBalancers() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T get(Collection<T> collection, int index) {
+        if (collection instanceof List) {
+            return ((List<T>) collection).get(index);
+        }
+        return (T) CollectionUtils.get(collection, index);
+    }
+
+    static NodeStats stats(Object node) {
+        return node instanceof Measurable ? ((Measurable) node).getNodeStats() : null;
+    }
+
+    static int weight(Object node) {
+        return node instanceof Measurable ? Math.max(((Measurable) node).getWeight(), 0) : Measurable.DEFAULT_WEIGHT;
+    }
+
+    static double cost(Object node) {
+        NodeStats stats = stats(node);
+        return stats == null ? 0 : stats.cost();
+    }
+
+    static int active(Object node) {
+        NodeStats stats = stats(node);
+        return stats == null ? 0 : stats.getActive();
+    }
+}
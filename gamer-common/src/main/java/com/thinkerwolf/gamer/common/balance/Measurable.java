@@ -0,0 +1,17 @@
+package com.thinkerwolf.gamer.common.balance;
+
+/**
+ * 可度量负载的节点，负载感知的{@link LoadBalancer}据此选择节点。未实现的节点按默认权重、零负载处理
+ *
+ * @author wukai
+ */
+public interface Measurable {
+
+    int DEFAULT_WEIGHT = 100;
+
+    NodeStats getNodeStats();
+
+    default int getWeight() {
+        return DEFAULT_WEIGHT;
+    }
+}
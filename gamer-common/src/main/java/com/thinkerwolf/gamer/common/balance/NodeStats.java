@@ -0,0 +1,77 @@
+package com.thinkerwolf.gamer.common.balance;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 节点的实时负载：进行中的请求数和按时间衰减的延迟EWMA。
+ * <p>
+ * EWMA的衰减按距上次采样的时间计算，而不是按样本数，空闲一段时间的节点会逐渐回落到新的延迟。
+ * 超过当前均值的采样直接取代均值（peak EWMA），使变慢的节点被尽快避开
+ *
+ * @author wukai
+ */
+public final class NodeStats {
+
+    /** 衰减时间常数 */
+    private static final double TAU_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AtomicInteger active = new AtomicInteger();
+    private double latencyEwma;
+    private long lastNanos = System.nanoTime();
+
+    /**
+     * 请求开始
+     *
+     * @return 开始时间，传给{@link #end(long)}
+     */
+    public long begin() {
+        active.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * 请求结束，失败的请求也应调用
+     *
+     * @param startNanos {@link #begin()}的返回值
+     */
+    public void end(long startNanos) {
+        active.decrementAndGet();
+        long now = System.nanoTime();
+        double micros = (now - startNanos) / 1000.0;
+        synchronized (this) {
+            if (micros > latencyEwma) {
+                latencyEwma = micros;
+            } else {
+                double w = Math.exp(-(now - lastNanos) / TAU_NANOS);
+                latencyEwma = latencyEwma * w + micros * (1 - w);
+            }
+            lastNanos = now;
+        }
+    }
+
+    /**
+     * 丢弃历史延迟，下一次采样直接作为均值。节点从熔断恢复时调用，断开前的延迟已不代表当前状态
+     */
+    public synchronized void resetLatency() {
+        latencyEwma = 0;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * @return 延迟EWMA，微秒
+     */
+    public synchronized double getLatencyEwma() {
+        return latencyEwma;
+    }
+
+    /**
+     * 负载代价，延迟 * (进行中请求数 + 1)。未有采样的节点代价为0，优先被选中以获得采样
+     */
+    public double cost() {
+        return getLatencyEwma() * (getActive() + 1);
+    }
+}
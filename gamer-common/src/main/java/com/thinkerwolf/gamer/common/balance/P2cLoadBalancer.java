@@ -0,0 +1,36 @@
+package com.thinkerwolf.gamer.common.balance;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power of two choices。随机取两个节点，选择负载代价（延迟EWMA * 进行中请求数）较小的一个
+ *
+ * @author wukai
+ * @see NodeStats#cost()
+ */
+public class P2cLoadBalancer implements LoadBalancer {
+
+    public static final String NAME = "p2c";
+
+    @Override
+    public <T> T select(Collection<T> collection, String searchKey, Map<String, Object> props) {
+        int size = collection.size();
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return LoadBalancers.get(collection, 0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(size);
+        int j = random.nextInt(size - 1);
+        if (j >= i) {
+            j++;
+        }
+        T a = LoadBalancers.get(collection, i);
+        T b = LoadBalancers.get(collection, j);
+        return LoadBalancers.cost(a) <= LoadBalancers.cost(b) ? a : b;
+    }
+}
@@ -1,8 +1,8 @@
 package com.thinkerwolf.gamer.common.balance;
 
-import org.apache.commons.collections.CollectionUtils;
-
-import java.util.*;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 随机
@@ -10,8 +10,6 @@ import java.util.*;
  * @author wukai
  */
 public class RandomLoadBalancer implements LoadBalancer {
-    private static final Random r = new Random();
-
     @Override
     public <T> T select(Collection<T> collection, String searchKey, Map<String, Object> props) {
         if (collection == null) {
@@ -21,6 +19,6 @@ public class RandomLoadBalancer implements LoadBalancer {
         if (size == 0) {
             return null;
         }
-        return (T) CollectionUtils.get(collection, r.nextInt(size));
+        return LoadBalancers.get(collection, ThreadLocalRandom.current().nextInt(size));
     }
 }
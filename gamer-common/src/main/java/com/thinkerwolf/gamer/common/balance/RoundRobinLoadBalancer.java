@@ -1,29 +1,76 @@
 package com.thinkerwolf.gamer.common.balance;
 
-import org.apache.commons.collections.CollectionUtils;
+import com.thinkerwolf.gamer.common.Constants;
+import org.apache.commons.collections.MapUtils;
 
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-@SuppressWarnings("unchecked")
+/**
+ * 平滑加权轮询（nginx算法）。
+ * <p>
+ * 每次选择时各节点的当前权重加上其权重，选出当前权重最大的节点，再减去总权重。
+ * 状态按服务（{@link Constants#LOADBALANCE_KEY}）保存，节点列表变化时重建
+ *
+ * @author wukai
+ */
 public class RoundRobinLoadBalancer implements LoadBalancer {
 
     public static final String NAME = "roundRobin";
 
-    public static final String ROBIN_INDEX = "round_robin_index";
+    private final Map<String, Wheel> wheels = new ConcurrentHashMap<>();
 
     @Override
     public <T> T select(Collection<T> collection, String searchKey, Map<String, Object> props) {
-        if (collection.isEmpty()) {
+        int size = collection.size();
+        if (size == 0) {
             return null;
         }
-        int idx = (Integer) props.compute(ROBIN_INDEX, (s, o) -> {
-            if (o == null) {
-                return 1;
-            } else {
-                return (Integer) o + 1;
+        if (size == 1) {
+            return LoadBalancers.get(collection, 0);
+        }
+        String serviceKey = MapUtils.getString(props, Constants.LOADBALANCE_KEY, "default");
+        Wheel wheel = wheels.computeIfAbsent(serviceKey, k -> new Wheel());
+        return wheel.next(collection);
+    }
+
+    private static final class Wheel {
+        /** 节点 -> 当前权重，节点列表变化时保留仍存在节点的状态 */
+        private Map<Object, long[]> current = new IdentityHashMap<>();
+        private int identityHashCode;
+
+        synchronized <T> T next(Collection<T> collection) {
+            int identity = System.identityHashCode(collection);
+            if (identity != identityHashCode || current.size() != collection.size()) {
+                Map<Object, long[]> rebuilt = new IdentityHashMap<>(collection.size());
+                for (T node : collection) {
+                    long[] weight = current.get(node);
+                    rebuilt.put(node, weight == null ? new long[1] : weight);
+                }
+                current = rebuilt;
+                identityHashCode = identity;
+            }
+            long total = 0;
+            T best = null;
+            long[] bestWeight = null;
+            for (T node : collection) {
+                int weight = LoadBalancers.weight(node);
+                long[] cw = current.get(node);
+                if (cw == null) {
+                    cw = new long[1];
+                    current.put(node, cw);
+                }
+                cw[0] += weight;
+                total += weight;
+                if (bestWeight == null || cw[0] > bestWeight[0]) {
+                    best = node;
+                    bestWeight = cw;
+                }
             }
-        });
-        return (T) CollectionUtils.get(collection, (idx - 1) % collection.size());
+            bestWeight[0] -= total;
+            return best;
+        }
     }
 }
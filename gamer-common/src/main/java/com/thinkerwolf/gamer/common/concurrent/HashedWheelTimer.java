@@ -0,0 +1,258 @@
+package com.thinkerwolf.gamer.common.concurrent;
+
+import com.thinkerwolf.gamer.common.DefaultThreadFactory;
+import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
+import com.thinkerwolf.gamer.common.log.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 时间轮定时器。
+ * <p>
+ * 适用于大量、通常会被取消的短定时任务（如请求超时），添加和取消均为O(1)，不阻塞调用线程。
+ * 定时精度为一个tick，任务在单独的守护线程中执行，应保持简短。
+ *
+ * @author wukai
+ */
+public class HashedWheelTimer {
+
+    private static final Logger LOG = InternalLoggerFactory.getLogger(HashedWheelTimer.class);
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<HashedTimeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<HashedTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Thread workerThread;
+    private volatile boolean stopped;
+    private volatile long startTime;
+
+    /**
+     * @param name          线程名
+     * @param tickDuration  tick时长
+     * @param unit          tick时长单位
+     * @param ticksPerWheel 时间轮槽数，向上取2的幂
+     */
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("tickDuration and ticksPerWheel must be positive");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(Math.min(ticksPerWheel, 1 << 30) - 1) << 1;
+        size = Math.max(size, 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.workerThread = new DefaultThreadFactory(name, true).newThread(this::run);
+    }
+
+    /**
+     * 添加定时任务，首次调用时启动工作线程
+     *
+     * @param task  任务
+     * @param delay 延迟
+     * @param unit  延迟单位
+     * @return 可取消的定时
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) {
+            throw new IllegalStateException("Timer stopped");
+        }
+        if (started.compareAndSet(false, true)) {
+            startTime = System.nanoTime();
+            workerThread.start();
+        }
+        HashedTimeout timeout = new HashedTimeout(this, task, System.nanoTime() + unit.toNanos(delay));
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 停止工作线程，未执行的任务被丢弃
+     */
+    public void stop() {
+        stopped = true;
+        workerThread.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!stopped) {
+            long deadline = startTime + tickNanos * (tick + 1);
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (stopped) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            removeCancelled();
+            transferPending(tick);
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private void transferPending(long currentTick) {
+        // 每个tick最多转移的数量，避免添加过快时饿死过期处理
+        for (int i = 0; i < 100000; i++) {
+            HashedTimeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state != HashedTimeout.ST_INIT) {
+                continue;
+            }
+            long ticks = Math.max((timeout.deadline - startTime) / tickNanos, currentTick);
+            timeout.remainingRounds = (ticks - currentTick) / wheel.length;
+            Bucket bucket = wheel[(int) (ticks & mask)];
+            bucket.add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        for (HashedTimeout timeout = cancelledTimeouts.poll(); timeout != null; timeout = cancelledTimeouts.poll()) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * 定时任务句柄
+     */
+    public interface Timeout {
+
+        /**
+         * @return 任务尚未执行且取消成功时返回true
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        boolean isExpired();
+    }
+
+    private static final class HashedTimeout implements Timeout {
+
+        static final int ST_INIT = 0;
+        static final int ST_CANCELLED = 1;
+        static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<HashedTimeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(HashedTimeout.class, "state");
+
+        final HashedWheelTimer timer;
+        final Runnable task;
+        final long deadline;
+        volatile int state;
+        long remainingRounds;
+        Bucket bucket;
+        HashedTimeout prev;
+        HashedTimeout next;
+
+        HashedTimeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOG.warn("Timer task execute error", t);
+            }
+        }
+    }
+
+    /**
+     * 时间轮的槽，只在工作线程中访问
+     */
+    private static final class Bucket {
+        private HashedTimeout head;
+        private HashedTimeout tail;
+
+        void add(HashedTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire() {
+            HashedTimeout timeout = head;
+            while (timeout != null) {
+                HashedTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(HashedTimeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            HashedTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
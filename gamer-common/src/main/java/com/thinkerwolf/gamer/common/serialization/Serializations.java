@@ -1,8 +1,8 @@
 package com.thinkerwolf.gamer.common.serialization;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.Closeable;
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffers;
+
 import java.io.IOException;
 
 /**
@@ -13,39 +13,40 @@ import java.io.IOException;
  */
 public final class Serializations {
 
+    /**
+     * 线程内复用的序列化buffer超过此容量后不再保留
+     */
+    private static final int MAX_CACHED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<LocalBuffer> LOCAL_BUFFER = ThreadLocal.withInitial(LocalBuffer::new);
+
     public static byte[] getBytes(Serializer serializer, Object obj) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
-        ObjectOutput oo = null;
+        LocalBuffer local = LOCAL_BUFFER.get();
+        // 序列化过程中嵌套调用时使用新的buffer
+        ChannelBuffer buf = local.inUse ? ChannelBuffers.dynamicBuffer(512) : local.acquire();
         try {
-            oo = serializer.serialize(baos);
-            oo.writeObject(obj);
-            oo.flush();
-            oo.close();
-            return baos.toByteArray();
+            serializer.serialize(obj, buf);
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
         } finally {
-            closeQuietly(baos);
-            closeQuietly(oo);
+            if (buf == local.buffer) {
+                local.release();
+            }
         }
     }
 
     public static <T> T getObject(Serializer serializer, byte[] data, Class<T> clazz)
             throws IOException, ClassNotFoundException {
-        ByteArrayInputStream bais = new ByteArrayInputStream(data);
-        ObjectInput oi = null;
-        try {
-            oi = serializer.deserialize(bais);
-            return oi.readObject(clazz);
-        } finally {
-            closeQuietly(bais);
-            closeQuietly(oi);
-        }
+        return serializer.deserialize(ChannelBuffers.wrappedBuffer(data), 0, data.length, clazz);
     }
 
-    private static void closeQuietly(Closeable closeable) {
-        try {
-            if (closeable != null) closeable.close();
-        } catch (IOException ignored) {
-        }
+    /**
+     * 反序列化buffer中的一段，不改变buffer的读写索引
+     */
+    public static <T> T getObject(Serializer serializer, ChannelBuffer buffer, int offset, int len, Class<T> clazz)
+            throws IOException, ClassNotFoundException {
+        return serializer.deserialize(buffer, offset, len, clazz);
     }
 
     public static void closeQuietly(ObjectInput oi) {
@@ -61,4 +62,25 @@ public final class Serializations {
         } catch (IOException ignored) {
         }
     }
+
+    private static class LocalBuffer {
+        ChannelBuffer buffer;
+        boolean inUse;
+
+        ChannelBuffer acquire() {
+            if (buffer == null) {
+                buffer = ChannelBuffers.dynamicBuffer(512);
+            }
+            buffer.clear();
+            inUse = true;
+            return buffer;
+        }
+
+        void release() {
+            inUse = false;
+            if (buffer.capacity() > MAX_CACHED_CAPACITY) {
+                buffer = null;
+            }
+        }
+    }
 }
@@ -2,6 +2,9 @@ package com.thinkerwolf.gamer.common.serialization;
 
 
 import com.thinkerwolf.gamer.common.SPI;
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
+import com.thinkerwolf.gamer.common.buffer.ChannelBufferInputStream;
+import com.thinkerwolf.gamer.common.buffer.ChannelBufferOutputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -19,4 +22,37 @@ public interface Serializer {
 
     ObjectInput deserialize(InputStream is) throws IOException, ClassNotFoundException;
 
+    /**
+     * 将对象序列化到buffer，从writerIndex开始写入。实现可复用线程内的流
+     *
+     * @param obj    对象
+     * @param buffer 目标buffer
+     */
+    default void serialize(Object obj, ChannelBuffer buffer) throws IOException {
+        ObjectOutput oo = serialize(new ChannelBufferOutputStream(buffer));
+        try {
+            oo.writeObject(obj);
+            oo.flush();
+        } finally {
+            Serializations.closeQuietly(oo);
+        }
+    }
+
+    /**
+     * 从buffer的offset处读取len字节反序列化，不改变buffer的读写索引。实现可复用线程内的流
+     *
+     * @param buffer 源buffer
+     * @param offset 起始位置
+     * @param len    长度
+     * @param clazz  对象类型
+     */
+    default <T> T deserialize(ChannelBuffer buffer, int offset, int len, Class<T> clazz) throws IOException, ClassNotFoundException {
+        ObjectInput oi = deserialize(new ChannelBufferInputStream(buffer.slice(offset, len)));
+        try {
+            return oi.readObject(clazz);
+        } finally {
+            Serializations.closeQuietly(oi);
+        }
+    }
+
 }
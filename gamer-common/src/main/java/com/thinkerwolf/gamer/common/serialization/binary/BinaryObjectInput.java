@@ -0,0 +1,43 @@
+package com.thinkerwolf.gamer.common.serialization.binary;
+
+import com.thinkerwolf.gamer.common.serialization.ObjectInput;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class BinaryObjectInput implements ObjectInput {
+
+    private final InputStream in;
+
+    private final BinaryReader reader;
+
+    public BinaryObjectInput(InputStream in) {
+        this.in = in;
+        this.reader = new BinaryReader(in);
+    }
+
+    @Override
+    public <T> T readObject(Class<T> t) throws ClassNotFoundException, IOException {
+        return reader.readObject(t);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return reader.read();
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return reader.read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return reader.read(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,48 @@
+package com.thinkerwolf.gamer.common.serialization.binary;
+
+import com.thinkerwolf.gamer.common.serialization.ObjectOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class BinaryObjectOutput implements ObjectOutput {
+
+    private final OutputStream out;
+
+    private final BinaryWriter writer;
+
+    public BinaryObjectOutput(OutputStream out) {
+        this.out = out;
+        this.writer = new BinaryWriter(256);
+    }
+
+    @Override
+    public void writeObject(Object obj) throws IOException {
+        writer.writeObject(obj);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        writer.writeBytes(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        writer.writeBytes(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (writer.position() > 0) {
+            out.write(writer.buffer(), 0, writer.position());
+            writer.discard();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
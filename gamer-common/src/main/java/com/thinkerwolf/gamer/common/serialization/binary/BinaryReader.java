@@ -0,0 +1,642 @@
+package com.thinkerwolf.gamer.common.serialization.binary;
+
+import com.thinkerwolf.gamer.common.util.ClassUtils;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.thinkerwolf.gamer.common.serialization.binary.BinaryTags.*;
+
+/**
+ * binary解码。
+ * <p>
+ * 按写出方的结构读取字段，字段按名称对应到本地类：写出方多出的字段被跳过，本地多出的字段保持默认值，
+ * 类型不一致的字段尝试转换，无法转换时跳过。
+ *
+ * @author wukai
+ */
+final class BinaryReader {
+
+    private static final Map<String, Class<?>> CLASSES = new ConcurrentHashMap<>();
+
+    /** 流方式一次预分配的最大元素个数 */
+    private static final int STREAM_CHUNK = 1024;
+    /** 类的字段数上限，class文件的限制 */
+    private static final int MAX_FIELDS = 65535;
+
+    private byte[] buf;
+    private int pos;
+    private int limit;
+    private final InputStream in;
+    private final List<String> names = new ArrayList<>();
+    private final List<Struct> structs = new ArrayList<>();
+
+    BinaryReader(byte[] buf, int offset, int len) {
+        this.buf = buf;
+        this.pos = offset;
+        this.limit = offset + len;
+        this.in = null;
+    }
+
+    BinaryReader(InputStream in) {
+        this.buf = new byte[512];
+        this.in = in;
+    }
+
+    <T> T readObject(Class<T> clazz) throws IOException, ClassNotFoundException {
+        ensure(1);
+        if (buf[pos] == TYPED_BEAN && BinarySchema.of(clazz) == null) {
+            throw new InvalidClassException(clazz.getName(), "Not the written bean type");
+        }
+        return cast(readValue(clazz), clazz);
+    }
+
+    int read() throws IOException {
+        if (pos == limit && !fill(1)) {
+            return -1;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == limit && !fill(1)) {
+            return -1;
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    /**
+     * @param expected 声明类型，TYPED_BEAN按此类型读取；为null时跳过TYPED_BEAN的值
+     */
+    private Object readValue(Class<?> expected) throws IOException, ClassNotFoundException {
+        byte tag = readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return unzigzag(readVarInt());
+            case LONG:
+                return unzigzag(readVarLong());
+            case DOUBLE:
+                return Double.longBitsToDouble(readFixedLong());
+            case FLOAT:
+                return Float.intBitsToFloat(readFixedInt());
+            case SHORT:
+                return (short) unzigzag(readVarInt());
+            case BYTE:
+                return readByte();
+            case CHAR:
+                return (char) readVarInt();
+            case STRING:
+                return readString();
+            case BYTES:
+                return readBytes(readLength(1));
+            case INTS: {
+                int len = readLength(1);
+                int[] ints = new int[initialCapacity(len)];
+                for (int i = 0; i < len; i++) {
+                    if (i == ints.length) {
+                        ints = Arrays.copyOf(ints, grow(i, len));
+                    }
+                    ints[i] = unzigzag(readVarInt());
+                }
+                return ints;
+            }
+            case LONGS: {
+                int len = readLength(1);
+                long[] longs = new long[initialCapacity(len)];
+                for (int i = 0; i < len; i++) {
+                    if (i == longs.length) {
+                        longs = Arrays.copyOf(longs, grow(i, len));
+                    }
+                    longs[i] = unzigzag(readVarLong());
+                }
+                return longs;
+            }
+            case ENUM: {
+                Class<?> type = findClass(readName());
+                String name = readString();
+                return type == null ? null : toEnum(type, name);
+            }
+            case DATE:
+                return new Date(unzigzag(readVarLong()));
+            case BIG_DECIMAL:
+                return new BigDecimal(readString());
+            case BIG_INTEGER:
+                return new BigInteger(readString());
+            case MAP: {
+                int size = readLength(2);
+                Map<Object, Object> map = new LinkedHashMap<>(capacity(initialCapacity(size)));
+                for (int i = 0; i < size; i++) {
+                    Object k = readValue(null);
+                    map.put(k, readValue(null));
+                }
+                return map;
+            }
+            case LIST: {
+                int size = readLength(1);
+                List<Object> list = new ArrayList<>(initialCapacity(size));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(null));
+                }
+                return list;
+            }
+            case SET: {
+                int size = readLength(1);
+                Set<Object> set = new LinkedHashSet<>(capacity(initialCapacity(size)));
+                for (int i = 0; i < size; i++) {
+                    set.add(readValue(null));
+                }
+                return set;
+            }
+            case ARRAY: {
+                Class<?> component = findClass(readName());
+                int size = readLength(1);
+                Object[] arr = (Object[]) Array.newInstance(component == null ? Object.class : component,
+                        initialCapacity(size));
+                for (int i = 0; i < size; i++) {
+                    if (i == arr.length) {
+                        arr = Arrays.copyOf(arr, grow(i, size));
+                    }
+                    Object o = readValue(null);
+                    if (o == null || arr.getClass().getComponentType().isInstance(o)) {
+                        arr[i] = o;
+                    }
+                }
+                return arr;
+            }
+            case BEAN: {
+                Class<?> type = findClass(readName());
+                return readBean(type == null ? null : BinarySchema.of(type));
+            }
+            case TYPED_BEAN:
+                // 本地声明类型已不是对象类型时跳过
+                return readBean(expected == null ? null : BinarySchema.of(expected));
+            case THROWABLE: {
+                byte[] bytes = readBytes(readLength(1));
+                try (ThrowableInputStream ois = new ThrowableInputStream(bytes)) {
+                    return ois.readObject();
+                }
+            }
+            default:
+                throw new StreamCorruptedException("Unknown binary tag " + tag);
+        }
+    }
+
+    /**
+     * @param schema 本地类结构，为null时只跳过字段值
+     */
+    private Object readBean(BinarySchema schema) throws IOException, ClassNotFoundException {
+        int ref = readVarInt();
+        Struct struct;
+        if (ref == 0) {
+            int count = readLength(2);
+            if (count > MAX_FIELDS) {
+                throw new StreamCorruptedException("Too many binary fields " + count);
+            }
+            String[] fieldNames = new String[count];
+            byte[] kinds = new byte[count];
+            for (int i = 0; i < count; i++) {
+                fieldNames[i] = readString();
+                kinds[i] = readByte();
+            }
+            struct = new Struct(fieldNames, kinds);
+            structs.add(struct);
+        } else if (ref <= structs.size()) {
+            struct = structs.get(ref - 1);
+        } else {
+            throw new StreamCorruptedException("Unknown binary struct " + ref);
+        }
+        BinarySchema.FieldInfo[] slots = schema == null ? null : struct.resolve(schema);
+        Object bean = null;
+        try {
+            if (schema != null) {
+                bean = schema.newInstance();
+            }
+            byte[] kinds = struct.kinds;
+            for (int i = 0; i < kinds.length; i++) {
+                BinarySchema.FieldInfo slot = slots == null ? null : slots[i];
+                byte kind = kinds[i];
+                if (slot != null && slot.kind == kind) {
+                    readField(bean, slot);
+                } else {
+                    Object v = kind == K_OBJECT ? readValue(slot == null ? null : slot.type) : readPrimitive(kind);
+                    if (slot != null) {
+                        setConverted(bean, slot, v);
+                    }
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new InvalidObjectException(e.toString());
+        }
+        return bean;
+    }
+
+    private void readField(Object bean, BinarySchema.FieldInfo slot) throws IOException, ClassNotFoundException, IllegalAccessException {
+        switch (slot.kind) {
+            case K_BOOLEAN:
+                slot.field.setBoolean(bean, readByte() != 0);
+                break;
+            case K_BYTE:
+                slot.field.setByte(bean, readByte());
+                break;
+            case K_SHORT:
+                slot.field.setShort(bean, (short) unzigzag(readVarInt()));
+                break;
+            case K_CHAR:
+                slot.field.setChar(bean, (char) readVarInt());
+                break;
+            case K_INT:
+                slot.field.setInt(bean, unzigzag(readVarInt()));
+                break;
+            case K_LONG:
+                slot.field.setLong(bean, unzigzag(readVarLong()));
+                break;
+            case K_FLOAT:
+                slot.field.setFloat(bean, Float.intBitsToFloat(readFixedInt()));
+                break;
+            case K_DOUBLE:
+                slot.field.setDouble(bean, Double.longBitsToDouble(readFixedLong()));
+                break;
+            case K_STRING:
+                slot.field.set(bean, readString());
+                break;
+            default:
+                Object v = readValue(slot.type);
+                if (v == null || slot.type.isInstance(v)) {
+                    slot.field.set(bean, v);
+                } else {
+                    setConverted(bean, slot, v);
+                }
+        }
+    }
+
+    private Object readPrimitive(byte kind) throws IOException {
+        switch (kind) {
+            case K_BOOLEAN:
+                return readByte() != 0;
+            case K_BYTE:
+                return readByte();
+            case K_SHORT:
+                return (short) unzigzag(readVarInt());
+            case K_CHAR:
+                return (char) readVarInt();
+            case K_INT:
+                return unzigzag(readVarInt());
+            case K_LONG:
+                return unzigzag(readVarLong());
+            case K_FLOAT:
+                return Float.intBitsToFloat(readFixedInt());
+            case K_DOUBLE:
+                return Double.longBitsToDouble(readFixedLong());
+            case K_STRING:
+                return readString();
+            default:
+                throw new StreamCorruptedException("Unknown binary field kind " + kind);
+        }
+    }
+
+    /**
+     * 写出方与本地字段类型不一致时的赋值，无法转换时保持默认值
+     */
+    private static void setConverted(Object bean, BinarySchema.FieldInfo slot, Object v) {
+        Object value = convert(v, slot.type);
+        if (value == null && slot.type.isPrimitive()) {
+            return;
+        }
+        try {
+            slot.field.set(bean, value);
+        } catch (IllegalArgumentException | IllegalAccessException ignored) {
+            // 类型不兼容
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object convert(Object v, Class<?> type) {
+        if (v == null || type.isInstance(v)) {
+            return v;
+        }
+        if (v instanceof Number && (type.isPrimitive() || Number.class.isAssignableFrom(type))) {
+            return convertNumber((Number) v, type);
+        }
+        if (type.isPrimitive()) {
+            return v;
+        }
+        int mod = type.getModifiers();
+        boolean concrete = !type.isInterface() && !Modifier.isAbstract(mod);
+        try {
+            if (v instanceof Collection && Collection.class.isAssignableFrom(type) && concrete) {
+                Collection<Object> coll = (Collection<Object>) type.newInstance();
+                coll.addAll((Collection<Object>) v);
+                return coll;
+            }
+            if (v instanceof Map && Map.class.isAssignableFrom(type) && concrete) {
+                Map<Object, Object> map = (Map<Object, Object>) type.newInstance();
+                map.putAll((Map<Object, Object>) v);
+                return map;
+            }
+            if (v instanceof Collection && Collection.class.isAssignableFrom(type)) {
+                // 声明为Set等接口时
+                return Set.class.isAssignableFrom(type) ? new LinkedHashSet<>((Collection<Object>) v) : null;
+            }
+            if (v instanceof Object[] && type.isArray() && !type.getComponentType().isPrimitive()) {
+                Object[] arr = (Object[]) v;
+                return Arrays.copyOf(arr, arr.length, (Class<? extends Object[]>) type);
+            }
+        } catch (ReflectiveOperationException | ArrayStoreException ignored) {
+            // 无法转换
+        }
+        return null;
+    }
+
+    private static Object convertNumber(Number n, Class<?> type) {
+        if (type == int.class || type == Integer.class) return n.intValue();
+        if (type == long.class || type == Long.class) return n.longValue();
+        if (type == double.class || type == Double.class) return n.doubleValue();
+        if (type == float.class || type == Float.class) return n.floatValue();
+        if (type == short.class || type == Short.class) return n.shortValue();
+        if (type == byte.class || type == Byte.class) return n.byteValue();
+        return null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object toEnum(Class<?> type, String name) {
+        if (!type.isEnum()) {
+            return null;
+        }
+        try {
+            return Enum.valueOf((Class) type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object v, Class<T> clazz) throws InvalidClassException {
+        if (v == null || clazz.isPrimitive() || clazz.isInstance(v)) {
+            return (T) v;
+        }
+        Object converted = convert(v, clazz);
+        if (converted == null) {
+            throw new InvalidClassException(clazz.getName(), "Incompatible with " + v.getClass().getName());
+        }
+        return (T) converted;
+    }
+
+    private static Class<?> findClass(String name) {
+        Class<?> c = CLASSES.get(name);
+        if (c == null) {
+            try {
+                c = Class.forName(name, false, ClassUtils.getDefaultClassLoader());
+            } catch (ClassNotFoundException e) {
+                // 本地不存在的类，值被跳过
+                return null;
+            }
+            CLASSES.put(name, c);
+        }
+        return c;
+    }
+
+    private String readName() throws IOException {
+        int ref = readVarInt();
+        if (ref == 0) {
+            String name = readString();
+            names.add(name);
+            return name;
+        }
+        if (ref > names.size()) {
+            throw new StreamCorruptedException("Unknown binary name " + ref);
+        }
+        return names.get(ref - 1);
+    }
+
+    private String readString() throws IOException {
+        int len = readVarInt() - 1;
+        if (len < 0) {
+            return null;
+        }
+        if (limit - pos < len && (in == null || len > buf.length)) {
+            // 超出缓冲的长字符串按实际读到的数据逐步分配
+            checkRemaining(len, 1);
+            return new String(readBytes(len), StandardCharsets.UTF_8);
+        }
+        ensure(len);
+        String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+        pos += len;
+        return s;
+    }
+
+    /**
+     * 读取元素个数。每个元素至少占minBytes字节，超出剩余数据的长度视为数据损坏，不按其分配内存
+     */
+    private int readLength(int minBytes) throws IOException {
+        int len = readVarInt();
+        if (len < 0) {
+            throw new StreamCorruptedException("Negative length " + len);
+        }
+        checkRemaining(len, minBytes);
+        return len;
+    }
+
+    private void checkRemaining(int len, int minBytes) throws StreamCorruptedException {
+        if (in == null && (long) len * minBytes > limit - pos) {
+            throw new StreamCorruptedException("Length " + len + " exceeds remaining " + (limit - pos) + " bytes");
+        }
+    }
+
+    /**
+     * 预分配的元素个数。数组方式的长度已按剩余数据检查；流方式无法预知剩余数据，
+     * 先分配一段，随读取增长，畸形数据在读到末尾时以EOF结束
+     */
+    private int initialCapacity(int len) {
+        return in == null ? len : Math.min(len, STREAM_CHUNK);
+    }
+
+    private static int grow(int length, int max) {
+        return (int) Math.min(max, (long) length << 1);
+    }
+
+    private byte[] readBytes(int len) throws IOException {
+        byte[] b = new byte[initialCapacity(len)];
+        int off = 0;
+        while (off < len) {
+            if (off == b.length) {
+                b = Arrays.copyOf(b, grow(off, len));
+            }
+            int n = read(b, off, b.length - off);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            off += n;
+        }
+        return b;
+    }
+
+    private static int capacity(int size) {
+        return size < 3 ? size + 1 : (int) (size / 0.75f + 1);
+    }
+
+    private byte readByte() throws IOException {
+        ensure(1);
+        return buf[pos++];
+    }
+
+    private int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varlong");
+    }
+
+    private int readFixedInt() throws IOException {
+        ensure(4);
+        byte[] b = buf;
+        int p = pos;
+        pos = p + 4;
+        return (b[p] & 0xFF) | (b[p + 1] & 0xFF) << 8 | (b[p + 2] & 0xFF) << 16 | (b[p + 3] & 0xFF) << 24;
+    }
+
+    private long readFixedLong() throws IOException {
+        return (readFixedInt() & 0xFFFFFFFFL) | ((long) readFixedInt() << 32);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private void ensure(int n) throws IOException {
+        if (limit - pos < n && !fill(n)) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * 从流中补充数据，直到至少有n个可读字节
+     */
+    private boolean fill(int n) throws IOException {
+        if (in == null) {
+            return false;
+        }
+        int remaining = limit - pos;
+        if (buf.length < n) {
+            byte[] nb = new byte[Math.max(buf.length << 1, n)];
+            System.arraycopy(buf, pos, nb, 0, remaining);
+            buf = nb;
+        } else if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, remaining);
+        }
+        pos = 0;
+        limit = remaining;
+        while (limit < n) {
+            int r = in.read(buf, limit, buf.length - limit);
+            if (r < 0) {
+                return false;
+            }
+            limit += r;
+        }
+        return true;
+    }
+
+    /**
+     * 读取JDK序列化的异常，只解析异常、堆栈以及异常字段中常见的JDK值类型，其它类（包括代理类）一律拒绝，
+     * 对端无法借此构造任意对象
+     */
+    private static final class ThrowableInputStream extends ObjectInputStream {
+
+        private static final Set<String> ALLOWED = new HashSet<>(Arrays.asList(
+                "java.lang.StackTraceElement", "java.lang.String", "java.lang.Number",
+                "java.lang.Boolean", "java.lang.Character", "java.lang.Byte", "java.lang.Short",
+                "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double",
+                "java.util.ArrayList", "java.util.Collections$UnmodifiableCollection",
+                "java.util.Collections$UnmodifiableList", "java.util.Collections$UnmodifiableRandomAccessList",
+                "java.util.Collections$EmptyList"));
+
+        ThrowableInputStream(byte[] bytes) throws IOException {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+            Class<?> c = Class.forName(name, false, ClassUtils.getDefaultClassLoader());
+            Class<?> element = c;
+            while (element.isArray()) {
+                element = element.getComponentType();
+            }
+            if (element.isPrimitive() || ALLOWED.contains(element.getName())
+                    || Throwable.class.isAssignableFrom(element)) {
+                return c;
+            }
+            throw new InvalidClassException(name, "Not allowed in a binary throwable");
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new InvalidClassException("Proxy classes are not allowed in a binary throwable");
+        }
+    }
+
+    /**
+     * 写出方的类结构
+     */
+    private static final class Struct {
+        final String[] fieldNames;
+        final byte[] kinds;
+        BinarySchema schema;
+        BinarySchema.FieldInfo[] slots;
+
+        Struct(String[] fieldNames, byte[] kinds) {
+            this.fieldNames = fieldNames;
+            this.kinds = kinds;
+        }
+
+        BinarySchema.FieldInfo[] resolve(BinarySchema target) {
+            if (schema != target) {
+                BinarySchema.FieldInfo[] s = new BinarySchema.FieldInfo[fieldNames.length];
+                for (int i = 0; i < s.length; i++) {
+                    s[i] = target.getField(fieldNames[i]);
+                }
+                slots = s;
+                schema = target;
+            }
+            return slots;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.thinkerwolf.gamer.common.serialization.binary;
+
+import java.io.Externalizable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 类的字段结构，首次使用时生成并缓存。
+ * <p>
+ * 字段为所有非static、非transient字段，按名称排序，父类中被遮蔽的同名字段忽略。
+ * 需有无参构造方法；JDK类、枚举、数组、集合、异常以及Externalizable不按字段编码。
+ *
+ * @author wukai
+ */
+final class BinarySchema {
+
+    private static final Map<Class<?>, Optional<BinarySchema>> SCHEMAS = new ConcurrentHashMap<>();
+
+    final Class<?> type;
+    final FieldInfo[] fields;
+    private final Constructor<?> constructor;
+    private final Map<String, FieldInfo> fieldMap;
+
+    private BinarySchema(Class<?> type, Constructor<?> constructor, FieldInfo[] fields) {
+        this.type = type;
+        this.constructor = constructor;
+        this.fields = fields;
+        this.fieldMap = new HashMap<>(fields.length * 2);
+        for (FieldInfo field : fields) {
+            fieldMap.put(field.name, field);
+        }
+    }
+
+    /**
+     * @return 不能按字段编码时返回null
+     */
+    static BinarySchema of(Class<?> type) {
+        Optional<BinarySchema> schema = SCHEMAS.get(type);
+        if (schema == null) {
+            schema = SCHEMAS.computeIfAbsent(type, c -> Optional.ofNullable(compile(c)));
+        }
+        return schema.orElse(null);
+    }
+
+    FieldInfo getField(String name) {
+        return fieldMap.get(name);
+    }
+
+    Object newInstance() throws ReflectiveOperationException {
+        return constructor.newInstance();
+    }
+
+    private static BinarySchema compile(Class<?> type) {
+        String name = type.getName();
+        if (type.isPrimitive() || type.isArray() || type.isEnum() || type.isInterface()
+                || Modifier.isAbstract(type.getModifiers())
+                || name.startsWith("java.") || name.startsWith("javax.")
+                || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)
+                || Throwable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)) {
+            return null;
+        }
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+        Map<String, FieldInfo> fields = new TreeMap<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int mod = field.getModifiers();
+                if (Modifier.isStatic(mod) || Modifier.isTransient(mod) || fields.containsKey(field.getName())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.put(field.getName(), new FieldInfo(field));
+            }
+        }
+        return new BinarySchema(type, constructor, fields.values().toArray(new FieldInfo[0]));
+    }
+
+    static final class FieldInfo {
+        final String name;
+        final Field field;
+        final Class<?> type;
+        final byte kind;
+
+        FieldInfo(Field field) {
+            this.name = field.getName();
+            this.field = field;
+            this.type = field.getType();
+            this.kind = BinaryTags.kindOf(type);
+        }
+    }
+}
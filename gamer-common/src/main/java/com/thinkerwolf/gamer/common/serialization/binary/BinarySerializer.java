@@ -0,0 +1,81 @@
+package com.thinkerwolf.gamer.common.serialization.binary;
+
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
+import com.thinkerwolf.gamer.common.serialization.ObjectInput;
+import com.thinkerwolf.gamer.common.serialization.ObjectOutput;
+import com.thinkerwolf.gamer.common.serialization.Serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 按类结构编码的二进制序列化。
+ * <p>
+ * 每个类首次使用时生成字段结构，之后按字段顺序直接编码，整数使用zigzag varint，
+ * 字符串、集合内联写出，基本类型、String以及与声明类型一致的对象字段不写类型信息。
+ * 每次编码中类结构（字段名和字段类型）只写一次，解码时按字段名对应，
+ * 因此新增、删除字段的类可以与旧版本互通。不支持循环引用。
+ * <p>
+ * 无法按字段编码的类型中只有异常使用JDK序列化，读取时只接受异常相关的类；其它类型写出时抛出NotSerializableException。
+ * 解码的长度按剩余数据检查，畸形数据不会导致超大的内存分配。
+ * <p>
+ * 读取的类型需与写入对象的类型一致。
+ *
+ * @author wukai
+ */
+public class BinarySerializer implements Serializer {
+
+    public static final String NAME = "binary";
+
+    private static final int MAX_CACHED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<LocalWriter> writerLocal = ThreadLocal.withInitial(LocalWriter::new);
+
+    @Override
+    public ObjectOutput serialize(OutputStream os) throws IOException {
+        return new BinaryObjectOutput(os);
+    }
+
+    @Override
+    public ObjectInput deserialize(InputStream is) throws IOException, ClassNotFoundException {
+        return new BinaryObjectInput(is);
+    }
+
+    @Override
+    public void serialize(Object obj, ChannelBuffer buffer) throws IOException {
+        LocalWriter local = writerLocal.get();
+        BinaryWriter writer = local.inUse ? new BinaryWriter(256) : local.writer;
+        local.inUse = true;
+        try {
+            writer.reset();
+            writer.writeObject(obj);
+            buffer.writeBytes(writer.buffer(), 0, writer.position());
+        } finally {
+            if (writer == local.writer) {
+                local.inUse = false;
+                if (writer.buffer().length > MAX_CACHED_CAPACITY) {
+                    local.writer = new BinaryWriter(512);
+                }
+            }
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ChannelBuffer buffer, int offset, int len, Class<T> clazz) throws IOException, ClassNotFoundException {
+        BinaryReader reader;
+        if (buffer.hasArray()) {
+            reader = new BinaryReader(buffer.array(), buffer.arrayOffset() + offset, len);
+        } else {
+            byte[] bytes = new byte[len];
+            buffer.getBytes(offset, bytes);
+            reader = new BinaryReader(bytes, 0, len);
+        }
+        return reader.readObject(clazz);
+    }
+
+    private static class LocalWriter {
+        BinaryWriter writer = new BinaryWriter(512);
+        boolean inUse;
+    }
+}
@@ -0,0 +1,76 @@
+package com.thinkerwolf.gamer.common.serialization.binary;
+
+/**
+ * binary序列化的值标记和字段类型
+ *
+ * @author wukai
+ */
+final class BinaryTags {
+
+    // 动态类型的值以标记开头
+    static final byte NULL = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte FLOAT = 6;
+    static final byte SHORT = 7;
+    static final byte BYTE = 8;
+    static final byte CHAR = 9;
+    static final byte STRING = 10;
+    static final byte BYTES = 11;
+    static final byte INTS = 12;
+    static final byte LONGS = 13;
+    static final byte LIST = 14;
+    static final byte SET = 15;
+    static final byte MAP = 16;
+    /**
+     * 对象数组：元素类名、长度、元素
+     */
+    static final byte ARRAY = 17;
+    /**
+     * 对象：类名、结构、字段值
+     */
+    static final byte BEAN = 18;
+    /**
+     * 类型与声明类型一致的对象，不写类名
+     */
+    static final byte TYPED_BEAN = 19;
+    static final byte ENUM = 20;
+    static final byte DATE = 21;
+    static final byte BIG_DECIMAL = 22;
+    static final byte BIG_INTEGER = 23;
+    /**
+     * 异常，使用JDK序列化，读取时只允许异常相关的类
+     */
+    static final byte THROWABLE = 24;
+
+    // 结构中的字段类型，基本类型和String不写标记
+    static final byte K_BOOLEAN = 1;
+    static final byte K_BYTE = 2;
+    static final byte K_SHORT = 3;
+    static final byte K_CHAR = 4;
+    static final byte K_INT = 5;
+    static final byte K_LONG = 6;
+    static final byte K_FLOAT = 7;
+    static final byte K_DOUBLE = 8;
+    static final byte K_STRING = 9;
+    static final byte K_OBJECT = 10;
+
+    private BinaryTags() {
+    }
+
+    static byte kindOf(Class<?> type) {
+        if (type == boolean.class) return K_BOOLEAN;
+        if (type == byte.class) return K_BYTE;
+        if (type == short.class) return K_SHORT;
+        if (type == char.class) return K_CHAR;
+        if (type == int.class) return K_INT;
+        if (type == long.class) return K_LONG;
+        if (type == float.class) return K_FLOAT;
+        if (type == double.class) return K_DOUBLE;
+        if (type == String.class) return K_STRING;
+        return K_OBJECT;
+    }
+}
@@ -0,0 +1,375 @@
+package com.thinkerwolf.gamer.common.serialization.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+import static com.thinkerwolf.gamer.common.serialization.binary.BinaryTags.*;
+
+/**
+ * binary编码。
+ * <p>
+ * 类名和类结构在一次编码中只写一次，之后以序号引用。
+ * 对象按结构中的字段顺序写出字段值，基本类型和String字段不写标记，
+ * 与声明类型一致的对象字段不写类名。
+ *
+ * @author wukai
+ */
+final class BinaryWriter {
+
+    private byte[] buf;
+    private int pos;
+    private final Map<String, Integer> names = new HashMap<>();
+    private final Map<BinarySchema, Integer> schemas = new IdentityHashMap<>();
+
+    BinaryWriter(int capacity) {
+        this.buf = new byte[capacity];
+    }
+
+    void reset() {
+        pos = 0;
+        if (!names.isEmpty()) {
+            names.clear();
+        }
+        if (!schemas.isEmpty()) {
+            schemas.clear();
+        }
+    }
+
+    byte[] buffer() {
+        return buf;
+    }
+
+    int position() {
+        return pos;
+    }
+
+    /**
+     * 丢弃已写出的字节，保留类名和结构的引用
+     */
+    void discard() {
+        pos = 0;
+    }
+
+    void writeObject(Object obj) throws IOException {
+        writeValue(obj, obj == null ? null : obj.getClass());
+    }
+
+    void writeBytes(byte[] b, int off, int len) {
+        ensure(len);
+        System.arraycopy(b, off, buf, pos, len);
+        pos += len;
+    }
+
+    void writeByte(int b) {
+        ensure(1);
+        buf[pos++] = (byte) b;
+    }
+
+    private void writeValue(Object v, Class<?> declared) throws IOException {
+        if (v == null) {
+            writeByte(NULL);
+            return;
+        }
+        Class<?> c = v.getClass();
+        if (c == String.class) {
+            writeByte(STRING);
+            writeString((String) v);
+        } else if (c == Integer.class) {
+            writeByte(INT);
+            writeVarInt(zigzag((Integer) v));
+        } else if (c == Long.class) {
+            writeByte(LONG);
+            writeVarLong(zigzag((Long) v));
+        } else if (c == Boolean.class) {
+            writeByte((Boolean) v ? TRUE : FALSE);
+        } else if (c == Double.class) {
+            writeByte(DOUBLE);
+            writeFixedLong(Double.doubleToLongBits((Double) v));
+        } else if (c == Float.class) {
+            writeByte(FLOAT);
+            writeFixedInt(Float.floatToIntBits((Float) v));
+        } else if (c == Short.class) {
+            writeByte(SHORT);
+            writeVarInt(zigzag((Short) v));
+        } else if (c == Byte.class) {
+            writeByte(BYTE);
+            writeByte((Byte) v);
+        } else if (c == Character.class) {
+            writeByte(CHAR);
+            writeVarInt((Character) v);
+        } else if (c == byte[].class) {
+            byte[] bytes = (byte[]) v;
+            writeByte(BYTES);
+            writeVarInt(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        } else if (c == int[].class) {
+            int[] ints = (int[]) v;
+            writeByte(INTS);
+            writeVarInt(ints.length);
+            for (int i : ints) {
+                writeVarInt(zigzag(i));
+            }
+        } else if (c == long[].class) {
+            long[] longs = (long[]) v;
+            writeByte(LONGS);
+            writeVarInt(longs.length);
+            for (long l : longs) {
+                writeVarLong(zigzag(l));
+            }
+        } else if (v instanceof Enum) {
+            writeByte(ENUM);
+            writeName(((Enum<?>) v).getDeclaringClass().getName());
+            writeString(((Enum<?>) v).name());
+        } else if (c == Date.class) {
+            writeByte(DATE);
+            writeVarLong(zigzag(((Date) v).getTime()));
+        } else if (c == BigDecimal.class) {
+            writeByte(BIG_DECIMAL);
+            writeString(v.toString());
+        } else if (c == BigInteger.class) {
+            writeByte(BIG_INTEGER);
+            writeString(v.toString());
+        } else if (v instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) v;
+            writeByte(MAP);
+            writeVarInt(map.size());
+            for (Map.Entry<?, ?> en : map.entrySet()) {
+                writeValue(en.getKey(), null);
+                writeValue(en.getValue(), null);
+            }
+        } else if (v instanceof Collection) {
+            Collection<?> coll = (Collection<?>) v;
+            writeByte(v instanceof Set ? SET : LIST);
+            writeVarInt(coll.size());
+            for (Object o : coll) {
+                writeValue(o, null);
+            }
+        } else if (v instanceof Object[]) {
+            Object[] arr = (Object[]) v;
+            writeByte(ARRAY);
+            writeName(c.getComponentType().getName());
+            writeVarInt(arr.length);
+            for (Object o : arr) {
+                writeValue(o, null);
+            }
+        } else {
+            BinarySchema schema = BinarySchema.of(c);
+            if (schema == null) {
+                writeThrowable(v);
+            } else {
+                if (c == declared) {
+                    writeByte(TYPED_BEAN);
+                } else {
+                    writeByte(BEAN);
+                    writeName(c.getName());
+                }
+                writeBean(schema, v);
+            }
+        }
+    }
+
+    private void writeBean(BinarySchema schema, Object bean) throws IOException {
+        Integer ref = schemas.get(schema);
+        if (ref != null) {
+            writeVarInt(ref);
+        } else {
+            writeVarInt(0);
+            schemas.put(schema, schemas.size() + 1);
+            BinarySchema.FieldInfo[] fields = schema.fields;
+            writeVarInt(fields.length);
+            for (BinarySchema.FieldInfo field : fields) {
+                writeString(field.name);
+                writeByte(field.kind);
+            }
+        }
+        try {
+            for (BinarySchema.FieldInfo field : schema.fields) {
+                switch (field.kind) {
+                    case K_BOOLEAN:
+                        writeByte(field.field.getBoolean(bean) ? 1 : 0);
+                        break;
+                    case K_BYTE:
+                        writeByte(field.field.getByte(bean));
+                        break;
+                    case K_SHORT:
+                        writeVarInt(zigzag(field.field.getShort(bean)));
+                        break;
+                    case K_CHAR:
+                        writeVarInt(field.field.getChar(bean));
+                        break;
+                    case K_INT:
+                        writeVarInt(zigzag(field.field.getInt(bean)));
+                        break;
+                    case K_LONG:
+                        writeVarLong(zigzag(field.field.getLong(bean)));
+                        break;
+                    case K_FLOAT:
+                        writeFixedInt(Float.floatToIntBits(field.field.getFloat(bean)));
+                        break;
+                    case K_DOUBLE:
+                        writeFixedLong(Double.doubleToLongBits(field.field.getDouble(bean)));
+                        break;
+                    case K_STRING:
+                        writeString((String) field.field.get(bean));
+                        break;
+                    default:
+                        writeValue(field.field.get(bean), field.type);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 异常使用JDK序列化，其它无法按字段编码的类型不支持
+     */
+    private void writeThrowable(Object v) throws IOException {
+        if (!(v instanceof Throwable)) {
+            throw new NotSerializableException(v.getClass().getName() + " can't be encoded by binary");
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(v);
+        }
+        writeByte(THROWABLE);
+        writeVarInt(baos.size());
+        writeBytes(baos.toByteArray(), 0, baos.size());
+    }
+
+    private void writeName(String name) {
+        Integer ref = names.get(name);
+        if (ref != null) {
+            writeVarInt(ref);
+        } else {
+            writeVarInt(0);
+            names.put(name, names.size() + 1);
+            writeString(name);
+        }
+    }
+
+    /**
+     * 长度+1的varint，0表示null，之后为UTF-8字节
+     */
+    private void writeString(String s) {
+        if (s == null) {
+            writeVarInt(0);
+            return;
+        }
+        int len = s.length();
+        int utf8Len = len;
+        for (int i = 0; i < len; i++) {
+            char ch = s.charAt(i);
+            if (ch >= 0x80) {
+                utf8Len = utf8Length(s, i, i);
+                break;
+            }
+        }
+        writeVarInt(utf8Len + 1);
+        ensure(utf8Len);
+        byte[] b = buf;
+        int p = pos;
+        if (utf8Len == len) {
+            for (int i = 0; i < len; i++) {
+                b[p++] = (byte) s.charAt(i);
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                char ch = s.charAt(i);
+                if (ch < 0x80) {
+                    b[p++] = (byte) ch;
+                } else if (ch < 0x800) {
+                    b[p++] = (byte) (0xC0 | (ch >> 6));
+                    b[p++] = (byte) (0x80 | (ch & 0x3F));
+                } else if (Character.isSurrogate(ch)) {
+                    if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(ch, s.charAt(++i));
+                        b[p++] = (byte) (0xF0 | (cp >> 18));
+                        b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                        b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                        b[p++] = (byte) (0x80 | (cp & 0x3F));
+                    } else {
+                        b[p++] = '?';
+                    }
+                } else {
+                    b[p++] = (byte) (0xE0 | (ch >> 12));
+                    b[p++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                    b[p++] = (byte) (0x80 | (ch & 0x3F));
+                }
+            }
+        }
+        pos = p;
+    }
+
+    private static int utf8Length(String s, int from, int count) {
+        int len = s.length();
+        for (int i = from; i < len; i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) {
+                count++;
+            } else if (ch < 0x800) {
+                count += 2;
+            } else if (Character.isSurrogate(ch)) {
+                if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    count += 4;
+                    i++;
+                } else {
+                    count++;
+                }
+            } else {
+                count += 3;
+            }
+        }
+        return count;
+    }
+
+    private void writeVarInt(int v) {
+        ensure(5);
+        while ((v & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void writeVarLong(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void writeFixedInt(int v) {
+        ensure(4);
+        buf[pos++] = (byte) v;
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) (v >>> 16);
+        buf[pos++] = (byte) (v >>> 24);
+    }
+
+    private void writeFixedLong(long v) {
+        writeFixedInt((int) v);
+        writeFixedInt((int) (v >>> 32));
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private void ensure(int n) {
+        if (pos + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, pos + n));
+        }
+    }
+}
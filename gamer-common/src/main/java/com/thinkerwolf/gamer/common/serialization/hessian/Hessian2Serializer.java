@@ -3,6 +3,9 @@ package com.thinkerwolf.gamer.common.serialization.hessian;
 import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
 import com.caucho.hessian.io.SerializerFactory;
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
+import com.thinkerwolf.gamer.common.buffer.ChannelBufferInputStream;
+import com.thinkerwolf.gamer.common.buffer.ChannelBufferOutputStream;
 import com.thinkerwolf.gamer.common.serialization.ObjectInput;
 import com.thinkerwolf.gamer.common.serialization.ObjectOutput;
 import com.thinkerwolf.gamer.common.serialization.Serializer;
@@ -23,6 +26,8 @@ public class Hessian2Serializer implements Serializer {
                 }
             };
 
+    private static final ThreadLocal<LocalIO> ioLocal = ThreadLocal.withInitial(LocalIO::new);
+
     @Override
     public ObjectOutput serialize(OutputStream os) throws IOException {
         Hessian2Output ho = new Hessian2Output(os);
@@ -35,4 +40,54 @@ public class Hessian2Serializer implements Serializer {
         Hessian2Input hi = new Hessian2Input(is);
         return new Hessian2ObjectInput(hi);
     }
+
+    @Override
+    public void serialize(Object obj, ChannelBuffer buffer) throws IOException {
+        LocalIO io = ioLocal.get();
+        if (io.outputInUse) {
+            Serializer.super.serialize(obj, buffer);
+            return;
+        }
+        io.outputInUse = true;
+        Hessian2Output ho = io.output;
+        try {
+            // init会清空引用表和内部缓冲
+            ho.init(new ChannelBufferOutputStream(buffer));
+            ho.writeObject(obj);
+            ho.flush();
+        } finally {
+            ho.init(null);
+            io.outputInUse = false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T deserialize(ChannelBuffer buffer, int offset, int len, Class<T> clazz) throws IOException, ClassNotFoundException {
+        LocalIO io = ioLocal.get();
+        if (io.inputInUse) {
+            return Serializer.super.deserialize(buffer, offset, len, clazz);
+        }
+        io.inputInUse = true;
+        Hessian2Input hi = io.input;
+        try {
+            hi.init(new ChannelBufferInputStream(buffer.slice(offset, len)));
+            return (T) hi.readObject(clazz);
+        } finally {
+            hi.init(null);
+            io.inputInUse = false;
+        }
+    }
+
+    private static class LocalIO {
+        final Hessian2Output output = new Hessian2Output(null);
+        final Hessian2Input input = new Hessian2Input(null);
+        boolean outputInUse;
+        boolean inputInUse;
+
+        LocalIO() {
+            output.setSerializerFactory(Hessian2ObjectOutput.serializerFactory);
+            input.setSerializerFactory(Hessian2ObjectOutput.serializerFactory);
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package com.thinkerwolf.gamer.common.serialization.jackson;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
+import com.thinkerwolf.gamer.common.buffer.ChannelBufferInputStream;
+import com.thinkerwolf.gamer.common.buffer.ChannelBufferOutputStream;
 import com.thinkerwolf.gamer.common.serialization.ObjectInput;
 import com.thinkerwolf.gamer.common.serialization.ObjectOutput;
 import com.thinkerwolf.gamer.common.serialization.Serializer;
@@ -22,4 +25,17 @@ public class JacksonSerializer implements Serializer {
     public ObjectInput deserialize(InputStream is) throws IOException, ClassNotFoundException {
         return new JacksonObjectInput(is);
     }
+
+    @Override
+    public void serialize(Object obj, ChannelBuffer buffer) throws IOException {
+        objectMapper.writeValue((OutputStream) new ChannelBufferOutputStream(buffer), obj);
+    }
+
+    @Override
+    public <T> T deserialize(ChannelBuffer buffer, int offset, int len, Class<T> clazz) throws IOException, ClassNotFoundException {
+        if (buffer.hasArray()) {
+            return objectMapper.readValue(buffer.array(), buffer.arrayOffset() + offset, len, clazz);
+        }
+        return objectMapper.readValue((InputStream) new ChannelBufferInputStream(buffer.slice(offset, len)), clazz);
+    }
 }
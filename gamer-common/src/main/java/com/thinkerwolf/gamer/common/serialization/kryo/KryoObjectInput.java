@@ -12,11 +12,21 @@ public class KryoObjectInput implements ObjectInput {
 
 	private Input input;
 
+	private KryoPool pool;
+
+	private KryoPool.Entry entry;
+
 	public KryoObjectInput(Kryo kryo, Input input) {
 		this.kryo = kryo;
 		this.input = input;
 	}
 
+	KryoObjectInput(KryoPool pool, KryoPool.Entry entry, Input input) {
+		this(entry.kryo, input);
+		this.pool = pool;
+		this.entry = entry;
+	}
+
 	@Override
 	public <T> T readObject(Class<T> t) throws ClassNotFoundException, IOException {
 		return kryo.readObject(input, t);
@@ -40,6 +50,10 @@ public class KryoObjectInput implements ObjectInput {
 	@Override
 	public void close() throws IOException {
 		input.close();
+		if (entry != null) {
+			pool.release(entry);
+			entry = null;
+		}
 	}
 
 }
@@ -12,11 +12,21 @@ public class KryoObjectOutput implements ObjectOutput {
 
 	private Output output;
 
+	private KryoPool pool;
+
+	private KryoPool.Entry entry;
+
 	public KryoObjectOutput(Kryo kryo, Output output) {
 		this.kryo = kryo;
 		this.output = output;
 	}
 
+	KryoObjectOutput(KryoPool pool, KryoPool.Entry entry, Output output) {
+		this(entry.kryo, output);
+		this.pool = pool;
+		this.entry = entry;
+	}
+
 	@Override
 	public void writeObject(Object obj) throws IOException {
 		kryo.writeObject(output, obj);
@@ -40,6 +50,10 @@ public class KryoObjectOutput implements ObjectOutput {
 	@Override
 	public void close() throws IOException {
 		output.close();
+		if (entry != null) {
+			pool.release(entry);
+			entry = null;
+		}
 	}
 
 }
@@ -0,0 +1,120 @@
+package com.thinkerwolf.gamer.common.serialization.kryo;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 有界Kryo池。每个Kryo与可复用的Input、Output一同借出，与线程无关，
+ * 池空时新建，归还时池满则丢弃。借出时按所属{@link KryoRegistry}的版本补充注册。
+ *
+ * @author wukai
+ */
+class KryoPool {
+
+    /**
+     * 复用的Output超过此容量后不再保留
+     */
+    private static final int MAX_CACHED_CAPACITY = 64 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final KryoRegistry registry;
+    private final BlockingQueue<Entry> queue;
+    private final boolean registrationRequired;
+    private final boolean references;
+    private final boolean unsafe;
+
+    KryoPool(KryoRegistry registry, int capacity, boolean registrationRequired, boolean references, boolean unsafe) {
+        this.registry = registry;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.registrationRequired = registrationRequired;
+        this.references = references;
+        this.unsafe = unsafe;
+    }
+
+    Entry borrow() {
+        Entry entry = queue.poll();
+        if (entry == null) {
+            entry = new Entry(newKryo());
+        }
+        int version = registry.getVersion();
+        if (entry.version != version) {
+            register(entry.kryo);
+            entry.version = version;
+        }
+        return entry;
+    }
+
+    void release(Entry entry) {
+        entry.input.setBuffer(EMPTY);
+        if (entry.output.getBuffer().length > MAX_CACHED_CAPACITY) {
+            entry.output = newOutput();
+        }
+        queue.offer(entry);
+    }
+
+    Output newOutput() {
+        if (unsafe) {
+            UnsafeOutput output = new UnsafeOutput(512, -1);
+            output.supportVarInts(true);
+            return output;
+        }
+        return new Output(512, -1);
+    }
+
+    Input newInput() {
+        if (unsafe) {
+            UnsafeInput input = new UnsafeInput(EMPTY);
+            input.setVarIntsEnabled(true);
+            return input;
+        }
+        return new Input(EMPTY);
+    }
+
+    boolean isUnsafe() {
+        return unsafe;
+    }
+
+    private Kryo newKryo() {
+        Kryo kryo = new Kryo();
+        kryo.setReferences(references);
+        kryo.setRegistrationRequired(registrationRequired);
+        return kryo;
+    }
+
+    private void register(Kryo kryo) {
+        for (Map.Entry<Class<?>, Integer> en : registry.getRegistrations().entrySet()) {
+            Class<?> type = en.getKey();
+            Registration registration = kryo.getClassResolver().getRegistration(type);
+            if (registration == null) {
+                kryo.register(type, en.getValue());
+            } else if (registration.getId() != en.getValue()) {
+                // 使用过的类已按类名隐式注册，Kryo.register(Class, int)不会覆盖
+                kryo.register(new Registration(type, registration.getSerializer(), en.getValue()));
+            }
+        }
+        // DefaultClassResolver缓存了最近查询的注册信息，注册后不会清除
+        kryo.getClassResolver().getRegistration(int.class);
+    }
+
+    final class Entry {
+        final Kryo kryo;
+        Output output;
+        final Input input;
+        int version = -1;
+
+        Entry(Kryo kryo) {
+            this.kryo = kryo;
+            this.output = newOutput();
+            this.input = newInput();
+        }
+    }
+}
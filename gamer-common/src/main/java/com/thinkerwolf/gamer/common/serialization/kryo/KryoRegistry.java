@@ -0,0 +1,153 @@
+package com.thinkerwolf.gamer.common.serialization.kryo;
+
+import java.lang.reflect.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kryo类注册表，每个{@link KryoSerializer}持有一个。
+ * <p>
+ * 注册的类序列化时只写入id而不写入全类名，因此通信双方必须使用注册了相同类的注册表，
+ * 例如RPC按服务接口各自建立注册表，双方从同一接口得到相同的注册。未注册的类写入类名。
+ * 常用JDK类使用固定id，其余类的id由类名计算，与注册顺序无关；两个类的id冲突时注册失败，
+ * 不会按注册先后得到不同的结果。本类不引用Kryo，未引入Kryo依赖时也可调用。
+ *
+ * @author wukai
+ */
+public final class KryoRegistry {
+
+    /**
+     * 常用JDK类的起始id，Kryo内置类型占用0-9
+     */
+    private static final int COMMON_ID_BASE = 16;
+    /**
+     * 按类名计算的id的起始值
+     */
+    private static final int HASHED_ID_BASE = 128;
+    /**
+     * 按类名计算的id范围，保证varint编码不超过4字节
+     */
+    private static final int HASHED_ID_MASK = 0x07FFFFFF;
+
+    /**
+     * 顺序固定，只能在末尾追加
+     */
+    private static final Class<?>[] COMMON_CLASSES = {
+            Object[].class, byte[].class, int[].class, long[].class, String[].class,
+            ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, TreeMap.class,
+            ConcurrentHashMap.class, HashSet.class, LinkedHashSet.class, TreeSet.class,
+            BigDecimal.class, BigInteger.class, Date.class, Class.class
+    };
+
+    private final Map<Class<?>, Integer> registrations = new LinkedHashMap<>();
+    private final Map<Integer, Class<?>> idToClass = new HashMap<>();
+    private volatile Map<Class<?>, Integer> snapshot;
+    private volatile int version;
+
+    /**
+     * 只包含常用JDK类的注册表
+     */
+    public KryoRegistry() {
+        for (int i = 0; i < COMMON_CLASSES.length; i++) {
+            registrations.put(COMMON_CLASSES[i], COMMON_ID_BASE + i);
+            idToClass.put(COMMON_ID_BASE + i, COMMON_CLASSES[i]);
+        }
+        snapshot = Collections.unmodifiableMap(new LinkedHashMap<>(registrations));
+    }
+
+    /**
+     * 注册单个类
+     *
+     * @return 是否新注册
+     * @throws IllegalStateException 按类名计算的id与已注册的类冲突
+     */
+    public synchronized boolean register(Class<?> type) {
+        if (!registrable(type) || registrations.containsKey(type)) {
+            return false;
+        }
+        int id = HASHED_ID_BASE + (type.getName().hashCode() & HASHED_ID_MASK);
+        Class<?> exist = idToClass.get(id);
+        if (exist != null) {
+            throw new IllegalStateException("Kryo registration id conflict, " + type.getName()
+                    + " with " + exist.getName() + ", rename one of them or don't register it");
+        }
+        registrations.put(type, id);
+        idToClass.put(id, type);
+        snapshot = Collections.unmodifiableMap(new LinkedHashMap<>(registrations));
+        version++;
+        return true;
+    }
+
+    /**
+     * 注册类型以及其可达的类型：泛型参数、数组元素、非static非transient字段的类型
+     */
+    public void registerGraph(Type... types) {
+        Set<Type> visited = new HashSet<>();
+        Deque<Type> stack = new ArrayDeque<>(Arrays.asList(types));
+        while (!stack.isEmpty()) {
+            Type type = stack.pop();
+            if (type == null || !visited.add(type)) {
+                continue;
+            }
+            if (type instanceof ParameterizedType) {
+                ParameterizedType pt = (ParameterizedType) type;
+                stack.push(pt.getRawType());
+                Collections.addAll(stack, pt.getActualTypeArguments());
+            } else if (type instanceof GenericArrayType) {
+                stack.push(((GenericArrayType) type).getGenericComponentType());
+            } else if (type instanceof WildcardType) {
+                Collections.addAll(stack, ((WildcardType) type).getUpperBounds());
+            } else if (type instanceof TypeVariable) {
+                Collections.addAll(stack, ((TypeVariable<?>) type).getBounds());
+            } else if (type instanceof Class) {
+                Class<?> clazz = (Class<?>) type;
+                if (clazz.isArray()) {
+                    register(clazz);
+                    stack.push(clazz.getComponentType());
+                    continue;
+                }
+                if (isJdkClass(clazz)) {
+                    continue;
+                }
+                register(clazz);
+                for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                    for (Field field : c.getDeclaredFields()) {
+                        int mod = field.getModifiers();
+                        if (!Modifier.isStatic(mod) && !Modifier.isTransient(mod)) {
+                            stack.push(field.getGenericType());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 当前注册表，key为类，value为id
+     */
+    public Map<Class<?>, Integer> getRegistrations() {
+        return snapshot;
+    }
+
+    /**
+     * 注册表版本，每次新注册后递增
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    private static boolean registrable(Class<?> type) {
+        if (type.isArray()) {
+            return true;
+        }
+        return !type.isPrimitive() && !type.isInterface() && !type.isAnonymousClass()
+                && !Modifier.isAbstract(type.getModifiers());
+    }
+
+    private static boolean isJdkClass(Class<?> clazz) {
+        String name = clazz.getName();
+        return clazz.isPrimitive() || name.startsWith("java.") || name.startsWith("javax.");
+    }
+}
@@ -1,8 +1,10 @@
 package com.thinkerwolf.gamer.common.serialization.kryo;
 
-import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
 import com.thinkerwolf.gamer.common.serialization.ObjectInput;
 import com.thinkerwolf.gamer.common.serialization.ObjectOutput;
 import com.thinkerwolf.gamer.common.serialization.Serializer;
@@ -11,23 +13,104 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import static com.thinkerwolf.gamer.common.Constants.*;
+
+/**
+ * Kryo序列化。
+ * <p>
+ * Kryo实例来自有界池，与线程无关。每个实例有自己的池和{@link KryoRegistry}，
+ * 通过SPI获取的实例只注册常用JDK类。以下系统属性可调整行为：
+ * <ul>
+ * <li>{@code gamer.kryo.pool.size} 池大小，默认CPU核数的2倍</li>
+ * <li>{@code gamer.kryo.registration.required} 是否要求类必须注册，默认false</li>
+ * <li>{@code gamer.kryo.references} 是否开启引用追踪，对象图存在循环引用时需开启，默认false</li>
+ * <li>{@code gamer.kryo.unsafe} 是否使用Unsafe读写，通信双方需一致，默认false</li>
+ * </ul>
+ */
 public class KryoSerializer implements Serializer {
 
-    private static final ThreadLocal<Kryo> kryoLocal =
-            ThreadLocal.withInitial(
-                    () -> {
-                        final Kryo kryo = new Kryo();
-                        return kryo;
-                    });
+    public static final String NAME = "kryo";
+
+    private static final int POOL_SIZE = Integer.getInteger(KRYO_POOL_SIZE, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final KryoRegistry registry;
+
+    private final KryoPool pool;
+
+    public KryoSerializer() {
+        this(new KryoRegistry());
+    }
+
+    /**
+     * @param registry 类注册表，序列化和反序列化的双方需注册相同的类
+     */
+    public KryoSerializer(KryoRegistry registry) {
+        this(registry, Boolean.getBoolean(KRYO_REFERENCES));
+    }
+
+    /**
+     * @param registry   类注册表，序列化和反序列化的双方需注册相同的类
+     * @param references 是否开启引用追踪，用于任意对象图（循环引用、共享引用）
+     */
+    public KryoSerializer(KryoRegistry registry, boolean references) {
+        this.registry = registry;
+        this.pool = new KryoPool(registry, POOL_SIZE,
+                Boolean.getBoolean(KRYO_REGISTRATION_REQUIRED),
+                references,
+                Boolean.getBoolean(KRYO_UNSAFE));
+    }
+
+    public KryoRegistry getRegistry() {
+        return registry;
+    }
 
     @Override
     public ObjectOutput serialize(OutputStream os) throws IOException {
-        Output output = new Output(os);
-        return new KryoObjectOutput(kryoLocal.get(), output);
+        Output output = pool.isUnsafe() ? new UnsafeOutput(os) : new Output(os);
+        if (output instanceof UnsafeOutput) {
+            ((UnsafeOutput) output).supportVarInts(true);
+        }
+        return new KryoObjectOutput(pool, pool.borrow(), output);
     }
 
     @Override
     public ObjectInput deserialize(InputStream is) throws IOException, ClassNotFoundException {
-        return new KryoObjectInput(kryoLocal.get(), new Input(is));
+        Input input = pool.isUnsafe() ? new UnsafeInput(is) : new Input(is);
+        if (input instanceof UnsafeInput) {
+            ((UnsafeInput) input).setVarIntsEnabled(true);
+        }
+        return new KryoObjectInput(pool, pool.borrow(), input);
+    }
+
+    @Override
+    public void serialize(Object obj, ChannelBuffer buffer) throws IOException {
+        KryoPool.Entry entry = pool.borrow();
+        try {
+            Output output = entry.output;
+            output.clear();
+            entry.kryo.writeObject(output, obj);
+            buffer.writeBytes(output.getBuffer(), 0, output.position());
+        } finally {
+            pool.release(entry);
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ChannelBuffer buffer, int offset, int len, Class<T> clazz) throws IOException, ClassNotFoundException {
+        KryoPool.Entry entry = pool.borrow();
+        try {
+            Input input = entry.input;
+            if (buffer.hasArray()) {
+                // 直接读取buffer的底层数组
+                input.setBuffer(buffer.array(), buffer.arrayOffset() + offset, len);
+            } else {
+                byte[] bytes = new byte[len];
+                buffer.getBytes(offset, bytes);
+                input.setBuffer(bytes);
+            }
+            return entry.kryo.readObject(input, clazz);
+        } finally {
+            pool.release(entry);
+        }
     }
 }
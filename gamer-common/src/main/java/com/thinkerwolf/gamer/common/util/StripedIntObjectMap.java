@@ -0,0 +1,222 @@
+package com.thinkerwolf.gamer.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 以int为key的分段并发表。
+ * <p>
+ * 每段为开放寻址的int数组表，由各自的锁保护，key不装箱，删除时回移而不留墓碑。
+ * 适合连续递增的key（如请求id），按key的低位分段。key不能为0，value不能为null。
+ *
+ * @author wukai
+ */
+public final class StripedIntObjectMap<V> {
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+
+    /**
+     * @param concurrency 分段数，向上取2的幂
+     */
+    @SuppressWarnings("unchecked")
+    public StripedIntObjectMap(int concurrency) {
+        int n = 1;
+        while (n < concurrency) {
+            n <<= 1;
+        }
+        this.segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment<>();
+        }
+        this.segmentMask = n - 1;
+    }
+
+    public V get(int key) {
+        return segmentFor(key).get(key);
+    }
+
+    public V put(int key, V value) {
+        checkArgs(key, value);
+        return segmentFor(key).put(key, value, false);
+    }
+
+    /**
+     * @return 已存在的value，不存在时放入并返回null
+     */
+    public V putIfAbsent(int key, V value) {
+        checkArgs(key, value);
+        return segmentFor(key).put(key, value, true);
+    }
+
+    public V remove(int key) {
+        return segmentFor(key).remove(key, null);
+    }
+
+    /**
+     * key对应的value为指定value（同一对象）时删除
+     */
+    public boolean remove(int key, V value) {
+        return value != null && segmentFor(key).remove(key, value) != null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 删除所有元素，返回被删除的value
+     */
+    public List<V> clear() {
+        List<V> values = new ArrayList<>();
+        for (Segment<V> segment : segments) {
+            segment.drainTo(values);
+        }
+        return values;
+    }
+
+    private Segment<V> segmentFor(int key) {
+        return segments[key & segmentMask];
+    }
+
+    private static void checkArgs(int key, Object value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("key can't be 0");
+        }
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+    }
+
+    private static final class Segment<V> {
+        private int[] keys = new int[16];
+        private Object[] values = new Object[16];
+        private int size;
+
+        private static int index(int key, int mask) {
+            int h = key * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(int key) {
+            int mask = keys.length - 1;
+            for (int i = index(key, mask); ; i = (i + 1) & mask) {
+                int k = keys[i];
+                if (k == key) {
+                    return (V) values[i];
+                }
+                if (k == 0) {
+                    return null;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(int key, V value, boolean onlyIfAbsent) {
+            int mask = keys.length - 1;
+            int i = index(key, mask);
+            for (; ; i = (i + 1) & mask) {
+                int k = keys[i];
+                if (k == key) {
+                    V old = (V) values[i];
+                    if (!onlyIfAbsent) {
+                        values[i] = value;
+                    }
+                    return old;
+                }
+                if (k == 0) {
+                    break;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++size > keys.length >> 1) {
+                resize(keys.length << 1);
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(int key, Object expected) {
+            int mask = keys.length - 1;
+            for (int i = index(key, mask); ; i = (i + 1) & mask) {
+                int k = keys[i];
+                if (k == 0) {
+                    return null;
+                }
+                if (k == key) {
+                    V old = (V) values[i];
+                    if (expected != null && expected != old) {
+                        return null;
+                    }
+                    shiftBack(i, mask);
+                    size--;
+                    return old;
+                }
+            }
+        }
+
+        synchronized void drainTo(List<V> out) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    @SuppressWarnings("unchecked")
+                    V v = (V) values[i];
+                    out.add(v);
+                }
+            }
+            keys = new int[16];
+            values = new Object[16];
+            size = 0;
+        }
+
+        /**
+         * 删除i位置，后续同簇元素回移
+         */
+        private void shiftBack(int i, int mask) {
+            int hole = i;
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int ideal = index(keys[j], mask);
+                // j处元素的理想位置不在(hole, j]区间内时，可移动到hole
+                if (((j - ideal) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    values[hole] = values[j];
+                    hole = j;
+                }
+            }
+            keys[hole] = 0;
+            values[hole] = null;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new int[capacity];
+            values = new Object[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                int k = oldKeys[i];
+                if (k != 0) {
+                    int j = index(k, mask);
+                    while (keys[j] != 0) {
+                        j = (j + 1) & mask;
+                    }
+                    keys[j] = k;
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.thinkerwolf.gamer.common;
+
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffers;
+import com.thinkerwolf.gamer.common.serialization.ObjectInput;
+import com.thinkerwolf.gamer.common.serialization.ObjectOutput;
+import com.thinkerwolf.gamer.common.serialization.Serializations;
+import com.thinkerwolf.gamer.common.serialization.Serializer;
+import com.thinkerwolf.gamer.common.util.Stopwatch;
+import org.junit.Test;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BinarySerializerTests {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Serializer s = ServiceLoader.getService("binary", Serializer.class);
+        Call call = newCall(1);
+        call.error = new IllegalStateException("boom");
+        byte[] data = Serializations.getBytes(s, call);
+        Call r = Serializations.getObject(s, data, Call.class);
+
+        assertEquals(call.requestId, r.requestId);
+        assertEquals("com.thinkerwolf.Player#查询", r.command);
+        assertTrue(r.oneway);
+        assertEquals(call.attachments, r.attachments);
+        assertEquals("boom", r.error.getMessage());
+        Player p = (Player) r.args[0];
+        Player expected = (Player) call.args[0];
+        assertEquals(expected.id, p.id);
+        assertEquals(expected.name, p.name);
+        assertEquals(expected.score, p.score, 0);
+        assertEquals(State.ONLINE, p.state);
+        assertEquals(expected.balance, p.balance);
+        assertEquals(expected.login, p.login);
+        assertArrayEquals(expected.flags, p.flags);
+        assertEquals(2, p.items.size());
+        assertEquals("sword", p.items.get(1).name);
+        assertEquals(expected.guild.name, p.guild.name);
+        assertNull(p.guild.guild);
+        assertEquals(Arrays.asList(1, 2L, "3"), r.args[1]);
+        assertNull(r.args[2]);
+        assertEquals(Collections.singletonMap("k", 1.5D), r.args[3]);
+
+        // 流方式与buffer方式结果一致
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutput oo = s.serialize(baos);
+        oo.writeObject(call);
+        oo.close();
+        assertArrayEquals(data, baos.toByteArray());
+        ObjectInput oi = s.deserialize(new ByteArrayInputStream(data));
+        assertEquals(call.requestId, oi.readObject(Call.class).requestId);
+    }
+
+    @Test
+    public void testAddedFields() throws Exception {
+        Serializer s = ServiceLoader.getService("binary", Serializer.class);
+        PlayerV1 v1 = new PlayerV1();
+        v1.id = 7;
+        v1.name = "v1";
+        v1.removed = "gone";
+        PlayerV2 v2 = Serializations.getObject(s, Serializations.getBytes(s, v1), PlayerV2.class);
+        assertEquals(7L, v2.id);
+        assertEquals("v1", v2.name);
+        assertEquals(100, v2.level);
+
+        v2.level = 5;
+        PlayerV1 back = Serializations.getObject(s, Serializations.getBytes(s, v2), PlayerV1.class);
+        assertEquals(7, back.id);
+        assertNull(back.removed);
+    }
+
+    @Test
+    public void testMalformedInput() throws Exception {
+        Serializer s = ServiceLoader.getService("binary", Serializer.class);
+        // 标记后跟长度Integer.MAX_VALUE，实际没有数据，不能按长度分配内存
+        for (int tag = 11; tag <= 17; tag++) {
+            byte[] data = {(byte) tag, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+            assertMalformed(s, data, StreamCorruptedException.class);
+        }
+        // 流方式无法预知剩余长度，读到末尾时失败
+        byte[] ints = {12, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 1, 2};
+        try {
+            s.deserialize(new ByteArrayInputStream(ints)).readObject(Object.class);
+            fail();
+        } catch (EOFException expected) {
+        }
+        byte[] string = {10, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a'};
+        try {
+            s.deserialize(new ByteArrayInputStream(string)).readObject(Object.class);
+            fail();
+        } catch (EOFException expected) {
+        }
+    }
+
+    @Test
+    public void testJdkSerializationRestricted() throws Exception {
+        Serializer s = ServiceLoader.getService("binary", Serializer.class);
+        // 异常以外无法按字段编码的类型不能写出
+        try {
+            Serializations.getBytes(s, Collections.singletonMap("id", UUID.randomUUID()));
+            fail();
+        } catch (NotSerializableException expected) {
+        }
+
+        // 异常数据中只接受异常相关的类
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(new HashMap<>(Collections.singletonMap("k", "v")));
+        }
+        byte[] jdk = baos.toByteArray();
+        assertTrue(jdk.length < 128);
+        byte[] data = new byte[jdk.length + 2];
+        data[0] = 24;
+        data[1] = (byte) jdk.length;
+        System.arraycopy(jdk, 0, data, 2, jdk.length);
+        assertMalformed(s, data, InvalidClassException.class);
+    }
+
+    private static void assertMalformed(Serializer s, byte[] data, Class<? extends Exception> type) throws Exception {
+        try {
+            Serializations.getObject(s, data, Object.class);
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.toString(), type.isInstance(e));
+        }
+    }
+
+    @Test
+    public void testBenchmark() throws Exception {
+        ChannelBuffer buf = ChannelBuffers.dynamicBuffer(1024);
+        Call call = newCall(10);
+        String[] names = {"hessian2", "binary"};
+        int[] sizes = new int[names.length];
+        long[] nanos = new long[names.length];
+        for (int n = 0; n < names.length; n++) {
+            Serializer s = ServiceLoader.getService(names[n], Serializer.class);
+            int count = 50000;
+            for (int round = 0; round < 2; round++) {
+                Stopwatch sw = new Stopwatch();
+                sw.start();
+                for (int i = 0; i < count; i++) {
+                    buf.clear();
+                    s.serialize(call, buf);
+                    s.deserialize(buf, 0, buf.writerIndex(), Call.class);
+                }
+                sw.stop();
+                sizes[n] = buf.writerIndex();
+                nanos[n] = sw.getNanos() / count;
+            }
+        }
+        // 预热后binary的编码更小，编解码约快一倍
+        String result = "hessian2: " + sizes[0] + " bytes, " + nanos[0] + "ns/op, binary: "
+                + sizes[1] + " bytes, " + nanos[1] + "ns/op";
+        assertTrue(result, sizes[1] < sizes[0]);
+        assertTrue(result, nanos[1] < nanos[0]);
+    }
+
+    private static Call newCall(int items) {
+        Player player = new Player();
+        player.id = 1001L;
+        player.name = "wukai";
+        player.score = 98.5;
+        player.state = State.ONLINE;
+        player.balance = new BigDecimal("12.30");
+        player.login = new Date(1600000000000L);
+        player.flags = new int[]{1, -2, 300};
+        player.items = new ArrayList<>();
+        for (int i = 0; i < Math.max(items, 2); i++) {
+            Item item = new Item();
+            item.id = i;
+            item.name = i == 1 ? "sword" : "item-" + i;
+            item.count = i * 10;
+            player.items.add(item);
+        }
+        player.guild = new Guild();
+        player.guild.name = "guild";
+
+        Call call = new Call();
+        call.requestId = 123456;
+        call.command = "com.thinkerwolf.Player#查询";
+        call.oneway = true;
+        call.args = new Object[]{player, Arrays.asList(1, 2L, "3"), null, Collections.singletonMap("k", 1.5D)};
+        call.attachments = new HashMap<>();
+        call.attachments.put("traceId", "abc");
+        return call;
+    }
+
+    enum State {
+        OFFLINE, ONLINE
+    }
+
+    static class Call implements Serializable {
+        int requestId;
+        String command;
+        boolean oneway;
+        Object[] args;
+        Map<String, String> attachments;
+        Throwable error;
+    }
+
+    static class Player implements Serializable {
+        long id;
+        String name;
+        double score;
+        State state;
+        BigDecimal balance;
+        Date login;
+        int[] flags;
+        List<Item> items;
+        Guild guild;
+    }
+
+    static class Item implements Serializable {
+        int id;
+        String name;
+        int count;
+    }
+
+    static class Guild implements Serializable {
+        String name;
+        Guild guild;
+    }
+
+    static class PlayerV1 implements Serializable {
+        int id;
+        String name;
+        String removed;
+    }
+
+    static class PlayerV2 implements Serializable {
+        long id;
+        String name;
+        int level = 100;
+    }
+}
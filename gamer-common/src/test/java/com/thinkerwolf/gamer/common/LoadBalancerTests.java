@@ -1,12 +1,18 @@
 package com.thinkerwolf.gamer.common;
 
+import com.thinkerwolf.gamer.common.balance.CircuitBreaker;
 import com.thinkerwolf.gamer.common.balance.LoadBalancer;
+import com.thinkerwolf.gamer.common.balance.Measurable;
+import com.thinkerwolf.gamer.common.balance.NodeStats;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.commons.lang.math.RandomUtils;
 import org.junit.Test;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
 
 public class LoadBalancerTests {
     @Test
@@ -22,4 +28,222 @@ public class LoadBalancerTests {
         }
     }
 
+    @Test
+    public void testConsistentHashChurn() {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            nodes.add("10.0.0." + i + ":8080");
+        }
+        LoadBalancer balancer = ServiceLoader.getService("consistentHash", LoadBalancer.class);
+        Map<String, Object> props = new HashMap<>();
+        props.put(Constants.LOADBALANCE_KEY, "churn");
+        Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = "player-" + i;
+            // 每次传入新的列表实例，结果不变
+            before.put(key, balancer.select(new ArrayList<>(nodes), key, props));
+        }
+
+        String removed = nodes.remove(3);
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            String now = balancer.select(nodes, e.getKey(), props);
+            if (!removed.equals(e.getValue())) {
+                assertEquals(e.getValue(), now);
+            } else {
+                assertNotEquals(removed, now);
+            }
+        }
+
+        nodes.add(3, removed);
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            assertEquals(e.getValue(), balancer.select(nodes, e.getKey(), props));
+        }
+    }
+
+    @Test
+    public void testConsistentHashSubset() {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            nodes.add("10.0.0." + i + ":8080");
+        }
+        LoadBalancer balancer = ServiceLoader.getService("consistentHash", LoadBalancer.class);
+        Map<String, Object> props = new HashMap<>();
+        props.put(Constants.LOADBALANCE_KEY, "subset");
+        props.put(Constants.LOADBALANCE_MEMBERS, nodes);
+        Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            String key = "player-" + i;
+            before.put(key, balancer.select(nodes, key, props));
+        }
+
+        // 重试排除或熔断摘除的子集不改变其它key的归属
+        String excluded = nodes.get(3);
+        List<String> candidates = new ArrayList<>(nodes);
+        candidates.remove(excluded);
+        candidates.remove(nodes.get(7));
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            String now = balancer.select(candidates, e.getKey(), props);
+            assertTrue(candidates.contains(now));
+            if (candidates.contains(e.getValue())) {
+                assertEquals(e.getValue(), now);
+            }
+        }
+
+        // 之后使用全部成员时结果不变
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            assertEquals(e.getValue(), balancer.select(nodes, e.getKey(), props));
+        }
+    }
+
+    @Test
+    public void testHashBytes() {
+        String s = "10.0.0.1:8080-159";
+        byte[] bytes = ("xx" + s).getBytes();
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            assertEquals(algorithm.hash(s), algorithm.hash(bytes, 2, s.length()));
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(3, 50, 50);
+        long before = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            breaker.begin();
+            breaker.onFailure(System.nanoTime());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        // 断开前发出的请求成功不恢复
+        breaker.onSuccess(before);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(60);
+        assertTrue(breaker.isAvailable());
+        long probe = System.nanoTime();
+        breaker.begin();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        // 探测失败，退避翻倍
+        breaker.onFailure(probe);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(60);
+        assertFalse(breaker.isAvailable());
+
+        Thread.sleep(60);
+        assertTrue(breaker.isAvailable());
+        probe = System.nanoTime();
+        breaker.begin();
+        breaker.onSuccess(probe);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.isAvailable());
+    }
+
+    @Test
+    public void testCircuitBreakerSingleProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50, 50);
+        breaker.begin();
+        breaker.onFailure(System.nanoTime());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(60);
+
+        // 到达探测时间后的并发请求只有一个取得探测资格
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger probes = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 100; j++) {
+                        if (breaker.isAvailable()) {
+                            probes.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, probes.get());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.begin();
+        assertFalse(breaker.isAvailable());
+
+        // 探测被取消时允许立即再次探测
+        breaker.onCancel();
+        assertTrue(breaker.isAvailable());
+        assertFalse(breaker.isAvailable());
+    }
+
+    @Test
+    public void testSmoothWeightedRoundRobin() {
+        List<Node> nodes = Arrays.asList(new Node("a", 5), new Node("b", 1), new Node("c", 1));
+        LoadBalancer balancer = ServiceLoader.getService("roundRobin", LoadBalancer.class);
+        Map<String, Object> props = new HashMap<>();
+        props.put(Constants.LOADBALANCE_KEY, "service");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 7; i++) {
+            // 每次调用使用新的props，状态按服务保存
+            sb.append(balancer.select(nodes, null, new HashMap<>(props)).name);
+        }
+        assertEquals("aabacaa", sb.toString());
+    }
+
+    @Test
+    public void testP2c() {
+        List<Node> nodes = Arrays.asList(new Node("fast", 100), new Node("slow", 100));
+        long start = nodes.get(1).stats.begin();
+        nodes.get(1).stats.end(start - 50000000L);
+        nodes.get(0).stats.end(nodes.get(0).stats.begin());
+        LoadBalancer balancer = ServiceLoader.getService("p2c", LoadBalancer.class);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("fast", balancer.select(nodes, null, null).name);
+        }
+    }
+
+    @Test
+    public void testLeastActive() {
+        List<Node> nodes = Arrays.asList(new Node("a", 100), new Node("b", 100), new Node("c", 100));
+        nodes.get(0).stats.begin();
+        nodes.get(2).stats.begin();
+        LoadBalancer balancer = ServiceLoader.getService("leastActive", LoadBalancer.class);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("b", balancer.select(nodes, null, null).name);
+        }
+        nodes.get(1).stats.begin();
+        Set<String> selected = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            selected.add(balancer.select(nodes, null, null).name);
+        }
+        assertEquals(3, selected.size());
+    }
+
+    private static class Node implements Measurable {
+        final String name;
+        final int weight;
+        final NodeStats stats = new NodeStats();
+
+        Node(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        @Override
+        public NodeStats getNodeStats() {
+            return stats;
+        }
+
+        @Override
+        public int getWeight() {
+            return weight;
+        }
+    }
 }
@@ -1,7 +1,11 @@
 package com.thinkerwolf.gamer.common;
 
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffers;
 import com.thinkerwolf.gamer.common.serialization.Serializations;
 import com.thinkerwolf.gamer.common.serialization.Serializer;
+import com.thinkerwolf.gamer.common.serialization.kryo.KryoRegistry;
+import com.thinkerwolf.gamer.common.serialization.kryo.KryoSerializer;
 import com.thinkerwolf.gamer.common.util.Stopwatch;
 import org.junit.Test;
 
@@ -9,6 +13,8 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.Assert.*;
+
 public class SerializationTests {
 
     @Test
@@ -41,6 +47,93 @@ public class SerializationTests {
         System.out.println(dobj);
     }
 
+    @Test
+    public void testBuffer() throws Exception {
+        for (String name : new String[]{"hessian", "hessian2", "jdk", "jackson", "kryo", "binary"}) {
+            Serializer s = ServiceLoader.getService(name, Serializer.class);
+            ChannelBuffer buf = ChannelBuffers.dynamicBuffer(16);
+            buf.writeInt(7);
+            s.serialize(new SerializedObj(1, "a"), buf);
+            int offset = buf.writerIndex();
+            s.serialize(new SerializedObj(2, "b"), buf);
+            SerializedObj second = s.deserialize(buf, offset, buf.writerIndex() - offset, SerializedObj.class);
+            SerializedObj first = s.deserialize(buf, 4, offset - 4, SerializedObj.class);
+            assertEquals(name, 1, first.getNum());
+            assertEquals(name, "b", second.getJson());
+            assertEquals(7, buf.readInt());
+
+            // 线程内buffer复用后结果一致
+            byte[] data = Serializations.getBytes(s, new SerializedObj(3, "c"));
+            assertArrayEquals(name, data, Serializations.getBytes(s, new SerializedObj(3, "c")));
+            assertEquals(name, 3, Serializations.getObject(s, data, SerializedObj.class).getNum());
+        }
+    }
+
+    @Test
+    public void testKryoRegistration() throws Exception {
+        KryoRegistry registry = new KryoRegistry();
+        Serializer s = new KryoSerializer(registry);
+        Object[] args = {new SerializedObj(1, "a"), new SerializedObj(2, "b")};
+        byte[] unregistered = Serializations.getBytes(s, args);
+
+        registry.registerGraph(SerializedObj.class);
+        assertTrue(registry.getRegistrations().containsKey(SerializedObj.class));
+        byte[] registered = Serializations.getBytes(s, args);
+        assertTrue(registered.length < unregistered.length);
+        Object[] result = Serializations.getObject(s, registered, Object[].class);
+        assertEquals(2, ((SerializedObj) result[1]).getNum());
+        // SPI获取的实例不受其它注册表影响
+        Serializer spi = ServiceLoader.getService("kryo", Serializer.class);
+        assertFalse(((KryoSerializer) spi).getRegistry().getRegistrations().containsKey(SerializedObj.class));
+    }
+
+    @Test
+    public void testKryoRegistryState() throws Exception {
+        // 发送方：同一进程内其它注册表注册了Aa，发送方的注册表以不同顺序注册
+        KryoRegistry other = new KryoRegistry();
+        other.registerGraph(Aa.class);
+        KryoRegistry sender = new KryoRegistry();
+        sender.registerGraph(BB2.class, SerializedObj.class);
+        // 接收方：另一进程，只按相同的类建立注册表
+        KryoRegistry receiver = new KryoRegistry();
+        receiver.registerGraph(SerializedObj.class, BB2.class);
+
+        // Object字段中为双方都未注册的子类型，按类名写入
+        Object[] args = {new SerializedObj(1, new Aa(7)), new BB2()};
+        byte[] data = Serializations.getBytes(new KryoSerializer(sender), args);
+        Object[] result = Serializations.getObject(new KryoSerializer(receiver), data, Object[].class);
+        assertEquals(7, ((Aa) ((SerializedObj) result[0]).getJson()).value);
+        assertTrue(result[1] instanceof BB2);
+    }
+
+    @Test
+    public void testKryoRegistrationConflict() {
+        // "Aa"与"BB"的hashCode相同
+        assertEquals(Aa.class.getName().hashCode(), BB.class.getName().hashCode());
+        KryoRegistry registry = new KryoRegistry();
+        registry.register(Aa.class);
+        try {
+            registry.register(BB.class);
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains(BB.class.getName()));
+        }
+    }
+
+    public static class Aa {
+        int value;
+
+        public Aa() {}
+
+        Aa(int value) {
+            this.value = value;
+        }
+    }
+
+    public static class BB {}
+
+    public static class BB2 {}
+
     @Test
     public void testOther() throws Exception {}
 }
@@ -0,0 +1,61 @@
+package com.thinkerwolf.gamer.common;
+
+import com.thinkerwolf.gamer.common.concurrent.HashedWheelTimer;
+import com.thinkerwolf.gamer.common.util.StripedIntObjectMap;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TimerTests {
+
+    @Test
+    public void testWheelTimer() throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 8);
+        try {
+            CountDownLatch latch = new CountDownLatch(2);
+            AtomicInteger cancelledRuns = new AtomicInteger();
+            long start = System.nanoTime();
+            HashedWheelTimer.Timeout t1 = timer.newTimeout(latch::countDown, 50, TimeUnit.MILLISECONDS);
+            // 超过一圈
+            timer.newTimeout(latch::countDown, 150, TimeUnit.MILLISECONDS);
+            HashedWheelTimer.Timeout t3 = timer.newTimeout(cancelledRuns::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+            assertTrue(t3.cancel());
+            assertTrue(latch.await(2, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+            assertTrue(t1.isExpired());
+            assertTrue(t3.isCancelled());
+            assertFalse(t1.cancel());
+            assertEquals(0, cancelledRuns.get());
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testStripedIntObjectMap() {
+        StripedIntObjectMap<String> map = new StripedIntObjectMap<>(4);
+        int count = 10000;
+        for (int i = 1; i <= count; i++) {
+            assertNull(map.put(i, "v" + i));
+        }
+        assertEquals(count, map.size());
+        assertEquals("v1", map.putIfAbsent(1, "x"));
+        for (int i = 1; i <= count; i += 2) {
+            assertEquals("v" + i, map.remove(i));
+        }
+        assertEquals(count / 2, map.size());
+        for (int i = 2; i <= count; i += 2) {
+            assertEquals("v" + i, map.get(i));
+            assertNull(map.get(i - 1));
+        }
+        String v2 = map.get(2);
+        assertFalse(map.remove(2, "x"));
+        assertTrue(map.remove(2, v2));
+        assertEquals(count / 2 - 1, map.clear().size());
+        assertTrue(map.isEmpty());
+    }
+}
@@ -0,0 +1,15 @@
+package com.thinkerwolf.gamer.core.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 将请求内容绑定到参数，目前支持Protobuf消息类型
+ *
+ * @author wukai
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.PARAMETER})
+public @interface RequestBody {
+}
@@ -173,6 +173,9 @@ public class YmlConf extends AbstractConf<YmlConf> {
             url.setAttach(MAX_THREADS, MapUtils.getInteger(nc, MAX_THREADS, 1));
             url.setAttach(COUNT_PER_CHANNEL, MapUtils.getInteger(nc, COUNT_PER_CHANNEL, 1));
             url.setAttach(CHANNEL_HANDLERS, MapUtils.getInteger(nc, CHANNEL_HANDLERS, 1));
+            if (nc.containsKey(TCP_CODEC)) {
+                url.setAttach(TCP_CODEC, MapUtils.getString(nc, TCP_CODEC));
+            }
 
             initSslConfig(url, MapUtils.getMap(nc, "ssl", null));
             urls.add(url);
@@ -8,27 +8,59 @@ import freemarker.cache.MultiTemplateLoader;
 import freemarker.cache.TemplateLoader;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 
 import java.io.*;
+import java.net.JarURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
 import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Freemarker模板工具。
+ * <ul>
+ * <li>启动时可预编译模板，模板语法错误在启动阶段即暴露</li>
+ * <li>渲染使用线程本地的UTF-8缓冲区，避免每次渲染重新分配输出流和编码器</li>
+ * <li>可选的输出缓存，key为模板名 + 数据模型，仅对声明可缓存的模型生效</li>
+ * </ul>
+ *
+ * @author wukai
+ */
 public class FreemarkerHelper {
 
     private static final Logger LOG = InternalLoggerFactory.getLogger(FreemarkerHelper.class);
 
     private static final String DEFAULT_TEMPLATE_LOCATION = "templates";
 
+    private static final String TEMPLATE_SUFFIX = ".ftl";
+    /**
+     * 线程本地缓冲区保留的最大容量，超过后丢弃，避免大页面长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<RenderBuffer> BUFFERS = ThreadLocal.withInitial(RenderBuffer::new);
+
     private static Configuration configuration;
 
+    private static volatile Map<CacheKey, byte[]> outputCache;
+
     public static void init(ServletConfig servletConfig) throws Exception {
-        configuration = new Configuration(Configuration.VERSION_2_3_20);
+        configuration = new Configuration(Configuration.VERSION_2_3_28);
         configuration.setSetting(Configuration.LOCALIZED_LOOKUP_KEY, "false");
+        configuration.setDefaultEncoding(UTF_8.name());
+        configuration.setOutputEncoding(UTF_8.name());
 
         List<TemplateLoader> loaderList = new ArrayList<>();
+        List<String> classpathLocations = new ArrayList<>();
+        List<File> fileLocations = new ArrayList<>();
         loaderList.add(new MyClassTemplateLoader(FreemarkerHelper.class, DEFAULT_TEMPLATE_LOCATION));
+        classpathLocations.add(DEFAULT_TEMPLATE_LOCATION);
         if (servletConfig != null) {
             String[] ls = StringUtils.split(servletConfig.getInitParam(ServletConfig.TEMPLATES_LOCATION), ';');
             if (ls != null) {
@@ -39,38 +71,206 @@ public class FreemarkerHelper {
                     File file = new File(l);
                     if (file.exists() && file.isDirectory()) {
                         loaderList.add(new FileTemplateLoader(file));
+                        fileLocations.add(file);
                     } else {
                         loaderList.add(new MyClassTemplateLoader(FreemarkerHelper.class, l));
+                        classpathLocations.add(l);
                     }
                 }
             }
         }
         MultiTemplateLoader multiLoader = new MultiTemplateLoader(loaderList.toArray(new TemplateLoader[0]));
         configuration.setTemplateLoader(multiLoader);
+
+        int cacheSize = 0;
+        if (servletConfig != null) {
+            cacheSize = NumberUtils.toInt(servletConfig.getInitParam(ServletConfig.TEMPLATES_CACHE_SIZE), 0);
+        }
+        outputCache = cacheSize > 0 ? Collections.synchronizedMap(new LruMap<>(cacheSize)) : null;
+
+        if (servletConfig != null && Boolean.parseBoolean(servletConfig.getInitParam(ServletConfig.TEMPLATES_PRELOAD))) {
+            preload(classpathLocations, fileLocations);
+        }
     }
 
+    /**
+     * 预编译所有模板位置下的.ftl模板，编译结果进入Configuration的模板缓存。任意模板解析失败则启动失败
+     */
+    private static void preload(List<String> classpathLocations, List<File> fileLocations) throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        ClassLoader classLoader = FreemarkerHelper.class.getClassLoader();
+        for (String location : classpathLocations) {
+            String path = StringUtils.removeStart(StringUtils.removeEnd(location, "/"), "/");
+            Enumeration<URL> urls = classLoader.getResources(path);
+            while (urls.hasMoreElements()) {
+                collectTemplateNames(urls.nextElement(), path, names);
+            }
+        }
+        for (File dir : fileLocations) {
+            collectTemplateNames(dir, "", names);
+        }
+        for (String name : names) {
+            // 解析失败抛出ParseException(IOException)
+            configuration.getTemplate(name);
+        }
+        LOG.info("Preload freemarker templates " + names);
+    }
+
+    private static void collectTemplateNames(URL url, String path, Set<String> names) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            collectTemplateNames(new File(URLDecoder.decode(url.getFile(), UTF_8.name())), "", names);
+        } else if ("jar".equals(url.getProtocol())) {
+            URLConnection conn = url.openConnection();
+            if (!(conn instanceof JarURLConnection)) {
+                return;
+            }
+            conn.setUseCaches(false);
+            String prefix = path + "/";
+            try (JarFile jarFile = ((JarURLConnection) conn).getJarFile()) {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    String entryName = entries.nextElement().getName();
+                    if (entryName.startsWith(prefix) && entryName.endsWith(TEMPLATE_SUFFIX)) {
+                        names.add(entryName.substring(prefix.length()));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void collectTemplateNames(File dir, String prefix, Set<String> names) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectTemplateNames(file, prefix + file.getName() + "/", names);
+            } else if (file.getName().endsWith(TEMPLATE_SUFFIX)) {
+                names.add(prefix + file.getName());
+            }
+        }
+    }
 
     public static byte[] getTemplateBytes(String file, Map<String, Object> data) {
+        return getTemplateBytes(file, data, false);
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param file      模板名
+     * @param data      数据模型
+     * @param cacheable 是否使用输出缓存。可缓存的数据模型必须不可变，且元素实现了equals和hashCode
+     * @return UTF-8编码的渲染结果
+     */
+    public static byte[] getTemplateBytes(String file, Map<String, Object> data, boolean cacheable) {
+        Map<CacheKey, byte[]> cache = cacheable ? outputCache : null;
+        CacheKey key = null;
+        if (cache != null) {
+            key = new CacheKey(file, data);
+            byte[] bytes = cache.get(key);
+            if (bytes != null) {
+                return bytes;
+            }
+        }
+        byte[] bytes = render(file, data);
+        if (cache != null) {
+            cache.put(key, bytes);
+        }
+        return bytes;
+    }
+
+    private static byte[] render(String file, Map<String, Object> data) {
         Template template;
         try {
             template = configuration.getTemplate(file);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        OutputStreamWriter writer = null;
+        RenderBuffer buffer = BUFFERS.get();
+        if (buffer.inUse) {
+            // 模板渲染过程中重入，使用临时缓冲区
+            buffer = new RenderBuffer();
+        }
+        buffer.inUse = true;
+        boolean success = false;
         try {
-            ByteArrayOutputStream output = new ByteArrayOutputStream();
-            writer = new OutputStreamWriter(output);
-            template.process(data, writer);
-            return output.toByteArray();
+            buffer.reset();
+            template.process(data, buffer.writer);
+            buffer.writer.flush();
+            byte[] bytes = buffer.toByteArray();
+            success = true;
+            return bytes;
         } catch (Exception e) {
             throw new RuntimeException(e);
         } finally {
-            IOUtils.closeQuietly(writer);
+            buffer.inUse = false;
+            if (!success || buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                // 异常时编码器中可能残留字符，直接丢弃
+                BUFFERS.remove();
+            }
         }
+    }
+
+    /**
+     * 线程本地渲染缓冲区，复用字节数组和UTF-8编码器
+     */
+    private static class RenderBuffer extends ByteArrayOutputStream {
+        private final Writer writer = new BufferedWriter(new OutputStreamWriter(this, UTF_8));
+        private boolean inUse;
 
+        RenderBuffer() {
+            super(1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
     }
 
+    private static class CacheKey {
+        private final String template;
+        private final Map<String, Object> data;
+        private final int hash;
+
+        CacheKey(String template, Map<String, Object> data) {
+            this.template = template;
+            this.data = data == null ? Collections.emptyMap() : new HashMap<>(data);
+            this.hash = 31 * template.hashCode() + this.data.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return hash == other.hash && template.equals(other.template) && data.equals(other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
 
     static class MyClassTemplateLoader extends freemarker.cache.URLTemplateLoader {
         private Class loaderClass;
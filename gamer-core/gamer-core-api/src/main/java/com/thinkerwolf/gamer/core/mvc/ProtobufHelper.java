@@ -0,0 +1,72 @@
+package com.thinkerwolf.gamer.core.mvc;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Protobuf消息注册表，缓存每个消息类型的Parser，避免每次请求反射查找
+ *
+ * @author wukai
+ */
+public class ProtobufHelper {
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private static final Map<Class<?>, Parser<?>> PARSERS = new ConcurrentHashMap<>();
+
+    /**
+     * 注册消息类型
+     *
+     * @param messageClass 消息类型
+     * @return 消息Parser
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends MessageLite> Parser<T> register(Class<T> messageClass) {
+        return (Parser<T>) PARSERS.computeIfAbsent(messageClass, ProtobufHelper::createParser);
+    }
+
+    /**
+     * 获取消息类型的Parser，未注册时自动注册
+     *
+     * @param messageClass 消息类型
+     * @return 消息Parser
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends MessageLite> Parser<T> getParser(Class<T> messageClass) {
+        Parser<T> parser = (Parser<T>) PARSERS.get(messageClass);
+        if (parser == null) {
+            parser = register(messageClass);
+        }
+        return parser;
+    }
+
+    public static <T extends MessageLite> T parse(Class<T> messageClass, byte[] data)
+            throws InvalidProtocolBufferException {
+        return getParser(messageClass).parseFrom(data == null ? EMPTY_BYTES : data);
+    }
+
+    public static boolean isMessage(Class<?> clazz) {
+        try {
+            return MessageLite.class.isAssignableFrom(clazz);
+        } catch (LinkageError e) {
+            // protobuf不在classpath中
+            return false;
+        }
+    }
+
+    private static Parser<?> createParser(Class<?> messageClass) {
+        try {
+            Method method = messageClass.getMethod("getDefaultInstance");
+            MessageLite defaultInstance = (MessageLite) method.invoke(null);
+            return defaultInstance.getParserForType();
+        } catch (Exception e) {
+            throw new IllegalArgumentException(
+                    "Not a generated protobuf message " + messageClass.getName(), e);
+        }
+    }
+}
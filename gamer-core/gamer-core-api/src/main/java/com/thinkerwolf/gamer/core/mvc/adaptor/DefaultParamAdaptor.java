@@ -1,7 +1,9 @@
 package com.thinkerwolf.gamer.core.mvc.adaptor;
 
+import com.thinkerwolf.gamer.core.annotation.RequestBody;
 import com.thinkerwolf.gamer.core.annotation.RequestParam;
 import com.thinkerwolf.gamer.core.annotation.SessionParam;
+import com.thinkerwolf.gamer.core.mvc.ProtobufHelper;
 import com.thinkerwolf.gamer.core.servlet.Request;
 import com.thinkerwolf.gamer.core.servlet.Response;
 
@@ -38,6 +40,16 @@ public class DefaultParamAdaptor implements ParamAdaptor {
                     continue;
                 }
 
+                RequestBody requestBody = getParameterAnnotation(annotations, RequestBody.class);
+                if (requestBody != null) {
+                    if (!ProtobufHelper.isMessage(type)) {
+                        throw new IllegalArgumentException("@RequestBody parameter " + i + " of " + method
+                                + " must be a protobuf message, but was " + type.getName());
+                    }
+                    injectors[i] = new ProtobufBinder(type);
+                    continue;
+                }
+
                 injectors[i] = new NullBinder(type);
             }
         }
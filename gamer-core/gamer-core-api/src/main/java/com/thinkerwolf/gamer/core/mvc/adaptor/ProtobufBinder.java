@@ -0,0 +1,30 @@
+package com.thinkerwolf.gamer.core.mvc.adaptor;
+
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+import com.thinkerwolf.gamer.core.mvc.ProtobufHelper;
+import com.thinkerwolf.gamer.core.servlet.Request;
+import com.thinkerwolf.gamer.core.servlet.Response;
+
+/**
+ * 将请求内容解析为Protobuf消息
+ *
+ * @author wukai
+ */
+public class ProtobufBinder implements ParamBinder {
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private final Parser<? extends MessageLite> parser;
+
+    @SuppressWarnings("unchecked")
+    public ProtobufBinder(Class<?> toClass) {
+        this.parser = ProtobufHelper.register((Class<? extends MessageLite>) toClass);
+    }
+
+    @Override
+    public Object inject(Request request, Response response) throws Exception {
+        byte[] content = request.getContent();
+        return parser.parseFrom(content == null ? EMPTY_BYTES : content);
+    }
+}
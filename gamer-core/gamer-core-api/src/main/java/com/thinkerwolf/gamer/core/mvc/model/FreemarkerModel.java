@@ -15,9 +15,19 @@ public class FreemarkerModel implements Model<Map<String, Object>> {
 
     private Map<String, Object> data;
 
+    /**
+     * 是否使用模板输出缓存
+     */
+    private boolean cacheable;
+
     public FreemarkerModel(String template, Map<String, Object> data) {
+        this(template, data, false);
+    }
+
+    public FreemarkerModel(String template, Map<String, Object> data, boolean cacheable) {
         this.template = template;
         this.data = data;
+        this.cacheable = cacheable;
     }
 
     @Override
@@ -32,6 +42,6 @@ public class FreemarkerModel implements Model<Map<String, Object>> {
 
     @Override
     public byte[] getBytes() {
-        return FreemarkerHelper.getTemplateBytes(template, data);
+        return FreemarkerHelper.getTemplateBytes(template, data, cacheable);
     }
 }
@@ -0,0 +1,37 @@
+package com.thinkerwolf.gamer.core.mvc.model;
+
+import com.google.protobuf.MessageLite;
+
+/**
+ * Protobuf消息模型
+ *
+ * @author wukai
+ */
+public class ProtobufModel implements Model<MessageLite> {
+
+    public static final String NAME = "protobuf";
+
+    private final MessageLite message;
+
+    private final byte[] data;
+
+    public ProtobufModel(MessageLite message) {
+        this.message = message;
+        this.data = message.toByteArray();
+    }
+
+    @Override
+    public MessageLite getData() {
+        return message;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return data;
+    }
+}
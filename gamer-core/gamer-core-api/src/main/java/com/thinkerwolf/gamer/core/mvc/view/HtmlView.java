@@ -22,7 +22,7 @@ public class HtmlView extends AbstractView {
             throw new UnsupportedOperationException(protocol.getName() + " does't support html");
         }
 
-        response.setContentType("text/html");
+        response.setContentType("text/html; charset=UTF-8");
         response.write(decorator.decorate(model, request, response));
     }
 }
@@ -1,5 +1,6 @@
 package com.thinkerwolf.gamer.core.servlet;
 
+import com.thinkerwolf.gamer.core.util.RequestUtil;
 import com.thinkerwolf.gamer.remoting.Channel;
 
 import java.util.Map;
@@ -98,6 +99,9 @@ public abstract class AbstractChRequest implements Request {
             getChannel().setAttr(Session.JSESSION, session.getId());
         }
         if (session != null) {
+            if (ch.getAttr(Session.JSESSION) == null) {
+                ch.setAttr(Session.JSESSION, session.getId());
+            }
             session.touch();
         }
         return session;
@@ -108,12 +112,15 @@ public abstract class AbstractChRequest implements Request {
     }
 
     /**
-     * 请求内部的SessionID
+     * 请求内部的SessionID，通道上没有时取请求参数，用于断线重连后恢复session
      *
      * @return Session Id
      */
     protected String getInternalSessionId() {
         Object attr = ch.getAttr(Session.JSESSION);
+        if (attr == null) {
+            attr = getAttribute(RequestUtil.REQUEST_SESSION_KEY);
+        }
         return attr == null ? null : attr.toString();
     }
 
@@ -10,9 +10,15 @@ import com.thinkerwolf.gamer.remoting.RemotingException;
 import com.thinkerwolf.gamer.remoting.concurrent.ChannelRunnable;
 import com.thinkerwolf.gamer.remoting.concurrent.ConcurrentUtil;
 import com.thinkerwolf.gamer.remoting.concurrent.CountAwareThreadPoolExecutor;
+import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import com.thinkerwolf.gamer.remoting.tcp.Packets;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author wukai
@@ -97,14 +103,89 @@ public abstract class AbstractServletHandler extends ChannelHandlerAdapter
         }
     }
 
-    private static void service(
+    /**
+     * 解码批量包内容并处理各条目，全部执行后将各条目的响应合并为一个批量包写出。批量包格式错误时关闭连接
+     *
+     * @param content         批量包内容
+     * @param channel         channel
+     * @param message         原始消息
+     * @param requestFactory  由条目创建请求
+     * @param responseFactory 创建条目的实际响应
+     * @param batchEncoder    将条目响应编码为批量包
+     * @throws RemotingException 批量包格式错误
+     */
+    protected void serviceBatch(
+            byte[] content,
+            Channel channel,
+            Object message,
+            Function<Packet, Request> requestFactory,
+            Supplier<Response> responseFactory,
+            Function<List<Object>, Object> batchEncoder)
+            throws RemotingException {
+        List<Packet> entries;
+        try {
+            entries = Packets.decodeBatch(content);
+        } catch (IOException e) {
+            channel.close();
+            throw new RemotingException(e);
+        }
+        List<Object> messages = new ArrayList<>(entries.size());
+        List<Request> requests = new ArrayList<>(entries.size());
+        List<BatchResponse> responses = new ArrayList<>(entries.size());
+        for (Packet entry : entries) {
+            requests.add(requestFactory.apply(entry));
+            responses.add(new BatchResponse(responseFactory.get(), messages));
+        }
+        service(requests, responses, channel, message, () -> channel.sendPromise(batchEncoder.apply(messages)));
+    }
+
+    /**
+     * 批量请求处理。所有条目在同一个Channel有序任务中依次执行，执行完毕后回调completion合并写出响应
+     *
+     * @param requests   条目请求
+     * @param responses  条目响应
+     * @param channel    channel
+     * @param message    原始消息
+     * @param completion 完成回调
+     */
+    protected void service(
+            List<? extends Request> requests,
+            List<? extends Response> responses,
+            Channel channel,
+            Object message,
+            Runnable completion) {
+        Runnable task =
+                () -> {
+                    for (int i = 0; i < requests.size(); i++) {
+                        if (!service(servlet, requests.get(i), responses.get(i), channel)) {
+                            return;
+                        }
+                    }
+                    completion.run();
+                };
+        if (executor != null) {
+            executor.execute(
+                    new ChannelRunnable(channel, message) {
+                        @Override
+                        public void run() {
+                            task.run();
+                        }
+                    });
+        } else {
+            task.run();
+        }
+    }
+
+    private static boolean service(
             Servlet servlet, Request request, Response response, Channel channel) {
         try {
             servlet.service(request, response);
+            return true;
         } catch (Exception e) {
             // 捕捉到非业务层异常，异常很严重
             LOG.error("Serious error happen", e);
             channel.close();
+            return false;
         }
     }
 }
@@ -4,31 +4,53 @@ import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
 import com.thinkerwolf.gamer.common.log.Logger;
 
 import java.io.Serializable;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * session基础实现。为支持单节点大量空闲session，字段尽量精简：
+ * 属性表为数组实现并按需膨胀，离线推送缓冲首次离线推送时才创建，监听器列表由manager共享，
+ * 超过{@link ServletConfig#SESSION_OFF_HEAP_THRESHOLD}的byte[]属性存储在堆外。
+ *
  * @author wukai
  */
 public abstract class AbstractSession implements Session, Serializable {
 
     private static final Logger LOG = InternalLoggerFactory.getLogger(AbstractSession.class);
 
-    private final transient Object lock = new Object();
     private transient volatile Push push;
     private transient List<SessionAttributeListener> sessionAttributeListeners;
-    private transient List<HistoryMsg> historyPushs = new LinkedList<>();
+    private transient OfflinePushPolicy offlinePushPolicy;
+    /**
+     * 离线推送缓冲，首次离线推送时创建
+     */
+    private transient volatile OfflinePushBuffer offlinePushes;
+    /**
+     * 开启推送编号时的最后一个推送序号和重发窗口，窗口首次推送时创建
+     */
+    private transient long pushSeq;
+    private transient PushResendWindow resendWindow;
+    /**
+     * 开启在线合并时待发送的合并推送，命令 -> 最后一条消息
+     */
+    private transient Map<String, PendingPush> coalescedPushes;
 
 
     private String id;
     private long creationTime;
     private long timeout;
-    private Map<Object, Object> attributes = new ConcurrentHashMap<>();
+    private CompactAttributeMap attributes = new CompactAttributeMap();
 
     public AbstractSession(String id, long timeout, List<SessionAttributeListener> sessionAttributeListeners) {
+        this(id, timeout, sessionAttributeListeners, OfflinePushPolicy.DEFAULT);
+    }
+
+    public AbstractSession(String id, long timeout, List<SessionAttributeListener> sessionAttributeListeners, OfflinePushPolicy offlinePushPolicy) {
         this.sessionAttributeListeners = sessionAttributeListeners;
+        this.offlinePushPolicy = offlinePushPolicy;
         this.id = id;
         this.timeout = timeout;
         this.creationTime = System.currentTimeMillis();
@@ -38,8 +60,68 @@ public abstract class AbstractSession implements Session, Serializable {
         return push != null && push.isPushable();
     }
 
+    /**
+     * session自身作为锁，不再单独分配锁对象
+     */
     protected Object getLock() {
-        return lock;
+        return this;
+    }
+
+    /**
+     * byte[]属性存储到堆外的最小长度，0不使用堆外存储，由所属manager配置
+     */
+    int getOffHeapThreshold() {
+        return 0;
+    }
+
+    private Object wrapAttribute(Object att) {
+        int threshold = getOffHeapThreshold();
+        if (threshold > 0 && att instanceof byte[] && ((byte[]) att).length >= threshold) {
+            return new OffHeapBlob((byte[]) att);
+        }
+        return att;
+    }
+
+    private static Object unwrapAttribute(Object att) {
+        return att instanceof OffHeapBlob ? ((OffHeapBlob) att).toBytes() : att;
+    }
+
+    /**
+     * 本地属性，不触发加载
+     */
+    protected Object getLocalAttribute(Object key) {
+        return unwrapAttribute(attributes.get(key));
+    }
+
+    /**
+     * 子类从远端加载属性时直接写入，不触发属性监听
+     *
+     * @return 已存在的属性，不存在时返回null
+     */
+    protected Object putLocalAttributeIfAbsent(Object key, Object att) {
+        return unwrapAttribute(attributes.putIfAbsent(key, wrapAttribute(att)));
+    }
+
+    /**
+     * 丢弃本地属性，不触发属性监听
+     */
+    protected void removeLocalAttribute(Object key) {
+        attributes.remove(key);
+    }
+
+    protected boolean hasLocalAttributes() {
+        return !attributes.isEmpty();
+    }
+
+    /**
+     * 本地属性副本，用于序列化
+     */
+    protected Map<Object, Object> copyLocalAttributes() {
+        Map<Object, Object> copy = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : attributes.entrySet()) {
+            copy.put(entry.getKey(), unwrapAttribute(entry.getValue()));
+        }
+        return copy;
     }
 
     @Override
@@ -57,6 +139,10 @@ public abstract class AbstractSession implements Session, Serializable {
         return creationTime;
     }
 
+    void setCreationTime(long creationTime) {
+        this.creationTime = creationTime;
+    }
+
     @Override
     public Push getPush() {
         return push;
@@ -74,7 +160,7 @@ public abstract class AbstractSession implements Session, Serializable {
 
     @Override
     public void setAttribute(Object key, Object att) {
-        attributes.put(key, att);
+        attributes.put(key, wrapAttribute(att));
         SessionAttributeEvent event = new SessionAttributeEvent(this, key, att);
         for (SessionAttributeListener attributeListener : sessionAttributeListeners) {
             try {
@@ -87,7 +173,7 @@ public abstract class AbstractSession implements Session, Serializable {
 
     @Override
     public Object removeAttribute(Object key) {
-        Object att = attributes.remove(key);
+        Object att = unwrapAttribute(attributes.remove(key));
         SessionAttributeEvent event = new SessionAttributeEvent(this, key, att);
         if (att != null) {
             for (SessionAttributeListener attributeListener : sessionAttributeListeners) {
@@ -103,39 +189,172 @@ public abstract class AbstractSession implements Session, Serializable {
 
     @Override
     public Object getAttribute(Object key) {
-        return attributes.get(key);
+        return unwrapAttribute(attributes.get(key));
     }
 
     @Override
     public void push(int opcode, String command, byte[] content) {
-        if (isPushable()) {
+        PushCoalescer coalescer = offlinePushPolicy.isCoalesce(command) ? getPushCoalescer() : null;
+        if (coalescer != null) {
+            boolean schedule;
+            synchronized (getLock()) {
+                if (coalescedPushes == null) {
+                    coalescedPushes = new LinkedHashMap<>(4);
+                }
+                schedule = coalescedPushes.isEmpty();
+                coalescedPushes.put(command, new PendingPush(opcode, command, content));
+            }
+            if (schedule) {
+                coalescer.schedule(this);
+            }
+            return;
+        }
+        doPush(opcode, command, content);
+    }
+
+    private void doPush(int opcode, String command, byte[] content) {
+        if (isPushSequenced()) {
+            synchronized (getLock()) {
+                long seq = nextPushSeq(opcode, command, content);
+                if (isPushable()) {
+                    getPush().push(opcode, command, content, seq);
+                }
+            }
+        } else if (isPushable()) {
             handleHistoryMsg();
             getPush().push(opcode, command, content);
         } else {
-            synchronized (lock) {
-                historyPushs.add(new HistoryMsg(opcode, command, content));
+            synchronized (getLock()) {
+                if (offlinePushes == null) {
+                    offlinePushes = new OfflinePushBuffer(offlinePushPolicy);
+                }
+                offlinePushes.add(opcode, command, content);
             }
         }
     }
 
+    /**
+     * 在线推送合并器，未开启时返回null
+     */
+    PushCoalescer getPushCoalescer() {
+        return null;
+    }
 
-    private void handleHistoryMsg() {
-        synchronized (lock) {
-            if (!historyPushs.isEmpty()) {
-                for (HistoryMsg msg : historyPushs) {
-                    getPush().push(msg.opcode, msg.command, msg.content);
+    boolean isPushCoalesced(String command) {
+        return offlinePushPolicy.isCoalesce(command) && getPushCoalescer() != null;
+    }
+
+    /**
+     * 发送合并的推送，通道不可写时继续合并
+     *
+     * @return 是否仍有待发送的合并推送
+     */
+    boolean flushCoalescedPushes() {
+        List<PendingPush> pending;
+        synchronized (getLock()) {
+            if (coalescedPushes == null || coalescedPushes.isEmpty()) {
+                return false;
+            }
+            if (isPushable() && !getPush().isWritable()) {
+                return true;
+            }
+            pending = new ArrayList<>(coalescedPushes.values());
+            coalescedPushes.clear();
+        }
+        for (PendingPush p : pending) {
+            doPush(p.opcode, p.command, p.content);
+        }
+        return false;
+    }
+
+    /**
+     * 开启推送编号时，分配序号并记录到重发窗口。调用方需持有session锁，并在锁内完成推送以保证序号有序
+     *
+     * @return 推送序号，未开启时返回0
+     */
+    long nextPushSeq(int opcode, String command, byte[] content) {
+        if (!offlinePushPolicy.isSequenced()) {
+            return 0;
+        }
+        if (resendWindow == null) {
+            resendWindow = new PushResendWindow(offlinePushPolicy.getResendWindow());
+        }
+        long seq = ++pushSeq;
+        resendWindow.add(seq, opcode, command, content);
+        return seq;
+    }
+
+    /**
+     * 开启推送编号，且当前（或断开前）的推送通道支持序号
+     */
+    boolean isPushSequenced() {
+        Push p = getPush();
+        return offlinePushPolicy.isSequenced() && p != null && p.isSequenced();
+    }
+
+    @Override
+    public void ackPush(long seq) {
+        synchronized (getLock()) {
+            if (resendWindow != null) {
+                resendWindow.ack(seq);
+            }
+        }
+    }
+
+    @Override
+    public void resumePush(long seq) {
+        synchronized (getLock()) {
+            if (resendWindow != null) {
+                resendWindow.ack(seq);
+                if (isPushable()) {
+                    resendWindow.replay(seq, getPush());
                 }
-                historyPushs.clear();
             }
         }
     }
 
-    private static class HistoryMsg {
-        int opcode;
-        String command;
-        byte[] content;
+    private void handleHistoryMsg() {
+        if (offlinePushes == null) {
+            return;
+        }
+        synchronized (getLock()) {
+            if (offlinePushes != null) {
+                offlinePushes.replay(getPush());
+                offlinePushes = null;
+            }
+        }
+    }
+
+    /**
+     * 是否有待补发的离线推送
+     */
+    boolean hasOfflinePushes() {
+        return offlinePushes != null;
+    }
+
+    /**
+     * 丢弃离线推送、重发窗口和待发送的合并推送，session失效时调用
+     */
+    void discardOfflinePushes() {
+        synchronized (getLock()) {
+            if (offlinePushes != null) {
+                offlinePushes.clear();
+                offlinePushes = null;
+            }
+            if (resendWindow != null) {
+                resendWindow.clear();
+                resendWindow = null;
+            }
+            coalescedPushes = null;
+        }
+    }
+
+    private static class PendingPush {
+        final int opcode;
+        final String command;
+        final byte[] content;
 
-        HistoryMsg(int opcode, String command, byte[] content) {
+        PendingPush(int opcode, String command, byte[] content) {
             this.opcode = opcode;
             this.command = command;
             this.content = content;
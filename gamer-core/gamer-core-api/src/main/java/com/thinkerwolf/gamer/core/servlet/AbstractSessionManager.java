@@ -17,6 +17,9 @@ public abstract class AbstractSessionManager implements SessionManager {
     private final List<SessionAttributeListener> sessionAttributeListeners;
     private final SessionIdGenerator sessionIdGenerator;
     private long sessionTimeout;
+    private OfflinePushPolicy offlinePushPolicy = OfflinePushPolicy.DEFAULT;
+    private PushCoalescer pushCoalescer;
+    private int offHeapThreshold;
 
     public AbstractSessionManager(SessionIdGenerator sessionIdGenerator) {
         this.sessionIdGenerator = sessionIdGenerator;
@@ -28,6 +31,14 @@ public abstract class AbstractSessionManager implements SessionManager {
     public void init(ServletConfig servletConfig) throws Exception {
         sessionIdGenerator.generateSessionId();
         this.sessionTimeout = NumberUtils.toInt(servletConfig.getInitParam(ServletConfig.SESSION_TIMEOUT), 2 * 60) * 1000;
+        this.offlinePushPolicy = OfflinePushPolicy.from(servletConfig);
+        if (offlinePushPolicy.isSpill()) {
+            PushSpillFile.deleteStale(offlinePushPolicy.getSpillDir());
+        }
+        if (offlinePushPolicy.getCoalesceTick() > 0) {
+            this.pushCoalescer = new PushCoalescer(offlinePushPolicy.getCoalesceTick());
+        }
+        this.offHeapThreshold = NumberUtils.toInt(servletConfig.getInitParam(ServletConfig.SESSION_OFF_HEAP_THRESHOLD), 0);
         List<Object> listeners = servletConfig.getServletContext().getListeners();
         for (Object listener : listeners) {
             if (listener instanceof SessionListener) {
@@ -44,6 +55,9 @@ public abstract class AbstractSessionManager implements SessionManager {
         try {
             sessionListeners.clear();
             sessionAttributeListeners.clear();
+            if (pushCoalescer != null) {
+                pushCoalescer.close();
+            }
         } finally {
             doDestroy();
         }
@@ -57,6 +71,18 @@ public abstract class AbstractSessionManager implements SessionManager {
         return sessionTimeout;
     }
 
+    protected OfflinePushPolicy getOfflinePushPolicy() {
+        return offlinePushPolicy;
+    }
+
+    PushCoalescer getPushCoalescer() {
+        return pushCoalescer;
+    }
+
+    int getOffHeapThreshold() {
+        return offHeapThreshold;
+    }
+
     protected String generateSessionId() {
         return sessionIdGenerator.generateSessionId();
     }
@@ -0,0 +1,92 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import com.thinkerwolf.gamer.remoting.Protocol;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量请求中单个条目的Response。写出的消息不直接发送，而是暂存到批量消息列表中，
+ * 由批量处理完成后合并为一个响应包写出
+ *
+ * @author wukai
+ */
+public class BatchResponse implements Response {
+
+    private final Response delegate;
+
+    private final List<Object> messages;
+
+    public BatchResponse(Response delegate, List<Object> messages) {
+        this.delegate = delegate;
+        this.messages = messages;
+    }
+
+    public Response getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void setStatus(Object status) {
+        delegate.setStatus(status);
+    }
+
+    @Override
+    public Object getStatus() {
+        return delegate.getStatus();
+    }
+
+    @Override
+    public Protocol getProtocol() {
+        return delegate.getProtocol();
+    }
+
+    /**
+     * 暂存消息，批量处理完成后统一写出
+     *
+     * @param message Response content
+     * @return null
+     */
+    @Override
+    public Object write(Object message) {
+        synchronized (messages) {
+            messages.add(message);
+        }
+        return null;
+    }
+
+    @Override
+    public void addCookie(Object cookie) {
+        delegate.addCookie(cookie);
+    }
+
+    @Override
+    public Object getCookies() {
+        return delegate.getCookies();
+    }
+
+    @Override
+    public Object setHeader(String name, Object value) {
+        return delegate.setHeader(name, value);
+    }
+
+    @Override
+    public Object getHeader(String name) {
+        return delegate.getHeader(name);
+    }
+
+    @Override
+    public Map<String, Object> getHeaders() {
+        return delegate.getHeaders();
+    }
+
+    @Override
+    public void setContentType(Object contentType) {
+        delegate.setContentType(contentType);
+    }
+
+    @Override
+    public Object getContentType() {
+        return delegate.getContentType();
+    }
+}
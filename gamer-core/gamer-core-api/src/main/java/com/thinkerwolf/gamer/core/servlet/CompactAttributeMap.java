@@ -0,0 +1,157 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * session属性表。
+ * <p>
+ * 属性较少时使用key、value交替存放的数组，读无锁，写时复制；
+ * 超过{@link #INFLATE_THRESHOLD}个属性后膨胀为{@link ConcurrentHashMap}。
+ * 与ConcurrentHashMap一致，不支持null key和null value。
+ *
+ * @author wukai
+ */
+class CompactAttributeMap extends AbstractMap<Object, Object> implements Serializable {
+
+    static final int INFLATE_THRESHOLD = 8;
+
+    private static final Object[] EMPTY = new Object[0];
+
+    /**
+     * Object[]或ConcurrentHashMap
+     */
+    private volatile Object data = EMPTY;
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> asMap(Object data) {
+        return data instanceof Map ? (Map<Object, Object>) data : null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object d = data;
+        Map<Object, Object> map = asMap(d);
+        if (map != null) {
+            return map.get(key);
+        }
+        Object[] table = (Object[]) d;
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i].equals(key)) {
+                return table[i + 1];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        Object d = data;
+        Map<Object, Object> map = asMap(d);
+        return map != null ? map.size() : ((Object[]) d).length >> 1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        return put(key, value, true);
+    }
+
+    private synchronized Object put(Object key, Object value, boolean onlyIfAbsent) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        Map<Object, Object> map = asMap(data);
+        if (map != null) {
+            return onlyIfAbsent ? map.putIfAbsent(key, value) : map.put(key, value);
+        }
+        Object[] table = (Object[]) data;
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i].equals(key)) {
+                Object old = table[i + 1];
+                if (!onlyIfAbsent) {
+                    Object[] copy = table.clone();
+                    copy[i + 1] = value;
+                    data = copy;
+                }
+                return old;
+            }
+        }
+        if (table.length >> 1 >= INFLATE_THRESHOLD) {
+            map = new ConcurrentHashMap<>();
+            for (int i = 0; i < table.length; i += 2) {
+                map.put(table[i], table[i + 1]);
+            }
+            map.put(key, value);
+            data = map;
+            return null;
+        }
+        Object[] copy = Arrays.copyOf(table, table.length + 2);
+        copy[table.length] = key;
+        copy[table.length + 1] = value;
+        data = copy;
+        return null;
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        Map<Object, Object> map = asMap(data);
+        if (map != null) {
+            return map.remove(key);
+        }
+        Object[] table = (Object[]) data;
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i].equals(key)) {
+                Object old = table[i + 1];
+                if (table.length == 2) {
+                    data = EMPTY;
+                } else {
+                    Object[] copy = new Object[table.length - 2];
+                    System.arraycopy(table, 0, copy, 0, i);
+                    System.arraycopy(table, i + 2, copy, i, table.length - i - 2);
+                    data = copy;
+                }
+                return old;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void clear() {
+        data = EMPTY;
+    }
+
+    /**
+     * 数组形式下返回当前属性的快照
+     */
+    @Override
+    public Set<Entry<Object, Object>> entrySet() {
+        Object d = data;
+        Map<Object, Object> map = asMap(d);
+        if (map != null) {
+            return map.entrySet();
+        }
+        Object[] table = (Object[]) d;
+        Set<Entry<Object, Object>> entries = new LinkedHashSet<>();
+        for (int i = 0; i < table.length; i += 2) {
+            entries.add(new SimpleImmutableEntry<>(table[i], table[i + 1]));
+        }
+        return entries;
+    }
+}
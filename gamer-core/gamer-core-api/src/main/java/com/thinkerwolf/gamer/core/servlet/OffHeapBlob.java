@@ -0,0 +1,61 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+
+/**
+ * 堆外存储的session属性，用于较大的byte[]属性。
+ * <p>
+ * 读取时复制回堆内的数组以软引用缓存，频繁读取的属性不必每次复制，内存紧张时缓存被回收。
+ * 返回的数组与缓存共享，调用方不应修改。序列化时写出字节内容，反序列化后仍存储在堆外
+ *
+ * @author wukai
+ */
+final class OffHeapBlob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient ByteBuffer buffer;
+
+    private transient volatile SoftReference<byte[]> cached;
+
+    OffHeapBlob(byte[] bytes) {
+        store(bytes);
+    }
+
+    private void store(byte[] bytes) {
+        this.buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+    }
+
+    byte[] toBytes() {
+        SoftReference<byte[]> ref = cached;
+        byte[] bytes = ref == null ? null : ref.get();
+        if (bytes == null) {
+            bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            cached = new SoftReference<>(bytes);
+        }
+        return bytes;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        store(bytes);
+    }
+}
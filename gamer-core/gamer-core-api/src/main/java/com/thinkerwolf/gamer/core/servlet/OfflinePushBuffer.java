@@ -0,0 +1,193 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
+import com.thinkerwolf.gamer.common.log.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * session离线推送缓冲。
+ * <ul>
+ * <li>内存中为有界环形缓冲，容量由{@link OfflinePushPolicy#getCapacity()}决定</li>
+ * <li>策略中声明合并的命令只保留最后一条，旧消息在缓冲中作废</li>
+ * <li>缓冲满时先清理作废的消息，仍然满时最旧的一批消息溢出到文件，溢出文件也满时丢弃</li>
+ * <li>重放时先重放溢出文件，再重放内存缓冲，保持原有顺序</li>
+ * </ul>
+ * 非线程安全，由调用方同步
+ *
+ * @author wukai
+ */
+class OfflinePushBuffer {
+
+    private static final Logger LOG = InternalLoggerFactory.getLogger(OfflinePushBuffer.class);
+
+    private final OfflinePushPolicy policy;
+    private final Msg[] ring;
+    private int head;
+    private int size;
+    /**
+     * 合并命令在缓冲中的最新消息
+     */
+    private Map<String, Msg> coalesced;
+    /**
+     * 缓冲中已作废的消息数
+     */
+    private int removed;
+    private PushSpillFile spill;
+    private boolean spillFailed;
+    private long dropped;
+
+    OfflinePushBuffer(OfflinePushPolicy policy) {
+        this.policy = policy;
+        this.ring = new Msg[policy.getCapacity()];
+    }
+
+    boolean isEmpty() {
+        return size == 0 && (spill == null || spill.isEmpty());
+    }
+
+    void add(int opcode, String command, byte[] content) {
+        Msg msg = new Msg(opcode, command, content);
+        if (policy.isCoalesce(command)) {
+            if (coalesced == null) {
+                coalesced = new HashMap<>();
+            }
+            Msg old = coalesced.put(command, msg);
+            if (old != null) {
+                old.removed = true;
+                removed++;
+            }
+        }
+        if (size == ring.length) {
+            compact();
+        }
+        if (size == ring.length) {
+            evict();
+        }
+        ring[(head + size) % ring.length] = msg;
+        size++;
+    }
+
+    /**
+     * 清理作废的消息，存活消息移至环首
+     */
+    private void compact() {
+        if (removed == 0) {
+            return;
+        }
+        Msg[] live = new Msg[size];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int idx = (head + i) % ring.length;
+            Msg msg = ring[idx];
+            ring[idx] = null;
+            if (!msg.removed) {
+                live[n++] = msg;
+            }
+        }
+        System.arraycopy(live, 0, ring, 0, n);
+        head = 0;
+        size = n;
+        removed = 0;
+    }
+
+    /**
+     * 移出最旧的一批消息写入溢出文件，每批只打开一次文件
+     */
+    private void evict() {
+        int batch = Math.min(size, Math.max(1, ring.length / 4));
+        List<Msg> msgs = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            Msg msg = ring[head];
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+            if (coalesced != null && coalesced.get(msg.command) == msg) {
+                coalesced.remove(msg.command);
+            }
+            msgs.add(msg);
+        }
+        int spilled = spill(msgs);
+        if (spilled < msgs.size()) {
+            if (dropped == 0) {
+                LOG.warn("Offline push buffer overflow, drop message " + msgs.get(spilled).command);
+            }
+            dropped += msgs.size() - spilled;
+        }
+    }
+
+    private int spill(List<Msg> msgs) {
+        if (!policy.isSpill() || spillFailed) {
+            return 0;
+        }
+        try {
+            if (spill == null) {
+                spill = new PushSpillFile(policy.getSpillDir(), policy.getSpillSize());
+            }
+            return spill.append(msgs);
+        } catch (IOException e) {
+            spillFailed = true;
+            LOG.warn("Offline push spill failed", e);
+            return 0;
+        }
+    }
+
+    /**
+     * 按顺序重放所有消息并清空缓冲
+     */
+    void replay(Push push) {
+        try {
+            if (spill != null) {
+                spill.replay(push);
+            }
+        } catch (IOException e) {
+            LOG.warn("Offline push spill replay failed", e);
+        }
+        for (int i = 0; i < size; i++) {
+            Msg msg = ring[(head + i) % ring.length];
+            if (!msg.removed) {
+                push.push(msg.opcode, msg.command, msg.content);
+            }
+        }
+        clear();
+    }
+
+    /**
+     * 清空缓冲并删除溢出文件
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            ring[(head + i) % ring.length] = null;
+        }
+        head = 0;
+        size = 0;
+        removed = 0;
+        coalesced = null;
+        dropped = 0;
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                LOG.warn("Offline push spill close failed", e);
+            }
+            spill = null;
+        }
+    }
+
+    static class Msg {
+        final int opcode;
+        final String command;
+        final byte[] content;
+        boolean removed;
+
+        Msg(int opcode, String command, byte[] content) {
+            this.opcode = opcode;
+            this.command = command;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 推送策略（离线缓冲、推送编号、在线合并），所有session共享
+ *
+ * @author wukai
+ * @see OfflinePushBuffer
+ */
+public class OfflinePushPolicy {
+
+    public static final OfflinePushPolicy DEFAULT = new OfflinePushPolicy(256, Collections.emptySet(), null, 1024 * 1024);
+
+    /**
+     * 内存中缓冲的最大消息数
+     */
+    private final int capacity;
+    /**
+     * 只保留最后一条的命令
+     */
+    private final Set<String> coalesceCommands;
+    /**
+     * 溢出文件目录，null不溢出
+     */
+    private final File spillDir;
+    /**
+     * 单个session溢出文件最大字节数，0不溢出，超出后的消息丢弃
+     */
+    private final long spillSize;
+    /**
+     * 已推送消息的重发窗口大小，0不编号推送
+     */
+    private final int resendWindow;
+    /**
+     * 在线推送合并的tick毫秒数，0不合并在线推送
+     */
+    private final long coalesceTick;
+
+    public OfflinePushPolicy(int capacity, Set<String> coalesceCommands, File spillDir, long spillSize) {
+        this(capacity, coalesceCommands, spillDir, spillSize, 0, 0);
+    }
+
+    public OfflinePushPolicy(int capacity, Set<String> coalesceCommands, File spillDir, long spillSize, int resendWindow, long coalesceTick) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.coalesceCommands = coalesceCommands;
+        this.spillDir = spillDir;
+        this.spillSize = spillSize;
+        this.resendWindow = Math.max(resendWindow, 0);
+        this.coalesceTick = Math.max(coalesceTick, 0);
+    }
+
+    public static OfflinePushPolicy from(ServletConfig servletConfig) {
+        int capacity = NumberUtils.toInt(servletConfig.getInitParam(ServletConfig.PUSH_BUFFER_SIZE), DEFAULT.capacity);
+        Set<String> commands = new HashSet<>();
+        String[] cs = StringUtils.split(servletConfig.getInitParam(ServletConfig.PUSH_COALESCE_COMMANDS), ';');
+        if (cs != null) {
+            for (String c : cs) {
+                if (StringUtils.isNotBlank(c)) {
+                    commands.add(c.trim());
+                }
+            }
+        }
+        String dir = servletConfig.getInitParam(ServletConfig.PUSH_SPILL_DIR);
+        File spillDir = StringUtils.isBlank(dir) ? null : new File(dir);
+        long spillSize = NumberUtils.toLong(servletConfig.getInitParam(ServletConfig.PUSH_SPILL_SIZE), DEFAULT.spillSize);
+        int resendWindow = NumberUtils.toInt(servletConfig.getInitParam(ServletConfig.PUSH_RESEND_WINDOW), DEFAULT.resendWindow);
+        long coalesceTick = NumberUtils.toLong(servletConfig.getInitParam(ServletConfig.PUSH_COALESCE_TICK), DEFAULT.coalesceTick);
+        return new OfflinePushPolicy(capacity, Collections.unmodifiableSet(commands), spillDir, spillSize, resendWindow, coalesceTick);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isCoalesce(String command) {
+        return command != null && coalesceCommands.contains(command);
+    }
+
+    public File getSpillDir() {
+        return spillDir;
+    }
+
+    public long getSpillSize() {
+        return spillSize;
+    }
+
+    /**
+     * 配置了溢出目录和大小时才溢出到文件
+     */
+    public boolean isSpill() {
+        return spillDir != null && spillSize > 0;
+    }
+
+    public int getResendWindow() {
+        return resendWindow;
+    }
+
+    public boolean isSequenced() {
+        return resendWindow > 0;
+    }
+
+    public long getCoalesceTick() {
+        return coalesceTick;
+    }
+}
@@ -16,6 +16,28 @@ public interface Push {
      */
     void push(int opcode, String command, byte[] content);
 
+    /**
+     * 带序号的消息推送，不支持序号的通道忽略序号
+     *
+     * @param opcode  操作码
+     * @param command 命令
+     * @param content 内容
+     * @param seq     session内的推送序号，从1开始
+     */
+    default void push(int opcode, String command, byte[] content, long seq) {
+        push(opcode, command, content);
+    }
+
+    /**
+     * 通道能否在消息中携带推送序号。只有支持序号的通道开启推送编号和重发窗口，
+     * 目前只有tcp（负的requestId）支持，websocket、http等通道按未编号推送处理
+     *
+     * @return
+     */
+    default boolean isSequenced() {
+        return false;
+    }
+
     /**
      * 通道能否推送
      *
@@ -23,4 +45,13 @@ public interface Push {
      */
     boolean isPushable();
 
+    /**
+     * 通道是否可写，不可写时合并推送延后发送
+     *
+     * @return
+     */
+    default boolean isWritable() {
+        return isPushable();
+    }
+
 }
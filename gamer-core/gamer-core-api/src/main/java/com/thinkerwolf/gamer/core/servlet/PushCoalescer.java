@@ -0,0 +1,65 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import com.thinkerwolf.gamer.common.DefaultThreadFactory;
+import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
+import com.thinkerwolf.gamer.common.log.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在线推送合并，每个tick推送各session待发送的合并消息，manager内所有session共享
+ *
+ * @author wukai
+ * @see AbstractSession#push(int, String, byte[])
+ */
+class PushCoalescer {
+
+    private static final Logger LOG = InternalLoggerFactory.getLogger(PushCoalescer.class);
+
+    /**
+     * 有待发送合并消息的session
+     */
+    private final Queue<AbstractSession> dirtySessions = new ConcurrentLinkedQueue<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    PushCoalescer(long tick) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("Push-coalesce", true));
+        scheduler.scheduleWithFixedDelay(this::flush, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    void schedule(AbstractSession session) {
+        dirtySessions.offer(session);
+    }
+
+    void flush() {
+        List<AbstractSession> unwritable = null;
+        for (AbstractSession session = dirtySessions.poll(); session != null; session = dirtySessions.poll()) {
+            try {
+                if (session.flushCoalescedPushes()) {
+                    if (unwritable == null) {
+                        unwritable = new ArrayList<>();
+                    }
+                    unwritable.add(session);
+                }
+            } catch (Throwable e) {
+                LOG.warn("Flush coalesced pushes of " + session.getId() + " failed", e);
+            }
+        }
+        // 通道不可写的session下个tick继续合并
+        if (unwritable != null) {
+            dirtySessions.addAll(unwritable);
+        }
+    }
+
+    void close() {
+        scheduler.shutdown();
+        flush();
+    }
+}
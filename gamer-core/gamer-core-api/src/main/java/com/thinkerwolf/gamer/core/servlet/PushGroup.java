@@ -0,0 +1,161 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
+import com.thinkerwolf.gamer.common.log.Logger;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 推送组（房间、公会、频道）。
+ * <p>
+ * 组推送时每种编码格式只编码一次，编码结果共享写到所有成员；
+ * 不支持共享编码的推送通道、离线或有待补发离线推送的成员以及在线合并的命令按{@link Session#push(int, String, byte[])}单独推送。
+ * 失效的session在推送时移出组。
+ *
+ * @author wukai
+ * @see SharedPush
+ */
+public class PushGroup {
+
+    private static final Logger LOG = InternalLoggerFactory.getLogger(PushGroup.class);
+
+    private final String name;
+
+    private final Map<String, Session> members = new ConcurrentHashMap<>();
+
+    public PushGroup(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 加入组
+     *
+     * @return 之前不在组中返回true
+     */
+    public boolean join(Session session) {
+        return members.put(session.getId(), session) != session;
+    }
+
+    public boolean leave(Session session) {
+        return members.remove(session.getId(), session);
+    }
+
+    public Session leave(String sessionId) {
+        return members.remove(sessionId);
+    }
+
+    public boolean contains(String sessionId) {
+        return members.containsKey(sessionId);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public Collection<Session> getMembers() {
+        return Collections.unmodifiableCollection(members.values());
+    }
+
+    public void clear() {
+        members.clear();
+    }
+
+    /**
+     * 推送给所有成员
+     *
+     * @param opcode  操作码
+     * @param command 命令
+     * @param content 内容
+     */
+    public void push(int opcode, String command, byte[] content) {
+        push(opcode, command, content, null);
+    }
+
+    /**
+     * 推送给除exclude外的所有成员
+     *
+     * @param opcode  操作码
+     * @param command 命令
+     * @param content 内容
+     * @param exclude 排除的成员，可为null
+     */
+    public void push(int opcode, String command, byte[] content, Session exclude) {
+        // 编码格式 -> 编码结果，一次推送中通常只有一两种格式
+        Map<Object, Encoded> encodings = null;
+        try {
+            for (Session session : members.values()) {
+                if (session == exclude) {
+                    continue;
+                }
+                if (!session.isValidate()) {
+                    members.remove(session.getId(), session);
+                    continue;
+                }
+                try {
+                    Push push = session.getPush();
+                    Object key = push instanceof SharedPush && push.isPushable() && !hasOfflinePushes(session)
+                            && !isPushCoalesced(session, command) ? ((SharedPush) push).encodingKey() : null;
+                    if (key == null) {
+                        session.push(opcode, command, content);
+                        continue;
+                    }
+                    if (encodings == null) {
+                        encodings = new IdentityHashMap<>(4);
+                    }
+                    Encoded encoded = encodings.get(key);
+                    if (encoded == null) {
+                        SharedPush sp = (SharedPush) push;
+                        encoded = new Encoded(sp, sp.encode(opcode, command, content));
+                        encodings.put(key, encoded);
+                    }
+                    if (isPushSequenced(session)) {
+                        AbstractSession as = (AbstractSession) session;
+                        synchronized (as.getLock()) {
+                            ((SharedPush) push).pushEncoded(encoded.msg, as.nextPushSeq(opcode, command, content));
+                        }
+                    } else {
+                        ((SharedPush) push).pushEncoded(encoded.msg);
+                    }
+                } catch (RuntimeException e) {
+                    LOG.warn("Push to " + session.getId() + " in group " + name + " failed", e);
+                }
+            }
+        } finally {
+            if (encodings != null) {
+                for (Encoded encoded : encodings.values()) {
+                    encoded.push.release(encoded.msg);
+                }
+            }
+        }
+    }
+
+    private static boolean hasOfflinePushes(Session session) {
+        return session instanceof AbstractSession && ((AbstractSession) session).hasOfflinePushes();
+    }
+
+    private static boolean isPushCoalesced(Session session, String command) {
+        return session instanceof AbstractSession && ((AbstractSession) session).isPushCoalesced(command);
+    }
+
+    private static boolean isPushSequenced(Session session) {
+        return session instanceof AbstractSession && ((AbstractSession) session).isPushSequenced();
+    }
+
+    private static class Encoded {
+        final SharedPush push;
+        final Object msg;
+
+        Encoded(SharedPush push, Object msg) {
+            this.push = push;
+            this.msg = msg;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+/**
+ * 已推送但客户端未确认的消息，环形缓冲，超出容量时丢弃最早的消息。
+ * 客户端根据补发消息的序号是否连续判断是否需要全量同步。非线程安全，由session加锁访问
+ *
+ * @author wukai
+ * @see AbstractSession#resumePush(long)
+ */
+class PushResendWindow {
+
+    private final long[] seqs;
+    private final int[] opcodes;
+    private final String[] commands;
+    private final byte[][] contents;
+    private int head;
+    private int size;
+
+    PushResendWindow(int capacity) {
+        this.seqs = new long[capacity];
+        this.opcodes = new int[capacity];
+        this.commands = new String[capacity];
+        this.contents = new byte[capacity][];
+    }
+
+    void add(long seq, int opcode, String command, byte[] content) {
+        int capacity = seqs.length;
+        if (size == capacity) {
+            release(head);
+            head = (head + 1) % capacity;
+            size--;
+        }
+        int idx = (head + size) % capacity;
+        seqs[idx] = seq;
+        opcodes[idx] = opcode;
+        commands[idx] = command;
+        contents[idx] = content;
+        size++;
+    }
+
+    /**
+     * 移除序号不大于seq的消息
+     */
+    void ack(long seq) {
+        while (size > 0 && seqs[head] <= seq) {
+            release(head);
+            head = (head + 1) % seqs.length;
+            size--;
+        }
+    }
+
+    /**
+     * 按序推送序号大于seq的消息
+     */
+    void replay(long seq, Push push) {
+        for (int i = 0; i < size; i++) {
+            int idx = (head + i) % seqs.length;
+            if (seqs[idx] > seq) {
+                push.push(opcodes[idx], commands[idx], contents[idx], seqs[idx]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        while (size > 0) {
+            release(head);
+            head = (head + 1) % seqs.length;
+            size--;
+        }
+        head = 0;
+    }
+
+    private void release(int idx) {
+        commands[idx] = null;
+        contents[idx] = null;
+    }
+}
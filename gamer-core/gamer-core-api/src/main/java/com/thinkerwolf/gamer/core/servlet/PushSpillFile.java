@@ -0,0 +1,148 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
+import com.thinkerwolf.gamer.common.log.Logger;
+
+import java.io.*;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * 离线推送溢出文件。消息按批顺序追加，记录格式：opcode(4) + commandLen(4) + contentLen(4) + command + content
+ * <p>
+ * 文件只在追加和重放期间打开，离线session再多也不长期占用文件句柄
+ *
+ * @author wukai
+ */
+class PushSpillFile implements Closeable {
+
+    private static final Logger LOG = InternalLoggerFactory.getLogger(PushSpillFile.class);
+
+    private static final String PREFIX = "push-";
+
+    private static final String SUFFIX = ".seg";
+
+    /**
+     * 本进程已清理过的目录，多个manager共用目录时只在首次启动时清理
+     */
+    private static final Set<String> CLEANED_DIRS = ConcurrentHashMap.newKeySet();
+
+    private static final int HEADER_LENGTH = 12;
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private final File file;
+    private final long maxSize;
+    /**
+     * 已完整写入的字节数，写入失败时之后的内容不重放
+     */
+    private long position;
+
+    PushSpillFile(File dir, long maxSize) throws IOException {
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            throw new IOException("Can't create push spill dir " + dir);
+        }
+        this.file = File.createTempFile(PREFIX, SUFFIX, dir);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 删除进程崩溃等情况遗留的溢出文件，溢出文件只在进程内有效。每个目录在本进程中只清理一次
+     *
+     * @return 删除的文件数
+     */
+    static int deleteStale(File dir) {
+        if (!CLEANED_DIRS.add(dir.getAbsolutePath())) {
+            return 0;
+        }
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File f : files) {
+            if (f.delete()) {
+                count++;
+            } else {
+                LOG.warn("Can't delete stale push spill file " + f);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按顺序追加一批消息，超出最大容量的消息及其后的消息不写入
+     *
+     * @return 写入的消息数
+     */
+    int append(List<OfflinePushBuffer.Msg> msgs) throws IOException {
+        int count = 0;
+        long pos = position;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE))) {
+            for (OfflinePushBuffer.Msg msg : msgs) {
+                byte[] commandBytes = msg.command == null ? EMPTY_BYTES : msg.command.getBytes(UTF_8);
+                int contentLen = msg.content == null ? 0 : msg.content.length;
+                int len = HEADER_LENGTH + commandBytes.length + contentLen;
+                if (pos + len > maxSize) {
+                    break;
+                }
+                out.writeInt(msg.opcode);
+                // command为null时长度记为-1
+                out.writeInt(msg.command == null ? -1 : commandBytes.length);
+                out.writeInt(contentLen);
+                out.write(commandBytes);
+                if (msg.content != null) {
+                    out.write(msg.content);
+                }
+                pos += len;
+                count++;
+            }
+        }
+        position = pos;
+        return count;
+    }
+
+    boolean isEmpty() {
+        return position == 0;
+    }
+
+    /**
+     * 按写入顺序重放所有消息
+     */
+    void replay(Push push) throws IOException {
+        if (position == 0) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            long pos = 0;
+            while (position - pos >= HEADER_LENGTH) {
+                int opcode = in.readInt();
+                int commandLen = in.readInt();
+                byte[] commandBytes = commandLen < 0 ? null : new byte[commandLen];
+                byte[] content = new byte[in.readInt()];
+                if (commandBytes != null) {
+                    in.readFully(commandBytes);
+                }
+                in.readFully(content);
+                pos += HEADER_LENGTH + Math.max(commandLen, 0) + content.length;
+                push.push(opcode, commandBytes == null ? null : new String(commandBytes, UTF_8), content);
+            }
+        }
+    }
+
+    /**
+     * 删除文件
+     */
+    @Override
+    public void close() throws IOException {
+        position = 0;
+        if (!file.delete() && file.exists()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -1,71 +1,289 @@
 package com.thinkerwolf.gamer.core.servlet;
 
+import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
+import com.thinkerwolf.gamer.common.log.Logger;
+import com.thinkerwolf.gamer.common.serialization.Serializations;
+import com.thinkerwolf.gamer.common.serialization.Serializer;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Redis session。
+ * <p>
+ * 有效性检查结果在本地缓存一个较短的时间窗口，窗口内不访问Redis；
+ * touch只记录时间并交由{@link RedisSessionManager}合并后批量pipeline刷新过期时间。
+ * <p>
+ * 属性以field存储在session的Redis hash中，key通过{@link String#valueOf(Object)}转换为field。
+ * 读取时按属性懒加载，写入只标记dirty，由manager批量pipeline写出，因此session可在节点间故障转移。
+ * 写出属性的同时发布写入通知，其它节点收到后丢弃本地未修改的属性，故障转移后切回原节点时不会读到旧值。
+ *
+ * @author wukai
+ */
 public class RedisSession extends AbstractSession {
 
-    private static final String SESSION_KEY = "Gamer-Sessions";
+    private static final Logger LOG = InternalLoggerFactory.getLogger(RedisSession.class);
+
+    static final String SESSION_KEY = "Gamer-Sessions";
 
-    private static final String SET_SCRIPT =
+    static final String SET_SCRIPT =
             "if (redis.call('exists', KEYS[1]) == 0) then " +
                     "redis.call('hset', KEYS[1], KEYS[2], ARGV[2]);" +
 //                    "for i = 3, 4 do" +
 //                    " redis.call('hset', KEYS[1], KEYS[i], ARGV[i]);" +
 //                    "end;" +
+                    "redis.call('pexpire', KEYS[1], ARGV[1]);" +
+                    "return 1;" +
+            "end;" +
+            "redis.call('pexpire', KEYS[1], ARGV[1]);" +
+            "return 0;";
+
+    /**
+     * 其它节点写入属性的通知频道，消息为"写入节点 sessionId"
+     */
+    static final String WRITE_CHANNEL = SESSION_KEY + "-writes";
+
+    /**
+     * 批量刷新已有session：key不存在时返回0，不重建；否则延长过期时间并写出属性，
+     * ARGV[2]为写入通知，ARGV[3..]为field、value对，value为空表示删除。写出属性时发布写入通知
+     */
+    static final String TOUCH_SCRIPT =
+            "if redis.call('pexpire', KEYS[1], ARGV[1]) == 0 then " +
+                    "return 0;" +
             "end;" +
-            "redis.call('pexpire', KEYS[1], ARGV[1]);";
+            "if #ARGV > 2 then " +
+                    "redis.call('publish', '" + WRITE_CHANNEL + "', ARGV[2]);" +
+            "end;" +
+            "for i = 3, #ARGV, 2 do " +
+                    "if ARGV[i + 1] == '' then " +
+                    "redis.call('hdel', KEYS[1], ARGV[i]);" +
+                    "else " +
+                    "redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]);" +
+                    "end;" +
+            "end;" +
+            "return 1;";
+
+    private static final byte[] EMPTY_VALUE = new byte[0];
+
+    private static final String ATTRIBUTE_FIELD_PREFIX = "a:";
 
     private transient JedisPool jedisPool;
 
-    private transient SessionManager sessionManager;
+    private transient RedisSessionManager sessionManager;
 
     private transient volatile long lastTouchTime;
 
+    /**
+     * 本地有效期截止时间，之前无需访问Redis检查有效性
+     */
+    private transient volatile long validUntil;
+
+    /**
+     * 已确定本地属性与Redis一致的key
+     */
+    private transient Set<Object> resolvedKeys = ConcurrentHashMap.newKeySet();
+
+    private transient Set<Object> dirtyKeys = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 由本节点新建，Redis中不存在任何属性
+     */
+    private transient volatile boolean fresh;
+
     private String redisSessionKey;
 
+    private byte[] redisSessionKeyBytes;
+
     private List<String> evalKeys;
 
-    public RedisSession(String id, long timeout, List<SessionAttributeListener> sessionAttributeListeners, SessionManager sessionManager, JedisPool jedisPool) {
-        super(id, timeout, sessionAttributeListeners);
+    public RedisSession(String id, long timeout, List<SessionAttributeListener> sessionAttributeListeners, RedisSessionManager sessionManager, JedisPool jedisPool) {
+        super(id, timeout, sessionAttributeListeners, sessionManager.getOfflinePushPolicy());
         this.jedisPool = jedisPool;
         this.sessionManager = sessionManager;
         this.redisSessionKey = redisSessionKey(getId());
+        this.redisSessionKeyBytes = redisSessionKey.getBytes(UTF_8);
 
         this.evalKeys = new ArrayList<>();
         evalKeys.add(redisSessionKey);
         evalKeys.add("sessionId");
     }
 
-    private static String redisSessionKey(String sessionId) {
+    static String redisSessionKey(String sessionId) {
         return String.format("%s_%s", SESSION_KEY, sessionId);
     }
 
+    static String sessionId(String redisSessionKey) {
+        return redisSessionKey.substring(SESSION_KEY.length() + 1);
+    }
+
     @Override
     public void validate() {
-        try (Jedis jedis = jedisPool.getResource()) {
-            if (!jedis.exists(redisSessionKey)) {
-                sessionManager.removeSession(getId());
-            }
+        if (!isValidate()) {
+            sessionManager.removeSession(getId());
         }
     }
 
+    @Override
+    PushCoalescer getPushCoalescer() {
+        return sessionManager.getPushCoalescer();
+    }
+
+    @Override
+    int getOffHeapThreshold() {
+        return sessionManager.getOffHeapThreshold();
+    }
+
+    /**
+     * 记录touch时间，由manager合并后批量刷新Redis过期时间
+     */
     @Override
     public void touch() {
         this.lastTouchTime = System.currentTimeMillis();
+        sessionManager.flushLater(this);
+    }
+
+    /**
+     * 同步touch，新建session时使用
+     */
+    void touchNow() {
+        long now = System.currentTimeMillis();
+        this.lastTouchTime = now;
         try (Jedis jedis = jedisPool.getResource()) {
-            List<String> argvs = new ArrayList<>();
-            argvs.add(String.valueOf(getTimeout()));
-            argvs.add(getId());
-            jedis.eval(SET_SCRIPT, evalKeys, argvs);
+            Object created = jedis.eval(SET_SCRIPT, evalKeys, evalArgs());
+            this.fresh = created instanceof Long && (Long) created > 0;
         }
+        this.validUntil = now + sessionManager.getNearCacheTime();
+    }
+
+    @Override
+    public void setAttribute(Object key, Object att) {
+        super.setAttribute(key, att);
+        markDirty(key);
+    }
+
+    @Override
+    public Object removeAttribute(Object key) {
+        // 先加载，保证属性监听拿到被移除的值
+        getAttribute(key);
+        Object att = super.removeAttribute(key);
+        markDirty(key);
+        return att;
+    }
+
+    @Override
+    public Object getAttribute(Object key) {
+        Object att = super.getAttribute(key);
+        if (att != null || fresh || resolvedKeys.contains(key)) {
+            return att;
+        }
+        byte[] data;
+        try (Jedis jedis = jedisPool.getResource()) {
+            data = jedis.hget(redisSessionKeyBytes, attributeField(key));
+        }
+        if (data != null) {
+            try {
+                att = Serializations.getObject(sessionManager.getSerializer(), data, AttributeHolder.class).value;
+            } catch (Exception e) {
+                LOG.warn("Can't deserialize session attribute " + key, e);
+            }
+            if (att != null) {
+                Object exist = putLocalAttributeIfAbsent(key, att);
+                att = exist == null ? att : exist;
+            }
+        }
+        resolvedKeys.add(key);
+        return att;
+    }
+
+    private void markDirty(Object key) {
+        resolvedKeys.add(key);
+        dirtyKeys.add(key);
+        sessionManager.flushLater(this);
+    }
+
+    /**
+     * 刷新失败时重新标记dirty
+     */
+    void markDirty(List<Object> keys) {
+        dirtyKeys.addAll(keys);
+    }
+
+    /**
+     * 以{@link #TOUCH_SCRIPT}刷新过期时间并写出dirty属性。Redis中session已被删除或已过期时不重建
+     *
+     * @param keys 输出本次写出的key
+     * @return 脚本结果，0表示Redis中session已不存在
+     */
+    redis.clients.jedis.Response<Object> flush(Pipeline pipeline, byte[] scriptSha, Serializer serializer, List<Object> keys) {
+        List<byte[]> args = new ArrayList<>();
+        args.add(String.valueOf(getTimeout()).getBytes(UTF_8));
+        args.add((sessionManager.getNodeId() + " " + getId()).getBytes(UTF_8));
+        for (Iterator<Object> iter = dirtyKeys.iterator(); iter.hasNext(); ) {
+            Object key = iter.next();
+            // 先移除再读值，并发修改会重新标记dirty，在下一次刷新写出
+            iter.remove();
+            keys.add(key);
+            Object att = getLocalAttribute(key);
+            byte[] value = EMPTY_VALUE;
+            if (att != null) {
+                try {
+                    value = Serializations.getBytes(serializer, new AttributeHolder(att));
+                } catch (Exception e) {
+                    LOG.warn("Can't serialize session attribute " + key, e);
+                    continue;
+                }
+            }
+            args.add(attributeField(key));
+            args.add(value);
+        }
+        return pipeline.evalsha(scriptSha, Collections.singletonList(redisSessionKeyBytes), args);
+    }
+
+    private static byte[] attributeField(Object key) {
+        return (ATTRIBUTE_FIELD_PREFIX + key).getBytes(UTF_8);
+    }
+
+    private List<String> evalArgs() {
+        List<String> argvs = new ArrayList<>(2);
+        argvs.add(String.valueOf(getTimeout()));
+        argvs.add(getId());
+        return argvs;
+    }
+
+    /**
+     * 其它节点写入了属性：丢弃本地未修改的属性，之后按需从Redis重新加载
+     */
+    void reload() {
+        this.fresh = false;
+        resolvedKeys.clear();
+        for (Object key : copyLocalAttributes().keySet()) {
+            if (!dirtyKeys.contains(key)) {
+                removeLocalAttribute(key);
+            }
+        }
+        resolvedKeys.addAll(dirtyKeys);
+    }
+
+    /**
+     * 本地有效期失效，下次检查时访问Redis
+     */
+    void invalidate() {
+        this.validUntil = 0;
     }
 
     @Override
     public void expire() {
+        invalidate();
         try (Jedis jedis = jedisPool.getResource()) {
             jedis.del(redisSessionKey);
             sessionManager.expireSession(getId());
@@ -75,9 +293,16 @@ public class RedisSession extends AbstractSession {
 
     @Override
     public boolean isValidate() {
+        long now = System.currentTimeMillis();
+        if (now < validUntil) {
+            return true;
+        }
+        boolean exists;
         try (Jedis jedis = jedisPool.getResource()) {
-            return jedis.exists(redisSessionKey);
+            exists = jedis.exists(redisSessionKey);
         }
+        this.validUntil = exists ? now + sessionManager.getNearCacheTime() : 0;
+        return exists;
     }
 
     @Override
@@ -85,4 +310,18 @@ public class RedisSession extends AbstractSession {
         long ageMillis = getTimeout() - (System.currentTimeMillis() - lastTouchTime);
         return (ageMillis + 500) / 1000;
     }
+
+    /**
+     * 属性值包装，使序列化结果中带有属性的实际类型
+     */
+    private static class AttributeHolder implements Serializable {
+        private Object value;
+
+        AttributeHolder() {
+        }
+
+        AttributeHolder(Object value) {
+            this.value = value;
+        }
+    }
 }
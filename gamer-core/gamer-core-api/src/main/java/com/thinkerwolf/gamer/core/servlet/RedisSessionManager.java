@@ -1,28 +1,104 @@
 package com.thinkerwolf.gamer.core.servlet;
 
+import com.thinkerwolf.gamer.common.DefaultThreadFactory;
+import com.thinkerwolf.gamer.common.ServiceLoader;
+import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
+import com.thinkerwolf.gamer.common.log.Logger;
+import com.thinkerwolf.gamer.common.serialization.Serializer;
+import com.thinkerwolf.gamer.common.serialization.kryo.KryoRegistry;
+import com.thinkerwolf.gamer.common.serialization.kryo.KryoSerializer;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Redis session
+ * <ul>
+ * <li>本地近缓存：session有效性在{@link #NEAR_CACHE_TIME}窗口内不重复访问Redis</li>
+ * <li>分段锁：按sessionId分段加锁，不再使用全局锁</li>
+ * <li>touch合并：同一刷新周期内的多次touch只刷新一次，并以pipeline批量发送</li>
+ * <li>属性同步：session属性序列化后存储在Redis hash中，dirty属性随touch一起批量写出</li>
+ * <li>失效通知：订阅Redis keyspace通知，session在Redis中被删除或过期时同步清理本地缓存</li>
+ * <li>写入通知：其它节点写出属性后丢弃本地未修改的属性，session不要求粘滞在同一节点</li>
+ * </ul>
  *
  * @author wukai
  */
 public class RedisSessionManager extends AbstractSessionManager {
 
-    private final Map<String, Session> sessionCache = new ConcurrentHashMap<>();
+    private static final Logger LOG = InternalLoggerFactory.getLogger(RedisSessionManager.class);
+
+    private static final String REDIS_HOST = "sessionRedisHost";
+    private static final String REDIS_PORT = "sessionRedisPort";
+    /**
+     * 本地近缓存有效时间 ms
+     */
+    private static final String NEAR_CACHE_TIME = "sessionRedisNearCacheTime";
+    /**
+     * touch批量刷新间隔 ms
+     */
+    private static final String FLUSH_INTERVAL = "sessionRedisFlushInterval";
+    /**
+     * 是否尝试通过CONFIG SET开启keyspace通知
+     */
+    private static final String NOTIFY_CONFIG = "sessionRedisNotifyConfig";
+    /**
+     * 属性序列化方式，默认开启引用追踪的kryo，属性可以是任意对象图
+     */
+    private static final String SERIALIZER = "sessionRedisSerializer";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static final long SUBSCRIBE_RETRY_INTERVAL = 5000;
+
+    private final Map<String, RedisSession> sessionCache = new ConcurrentHashMap<>();
+    private final Object[] locks;
+    private final Set<RedisSession> pendingSessions = ConcurrentHashMap.newKeySet();
+    /**
+     * 本节点标识，忽略自己发布的写入通知
+     */
+    private final String nodeId = UUID.randomUUID().toString();
     private JedisPool jedisPool;
+    private Serializer serializer;
+    private long nearCacheTime;
+    private volatile String touchScriptSha;
+    private ScheduledExecutorService flushService;
+    private Thread subscribeThread;
+    private volatile KeyspaceSubscriber subscriber;
+    private volatile boolean destroyed;
 
     public RedisSessionManager() {
         super(new StandardSessionIdGenerator());
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
     }
 
     @Override
     protected void doDestroy() throws Exception {
+        destroyed = true;
+        if (flushService != null) {
+            flushService.shutdown();
+            flushService.awaitTermination(1, TimeUnit.SECONDS);
+            flush();
+        }
+        KeyspaceSubscriber s = subscriber;
+        if (s != null && s.isSubscribed()) {
+            s.punsubscribe();
+        }
+        if (subscribeThread != null) {
+            subscribeThread.interrupt();
+        }
         if (jedisPool != null) {
             jedisPool.destroy();
         }
@@ -31,9 +107,54 @@ public class RedisSessionManager extends AbstractSessionManager {
 
     @Override
     protected void doInit(ServletConfig servletConfig) throws Exception {
-        String host = StringUtils.defaultIfEmpty(servletConfig.getInitParam("sessionRedisHost"), "localhost");
-        int port = NumberUtils.toInt(servletConfig.getInitParam("sessionRedisPort"), 6379);
+        String host = StringUtils.defaultIfEmpty(servletConfig.getInitParam(REDIS_HOST), "localhost");
+        int port = NumberUtils.toInt(servletConfig.getInitParam(REDIS_PORT), 6379);
+        this.nearCacheTime = NumberUtils.toLong(servletConfig.getInitParam(NEAR_CACHE_TIME), 1000);
+        long flushInterval = NumberUtils.toLong(servletConfig.getInitParam(FLUSH_INTERVAL), 100);
+        String serial = servletConfig.getInitParam(SERIALIZER);
+        // SPI的kryo默认不追踪引用，属性中的循环引用和共享引用需要单独的实例
+        this.serializer = StringUtils.isEmpty(serial) ? new KryoSerializer(new KryoRegistry(), true)
+                : ServiceLoader.getService(serial, Serializer.class);
         this.jedisPool = new JedisPool(host, port);
+        try (Jedis jedis = jedisPool.getResource()) {
+            this.touchScriptSha = jedis.scriptLoad(RedisSession.TOUCH_SCRIPT);
+            if (Boolean.parseBoolean(StringUtils.defaultIfEmpty(servletConfig.getInitParam(NOTIFY_CONFIG), "true"))) {
+                try {
+                    jedis.configSet("notify-keyspace-events", "Kgxe");
+                } catch (Exception e) {
+                    LOG.warn("Can't enable redis keyspace notifications, configure notify-keyspace-events manually. " + e.getMessage());
+                }
+            }
+        }
+
+        this.flushService = new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("Session-redis-flush", true));
+        flushService.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                LOG.error("Session flush error.", e);
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+
+        this.subscribeThread = new DefaultThreadFactory("Session-redis-subscribe", true).newThread(this::subscribe);
+        subscribeThread.start();
+    }
+
+    long getNearCacheTime() {
+        return nearCacheTime;
+    }
+
+    Serializer getSerializer() {
+        return serializer;
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    private Object lock(String sessionId) {
+        int h = sessionId.hashCode();
+        return locks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
     }
 
     @Override
@@ -43,37 +164,44 @@ public class RedisSessionManager extends AbstractSessionManager {
 
     @Override
     public Session getSession(String sessionId, boolean create) {
-        Session session = null;
-        if (StringUtils.isBlank(sessionId) && !create) {
-            return null;
+        if (StringUtils.isBlank(sessionId)) {
+            return create ? createSession(generateSessionId()) : null;
         }
-
-        synchronized (sessionCache) {
-            if (StringUtils.isNotBlank(sessionId)) {
-                session = sessionCache.get(sessionId);
+        RedisSession session = sessionCache.get(sessionId);
+        if (session != null) {
+            if (session.isValidate()) {
+                return session;
             }
-            if (session != null) {
-                session.validate();
+            if (sessionCache.remove(sessionId, session)) {
+                session.discardOfflinePushes();
             }
-            if (session == null || !session.isValidate()) {
-                if (create) {
-                    String id = createSessionId(sessionId);
-                    session = new RedisSession(id, getSessionTimeout(), getSessionAttributeListeners(), this, jedisPool);
-                    session.touch();
-                    sessionCache.put(id, session);
-                } else {
-                    session = null;
-                }
+            if (!create) {
+                return null;
+            }
+        } else if (!create && !exists(sessionId)) {
+            return null;
+        }
+        // 本地没有而Redis中存在的session(由其他节点创建)直接接管，属性按需懒加载
+        synchronized (lock(sessionId)) {
+            session = sessionCache.get(sessionId);
+            if (session != null && session.isValidate()) {
+                return session;
             }
-            return session;
+            return createSession(session == null ? sessionId : generateSessionId());
         }
     }
 
-    private String createSessionId(String sessionId) {
-        if (StringUtils.isBlank(sessionId) || sessionCache.containsKey(sessionId)) {
-            return generateSessionId();
+    private boolean exists(String sessionId) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.exists(RedisSession.redisSessionKey(sessionId));
         }
-        return sessionId;
+    }
+
+    private RedisSession createSession(String id) {
+        RedisSession session = new RedisSession(id, getSessionTimeout(), getSessionAttributeListeners(), this, jedisPool);
+        session.touchNow();
+        sessionCache.put(id, session);
+        return session;
     }
 
     @Override
@@ -87,23 +215,179 @@ public class RedisSessionManager extends AbstractSessionManager {
         }
     }
 
+    /**
+     * 等待下次批量刷新touch及dirty属性
+     */
+    void flushLater(RedisSession session) {
+        pendingSessions.add(session);
+    }
+
+    /**
+     * 以pipeline批量刷新待touch的session，并写出dirty属性
+     */
+    private void flush() {
+        if (pendingSessions.isEmpty()) {
+            return;
+        }
+        List<RedisSession> sessions = new ArrayList<>();
+        for (Iterator<RedisSession> iter = pendingSessions.iterator(); iter.hasNext(); ) {
+            RedisSession session = iter.next();
+            iter.remove();
+            if (sessionCache.get(session.getId()) == session) {
+                sessions.add(session);
+            }
+        }
+        if (sessions.isEmpty()) {
+            return;
+        }
+        boolean retry = false;
+        List<List<Object>> flushedKeys = new ArrayList<>(sessions.size());
+        List<RedisSession> removed = new ArrayList<>();
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            byte[] sha = touchScriptSha.getBytes(UTF_8);
+            for (RedisSession session : sessions) {
+                List<Object> keys = new ArrayList<>();
+                session.flush(pipeline, sha, serializer, keys);
+                flushedKeys.add(keys);
+            }
+            List<Object> results = pipeline.syncAndReturnAll();
+            for (int i = 0; i < results.size(); i++) {
+                Object result = results.get(i);
+                if (result instanceof JedisNoScriptException) {
+                    retry = true;
+                    break;
+                }
+                if (result instanceof Long && (Long) result == 0) {
+                    // 已在其它节点失效或已过期
+                    removed.add(sessions.get(i));
+                }
+            }
+            if (retry) {
+                // Redis重启后脚本丢失，重新加载后下个周期重试
+                this.touchScriptSha = jedis.scriptLoad(RedisSession.TOUCH_SCRIPT);
+            }
+        } catch (Exception e) {
+            retry = true;
+            LOG.warn("Session flush failed, retry later. " + e.getMessage());
+        }
+        if (!retry) {
+            for (RedisSession session : removed) {
+                session.invalidate();
+                drop(session);
+            }
+        }
+        if (retry && !destroyed) {
+            for (int i = 0; i < sessions.size(); i++) {
+                if (i < flushedKeys.size()) {
+                    sessions.get(i).markDirty(flushedKeys.get(i));
+                }
+                pendingSessions.add(sessions.get(i));
+            }
+        }
+    }
+
+    private void subscribe() {
+        while (!destroyed) {
+            KeyspaceSubscriber s = new KeyspaceSubscriber();
+            this.subscriber = s;
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.psubscribe(s, "__keyspace@*__:" + RedisSession.SESSION_KEY + "_*", RedisSession.WRITE_CHANNEL);
+            } catch (Exception e) {
+                if (destroyed) {
+                    return;
+                }
+                LOG.warn("Session keyspace subscribe failed, retry later. " + e.getMessage());
+            }
+            // 订阅断开期间可能丢失通知，本地缓存全部重新检查
+            for (RedisSession session : sessionCache.values()) {
+                session.invalidate();
+                session.reload();
+            }
+            try {
+                Thread.sleep(SUBSCRIBE_RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void onKeyspaceEvent(String channel, String event) {
+        int idx = channel.indexOf(':');
+        if (idx < 0) {
+            return;
+        }
+        String sessionId = RedisSession.sessionId(channel.substring(idx + 1));
+        // 只处理删除类事件，每次touch产生的expire等事件不影响近缓存
+        if (!"del".equals(event) && !"expired".equals(event) && !"evicted".equals(event)) {
+            return;
+        }
+        RedisSession session = sessionCache.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        session.invalidate();
+        drop(session);
+    }
+
+    private void onRemoteWrite(String message) {
+        int idx = message.indexOf(' ');
+        if (idx < 0 || nodeId.equals(message.substring(0, idx))) {
+            return;
+        }
+        RedisSession session = sessionCache.get(message.substring(idx + 1));
+        if (session != null) {
+            session.reload();
+        }
+    }
+
+    /**
+     * Redis中已不存在的session移出本地缓存
+     */
+    private void drop(RedisSession session) {
+        if (sessionCache.remove(session.getId(), session)) {
+            session.discardOfflinePushes();
+            notifyExpired(session);
+        }
+    }
+
     @Override
     public void removeSession(String sessionId) {
-        synchronized (sessionCache) {
-            sessionCache.remove(sessionId);
+        RedisSession session = sessionCache.remove(sessionId);
+        if (session != null) {
+            session.discardOfflinePushes();
         }
     }
 
     @Override
     public void expireSession(String sessionId) {
-        Session session = getSession(sessionId, false);
+        Session session = sessionCache.get(sessionId);
         if (session != null) {
-            for (SessionListener sessionListener : getSessionListeners()) {
-                try {
-                    sessionListener.sessionExpired(new SessionEvent(session));
-                } catch (Exception e) {
-//                    LOG.warn("Exception when notify sessionDestroy.", e);
+            notifyExpired(session);
+        }
+    }
+
+    private void notifyExpired(Session session) {
+        for (SessionListener sessionListener : getSessionListeners()) {
+            try {
+                sessionListener.sessionExpired(new SessionEvent(session));
+            } catch (Exception e) {
+                LOG.warn("Exception when notify sessionExpired.", e);
+            }
+        }
+    }
+
+    private class KeyspaceSubscriber extends JedisPubSub {
+        @Override
+        public void onPMessage(String pattern, String channel, String message) {
+            try {
+                if (RedisSession.WRITE_CHANNEL.equals(channel)) {
+                    onRemoteWrite(message);
+                } else {
+                    onKeyspaceEvent(channel, message);
                 }
+            } catch (Exception e) {
+                LOG.warn("Session keyspace event error. " + channel, e);
             }
         }
     }
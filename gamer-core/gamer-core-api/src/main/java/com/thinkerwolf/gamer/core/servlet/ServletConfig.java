@@ -30,6 +30,56 @@ public interface ServletConfig {
      */
     public static final String SESSION_TICK_TIME = "sessionTickTime";
 
+    /**
+     * byte[]类型session属性存储到堆外的最小字节数，0不使用堆外存储
+     */
+    public static final String SESSION_OFF_HEAP_THRESHOLD = "sessionOffHeapThreshold";
+
+    /**
+     * session快照文件，配置后关闭时保存session，启动时恢复
+     */
+    public static final String SESSION_SNAPSHOT_FILE = "sessionSnapshotFile";
+
+    /**
+     * session快照属性序列化方式，默认hessian2
+     */
+    public static final String SESSION_SNAPSHOT_SERIALIZER = "sessionSnapshotSerializer";
+
+    /**
+     * 离线推送内存缓冲消息数
+     */
+    public static final String PUSH_BUFFER_SIZE = "pushBufferSize";
+
+    /**
+     * 只保留最后一条的推送命令，以;分隔。离线时只缓冲最后一条，开启在线合并时每个tick只发送最后一条
+     */
+    public static final String PUSH_COALESCE_COMMANDS = "pushCoalesceCommands";
+
+    /**
+     * 离线推送溢出文件目录，不配置时不溢出。启动时删除目录中遗留的溢出文件，目录不能与其它进程共用
+     */
+    public static final String PUSH_SPILL_DIR = "pushSpillDir";
+
+    /**
+     * 单个session离线推送溢出文件最大字节数，0不溢出
+     */
+    public static final String PUSH_SPILL_SIZE = "pushSpillSize";
+
+    /**
+     * 在线推送合并的tick毫秒数，0不合并
+     */
+    public static final String PUSH_COALESCE_TICK = "pushCoalesceTick";
+
+    /**
+     * 推送重发窗口大小，大于0时推送按session编号，客户端按编号确认和断线续传
+     */
+    public static final String PUSH_RESEND_WINDOW = "pushResendWindow";
+
+    /**
+     * SSE推送保留的最近事件数，用于客户端按Last-Event-ID重连补发
+     */
+    public static final String SSE_HISTORY_SIZE = "sseHistorySize";
+
     /**
      * 静态资源位置
      */
@@ -40,6 +90,16 @@ public interface ServletConfig {
      */
     public static final String TEMPLATES_LOCATION = "templatesLocation";
 
+    /**
+     * 启动时是否预编译模板
+     */
+    public static final String TEMPLATES_PRELOAD = "templatesPreload";
+
+    /**
+     * 模板输出缓存条目数，0不缓存
+     */
+    public static final String TEMPLATES_CACHE_SIZE = "templatesCacheSize";
+
     /**
      * 是否压缩
      */
@@ -111,4 +111,18 @@ public interface Session {
      */
     void push(int opcode, String command, byte[] content);
 
+    /**
+     * 确认客户端已收到序号不大于seq的推送
+     *
+     * @param seq 推送序号
+     */
+    void ackPush(long seq);
+
+    /**
+     * 断线重连后按序补发序号大于seq的推送
+     *
+     * @param seq 客户端收到的最后一个推送序号
+     */
+    void resumePush(long seq);
+
 }
@@ -0,0 +1,245 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Session快照文件，基于内存映射读写。
+ * <pre>
+ * header : magic(4) + count(4) + indexOffset(8)
+ * record : idLen(4) + id + creationTime(8) + lastTouchTime(8) + timeout(8) + attributesLen(4) + attributes
+ * index  : count * (idHash(4) + recordOffset(8))，按idHash排序
+ * </pre>
+ * 属性部分为序列化后的属性表，读取时不反序列化，由session首次访问属性时解析。
+ * 索引用于加载完成前按id直接定位单个session。
+ * <p>
+ * {@link #close()}只释放映射，全部记录恢复成功后再调用{@link #delete()}删除文件。
+ *
+ * @author wukai
+ */
+class SessionSnapshot implements Closeable {
+
+    private static final int MAGIC = 0x47535331;
+    private static final int HEADER_LENGTH = 16;
+    private static final int INDEX_ENTRY_LENGTH = 12;
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private final File file;
+    /**
+     * 关闭后为null，映射由GC释放
+     */
+    private volatile MappedByteBuffer buffer;
+    private final int count;
+    private final int indexOffset;
+
+    private SessionSnapshot(File file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Illegal session snapshot " + file);
+        }
+        this.count = buffer.getInt(4);
+        long offset = buffer.getLong(8);
+        if (count < 0 || offset < HEADER_LENGTH || offset + (long) count * INDEX_ENTRY_LENGTH > buffer.capacity()) {
+            throw new IOException("Illegal session snapshot " + file);
+        }
+        this.indexOffset = (int) offset;
+    }
+
+    static SessionSnapshot open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            return new SessionSnapshot(file, buffer);
+        }
+    }
+
+    /**
+     * 写入快照
+     *
+     * @param file    快照文件
+     * @param records session记录
+     */
+    static void write(File file, Collection<Record> records) throws IOException {
+        List<byte[]> ids = new ArrayList<>(records.size());
+        long size = HEADER_LENGTH;
+        for (Record record : records) {
+            byte[] id = record.id.getBytes(UTF_8);
+            ids.add(id);
+            size += 4 + id.length + 24 + 4 + record.attributes.length + INDEX_ENTRY_LENGTH;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Session snapshot too large " + size);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+            raf.setLength(size);
+            MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            long[] index = new long[records.size()];
+            buf.position(HEADER_LENGTH);
+            int i = 0;
+            for (Record record : records) {
+                byte[] id = ids.get(i);
+                index[i] = ((long) record.id.hashCode() << 32) | buf.position();
+                buf.putInt(id.length);
+                buf.put(id);
+                buf.putLong(record.creationTime);
+                buf.putLong(record.lastTouchTime);
+                buf.putLong(record.timeout);
+                buf.putInt(record.attributes.length);
+                buf.put(record.attributes);
+                i++;
+            }
+            // 高32位为hash，低32位为偏移，排序后即按hash有序
+            Arrays.sort(index);
+            int indexOffset = buf.position();
+            for (long entry : index) {
+                buf.putInt((int) (entry >> 32));
+                buf.putLong(entry & 0xFFFFFFFFL);
+            }
+            buf.putInt(0, MAGIC);
+            buf.putInt(4, records.size());
+            buf.putLong(8, indexOffset);
+            buf.force();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Can't replace session snapshot " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Can't rename session snapshot " + tmp);
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * 按写入顺序遍历所有记录
+     */
+    void forEach(Consumer<Record> consumer) throws IOException {
+        ByteBuffer buf = mapped().duplicate();
+        buf.position(HEADER_LENGTH);
+        for (int i = 0; i < count; i++) {
+            consumer.accept(read(buf));
+        }
+    }
+
+    /**
+     * 根据id查找记录
+     *
+     * @return 不存在时返回null
+     */
+    Record lookup(String id) {
+        MappedByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            return null;
+        }
+        int hash = id.hashCode();
+        int low = 0;
+        int high = count - 1;
+        // 查找第一个hash相等的索引项
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (buffer.getInt(indexOffset + mid * INDEX_ENTRY_LENGTH) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        byte[] idBytes = id.getBytes(UTF_8);
+        for (int i = low; i < count; i++) {
+            int pos = indexOffset + i * INDEX_ENTRY_LENGTH;
+            if (buffer.getInt(pos) != hash) {
+                break;
+            }
+            int offset = (int) buffer.getLong(pos + 4);
+            if (idEquals(buffer, offset, idBytes)) {
+                ByteBuffer buf = buffer.duplicate();
+                buf.position(offset);
+                return read(buf);
+            }
+        }
+        return null;
+    }
+
+    private static boolean idEquals(ByteBuffer buffer, int offset, byte[] idBytes) {
+        if (buffer.getInt(offset) != idBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < idBytes.length; i++) {
+            if (buffer.get(offset + 4 + i) != idBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Record read(ByteBuffer buf) {
+        byte[] id = new byte[buf.getInt()];
+        buf.get(id);
+        long creationTime = buf.getLong();
+        long lastTouchTime = buf.getLong();
+        long timeout = buf.getLong();
+        int len = buf.getInt();
+        byte[] attributes = len == 0 ? EMPTY_BYTES : new byte[len];
+        buf.get(attributes);
+        return new Record(new String(id, UTF_8), creationTime, lastTouchTime, timeout, attributes);
+    }
+
+    private MappedByteBuffer mapped() throws IOException {
+        MappedByteBuffer b = buffer;
+        if (b == null) {
+            throw new IOException("Session snapshot closed " + file);
+        }
+        return b;
+    }
+
+    /**
+     * 释放映射，不删除文件
+     */
+    @Override
+    public void close() {
+        buffer = null;
+    }
+
+    /**
+     * 关闭并删除快照文件。部分平台在映射释放前不能删除文件，此时在退出时删除
+     */
+    void delete() {
+        close();
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    static class Record {
+        final String id;
+        final long creationTime;
+        final long lastTouchTime;
+        final long timeout;
+        /**
+         * 序列化后的属性表，无属性时长度为0
+         */
+        final byte[] attributes;
+
+        Record(String id, long creationTime, long lastTouchTime, long timeout, byte[] attributes) {
+            this.id = id;
+            this.creationTime = creationTime;
+            this.lastTouchTime = lastTouchTime;
+            this.timeout = timeout;
+            this.attributes = attributes == null ? EMPTY_BYTES : attributes;
+        }
+    }
+}
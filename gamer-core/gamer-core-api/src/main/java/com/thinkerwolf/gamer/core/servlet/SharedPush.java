@@ -0,0 +1,53 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+/**
+ * 支持共享编码结果的推送通道。
+ * <p>
+ * 组推送时，{@link #encodingKey()}相同的推送通道只编码一次，编码结果写到所有成员。
+ *
+ * @author wukai
+ * @see PushGroup
+ */
+public interface SharedPush extends Push {
+
+    /**
+     * 编码格式，格式相同的推送通道共享编码结果
+     *
+     * @return 编码格式，null表示不共享
+     */
+    Object encodingKey();
+
+    /**
+     * 编码消息
+     *
+     * @param opcode  操作码
+     * @param command 命令
+     * @param content 内容
+     * @return 编码结果
+     */
+    Object encode(int opcode, String command, byte[] content);
+
+    /**
+     * 推送共享的编码结果，实现不能修改或释放encoded
+     *
+     * @param encoded {@link #encode(int, String, byte[])}的结果
+     */
+    void pushEncoded(Object encoded);
+
+    /**
+     * 推送带序号的共享编码结果，不支持序号的通道忽略序号
+     *
+     * @param encoded {@link #encode(int, String, byte[])}的结果
+     * @param seq     session内的推送序号
+     */
+    default void pushEncoded(Object encoded, long seq) {
+        pushEncoded(encoded);
+    }
+
+    /**
+     * 释放编码结果，所有成员推送完成后调用
+     *
+     * @param encoded {@link #encode(int, String, byte[])}的结果
+     */
+    void release(Object encoded);
+}
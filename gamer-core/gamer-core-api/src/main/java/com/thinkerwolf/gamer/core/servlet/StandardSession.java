@@ -1,6 +1,13 @@
 package com.thinkerwolf.gamer.core.servlet;
 
+import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
+import com.thinkerwolf.gamer.common.log.Logger;
+import com.thinkerwolf.gamer.common.serialization.Serializations;
+import com.thinkerwolf.gamer.common.serialization.Serializer;
+
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 标准session实现
@@ -9,16 +16,98 @@ import java.util.List;
  */
 public class StandardSession extends AbstractSession {
 
+    private static final Logger LOG = InternalLoggerFactory.getLogger(StandardSession.class);
+
     private transient SessionManager sessionManager;
 
     private volatile long lastTouchTime;
 
+    /**
+     * 从快照恢复时尚未解析的属性，首次访问属性时解析
+     */
+    private transient volatile byte[] snapshotAttributes;
+
+    private transient Serializer snapshotSerializer;
+
     public StandardSession( String id, long timeout, List<SessionAttributeListener> sessionAttributeListeners, SessionManager sessionManager) {
-        super(id, timeout, sessionAttributeListeners);
+        super(id, timeout, sessionAttributeListeners, sessionManager instanceof AbstractSessionManager ?
+                ((AbstractSessionManager) sessionManager).getOfflinePushPolicy() : OfflinePushPolicy.DEFAULT);
         this.sessionManager = sessionManager;
         this.lastTouchTime = System.currentTimeMillis();
     }
 
+    /**
+     * 从快照恢复session，属性延迟解析
+     */
+    StandardSession(SessionSnapshot.Record record, List<SessionAttributeListener> sessionAttributeListeners, SessionManager sessionManager, Serializer serializer) {
+        this(record.id, record.timeout, sessionAttributeListeners, sessionManager);
+        setCreationTime(record.creationTime);
+        this.lastTouchTime = record.lastTouchTime;
+        if (record.attributes.length > 0) {
+            this.snapshotSerializer = serializer;
+            this.snapshotAttributes = record.attributes;
+        }
+    }
+
+    /**
+     * 生成快照记录，未解析过的快照属性直接写回
+     */
+    SessionSnapshot.Record toSnapshot(Serializer serializer) {
+        byte[] attributes = snapshotAttributes;
+        if (attributes == null && hasLocalAttributes()) {
+            try {
+                attributes = Serializations.getBytes(serializer, copyLocalAttributes());
+            } catch (Exception e) {
+                LOG.warn("Can't serialize attributes of session " + getId(), e);
+            }
+        }
+        return new SessionSnapshot.Record(getId(), getCreationTime(), lastTouchTime, getTimeout(), attributes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void inflateAttributes() {
+        if (snapshotAttributes == null) {
+            return;
+        }
+        synchronized (getLock()) {
+            byte[] attributes = snapshotAttributes;
+            if (attributes == null) {
+                return;
+            }
+            try {
+                Map<Object, Object> map = Serializations.getObject(snapshotSerializer, attributes, HashMap.class);
+                for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                    if (entry.getKey() != null && entry.getValue() != null) {
+                        putLocalAttributeIfAbsent(entry.getKey(), entry.getValue());
+                    }
+                }
+            } catch (Exception e) {
+                LOG.warn("Can't deserialize attributes of session " + getId(), e);
+            } finally {
+                snapshotAttributes = null;
+                snapshotSerializer = null;
+            }
+        }
+    }
+
+    @Override
+    public Object getAttribute(Object key) {
+        inflateAttributes();
+        return super.getAttribute(key);
+    }
+
+    @Override
+    public void setAttribute(Object key, Object att) {
+        inflateAttributes();
+        super.setAttribute(key, att);
+    }
+
+    @Override
+    public Object removeAttribute(Object key) {
+        inflateAttributes();
+        return super.removeAttribute(key);
+    }
+
     @Override
     public void validate() {
         Session session = this;
@@ -27,6 +116,18 @@ public class StandardSession extends AbstractSession {
         }
     }
 
+    @Override
+    PushCoalescer getPushCoalescer() {
+        return sessionManager instanceof AbstractSessionManager ?
+                ((AbstractSessionManager) sessionManager).getPushCoalescer() : null;
+    }
+
+    @Override
+    int getOffHeapThreshold() {
+        return sessionManager instanceof AbstractSessionManager ?
+                ((AbstractSessionManager) sessionManager).getOffHeapThreshold() : 0;
+    }
+
     @Override
     public void touch() {
         this.lastTouchTime = System.currentTimeMillis();
@@ -42,6 +143,10 @@ public class StandardSession extends AbstractSession {
         return getTimeout() - (System.currentTimeMillis() - lastTouchTime) > 0;
     }
 
+    long getLastTouchTime() {
+        return lastTouchTime;
+    }
+
     @Override
     public long getMaxAge() {
         long ageMillis = getTimeout() - (System.currentTimeMillis() - lastTouchTime);
@@ -1,26 +1,49 @@
 package com.thinkerwolf.gamer.core.servlet;
 
 import com.thinkerwolf.gamer.common.DefaultThreadFactory;
+import com.thinkerwolf.gamer.common.ServiceLoader;
+import com.thinkerwolf.gamer.common.concurrent.HashedWheelTimer;
 import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
 import com.thinkerwolf.gamer.common.log.Logger;
+import com.thinkerwolf.gamer.common.serialization.Serializer;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 
-import java.util.LinkedList;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * 标准基于内存的sessionManager
+ * 标准基于内存的sessionManager，session过期由{@link HashedWheelTimer}驱动，过期回调在独立线程中执行。
+ * touch只更新访问时间，不移动定时，到期时仍然有效的session按新的过期时间重新加入时间轮。
+ * <p>
+ * 配置{@link ServletConfig#SESSION_SNAPSHOT_FILE}后，关闭时将session写入快照文件，启动时在后台线程加载，
+ * 加载完成前按id访问的session直接从快照索引中恢复。
  *
  * @author wukai
  */
 public class StandardSessionManager extends AbstractSessionManager {
 
     private static final Logger LOG = InternalLoggerFactory.getLogger(StandardSessionManager.class);
+    private static final int MAX_TICKS_PER_WHEEL = 1 << 16;
     private final Map<String, Session> sessionMap;
-    private ScheduledExecutorService scheduledService;
+    private HashedWheelTimer expireTimer;
+    private ExecutorService expireExecutor;
+    private File snapshotFile;
+    private Serializer snapshotSerializer;
+    private volatile SessionSnapshot snapshot;
+    /**
+     * 快照加载期间已按id恢复或已移除的session，后台加载时跳过
+     */
+    private final Set<String> snapshotConsumed = ConcurrentHashMap.newKeySet();
+    private Thread snapshotLoader;
+    private Thread shutdownHook;
+    private final AtomicBoolean snapshotSaved = new AtomicBoolean();
 
     public StandardSessionManager() {
         super(new StandardSessionIdGenerator());
@@ -29,40 +52,185 @@ public class StandardSessionManager extends AbstractSessionManager {
 
     @Override
     protected void doDestroy() throws Exception {
-        if (scheduledService != null) {
-            scheduledService.shutdown();
+        if (expireTimer != null) {
+            expireTimer.stop();
         }
+        if (expireExecutor != null) {
+            expireExecutor.shutdown();
+        }
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignored) {
+                // JVM正在关闭
+            }
+        }
+        saveSnapshot();
         sessionMap.clear();
     }
 
     @Override
     protected void doInit(ServletConfig servletConfig) throws Exception {
         long tickTime = NumberUtils.toInt(servletConfig.getInitParam(ServletConfig.SESSION_TICK_TIME), 1) * 1000;
-        this.scheduledService = new ScheduledThreadPoolExecutor(3, new DefaultThreadFactory("Session-check"));
-        scheduledService.schedule(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    List<Session> invalidateSessions = new LinkedList<>();
-                    for (Session session : sessionMap.values()) {
-                        if (!session.isValidate()) {
-                            invalidateSessions.add(session);
-                        }
-                    }
-                    for (Session session : invalidateSessions) {
-                        try {
-                            session.expire();
-                        } catch (Exception e) {
-                            LOG.warn("Session expire error.", e);
-                        }
+        // 槽数覆盖一个session超时时间，更长的定时由时间轮按轮数处理
+        int ticksPerWheel = (int) Math.min(getSessionTimeout() / tickTime + 1, MAX_TICKS_PER_WHEEL);
+        this.expireTimer = new HashedWheelTimer("Session-check", tickTime, TimeUnit.MILLISECONDS, ticksPerWheel);
+        this.expireExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("Session-expire"));
+
+        String file = servletConfig.getInitParam(ServletConfig.SESSION_SNAPSHOT_FILE);
+        if (StringUtils.isNotBlank(file)) {
+            this.snapshotFile = new File(file);
+            this.snapshotSerializer = ServiceLoader.getService(
+                    StringUtils.defaultIfEmpty(servletConfig.getInitParam(ServletConfig.SESSION_SNAPSHOT_SERIALIZER), "hessian2"), Serializer.class);
+            loadSnapshot();
+            this.shutdownHook = new DefaultThreadFactory("Session-snapshot-save").newThread(this::saveSnapshot);
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    private void loadSnapshot() {
+        if (!snapshotFile.exists()) {
+            return;
+        }
+        try {
+            this.snapshot = SessionSnapshot.open(snapshotFile);
+        } catch (IOException e) {
+            LOG.warn("Can't open session snapshot " + snapshotFile, e);
+            return;
+        }
+        this.snapshotLoader = new DefaultThreadFactory("Session-snapshot-load", true).newThread(() -> {
+            SessionSnapshot s = snapshot;
+            long start = System.currentTimeMillis();
+            boolean loaded = false;
+            try {
+                s.forEach(record -> {
+                    if (!snapshotConsumed.contains(record.id)) {
+                        restoreSession(record);
                     }
-                } catch (Exception e) {
-                    LOG.error("Session check error.", e);
-                } finally {
-                    scheduledService.schedule(this, tickTime, TimeUnit.MILLISECONDS);
+                });
+                loaded = true;
+                LOG.info("Load " + s.size() + " sessions from snapshot in " + (System.currentTimeMillis() - start) + "ms");
+            } catch (Exception e) {
+                LOG.error("Session snapshot load error, keep " + snapshotFile, e);
+            } finally {
+                snapshot = null;
+                snapshotConsumed.clear();
+                // 只有全部记录恢复成功才删除，部分失败时保留文件以便排查或再次加载
+                if (loaded) {
+                    s.delete();
+                } else {
+                    s.close();
+                }
+            }
+        });
+        snapshotLoader.start();
+    }
+
+    boolean isSnapshotLoading() {
+        return snapshot != null;
+    }
+
+    /**
+     * 从快照记录恢复session，已过期或已存在时不恢复
+     */
+    private Session restoreSession(SessionSnapshot.Record record) {
+        StandardSession session = new StandardSession(record, getSessionAttributeListeners(), this, snapshotSerializer);
+        if (!session.isValidate()) {
+            return null;
+        }
+        Session exist = sessionMap.putIfAbsent(record.id, session);
+        if (exist != null) {
+            return exist;
+        }
+        scheduleExpire(session);
+        return session;
+    }
+
+    /**
+     * 加载完成前按id从快照中恢复
+     */
+    private Session restoreSession(String sessionId) {
+        SessionSnapshot s = snapshot;
+        if (s == null || !snapshotConsumed.add(sessionId)) {
+            return null;
+        }
+        SessionSnapshot.Record record = s.lookup(sessionId);
+        return record == null ? null : restoreSession(record);
+    }
+
+    /**
+     * 将有效session写入快照文件，只执行一次
+     */
+    private void saveSnapshot() {
+        if (snapshotFile == null || !snapshotSaved.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (snapshotLoader != null) {
+                // 等待上次快照加载完成，避免未加载的session丢失
+                snapshotLoader.join();
+            }
+            long start = System.currentTimeMillis();
+            List<SessionSnapshot.Record> records = new ArrayList<>(sessionMap.size());
+            for (Session session : sessionMap.values()) {
+                if (session instanceof StandardSession && session.isValidate()) {
+                    records.add(((StandardSession) session).toSnapshot(snapshotSerializer));
                 }
             }
-        }, tickTime, TimeUnit.MILLISECONDS);
+            SessionSnapshot.write(snapshotFile, records);
+            LOG.info("Save " + records.size() + " sessions to snapshot in " + (System.currentTimeMillis() - start) + "ms");
+        } catch (Exception e) {
+            LOG.error("Session snapshot save error.", e);
+        }
+    }
+
+    /**
+     * 按session当前的过期时间加入时间轮
+     */
+    private void scheduleExpire(StandardSession session) {
+        if (expireTimer == null) {
+            return;
+        }
+        long delay = session.getLastTouchTime() + session.getTimeout() - System.currentTimeMillis();
+        try {
+            expireTimer.newTimeout(() -> checkExpire(session), Math.max(delay, 0), TimeUnit.MILLISECONDS);
+        } catch (IllegalStateException e) {
+            // manager已销毁
+        }
+    }
+
+    /**
+     * 在时间轮线程中检查，仍然有效的重新入轮，过期回调交给expireExecutor执行
+     */
+    private void checkExpire(StandardSession session) {
+        if (!isManaged(session)) {
+            return;
+        }
+        if (session.isValidate()) {
+            scheduleExpire(session);
+        } else {
+            expireExecutor.execute(() -> expire(session));
+        }
+    }
+
+    private void expire(StandardSession session) {
+        if (!isManaged(session)) {
+            return;
+        }
+        if (session.isValidate()) {
+            // 检查后又被touch
+            scheduleExpire(session);
+            return;
+        }
+        try {
+            session.expire();
+        } catch (Exception e) {
+            LOG.warn("Session expire error.", e);
+        }
+    }
+
+    boolean isManaged(Session session) {
+        return sessionMap.get(session.getId()) == session;
     }
 
     @Override
@@ -79,6 +247,9 @@ public class StandardSessionManager extends AbstractSessionManager {
 
         if (StringUtils.isNotBlank(sessionId)) {
             session = sessionMap.get(sessionId);
+            if (session == null && snapshot != null) {
+                session = restoreSession(sessionId);
+            }
         }
 
         if (session != null) {
@@ -88,9 +259,10 @@ public class StandardSessionManager extends AbstractSessionManager {
         if (session == null || !session.isValidate()) {
             if (create) {
                 sessionId = createSessionId(sessionId);
-                Session createSession = new StandardSession(sessionId, getSessionTimeout(), getSessionAttributeListeners(), this);
+                StandardSession createSession = new StandardSession(sessionId, getSessionTimeout(), getSessionAttributeListeners(), this);
                 session = createSession;
                 sessionMap.put(sessionId, createSession);
+                scheduleExpire(createSession);
                 for (SessionListener sessionListener : getSessionListeners()) {
                     try {
                         sessionListener.sessionCreated(new SessionEvent(session));
@@ -119,14 +291,20 @@ public class StandardSessionManager extends AbstractSessionManager {
         }
         Session session = getSession(sessionId);
         if (session != null) {
-            session.expire();
+            session.touch();
         }
     }
 
     @Override
     public void removeSession(String sessionId) {
+        if (snapshot != null) {
+            snapshotConsumed.add(sessionId);
+        }
         Session session = sessionMap.remove(sessionId);
         if (session != null) {
+            if (session instanceof AbstractSession) {
+                ((AbstractSession) session).discardOfflinePushes();
+            }
             for (SessionListener sessionListener : getSessionListeners()) {
                 try {
                     sessionListener.sessionDestroyed(new SessionEvent(session));
@@ -1,8 +1,11 @@
 package com.thinkerwolf.gamer.core.util;
 
 import com.thinkerwolf.gamer.core.servlet.Request;
+import com.thinkerwolf.gamer.core.servlet.Session;
 import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -18,6 +21,10 @@ public final class RequestUtil {
      * Http1长连接推送路径
      */
     public static final String LONG_HTTP = "longhttp";
+    /**
+     * Http1 Server-Sent Events推送路径
+     */
+    public static final String SSE = "sse";
     /**
      * 请求sessionId参数键
      */
@@ -26,11 +33,40 @@ public final class RequestUtil {
      * 请求requestId参数键
      */
     public static final String REQUEST_ID_KEY = "requestId";
+    /**
+     * 推送确认参数键，值为客户端收到的最后一个推送序号
+     */
+    public static final String PUSH_ACK_KEY = "pushAck";
+    /**
+     * 断线续传参数键，值为客户端收到的最后一个推送序号，服务端补发之后的推送
+     */
+    public static final String PUSH_RESUME_KEY = "pushResume";
 
     public static boolean isLongHttp(String command) {
         return LONG_HTTP.equalsIgnoreCase(command);
     }
 
+    public static boolean isSse(String command) {
+        return SSE.equalsIgnoreCase(command);
+    }
+
+    /**
+     * 处理请求携带的推送确认和断线续传，需在session设置新的推送通道后调用。
+     * 只有支持序号的通道（{@link com.thinkerwolf.gamer.core.servlet.Push#isSequenced()}）的推送进入重发窗口，
+     * 从tcp改为websocket重连时，续传的推送不带序号
+     */
+    public static void handlePushAck(Request request, Session session) {
+        long resume = NumberUtils.toLong(ObjectUtils.toString(request.getAttribute(PUSH_RESUME_KEY)), -1);
+        if (resume >= 0) {
+            session.resumePush(resume);
+            return;
+        }
+        long ack = NumberUtils.toLong(ObjectUtils.toString(request.getAttribute(PUSH_ACK_KEY)), -1);
+        if (ack >= 0) {
+            session.ackPush(ack);
+        }
+    }
+
     public static void parseParams(Request request, byte[] bytes) {
         String s = new String(bytes);
         String[] ss = StringUtils.split(s.trim(), '&');
@@ -0,0 +1,124 @@
+package com.thinkerwolf.gamer.core.mvc;
+
+import com.thinkerwolf.gamer.core.servlet.Servlet;
+import com.thinkerwolf.gamer.core.servlet.ServletConfig;
+import com.thinkerwolf.gamer.core.servlet.ServletContext;
+import freemarker.template.TemplateMethodModelEx;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class FreemarkerHelperTests {
+
+    private static File dir;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        dir = Files.createTempDirectory("gamer-ftl").toFile();
+        write("hello.ftl", "hello ${name}");
+        write("outer.ftl", "[${inner()}|${name}]");
+        write("inner.ftl", "<${name}>");
+
+        Map<String, String> initParams = new HashMap<>();
+        initParams.put(ServletConfig.TEMPLATES_LOCATION, dir.getPath());
+        initParams.put(ServletConfig.TEMPLATES_CACHE_SIZE, "16");
+        FreemarkerHelper.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "gamerServlet";
+            }
+
+            @Override
+            public Class<? extends Servlet> servletClass() {
+                return null;
+            }
+
+            @Override
+            public String getInitParam(String key) {
+                return initParams.get(key);
+            }
+
+            @Override
+            public Collection<String> getInitParamNames() {
+                return initParams.keySet();
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return null;
+            }
+        });
+    }
+
+    @AfterClass
+    public static void destroy() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static void write(String name, String content) throws Exception {
+        Files.write(new File(dir, name).toPath(), content.getBytes(UTF_8));
+    }
+
+    @Test
+    public void testCacheHit() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "cache");
+        byte[] first = FreemarkerHelper.getTemplateBytes("hello.ftl", data, true);
+        assertEquals("hello cache", new String(first, UTF_8));
+        // 相等的模型命中缓存，返回同一结果
+        byte[] second = FreemarkerHelper.getTemplateBytes("hello.ftl", new HashMap<>(data), true);
+        assertSame(first, second);
+        // 不可缓存的调用总是重新渲染
+        byte[] uncached = FreemarkerHelper.getTemplateBytes("hello.ftl", data, false);
+        assertNotSame(first, uncached);
+        assertArrayEquals(first, uncached);
+    }
+
+    @Test
+    public void testChangedModelMiss() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "before");
+        byte[] first = FreemarkerHelper.getTemplateBytes("hello.ftl", data, true);
+        assertEquals("hello before", new String(first, UTF_8));
+
+        // 缓存key是模型的副本，修改原模型后不会命中旧结果
+        data.put("name", "after");
+        byte[] second = FreemarkerHelper.getTemplateBytes("hello.ftl", data, true);
+        assertEquals("hello after", new String(second, UTF_8));
+
+        data.put("name", "before");
+        assertSame(first, FreemarkerHelper.getTemplateBytes("hello.ftl", data, true));
+    }
+
+    @Test
+    public void testNestedRender() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "outer");
+        data.put("inner", (TemplateMethodModelEx) args ->
+                new String(FreemarkerHelper.getTemplateBytes("inner.ftl", Collections.singletonMap("name", "inner")), UTF_8));
+        // 内层渲染不能复用外层正在写入的线程本地缓冲区
+        for (int i = 0; i < 3; i++) {
+            byte[] bytes = FreemarkerHelper.getTemplateBytes("outer.ftl", data);
+            assertEquals("[<inner>|outer]", new String(bytes, UTF_8));
+        }
+        // 嵌套渲染后线程本地缓冲区仍可正常使用
+        assertEquals("hello again", new String(FreemarkerHelper.getTemplateBytes("hello.ftl",
+                Collections.singletonMap("name", "again")), UTF_8));
+    }
+}
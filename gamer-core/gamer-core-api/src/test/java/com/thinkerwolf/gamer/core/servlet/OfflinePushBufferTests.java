@@ -0,0 +1,155 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OfflinePushBufferTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCoalesceAndSpill() throws Exception {
+        File dir = folder.newFolder("push");
+        OfflinePushPolicy policy = new OfflinePushPolicy(4, Collections.singleton("state"), dir, 1024 * 1024);
+        OfflinePushBuffer buffer = new OfflinePushBuffer(policy);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            buffer.add(1, "msg", String.valueOf(i).getBytes());
+            expected.add("msg:" + i);
+            buffer.add(1, "state", String.valueOf(i).getBytes());
+        }
+        buffer.add(1, null, "end".getBytes());
+        expected.add("state:9");
+        expected.add("null:end");
+        assertEquals(1, dir.list().length);
+
+        List<String> pushed = new ArrayList<>();
+        buffer.replay(new Push() {
+            @Override
+            public void push(int opcode, String command, byte[] content) {
+                pushed.add(command + ":" + new String(content));
+            }
+
+            @Override
+            public boolean isPushable() {
+                return true;
+            }
+        });
+        assertEquals(expected, pushed);
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testStaleSpillFiles() throws Exception {
+        // 默认不溢出
+        assertFalse(OfflinePushPolicy.DEFAULT.isSpill());
+
+        File dir = folder.newFolder("stale");
+        assertTrue(new File(dir, "push-1.seg").createNewFile());
+        assertTrue(new File(dir, "push-2.seg").createNewFile());
+        assertTrue(new File(dir, "other.txt").createNewFile());
+        assertEquals(2, PushSpillFile.deleteStale(dir));
+        assertArrayEquals(new String[]{"other.txt"}, dir.list());
+        // 同一目录只在首次启动时清理，不影响其它manager正在使用的文件
+        assertTrue(new File(dir, "push-3.seg").createNewFile());
+        assertEquals(0, PushSpillFile.deleteStale(dir));
+    }
+
+    @Test
+    public void testDropWithoutSpill() throws Exception {
+        OfflinePushPolicy policy = new OfflinePushPolicy(2, Collections.emptySet(), folder.getRoot(), 0);
+        OfflinePushBuffer buffer = new OfflinePushBuffer(policy);
+        for (int i = 0; i < 5; i++) {
+            buffer.add(1, "msg", String.valueOf(i).getBytes());
+        }
+        List<String> pushed = new ArrayList<>();
+        buffer.replay(new Push() {
+            @Override
+            public void push(int opcode, String command, byte[] content) {
+                pushed.add(new String(content));
+            }
+
+            @Override
+            public boolean isPushable() {
+                return true;
+            }
+        });
+        assertEquals(2, pushed.size());
+        assertEquals("3", pushed.get(0));
+        assertEquals("4", pushed.get(1));
+    }
+
+    @Test
+    public void testCompactBeforeSpill() throws Exception {
+        File dir = folder.newFolder("compact");
+        OfflinePushPolicy policy = new OfflinePushPolicy(4, Collections.singleton("state"), dir, 1024 * 1024);
+        OfflinePushBuffer buffer = new OfflinePushBuffer(policy);
+        buffer.add(1, "msg", "0".getBytes());
+        for (int i = 0; i < 100; i++) {
+            buffer.add(1, "state", String.valueOf(i).getBytes());
+        }
+        buffer.add(1, "msg", "1".getBytes());
+        // 作废的消息不占容量，不溢出
+        assertEquals(0, dir.list().length);
+
+        for (int i = 2; i < 20; i++) {
+            buffer.add(1, "msg", String.valueOf(i).getBytes());
+        }
+        assertEquals(1, dir.list().length);
+        List<String> pushed = new ArrayList<>();
+        buffer.replay(new Push() {
+            @Override
+            public void push(int opcode, String command, byte[] content) {
+                pushed.add(command + ":" + new String(content));
+            }
+
+            @Override
+            public boolean isPushable() {
+                return true;
+            }
+        });
+        List<String> expected = new ArrayList<>();
+        expected.add("msg:0");
+        expected.add("state:99");
+        for (int i = 1; i < 20; i++) {
+            expected.add("msg:" + i);
+        }
+        assertEquals(expected, pushed);
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void testSpillLimit() throws Exception {
+        File dir = folder.newFolder("limit");
+        // 每条消息12 + 3 + 1字节，溢出文件只能容纳3条
+        OfflinePushPolicy policy = new OfflinePushPolicy(2, Collections.emptySet(), dir, 50);
+        OfflinePushBuffer buffer = new OfflinePushBuffer(policy);
+        for (int i = 0; i < 8; i++) {
+            buffer.add(1, "msg", String.valueOf(i).getBytes());
+        }
+        List<String> pushed = new ArrayList<>();
+        buffer.replay(new Push() {
+            @Override
+            public void push(int opcode, String command, byte[] content) {
+                pushed.add(new String(content));
+            }
+
+            @Override
+            public boolean isPushable() {
+                return true;
+            }
+        });
+        assertEquals(Arrays.asList("0", "1", "2", "6", "7"), pushed);
+    }
+}
@@ -0,0 +1,70 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PushCoalesceTests {
+
+    @Test
+    public void testLastValueWins() throws Exception {
+        OfflinePushPolicy policy = new OfflinePushPolicy(16, Collections.singleton("hp"), null, 0, 0, 10);
+        PushCoalescer coalescer = new PushCoalescer(10);
+        StandardSessionManager manager = new StandardSessionManager() {
+            @Override
+            public OfflinePushPolicy getOfflinePushPolicy() {
+                return policy;
+            }
+
+            @Override
+            PushCoalescer getPushCoalescer() {
+                return coalescer;
+            }
+        };
+        try {
+            StandardSession session = new StandardSession("s-1", 600000, new ArrayList<>(), manager);
+            RecordPush push = new RecordPush();
+            session.setPush(push);
+
+            push.writable = false;
+            for (int i = 0; i < 100; i++) {
+                session.push(1, "hp", new byte[]{(byte) i});
+            }
+            session.push(1, "chat", new byte[0]);
+            Thread.sleep(50);
+            // 不可写时继续合并，非合并命令直接发送
+            assertEquals(Collections.singletonList("chat:0"), push.received);
+
+            push.writable = true;
+            Thread.sleep(50);
+            assertEquals(2, push.received.size());
+            assertEquals("hp:99", push.received.get(1));
+        } finally {
+            coalescer.close();
+        }
+    }
+
+    private static class RecordPush implements Push {
+        volatile boolean writable = true;
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void push(int opcode, String command, byte[] content) {
+            received.add(command + ":" + (content.length == 0 ? 0 : content[0]));
+        }
+
+        @Override
+        public boolean isPushable() {
+            return true;
+        }
+
+        @Override
+        public boolean isWritable() {
+            return writable;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PushGroupTests {
+
+    @Test
+    public void testEncodeOnce() {
+        StandardSessionManager manager = new StandardSessionManager();
+        List<SessionAttributeListener> listeners = new ArrayList<>();
+        AtomicInteger encodes = new AtomicInteger();
+        AtomicInteger releases = new AtomicInteger();
+        PushGroup group = new PushGroup("room-1");
+
+        List<MockSharedPush> shared = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Session session = new StandardSession("s-" + i, 600000, listeners, manager);
+            MockSharedPush push = new MockSharedPush(i % 2 == 0 ? "tcp" : "ws", encodes, releases);
+            session.setPush(push);
+            shared.add(push);
+            assertTrue(group.join(session));
+        }
+        Session plain = new StandardSession("plain", 600000, listeners, manager);
+        List<String> plainPushes = new ArrayList<>();
+        plain.setPush(new Push() {
+            @Override
+            public void push(int opcode, String command, byte[] content) {
+                plainPushes.add(command);
+            }
+
+            @Override
+            public boolean isPushable() {
+                return true;
+            }
+        });
+        group.join(plain);
+        Session offline = new StandardSession("offline", 600000, listeners, manager);
+        group.join(offline);
+
+        group.push(1, "chat", new byte[]{1, 2, 3});
+        assertEquals(2, encodes.get());
+        assertEquals(2, releases.get());
+        for (MockSharedPush push : shared) {
+            assertEquals(1, push.received.size());
+            assertEquals(push.format + ":chat", push.received.get(0));
+        }
+        assertEquals(1, plainPushes.size());
+        assertTrue(((AbstractSession) offline).hasOfflinePushes());
+
+        offline.setTimeout(0);
+        group.push(1, "chat", new byte[0], plain);
+        assertEquals(1, plainPushes.size());
+        assertFalse(group.contains("offline"));
+        assertEquals(11, group.size());
+    }
+
+    private static class MockSharedPush implements SharedPush {
+        final String format;
+        final AtomicInteger encodes;
+        final AtomicInteger releases;
+        final List<Object> received = new ArrayList<>();
+
+        MockSharedPush(String format, AtomicInteger encodes, AtomicInteger releases) {
+            this.format = format;
+            this.encodes = encodes;
+            this.releases = releases;
+        }
+
+        @Override
+        public Object encodingKey() {
+            return format;
+        }
+
+        @Override
+        public Object encode(int opcode, String command, byte[] content) {
+            encodes.incrementAndGet();
+            return format + ":" + command;
+        }
+
+        @Override
+        public void pushEncoded(Object encoded) {
+            received.add(encoded);
+        }
+
+        @Override
+        public void release(Object encoded) {
+            releases.incrementAndGet();
+        }
+
+        @Override
+        public void push(int opcode, String command, byte[] content) {
+            received.add("raw:" + command);
+        }
+
+        @Override
+        public boolean isPushable() {
+            return true;
+        }
+    }
+}
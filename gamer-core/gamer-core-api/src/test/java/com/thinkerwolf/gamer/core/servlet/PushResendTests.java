@@ -0,0 +1,78 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PushResendTests {
+
+    @Test
+    public void testResume() {
+        OfflinePushPolicy policy = new OfflinePushPolicy(16, Collections.emptySet(), null, 0, 4, 0);
+        StandardSessionManager manager = new StandardSessionManager() {
+            @Override
+            public OfflinePushPolicy getOfflinePushPolicy() {
+                return policy;
+            }
+        };
+        StandardSession session = new StandardSession("s-1", 600000, new ArrayList<>(), manager);
+        RecordPush first = new RecordPush();
+        session.setPush(first);
+        for (int i = 0; i < 3; i++) {
+            session.push(1, "cmd", new byte[]{(byte) i});
+        }
+        assertEquals(Long.valueOf(3), first.seqs.get(2));
+
+        // 连接断开后的推送只保存在窗口中
+        first.pushable = false;
+        session.push(1, "cmd", new byte[0]);
+        session.push(1, "cmd", new byte[0]);
+        assertEquals(3, first.seqs.size());
+
+        RecordPush second = new RecordPush();
+        session.setPush(second);
+        session.resumePush(2);
+        // 窗口容量4，只剩3~5
+        assertEquals(3, second.seqs.size());
+        assertEquals(Long.valueOf(3), second.seqs.get(0));
+        assertEquals(Long.valueOf(5), second.seqs.get(2));
+
+        session.ackPush(5);
+        session.push(1, "cmd", new byte[0]);
+        assertEquals(Long.valueOf(6), second.seqs.get(3));
+
+        RecordPush third = new RecordPush();
+        session.setPush(third);
+        session.resumePush(3);
+        assertEquals(Collections.singletonList(6L), third.seqs);
+    }
+
+    private static class RecordPush implements Push {
+        volatile boolean pushable = true;
+        final List<Long> seqs = new ArrayList<>();
+
+        @Override
+        public void push(int opcode, String command, byte[] content) {
+            seqs.add(0L);
+        }
+
+        @Override
+        public void push(int opcode, String command, byte[] content, long seq) {
+            seqs.add(seq);
+        }
+
+        @Override
+        public boolean isSequenced() {
+            return true;
+        }
+
+        @Override
+        public boolean isPushable() {
+            return pushable;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 需要本地Redis(localhost:6379)，不可用时跳过
+ */
+public class RedisSessionManagerTests {
+
+    private RedisSessionManager sessionManager;
+
+    private final CountDownLatch expiredLatch = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        try (Jedis jedis = new Jedis("localhost", 6379)) {
+            jedis.ping();
+        } catch (Exception e) {
+            Assume.assumeNoException(e);
+        }
+        sessionManager = newSessionManager();
+    }
+
+    private RedisSessionManager newSessionManager() throws Exception {
+        Map<String, String> initParams = new HashMap<>();
+        initParams.put(ServletConfig.SESSION_TIMEOUT, "60");
+        initParams.put("sessionRedisFlushInterval", "20");
+        ServletContext servletContext = new DefaultServletContext();
+        servletContext.setListeners(Collections.singletonList(new SessionListener() {
+            @Override
+            public void sessionCreated(SessionEvent se) {
+            }
+
+            @Override
+            public void sessionExpired(SessionEvent se) {
+                expiredLatch.countDown();
+            }
+
+            @Override
+            public void sessionDestroyed(SessionEvent se) {
+            }
+        }));
+        RedisSessionManager manager = new RedisSessionManager();
+        manager.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "gamerServlet";
+            }
+
+            @Override
+            public Class<? extends Servlet> servletClass() {
+                return null;
+            }
+
+            @Override
+            public String getInitParam(String key) {
+                return initParams.get(key);
+            }
+
+            @Override
+            public Collection<String> getInitParamNames() {
+                return initParams.keySet();
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return servletContext;
+            }
+        });
+        return manager;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (sessionManager != null) {
+            sessionManager.destroy();
+        }
+    }
+
+    @Test
+    public void testTouchAndInvalidate() throws Exception {
+        Session session = sessionManager.getSession(null, true);
+        String key = RedisSession.redisSessionKey(session.getId());
+        try (Jedis jedis = new Jedis("localhost", 6379)) {
+            jedis.pexpire(key, 10000L);
+            for (int i = 0; i < 100; i++) {
+                session.touch();
+            }
+            Thread.sleep(200);
+            assertTrue(jedis.pttl(key) > 10000L);
+            assertSame(session, sessionManager.getSession(session.getId()));
+
+            jedis.del(key);
+            assertTrue(expiredLatch.await(2, TimeUnit.SECONDS));
+            assertNull(sessionManager.getSession(session.getId()));
+        }
+    }
+
+    @Test
+    public void testNearCacheAfterFlush() throws Exception {
+        Session session = sessionManager.getSession(null, true);
+        try (Jedis jedis = new Jedis("localhost", 6379)) {
+            session.setAttribute("playerId", 1001L);
+            session.touch();
+            // 等待批量刷新及其产生的expire、hset通知
+            Thread.sleep(200);
+            long exists = commandCalls(jedis, "exists");
+            for (int i = 0; i < 10; i++) {
+                assertTrue(session.isValidate());
+            }
+            // 近缓存窗口内不访问Redis
+            assertEquals(exists, commandCalls(jedis, "exists"));
+        }
+    }
+
+    private static long commandCalls(Jedis jedis, String command) {
+        for (String line : jedis.info("commandstats").split("\r?\n")) {
+            if (line.startsWith("cmdstat_" + command + ":")) {
+                String calls = line.substring(line.indexOf("calls=") + 6);
+                return Long.parseLong(calls.substring(0, calls.indexOf(',')));
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void testAttributeFailover() throws Exception {
+        Session session = sessionManager.getSession(null, true);
+        List<Integer> items = new ArrayList<>(Arrays.asList(1, 2, 3));
+        session.setAttribute("playerId", 1001L);
+        session.setAttribute("items", items);
+        session.setAttribute("tmp", "tmp");
+        session.removeAttribute("tmp");
+        Thread.sleep(200);
+
+        RedisSessionManager other = newSessionManager();
+        try {
+            Session failover = other.getSession(session.getId());
+            assertNotNull(failover);
+            assertNotSame(session, failover);
+            assertEquals(1001L, failover.getAttribute("playerId"));
+            assertEquals(items, failover.getAttribute("items"));
+            assertNull(failover.getAttribute("tmp"));
+        } finally {
+            other.destroy();
+        }
+    }
+
+    @Test
+    public void testFailBack() throws Exception {
+        Session session = sessionManager.getSession(null, true);
+        session.setAttribute("level", 1);
+        session.setAttribute("gold", 100);
+        Thread.sleep(200);
+
+        RedisSessionManager other = newSessionManager();
+        try {
+            // 切到其它节点修改属性
+            Session failover = other.getSession(session.getId());
+            assertEquals(1, failover.getAttribute("level"));
+            failover.setAttribute("level", 2);
+            Thread.sleep(200);
+
+            // 切回原节点，读到其它节点写入的值，原节点修改其它属性时不写回旧值
+            assertEquals(2, session.getAttribute("level"));
+            assertEquals(100, session.getAttribute("gold"));
+            session.setAttribute("gold", 200);
+            Thread.sleep(200);
+            Session again = other.getSession(session.getId());
+            assertEquals(2, again.getAttribute("level"));
+            assertEquals(200, again.getAttribute("gold"));
+        } finally {
+            other.destroy();
+        }
+    }
+
+    @Test
+    public void testAttributeGraph() throws Exception {
+        Session session = sessionManager.getSession(null, true);
+        GraphNode node = new GraphNode();
+        node.self = node;
+        node.children = new ArrayList<>();
+        GraphNode shared = new GraphNode();
+        node.children.add(shared);
+        node.children.add(shared);
+        session.setAttribute("graph", node);
+        Thread.sleep(200);
+
+        RedisSessionManager other = newSessionManager();
+        try {
+            GraphNode failover = (GraphNode) other.getSession(session.getId()).getAttribute("graph");
+            assertSame(failover, failover.self);
+            assertSame(failover.children.get(0), failover.children.get(1));
+        } finally {
+            other.destroy();
+        }
+    }
+
+    @Test
+    public void testTouchNotRecreate() throws Exception {
+        Session session = sessionManager.getSession(null, true);
+        String key = RedisSession.redisSessionKey(session.getId());
+        try (Jedis jedis = new Jedis("localhost", 6379)) {
+            assertTrue(jedis.configGet("notify-keyspace-events").get(1).contains("e"));
+            // 关闭通知，模拟通知丢失时批量touch晚于其它节点的删除
+            jedis.configSet("notify-keyspace-events", "");
+            try {
+                jedis.del(key);
+                session.setAttribute("playerId", 1001L);
+                session.touch();
+                Thread.sleep(200);
+                assertFalse(jedis.exists(key));
+                assertNull(sessionManager.getSession(session.getId()));
+                assertTrue(expiredLatch.await(2, TimeUnit.SECONDS));
+            } finally {
+                jedis.configSet("notify-keyspace-events", "Kgxe");
+            }
+        }
+    }
+
+    public static class GraphNode {
+        GraphNode self;
+        List<GraphNode> children;
+    }
+}
@@ -0,0 +1,92 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class SessionExpireTests {
+
+    @Test
+    public void testExpire() throws Exception {
+        List<Session> destroyed = new CopyOnWriteArrayList<>();
+        StandardSessionManager manager = newSessionManager(destroyed);
+        try {
+            StandardSession idle = (StandardSession) manager.getSession(null, true);
+            StandardSession active = (StandardSession) manager.getSession(null, true);
+            StandardSession removed = (StandardSession) manager.getSession(null, true);
+            manager.removeSession(removed.getId());
+            assertEquals(Collections.singletonList(removed), destroyed);
+            destroyed.clear();
+
+            // touch不移动定时，到期时仍然有效的session重新入轮
+            long deadline = System.currentTimeMillis() + 5000;
+            while (destroyed.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+                active.touch();
+            }
+            assertEquals(Collections.singletonList(idle), destroyed);
+            assertSame(active, manager.getSession(active.getId()));
+
+            deadline = System.currentTimeMillis() + 5000;
+            while (destroyed.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            assertEquals(Arrays.asList(idle, active), destroyed);
+            assertNull(manager.getSession(active.getId()));
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    private static StandardSessionManager newSessionManager(List<Session> destroyed) throws Exception {
+        Map<String, String> initParams = new HashMap<>();
+        initParams.put(ServletConfig.SESSION_TIMEOUT, "1");
+        initParams.put(ServletConfig.SESSION_TICK_TIME, "1");
+        ServletContext servletContext = new DefaultServletContext();
+        servletContext.setListeners(Collections.singletonList(new SessionListener() {
+            @Override
+            public void sessionCreated(SessionEvent se) {
+            }
+
+            @Override
+            public void sessionExpired(SessionEvent se) {
+            }
+
+            @Override
+            public void sessionDestroyed(SessionEvent se) {
+                destroyed.add(se.getSource());
+            }
+        }));
+        StandardSessionManager manager = new StandardSessionManager();
+        manager.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "gamerServlet";
+            }
+
+            @Override
+            public Class<? extends Servlet> servletClass() {
+                return null;
+            }
+
+            @Override
+            public String getInitParam(String key) {
+                return initParams.get(key);
+            }
+
+            @Override
+            public Collection<String> getInitParamNames() {
+                return initParams.keySet();
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return servletContext;
+            }
+        });
+        return manager;
+    }
+}
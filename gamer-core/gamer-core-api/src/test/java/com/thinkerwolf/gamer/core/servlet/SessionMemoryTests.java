@@ -0,0 +1,84 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SessionMemoryTests {
+
+    @Test
+    public void testIdleSessionFootprint() throws Exception {
+        int count = 1000000;
+        StandardSessionManager manager = new StandardSessionManager();
+        List<SessionAttributeListener> listeners = new ArrayList<>();
+        Session[] sessions = new Session[count];
+
+        long before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            Session session = new StandardSession("session-" + i, 600000, listeners, manager);
+            session.setAttribute("playerId", i);
+            sessions[i] = session;
+        }
+        long after = usedMemory();
+        // 不含id字符串
+        long idBytes = count * 64L;
+        long bytesPerSession = (after - before - idBytes) / count;
+        assertEquals(count - 1, sessions[count - 1].getAttribute("playerId"));
+        // 紧凑布局约160字节，使用ConcurrentHashMap等结构时超过300字节
+        assertTrue("1M idle sessions (1 attribute each) use " + bytesPerSession + " bytes/session",
+                bytesPerSession < 200);
+    }
+
+    @Test
+    public void testOffHeapAttribute() throws Exception {
+        StandardSessionManager offHeap = new StandardSessionManager() {
+            @Override
+            int getOffHeapThreshold() {
+                return 16;
+            }
+        };
+        StandardSessionManager onHeap = new StandardSessionManager();
+        byte[] data = new byte[1024];
+        Arrays.fill(data, (byte) 7);
+
+        Session session = new StandardSession("off-heap", 600000, new ArrayList<>(), offHeap);
+        session.setAttribute("data", data);
+        byte[] read = (byte[]) session.getAttribute("data");
+        // 堆外存储，读取结果缓存
+        assertNotSame(data, read);
+        assertArrayEquals(data, read);
+        assertSame(read, session.getAttribute("data"));
+
+        // 阈值按manager配置
+        Session other = new StandardSession("on-heap", 600000, new ArrayList<>(), onHeap);
+        other.setAttribute("data", data);
+        assertSame(data, other.getAttribute("data"));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(session);
+        }
+        Session copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            copy = (Session) in.readObject();
+        }
+        assertArrayEquals(data, (byte[]) copy.getAttribute("data"));
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,140 @@
+package com.thinkerwolf.gamer.core.servlet;
+
+import com.thinkerwolf.gamer.common.util.Stopwatch;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SessionSnapshotTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSaveAndRestore() throws Exception {
+        File file = new File(folder.getRoot(), "sessions.snapshot");
+        StandardSessionManager manager = newSessionManager(file);
+        Session s1 = manager.getSession(null, true);
+        s1.setAttribute("playerId", 1001L);
+        s1.setAttribute("name", "wukai");
+        Session s2 = manager.getSession(null, true);
+        manager.destroy();
+        assertTrue(file.exists());
+
+        StandardSessionManager restored = newSessionManager(file);
+        try {
+            Session r1 = restored.getSession(s1.getId());
+            assertNotNull(r1);
+            assertEquals(s1.getCreationTime(), r1.getCreationTime());
+            assertEquals(1001L, r1.getAttribute("playerId"));
+            assertEquals("wukai", r1.getAttribute("name"));
+            while (restored.isSnapshotLoading()) {
+                Thread.sleep(10);
+            }
+            assertNotNull(restored.getSession(s2.getId()));
+            assertNull(restored.getSession("unknown"));
+            assertFalse(file.exists());
+        } finally {
+            restored.destroy();
+        }
+    }
+
+    @Test
+    public void testKeepOnPartialFailure() throws Exception {
+        File file = new File(folder.getRoot(), "broken.snapshot");
+        long now = System.currentTimeMillis();
+        SessionSnapshot.write(file, Arrays.asList(
+                new SessionSnapshot.Record("session-0", now, now, 600000, null),
+                new SessionSnapshot.Record("session-1", now, now, 600000, null)));
+        // 破坏第二条记录的id长度
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(16 + 4 + "session-0".length() + 24 + 4);
+            raf.writeInt(-1);
+        }
+
+        StandardSessionManager manager = newSessionManager(file);
+        try {
+            while (manager.isSnapshotLoading()) {
+                Thread.sleep(10);
+            }
+            assertNotNull(manager.getSession("session-0"));
+            // 未完整恢复时保留快照
+            assertTrue(file.exists());
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    @Test
+    public void testReloadBenchmark() throws Exception {
+        File file = new File(folder.getRoot(), "bench.snapshot");
+        int count = 500000;
+        long now = System.currentTimeMillis();
+        byte[] attributes = new byte[32];
+        List<SessionSnapshot.Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new SessionSnapshot.Record("session-" + i, now, now, 600000, attributes));
+        }
+        SessionSnapshot.write(file, records);
+        records = null;
+
+        Stopwatch stopwatch = new Stopwatch();
+        stopwatch.start();
+        StandardSessionManager manager = newSessionManager(file);
+        try {
+            while (manager.isSnapshotLoading()) {
+                Thread.sleep(1);
+            }
+            stopwatch.stop();
+            assertNotNull(manager.getSession("session-0"));
+            assertNotNull(manager.getSession("session-" + (count - 1)));
+            // 属性不反序列化，加载速度远高于每秒5万个
+            assertTrue("Reload " + count + " sessions in " + stopwatch.getMillis() + "ms",
+                    stopwatch.getMillis() < count / 50);
+        } finally {
+            manager.destroy();
+        }
+    }
+
+    private static StandardSessionManager newSessionManager(File snapshotFile) throws Exception {
+        Map<String, String> initParams = new HashMap<>();
+        initParams.put(ServletConfig.SESSION_TIMEOUT, "600");
+        initParams.put(ServletConfig.SESSION_SNAPSHOT_FILE, snapshotFile.getPath());
+        ServletContext servletContext = new DefaultServletContext();
+        servletContext.setListeners(new ArrayList<>());
+        StandardSessionManager manager = new StandardSessionManager();
+        manager.init(new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "gamerServlet";
+            }
+
+            @Override
+            public Class<? extends Servlet> servletClass() {
+                return null;
+            }
+
+            @Override
+            public String getInitParam(String key) {
+                return initParams.get(key);
+            }
+
+            @Override
+            public Collection<String> getInitParamNames() {
+                return initParams.keySet();
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return servletContext;
+            }
+        });
+        return manager;
+    }
+}
@@ -4,6 +4,7 @@ import com.thinkerwolf.gamer.core.servlet.AbstractChPush;
 import com.thinkerwolf.gamer.remoting.Channel;
 import com.thinkerwolf.gamer.remoting.RemotingException;
 import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import com.thinkerwolf.gamer.remoting.tcp.Packets;
 
 /**
  * tcp push
@@ -16,9 +17,22 @@ public class TcpPush extends AbstractChPush {
 
     @Override
     public void push(int opcode, String command, byte[] content) {
+        push(opcode, command, content, 0);
+    }
+
+    /**
+     * 序号以负的requestId携带
+     */
+    @Override
+    public boolean isSequenced() {
+        return true;
+    }
+
+    @Override
+    public void push(int opcode, String command, byte[] content, long seq) {
         Packet packet = new Packet();
         packet.setOpcode(opcode);
-        packet.setRequestId(0);
+        packet.setRequestId(Packets.pushRequestId(seq));
         packet.setCommand(command);
         packet.setContent(content);
         try {
@@ -23,6 +23,7 @@ public class WebsocketDecorator implements Decorator {
         SUPPORTED_CONTENTS.add(CONTENT_TEXT);
         SUPPORTED_CONTENTS.add(CONTENT_JSON);
         SUPPORTED_CONTENTS.add(CONTENT_EXCEPTION);
+        SUPPORTED_CONTENTS.add(CONTENT_PROTOBUF);
     }
 
     @Override
@@ -31,7 +32,7 @@ public class WebsocketDecorator implements Decorator {
         byte[] content = model.getBytes();
         final int opcode = (int) response.getContentType();
         DataFrame frame;
-        if (opcode == CONTENT_BYTES) {
+        if (opcode == CONTENT_BYTES || opcode == CONTENT_PROTOBUF) {
             frame = new BinaryFrameType().create(true, content);
         } else {
             frame = new TextFrameType().create(true, content);
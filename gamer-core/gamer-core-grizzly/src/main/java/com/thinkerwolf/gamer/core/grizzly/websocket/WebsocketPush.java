@@ -21,7 +21,8 @@ public class WebsocketPush extends AbstractChPush {
         if (opcode == Content.CONTENT_TEXT ||
                 opcode == Content.CONTENT_JSON) {
             frame = new TextFrameType().create(true, content);
-        } else if (opcode == Content.CONTENT_BYTES) {
+        } else if (opcode == Content.CONTENT_BYTES ||
+                opcode == Content.CONTENT_PROTOBUF) {
             frame = new BinaryFrameType().create(true, content);
         } else if (opcode == Content.CONTENT_EXCEPTION) {
             frame = new TextFrameType().create(true, content);
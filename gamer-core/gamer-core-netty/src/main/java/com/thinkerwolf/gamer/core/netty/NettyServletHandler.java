@@ -4,8 +4,10 @@ import com.thinkerwolf.gamer.core.netty.http.Http2Request;
 import com.thinkerwolf.gamer.core.netty.http.Http2Response;
 import com.thinkerwolf.gamer.core.netty.http.HttpRequest;
 import com.thinkerwolf.gamer.core.netty.http.HttpResponse;
+import com.thinkerwolf.gamer.core.netty.tcp.TcpDecorator;
 import com.thinkerwolf.gamer.core.netty.tcp.TcpRequest;
 import com.thinkerwolf.gamer.core.netty.tcp.TcpResponse;
+import com.thinkerwolf.gamer.core.netty.websocket.WebsocketDecorator;
 import com.thinkerwolf.gamer.core.netty.websocket.WebsocketRequest;
 import com.thinkerwolf.gamer.core.netty.websocket.WebsocketResponse;
 import com.thinkerwolf.gamer.core.servlet.AbstractServletHandler;
@@ -17,8 +19,10 @@ import com.thinkerwolf.gamer.netty.NettyChannel;
 import com.thinkerwolf.gamer.netty.NettyConstants;
 import com.thinkerwolf.gamer.netty.http.Http2HeadersAndDataFrames;
 import com.thinkerwolf.gamer.remoting.Channel;
+import com.thinkerwolf.gamer.remoting.Content;
 import com.thinkerwolf.gamer.remoting.RemotingException;
 import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import com.thinkerwolf.gamer.remoting.tcp.Packets;
 import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.websocketx.*;
 import io.netty.util.AttributeKey;
@@ -35,6 +39,10 @@ public class NettyServletHandler extends AbstractServletHandler {
     public void received(Channel channel, Object message) throws RemotingException {
         if (message instanceof Packet) {
             Packet packet = (Packet) message;
+            if (Packets.isBatch(packet)) {
+                processBatchPacket(packet, channel);
+                return;
+            }
             TcpRequest request =
                     new TcpRequest(
                             packet.getRequestId(),
@@ -55,7 +63,7 @@ public class NettyServletHandler extends AbstractServletHandler {
                     new HttpRequest(channel, getServletConfig(), nettyRequest, response, compress);
             request.setAttribute(Request.DECORATOR_ATTRIBUTE, NettyConstants.HTTP_DECORATOR);
             // 长连接推送
-            boolean longHttp = RequestUtil.isLongHttp(request.getCommand());
+            boolean longHttp = RequestUtil.isLongHttp(request.getCommand()) || RequestUtil.isSse(request.getCommand());
             nettyChannel.attr(AttributeKey.valueOf(RequestUtil.LONG_HTTP)).set(longHttp);
             if (longHttp) {
                 return;
@@ -75,6 +83,26 @@ public class NettyServletHandler extends AbstractServletHandler {
         }
     }
 
+    protected void processBatchPacket(Packet packet, Channel channel) throws RemotingException {
+        serviceBatch(
+                packet.getContent(),
+                channel,
+                packet,
+                entry -> {
+                    TcpRequest request =
+                            new TcpRequest(
+                                    entry.getRequestId(),
+                                    entry.getCommand(),
+                                    channel,
+                                    entry.getContent(),
+                                    getServletConfig());
+                    request.setAttribute(Request.DECORATOR_ATTRIBUTE, NettyConstants.TCP_DECORATOR);
+                    return request;
+                },
+                () -> new TcpResponse(channel),
+                messages -> TcpDecorator.batch(packet.getRequestId(), packet.getCommand(), messages));
+    }
+
     protected void processWebSocketFrame(Channel channel, WebSocketFrame frame)
             throws RemotingException {
         if (frame instanceof CloseWebSocketFrame) {
@@ -90,10 +118,11 @@ public class NettyServletHandler extends AbstractServletHandler {
         }
     }
 
-    protected void processBinaryFrame(BinaryWebSocketFrame frame, final Channel channel) {
+    protected void processBinaryFrame(BinaryWebSocketFrame frame, final Channel channel)
+            throws RemotingException {
         ByteBuf buf = frame.content();
 
-        buf.readInt();
+        int opcode = buf.readInt();
         int requestId = buf.readInt();
         int commandLen = buf.readInt();
         int contentLen = buf.readInt();
@@ -103,6 +132,11 @@ public class NettyServletHandler extends AbstractServletHandler {
 
         buf.readBytes(command);
         buf.readBytes(content);
+        if (Content.CONTENT_BATCH.equals(opcode)) {
+            processBatchFrame(
+                    requestId, new String(command, CharsetUtil.UTF_8), content, frame, channel);
+            return;
+        }
         final WebsocketRequest request =
                 new WebsocketRequest(
                         requestId,
@@ -116,6 +150,29 @@ public class NettyServletHandler extends AbstractServletHandler {
         service(request, response, channel, frame);
     }
 
+    protected void processBatchFrame(
+            int requestId, String command, byte[] content, Object frame, final Channel channel)
+            throws RemotingException {
+        serviceBatch(
+                content,
+                channel,
+                frame,
+                entry -> {
+                    WebsocketRequest request =
+                            new WebsocketRequest(
+                                    entry.getRequestId(),
+                                    entry.getCommand(),
+                                    channel,
+                                    entry.getContent(),
+                                    getServletConfig());
+                    request.setAttribute(
+                            Request.DECORATOR_ATTRIBUTE, NettyConstants.WEBSOCKET_DECORATOR);
+                    return request;
+                },
+                () -> new WebsocketResponse(channel),
+                messages -> WebsocketDecorator.batch(requestId, command, messages));
+    }
+
     protected void processTextFrame(TextWebSocketFrame frame, final Channel channel) {
         String text = frame.text();
         Map<String, Object> params = RequestUtil.parseParams(text);
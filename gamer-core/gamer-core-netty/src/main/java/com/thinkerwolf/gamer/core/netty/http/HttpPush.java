@@ -1,16 +1,19 @@
 package com.thinkerwolf.gamer.core.netty.http;
 
+import com.thinkerwolf.gamer.core.netty.tcp.TcpPush;
 import com.thinkerwolf.gamer.core.servlet.AbstractChPush;
+import com.thinkerwolf.gamer.core.servlet.SharedPush;
 import com.thinkerwolf.gamer.netty.util.InternalHttpUtil;
 import com.thinkerwolf.gamer.remoting.Channel;
 import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.HttpChunkedInput;
 import io.netty.handler.stream.ChunkedWriteHandler;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 
-
-public class HttpPush extends AbstractChPush {
+/**
+ * http chunk推送，每个chunk与tcp推送包格式相同，组推送时与{@link TcpPush}共享编码结果
+ */
+public class HttpPush extends AbstractChPush implements SharedPush {
 
     private final io.netty.handler.codec.http.HttpRequest nettyRequest;
     private HttpChunkedInput chunkedInput;
@@ -23,22 +26,38 @@ public class HttpPush extends AbstractChPush {
 
     @Override
     public void push(int opcode, String command, byte[] content) {
+        io.netty.channel.Channel nettyChannel = (io.netty.channel.Channel) getChannel().innerCh();
+        writeChunk(TcpPush.encodePacket(nettyChannel.config().getAllocator(), opcode, command, content));
+    }
+
+    @Override
+    public Object encodingKey() {
+        return TcpPush.PACKET_ENCODING;
+    }
+
+    @Override
+    public Object encode(int opcode, String command, byte[] content) {
+        io.netty.channel.Channel nettyChannel = (io.netty.channel.Channel) getChannel().innerCh();
+        return TcpPush.encodePacket(nettyChannel.alloc(), opcode, command, content);
+    }
+
+    @Override
+    public void pushEncoded(Object encoded) {
+        writeChunk(((ByteBuf) encoded).retainedDuplicate());
+    }
+
+    @Override
+    public void release(Object encoded) {
+        ((ByteBuf) encoded).release();
+    }
+
+    private void writeChunk(ByteBuf buf) {
         io.netty.channel.Channel nettyChannel = (io.netty.channel.Channel) getChannel().innerCh();
         if (chunkedInput == null) {
             pushChunkedInput = new PushChunkedInput();
             chunkedInput = new HttpChunkedInput(pushChunkedInput);
-            InternalHttpUtil.chunkResponse((io.netty.channel.Channel) getChannel().innerCh(), nettyRequest, chunkedInput);
+            InternalHttpUtil.chunkResponse(nettyChannel, nettyRequest, chunkedInput);
         }
-        ByteBuf buf = nettyChannel.config().getAllocator().buffer();
-        buf.writeInt(opcode);
-        buf.writeInt(0);
-
-        byte[] commandBytes = command.getBytes(UTF_8);
-        buf.writeInt(commandBytes.length);
-        buf.writeInt(content.length);
-        buf.writeBytes(commandBytes);
-        buf.writeBytes(content);
-
         pushChunkedInput.writeChunk(buf);
 
         ChunkedWriteHandler chunkedWriteHandler = nettyChannel.pipeline().get(ChunkedWriteHandler.class);
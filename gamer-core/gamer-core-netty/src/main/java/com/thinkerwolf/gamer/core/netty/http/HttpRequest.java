@@ -7,6 +7,7 @@ import com.thinkerwolf.gamer.netty.util.InternalHttpUtil;
 import com.thinkerwolf.gamer.remoting.Channel;
 import com.thinkerwolf.gamer.remoting.Protocol;
 import io.netty.handler.codec.http.HttpUtil;
+import org.apache.commons.lang.math.NumberUtils;
 import io.netty.handler.codec.http.cookie.Cookie;
 import io.netty.handler.codec.http.cookie.DefaultCookie;
 
@@ -46,6 +47,14 @@ public class HttpRequest extends AbstractChRequest {
             if (session != null) {
                 session.setPush(new HttpPush(getChannel(), nettyRequest));
             }
+        } else if (RequestUtil.isSse(getCommand())) {
+            Session session = getSession(false);
+            if (session != null) {
+                int historySize = NumberUtils.toInt(servletConfig.getInitParam(ServletConfig.SSE_HISTORY_SIZE), SsePush.DEFAULT_HISTORY_SIZE);
+                session.setPush(new SsePush(getChannel(), nettyRequest, session.getPush(), historySize));
+            } else {
+                SsePush.reject(getChannel());
+            }
         }
         Object obj = getAttribute("requestId");
         if (obj != null) {
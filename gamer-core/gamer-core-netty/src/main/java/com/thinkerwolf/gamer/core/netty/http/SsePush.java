@@ -0,0 +1,234 @@
+package com.thinkerwolf.gamer.core.netty.http;
+
+import com.thinkerwolf.gamer.core.servlet.AbstractChPush;
+import com.thinkerwolf.gamer.core.servlet.Push;
+import com.thinkerwolf.gamer.remoting.Channel;
+import com.thinkerwolf.gamer.remoting.Content;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.apache.commons.lang.math.NumberUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Server-Sent Events推送，响应为text/event-stream。
+ * <pre>
+ * id: 事件id
+ * event: 命令
+ * data: 内容，文本类型按行输出，二进制类型为Base64
+ * </pre>
+ * 推送先入队，同一轮事件循环内的多次推送合并为一次写出。
+ * 保留最近的事件，客户端重连时按Last-Event-ID补发之后的事件。
+ * 重连的推送与之前的推送共享同一事件流，事件id由事件流统一分配；
+ * 接管时之前推送未写出的消息转给新推送，接管后仍发往之前推送的消息同样转发，不丢失也不重复编号；
+ * 之前推送的响应随即结束并关闭连接。
+ *
+ * @author wukai
+ */
+public class SsePush extends AbstractChPush {
+
+    public static final int DEFAULT_HISTORY_SIZE = 256;
+
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+    private static final String TEXT_EVENT_STREAM = "text/event-stream; charset=UTF-8";
+
+    private final io.netty.channel.Channel nettyChannel;
+    private final int historySize;
+    private final Queue<Msg> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Runnable flushTask = this::flush;
+    private final EventStream stream;
+
+    /**
+     * @param channel      通道
+     * @param nettyRequest sse请求
+     * @param previous     session之前的推送，同为SsePush时接管其事件流并补发
+     * @param historySize  保留的事件数
+     */
+    public SsePush(Channel channel, io.netty.handler.codec.http.HttpRequest nettyRequest, Push previous, int historySize) {
+        super(channel);
+        this.nettyChannel = (io.netty.channel.Channel) channel.innerCh();
+        this.historySize = historySize;
+        this.stream = previous instanceof SsePush ? ((SsePush) previous).stream : new EventStream();
+
+        io.netty.handler.codec.http.HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().add(HttpHeaderNames.CONTENT_TYPE, TEXT_EVENT_STREAM);
+        response.headers().add(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE);
+        response.headers().add(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+        nettyChannel.write(response);
+
+        List<byte[]> replay = new ArrayList<>();
+        synchronized (stream) {
+            if (previous instanceof SsePush) {
+                long lastEventId = NumberUtils.toLong(nettyRequest.headers().get(LAST_EVENT_ID), -1);
+                if (lastEventId >= 0) {
+                    for (Event event : stream.history) {
+                        if (event.id > lastEventId) {
+                            replay.add(event.data);
+                        }
+                    }
+                }
+                ((SsePush) previous).drainTo(pending);
+            }
+            stream.current = this;
+        }
+        if (replay.isEmpty()) {
+            nettyChannel.flush();
+        } else {
+            nettyChannel.writeAndFlush(new DefaultHttpContent(Unpooled.wrappedBuffer(replay.toArray(new byte[0][]))));
+        }
+        if (!pending.isEmpty()) {
+            scheduleFlush();
+        }
+        if (previous instanceof SsePush) {
+            ((SsePush) previous).end(nettyChannel);
+        }
+    }
+
+    /**
+     * sse请求没有session时以401结束响应并关闭连接，EventSource收到非200响应后不再重连
+     */
+    public static void reject(Channel channel) {
+        io.netty.channel.Channel ch = (io.netty.channel.Channel) channel.innerCh();
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.UNAUTHORIZED);
+        HttpUtil.setContentLength(response, 0);
+        ch.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    /**
+     * 被接管后结束响应并关闭连接，之后发往本推送的消息仍转发给接管的推送
+     */
+    private void end(io.netty.channel.Channel takeover) {
+        if (nettyChannel != takeover && nettyChannel.isActive()) {
+            nettyChannel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    @Override
+    public void push(int opcode, String command, byte[] content) {
+        pending.offer(new Msg(opcode, command, content));
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            nettyChannel.eventLoop().execute(flushTask);
+        }
+    }
+
+    /**
+     * 未写出的消息转给接管的推送，调用方持有事件流的锁
+     */
+    private void drainTo(Queue<Msg> queue) {
+        for (Msg msg = pending.poll(); msg != null; msg = pending.poll()) {
+            queue.offer(msg);
+        }
+    }
+
+    private void flush() {
+        flushScheduled.set(false);
+        List<byte[]> batch = new ArrayList<>();
+        SsePush current;
+        synchronized (stream) {
+            current = stream.current;
+            if (current != this) {
+                // 已被接管，转发给当前推送
+                drainTo(current.pending);
+            } else {
+                for (Msg msg = pending.poll(); msg != null; msg = pending.poll()) {
+                    long id = stream.nextId++;
+                    Event event = new Event(id, encode(id, msg));
+                    if (historySize > 0) {
+                        if (stream.history.size() >= historySize) {
+                            stream.history.poll();
+                        }
+                        stream.history.add(event);
+                    }
+                    batch.add(event.data);
+                }
+            }
+        }
+        if (current != this) {
+            current.scheduleFlush();
+        } else if (!batch.isEmpty() && nettyChannel.isActive()) {
+            nettyChannel.writeAndFlush(new DefaultHttpContent(Unpooled.wrappedBuffer(batch.toArray(new byte[0][]))));
+        }
+    }
+
+    private static byte[] encode(long id, Msg msg) {
+        StringBuilder sb = new StringBuilder(64 + (msg.content == null ? 0 : msg.content.length));
+        sb.append("id: ").append(id).append('\n');
+        if (msg.command != null) {
+            sb.append("event: ").append(msg.command).append('\n');
+        }
+        if (msg.content == null || msg.content.length == 0) {
+            sb.append("data:\n");
+        } else if (msg.opcode == Content.CONTENT_TEXT || msg.opcode == Content.CONTENT_JSON
+                || msg.opcode == Content.CONTENT_EXCEPTION) {
+            String text = new String(msg.content, UTF_8);
+            int start = 0;
+            while (start <= text.length()) {
+                int end = text.indexOf('\n', start);
+                if (end < 0) {
+                    end = text.length();
+                }
+                int lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+                sb.append("data: ").append(text, start, lineEnd).append('\n');
+                start = end + 1;
+            }
+        } else {
+            sb.append("data: ").append(Base64.getEncoder().encodeToString(msg.content)).append('\n');
+        }
+        sb.append('\n');
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    private static class Msg {
+        final int opcode;
+        final String command;
+        final byte[] content;
+
+        Msg(int opcode, String command, byte[] content) {
+            this.opcode = opcode;
+            this.command = command;
+            this.content = content;
+        }
+    }
+
+    /**
+     * session的事件流，由先后的推送共享，所有字段在其锁内访问
+     */
+    private static class EventStream {
+        final ArrayDeque<Event> history = new ArrayDeque<>();
+        long nextId = 1;
+        SsePush current;
+    }
+
+    private static class Event {
+        final long id;
+        final byte[] data;
+
+        Event(long id, byte[] data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+}
@@ -5,6 +5,10 @@ import com.thinkerwolf.gamer.core.mvc.model.Model;
 import com.thinkerwolf.gamer.core.servlet.Request;
 import com.thinkerwolf.gamer.core.servlet.Response;
 import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import com.thinkerwolf.gamer.remoting.tcp.Packets;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class TcpDecorator implements Decorator {
 
@@ -18,4 +22,22 @@ public class TcpDecorator implements Decorator {
         packet.setContent(bytes);
         return packet;
     }
+
+    /**
+     * 将批量请求中各条目的响应合并为一个批量包
+     *
+     * @param requestId 批量请求ID
+     * @param command   批量请求命令
+     * @param messages  各条目decorate后的响应
+     * @return 批量包
+     */
+    public static Packet batch(int requestId, String command, List<Object> messages) {
+        List<Packet> packets = new ArrayList<>(messages.size());
+        for (Object msg : messages) {
+            if (msg instanceof Packet) {
+                packets.add((Packet) msg);
+            }
+        }
+        return Packets.newBatch(requestId, command, packets);
+    }
 }
@@ -1,14 +1,28 @@
 package com.thinkerwolf.gamer.core.netty.tcp;
 
 import com.thinkerwolf.gamer.core.servlet.AbstractChPush;
+import com.thinkerwolf.gamer.core.servlet.SharedPush;
+import com.thinkerwolf.gamer.netty.tcp.PacketEncoder;
 import com.thinkerwolf.gamer.remoting.Channel;
 import com.thinkerwolf.gamer.remoting.RemotingException;
 import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import com.thinkerwolf.gamer.remoting.tcp.Packets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * tcp push
  */
-public class TcpPush extends AbstractChPush {
+public class TcpPush extends AbstractChPush implements SharedPush {
+
+    /**
+     * Packet二进制编码格式，与{@link PacketEncoder}一致
+     */
+    public static final Object PACKET_ENCODING = PacketEncoder.class;
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
 
     public TcpPush(Channel channel) {
         super(channel);
@@ -16,13 +30,95 @@ public class TcpPush extends AbstractChPush {
 
     @Override
     public void push(int opcode, String command, byte[] content) {
+        push(opcode, command, content, 0);
+    }
+
+    /**
+     * 序号以负的requestId携带
+     */
+    @Override
+    public boolean isSequenced() {
+        return true;
+    }
+
+    @Override
+    public void push(int opcode, String command, byte[] content, long seq) {
         Packet packet = new Packet();
         packet.setOpcode(opcode);
-        packet.setRequestId(0);
+        packet.setRequestId(Packets.pushRequestId(seq));
         packet.setCommand(command);
         packet.setContent(content);
+        send(packet);
+    }
+
+    @Override
+    public boolean isWritable() {
+        return isPushable() && ((io.netty.channel.Channel) getChannel().innerCh()).isWritable();
+    }
+
+    /**
+     * protobuf编码的通道不共享编码结果
+     */
+    @Override
+    public Object encodingKey() {
+        io.netty.channel.Channel nettyChannel = (io.netty.channel.Channel) getChannel().innerCh();
+        return nettyChannel.pipeline().get(PacketEncoder.class) != null ? PACKET_ENCODING : null;
+    }
+
+    @Override
+    public Object encode(int opcode, String command, byte[] content) {
+        io.netty.channel.Channel nettyChannel = (io.netty.channel.Channel) getChannel().innerCh();
+        return encodePacket(nettyChannel.alloc(), opcode, command, content);
+    }
+
+    @Override
+    public void pushEncoded(Object encoded) {
+        // ByteBuf不经过PacketEncoder直接写出
+        send(((ByteBuf) encoded).retainedDuplicate());
+    }
+
+    /**
+     * 复制包头写入序号，包体共享
+     */
+    @Override
+    public void pushEncoded(Object encoded, long seq) {
+        if (seq <= 0) {
+            pushEncoded(encoded);
+            return;
+        }
+        ByteBuf buf = (ByteBuf) encoded;
+        io.netty.channel.Channel nettyChannel = (io.netty.channel.Channel) getChannel().innerCh();
+        ByteBuf header = nettyChannel.alloc().buffer(Packets.HEADER_LENGTH);
+        header.writeBytes(buf, buf.readerIndex(), Packets.HEADER_LENGTH);
+        header.setInt(4, Packets.pushRequestId(seq));
+        ByteBuf body = buf.retainedSlice(buf.readerIndex() + Packets.HEADER_LENGTH, buf.readableBytes() - Packets.HEADER_LENGTH);
+        send(nettyChannel.alloc().compositeBuffer(2).addComponents(true, header, body));
+    }
+
+    @Override
+    public void release(Object encoded) {
+        ((ByteBuf) encoded).release();
+    }
+
+    /**
+     * 按{@link PacketEncoder}的格式编码推送包
+     */
+    public static ByteBuf encodePacket(ByteBufAllocator alloc, int opcode, String command, byte[] content) {
+        byte[] commandBytes = command == null ? EMPTY_BYTES : command.getBytes(UTF_8);
+        byte[] contentBytes = content == null ? EMPTY_BYTES : content;
+        ByteBuf buf = alloc.buffer(Packets.HEADER_LENGTH + commandBytes.length + contentBytes.length);
+        buf.writeInt(opcode);
+        buf.writeInt(0);
+        buf.writeInt(commandBytes.length);
+        buf.writeInt(contentBytes.length);
+        buf.writeBytes(commandBytes);
+        buf.writeBytes(contentBytes);
+        return buf;
+    }
+
+    private void send(Object msg) {
         try {
-            getChannel().send(packet);
+            getChannel().send(msg);
         } catch (RemotingException e) {
             if (e.getCause() != null) {
                 throw new RuntimeException(e.getCause());
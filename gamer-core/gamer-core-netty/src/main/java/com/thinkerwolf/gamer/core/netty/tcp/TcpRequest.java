@@ -25,6 +25,7 @@ public class TcpRequest extends AbstractChRequest {
         Session session = getSession(false);
         if (session != null) {
             session.setPush(newPush());
+            RequestUtil.handlePushAck(this, session);
         }
     }
 
@@ -9,6 +9,8 @@ import com.thinkerwolf.gamer.netty.NettyConstants;
 import com.thinkerwolf.gamer.remoting.Channel;
 import com.thinkerwolf.gamer.remoting.RemotingException;
 import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import com.thinkerwolf.gamer.remoting.tcp.Packets;
+
 
 /**
  * @author wukai
@@ -30,10 +32,25 @@ public class TcpServletHandler extends AbstractServletHandler {
     @Override
     public void received(Channel ch, Object message) throws RemotingException {
         Packet packet = (Packet) message;
+        if (Packets.isBatch(packet)) {
+            processBatchPacket(packet, ch);
+            return;
+        }
         TcpRequest request = new TcpRequest(packet.getRequestId(), packet.getCommand(), ch, packet.getContent(), getServletConfig());
         request.setAttribute(Request.DECORATOR_ATTRIBUTE, NettyConstants.TCP_DECORATOR);
         TcpResponse response = new TcpResponse(ch);
         service(request, response, ch, message);
     }
 
+    private void processBatchPacket(Packet packet, Channel ch) throws RemotingException {
+        serviceBatch(packet.getContent(), ch, packet,
+                entry -> {
+                    TcpRequest request = new TcpRequest(entry.getRequestId(), entry.getCommand(), ch, entry.getContent(), getServletConfig());
+                    request.setAttribute(Request.DECORATOR_ATTRIBUTE, NettyConstants.TCP_DECORATOR);
+                    return request;
+                },
+                () -> new TcpResponse(ch),
+                messages -> TcpDecorator.batch(packet.getRequestId(), packet.getCommand(), messages));
+    }
+
 }
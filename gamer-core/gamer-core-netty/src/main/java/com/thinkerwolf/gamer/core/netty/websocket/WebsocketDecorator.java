@@ -11,6 +11,7 @@ import com.thinkerwolf.gamer.remoting.Content;
 
 import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class WebsocketDecorator implements Decorator {
@@ -21,6 +22,7 @@ public class WebsocketDecorator implements Decorator {
         SUPPORTED_CONTENTS.add(Content.CONTENT_TEXT);
         SUPPORTED_CONTENTS.add(Content.CONTENT_JSON);
         SUPPORTED_CONTENTS.add(Content.CONTENT_EXCEPTION);
+        SUPPORTED_CONTENTS.add(Content.CONTENT_PROTOBUF);
     }
 
     @Override
@@ -51,6 +53,36 @@ public class WebsocketDecorator implements Decorator {
         //return new BinaryWebSocketFrame(buf);
     }
 
+    /**
+     * 将批量请求中各条目的响应合并为一个批量响应，内容为各条目完整的编码数据
+     *
+     * @param requestId 批量请求ID
+     * @param command   批量请求命令
+     * @param messages  各条目decorate后的响应
+     * @return 批量响应
+     */
+    public static ChannelBuffer batch(int requestId, String command, List<Object> messages) {
+        byte[] commandBytes = command.getBytes(StandardCharsets.UTF_8);
+        int contentLen = 0;
+        for (Object msg : messages) {
+            if (msg instanceof ChannelBuffer) {
+                contentLen += ((ChannelBuffer) msg).readableBytes();
+            }
+        }
+        ChannelBuffer cb = ChannelBuffers.buffer(16 + commandBytes.length + contentLen);
+        cb.writeInt(Content.CONTENT_BATCH);
+        cb.writeInt(requestId);
+        cb.writeInt(commandBytes.length);
+        cb.writeInt(contentLen);
+        cb.writeBytes(commandBytes);
+        for (Object msg : messages) {
+            if (msg instanceof ChannelBuffer) {
+                cb.writeBytes((ChannelBuffer) msg);
+            }
+        }
+        return cb;
+    }
+
     private static void checkContent(Object contentType) {
         if (!SUPPORTED_CONTENTS.contains(contentType)) {
             throw new UnsupportedOperationException("Unsupported websocket content type " + contentType);
@@ -1,7 +1,7 @@
 package com.thinkerwolf.gamer.core.netty.websocket;
 
 import com.thinkerwolf.gamer.core.servlet.AbstractChPush;
-import com.thinkerwolf.gamer.core.util.ResponseUtil;
+import com.thinkerwolf.gamer.core.servlet.SharedPush;
 import com.thinkerwolf.gamer.remoting.Content;
 import com.thinkerwolf.gamer.remoting.RemotingException;
 import com.thinkerwolf.gamer.remoting.Channel;
@@ -11,7 +11,7 @@ import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 
-public class WebsocketPush extends AbstractChPush {
+public class WebsocketPush extends AbstractChPush implements SharedPush {
 
     public WebsocketPush(Channel channel) {
         super(channel);
@@ -21,19 +21,57 @@ public class WebsocketPush extends AbstractChPush {
     public void push(int opcode, String command, byte[] content) {
         ByteBuf buf = Unpooled.buffer();
         buf.writeBytes(content);
+        send(newFrame(opcode, buf));
+    }
+
+    @Override
+    public boolean isWritable() {
+        return isPushable() && ((io.netty.channel.Channel) getChannel().innerCh()).isWritable();
+    }
+
+    @Override
+    public Object encodingKey() {
+        return WebsocketPush.class;
+    }
+
+    @Override
+    public Object encode(int opcode, String command, byte[] content) {
+        io.netty.channel.Channel nettyChannel = (io.netty.channel.Channel) getChannel().innerCh();
+        ByteBuf buf = nettyChannel.alloc().buffer(content.length);
+        buf.writeBytes(content);
+        try {
+            return newFrame(opcode, buf);
+        } catch (RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void pushEncoded(Object encoded) {
+        send(((WebSocketFrame) encoded).retainedDuplicate());
+    }
 
-        WebSocketFrame frame;
+    @Override
+    public void release(Object encoded) {
+        ((WebSocketFrame) encoded).release();
+    }
+
+    private static WebSocketFrame newFrame(int opcode, ByteBuf buf) {
         if (opcode == Content.CONTENT_TEXT ||
                 opcode == Content.CONTENT_JSON) {
-            frame = new TextWebSocketFrame(buf);
-        } else if (opcode == Content.CONTENT_BYTES) {
-            frame = new BinaryWebSocketFrame(buf);
+            return new TextWebSocketFrame(buf);
+        } else if (opcode == Content.CONTENT_BYTES ||
+                opcode == Content.CONTENT_PROTOBUF) {
+            return new BinaryWebSocketFrame(buf);
         } else if (opcode == Content.CONTENT_EXCEPTION) {
-            frame = new TextWebSocketFrame(buf);
+            return new TextWebSocketFrame(buf);
         } else {
             throw new UnsupportedOperationException("Unsupported websocket content type " + opcode);
         }
+    }
 
+    private void send(WebSocketFrame frame) {
         try {
             getChannel().send(frame);
         } catch (RemotingException e) {
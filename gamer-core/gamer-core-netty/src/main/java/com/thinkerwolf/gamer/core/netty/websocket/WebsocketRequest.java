@@ -19,6 +19,7 @@ public class WebsocketRequest extends AbstractChRequest {
         Session session = getSession(false);
         if (session != null) {
             session.setPush(newPush());
+            RequestUtil.handlePushAck(this, session);
         }
     }
 
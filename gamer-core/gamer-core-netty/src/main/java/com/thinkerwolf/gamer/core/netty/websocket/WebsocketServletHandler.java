@@ -73,10 +73,10 @@ public class WebsocketServletHandler extends AbstractServletHandler {
         return super.sent(channel, message);
     }
 
-    private void processBinaryFrame(BinaryWebSocketFrame frame, final Channel channel) {
+    private void processBinaryFrame(BinaryWebSocketFrame frame, final Channel channel) throws RemotingException {
         ByteBuf buf = frame.content();
 
-        buf.readInt();
+        int opcode = buf.readInt();
         int requestId = buf.readInt();
         int commandLen = buf.readInt();
         int contentLen = buf.readInt();
@@ -86,6 +86,10 @@ public class WebsocketServletHandler extends AbstractServletHandler {
 
         buf.readBytes(command);
         buf.readBytes(content);
+        if (Content.CONTENT_BATCH.equals(opcode)) {
+            processBatchFrame(requestId, new String(command, CharsetUtil.UTF_8), content, frame, channel);
+            return;
+        }
         final WebsocketRequest request = new WebsocketRequest(requestId, new String(command, CharsetUtil.UTF_8), channel, content, getServletConfig());
         final WebsocketResponse response = new WebsocketResponse(channel);
 
@@ -93,6 +97,16 @@ public class WebsocketServletHandler extends AbstractServletHandler {
         service(request, response, channel, frame);
     }
 
+    private void processBatchFrame(int requestId, String command, byte[] content, BinaryWebSocketFrame frame, final Channel channel) throws RemotingException {
+        serviceBatch(content, channel, frame,
+                entry -> {
+                    WebsocketRequest request = new WebsocketRequest(entry.getRequestId(), entry.getCommand(), channel, entry.getContent(), getServletConfig());
+                    request.setAttribute(Request.DECORATOR_ATTRIBUTE, NettyConstants.WEBSOCKET_DECORATOR);
+                    return request;
+                },
+                () -> new WebsocketResponse(channel),
+                messages -> WebsocketDecorator.batch(requestId, command, messages));
+    }
 
     private void processTextFrame(TextWebSocketFrame frame, final Channel channel) throws RemotingException {
         String text = frame.text();
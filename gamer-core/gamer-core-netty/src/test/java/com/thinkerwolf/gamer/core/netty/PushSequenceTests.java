@@ -0,0 +1,133 @@
+package com.thinkerwolf.gamer.core.netty;
+
+import com.thinkerwolf.gamer.core.netty.tcp.TcpPush;
+import com.thinkerwolf.gamer.core.netty.websocket.WebsocketPush;
+import com.thinkerwolf.gamer.core.servlet.*;
+import com.thinkerwolf.gamer.core.util.RequestUtil;
+import com.thinkerwolf.gamer.netty.NettyChannel;
+import com.thinkerwolf.gamer.remoting.Content;
+import com.thinkerwolf.gamer.remoting.Protocol;
+import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class PushSequenceTests {
+
+    private static final OfflinePushPolicy POLICY = new OfflinePushPolicy(16, Collections.emptySet(), null, 0, 8, 0);
+
+    @Test
+    public void testTcpAckResumeResend() {
+        StandardSession session = newSession();
+        EmbeddedChannel ch1 = new EmbeddedChannel();
+        session.setPush(new TcpPush(new NettyChannel(ch1, null, null)));
+        for (int i = 1; i <= 3; i++) {
+            session.push(Content.CONTENT_TEXT, "msg", String.valueOf(i).getBytes(UTF_8));
+        }
+        // 序号以负的requestId携带
+        assertEquals(Arrays.asList(-1, -2, -3), readRequestIds(ch1));
+
+        RequestUtil.handlePushAck(newRequest(ch1, RequestUtil.PUSH_ACK_KEY, "2"), session);
+        session.push(Content.CONTENT_TEXT, "msg", "4".getBytes(UTF_8));
+        ch1.close();
+        session.push(Content.CONTENT_TEXT, "msg", "5".getBytes(UTF_8));
+        readRequestIds(ch1);
+
+        // 重连后补发确认之后的推送，客户端只收到3时补发4、5
+        EmbeddedChannel ch2 = new EmbeddedChannel();
+        session.setPush(new TcpPush(new NettyChannel(ch2, null, null)));
+        RequestUtil.handlePushAck(newRequest(ch2, RequestUtil.PUSH_RESUME_KEY, "3"), session);
+        List<Packet> resent = readPackets(ch2);
+        assertEquals(2, resent.size());
+        assertEquals(-4, resent.get(0).getRequestId());
+        assertEquals("4", new String(resent.get(0).getContent(), UTF_8));
+        assertEquals(-5, resent.get(1).getRequestId());
+        assertEquals("5", new String(resent.get(1).getContent(), UTF_8));
+
+        session.push(Content.CONTENT_TEXT, "msg", "6".getBytes(UTF_8));
+        assertEquals(Arrays.asList(-6), readRequestIds(ch2));
+    }
+
+    @Test
+    public void testWebsocketUnsequenced() {
+        StandardSession session = newSession();
+        EmbeddedChannel ch1 = new EmbeddedChannel();
+        session.setPush(new WebsocketPush(new NettyChannel(ch1, null, null)));
+        session.push(Content.CONTENT_TEXT, "msg", "1".getBytes(UTF_8));
+        assertEquals("1", readText(ch1));
+
+        // websocket不携带序号，离线推送进入离线缓冲，重连后直接补发
+        ch1.close();
+        session.push(Content.CONTENT_TEXT, "msg", "2".getBytes(UTF_8));
+        EmbeddedChannel ch2 = new EmbeddedChannel();
+        session.setPush(new WebsocketPush(new NettyChannel(ch2, null, null)));
+        session.push(Content.CONTENT_TEXT, "msg", "3".getBytes(UTF_8));
+        assertEquals("2", readText(ch2));
+        assertEquals("3", readText(ch2));
+        assertNull(ch2.readOutbound());
+    }
+
+    private static StandardSession newSession() {
+        StandardSessionManager manager = new StandardSessionManager() {
+            @Override
+            protected OfflinePushPolicy getOfflinePushPolicy() {
+                return POLICY;
+            }
+        };
+        return new StandardSession("s-1", 600000, new ArrayList<>(), manager);
+    }
+
+    private static Request newRequest(EmbeddedChannel ch, String key, String value) {
+        AbstractChRequest request = new AbstractChRequest(1, "cmd", new NettyChannel(ch, null, null), null) {
+            @Override
+            public byte[] getContent() {
+                return new byte[0];
+            }
+
+            @Override
+            public Protocol getProtocol() {
+                return Protocol.TCP;
+            }
+
+            @Override
+            public Push newPush() {
+                return null;
+            }
+        };
+        request.setAttribute(key, value);
+        return request;
+    }
+
+    private static List<Packet> readPackets(EmbeddedChannel ch) {
+        List<Packet> packets = new ArrayList<>();
+        for (Object msg = ch.readOutbound(); msg != null; msg = ch.readOutbound()) {
+            packets.add((Packet) msg);
+        }
+        return packets;
+    }
+
+    private static List<Integer> readRequestIds(EmbeddedChannel ch) {
+        List<Integer> ids = new ArrayList<>();
+        for (Packet packet : readPackets(ch)) {
+            ids.add(packet.getRequestId());
+        }
+        return ids;
+    }
+
+    private static String readText(EmbeddedChannel ch) {
+        TextWebSocketFrame frame = ch.readOutbound();
+        try {
+            return frame.text();
+        } finally {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.thinkerwolf.gamer.core.netty.http;
+
+import com.thinkerwolf.gamer.netty.NettyChannel;
+import com.thinkerwolf.gamer.remoting.Content;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class SsePushTests {
+
+    @Test
+    public void testFraming() {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        SsePush push = new SsePush(new NettyChannel(ch, null, null), newRequest(null), null, 16);
+
+        io.netty.handler.codec.http.HttpResponse response = ch.readOutbound();
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertEquals("text/event-stream; charset=UTF-8", response.headers().get(HttpHeaderNames.CONTENT_TYPE));
+        assertEquals("no-cache", response.headers().get(HttpHeaderNames.CACHE_CONTROL));
+        assertEquals("chunked", response.headers().get(HttpHeaderNames.TRANSFER_ENCODING));
+
+        push.push(Content.CONTENT_TEXT, "chat", "hello\r\nworld".getBytes(UTF_8));
+        push.push(Content.CONTENT_PROTOBUF, "state", new byte[]{1, 2, 3});
+        push.push(Content.CONTENT_JSON, null, new byte[0]);
+        ch.runPendingTasks();
+
+        // 同一轮事件循环的推送合并为一次写出
+        assertEquals("id: 1\nevent: chat\ndata: hello\ndata: world\n\n"
+                + "id: 2\nevent: state\ndata: AQID\n\n"
+                + "id: 3\ndata:\n\n", readContent(ch));
+        assertNull(ch.readOutbound());
+    }
+
+    @Test
+    public void testLastEventIdReplay() {
+        EmbeddedChannel ch1 = new EmbeddedChannel();
+        SsePush push1 = new SsePush(new NettyChannel(ch1, null, null), newRequest(null), null, 16);
+        ch1.readOutbound();
+        for (int i = 1; i <= 3; i++) {
+            push1.push(Content.CONTENT_TEXT, "msg", String.valueOf(i).getBytes(UTF_8));
+        }
+        ch1.runPendingTasks();
+        readContent(ch1);
+        // 重连前尚未写出的消息
+        push1.push(Content.CONTENT_TEXT, "msg", "4".getBytes(UTF_8));
+
+        EmbeddedChannel ch2 = new EmbeddedChannel();
+        SsePush push2 = new SsePush(new NettyChannel(ch2, null, null), newRequest("1"), push1, 16);
+        ch2.readOutbound();
+        assertEquals("id: 2\nevent: msg\ndata: 2\n\nid: 3\nevent: msg\ndata: 3\n\n", readContent(ch2));
+
+        // 旧推送的响应结束并关闭连接
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, ch1.readOutbound());
+        assertFalse(ch1.isOpen());
+
+        // 接管后仍发往旧推送的消息转发给新推送，编号不重复
+        push1.push(Content.CONTENT_TEXT, "msg", "5".getBytes(UTF_8));
+        ch1.runPendingTasks();
+        assertNull(ch1.readOutbound());
+        ch2.runPendingTasks();
+        push2.push(Content.CONTENT_TEXT, "msg", "6".getBytes(UTF_8));
+        ch2.runPendingTasks();
+        assertEquals("id: 4\nevent: msg\ndata: 4\n\nid: 5\nevent: msg\ndata: 5\n\n", readContent(ch2));
+        assertEquals("id: 6\nevent: msg\ndata: 6\n\n", readContent(ch2));
+
+        // 无Last-Event-ID时不补发
+        EmbeddedChannel ch3 = new EmbeddedChannel();
+        new SsePush(new NettyChannel(ch3, null, null), newRequest(null), push2, 16);
+        ch3.readOutbound();
+        assertNull(ch3.readOutbound());
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, ch2.readOutbound());
+        assertFalse(ch2.isOpen());
+        assertTrue(ch3.isOpen());
+    }
+
+    @Test
+    public void testRejectWithoutSession() {
+        EmbeddedChannel ch = new EmbeddedChannel();
+        SsePush.reject(new NettyChannel(ch, null, null));
+        FullHttpResponse response = ch.readOutbound();
+        assertEquals(HttpResponseStatus.UNAUTHORIZED, response.status());
+        assertEquals(0, HttpUtil.getContentLength(response));
+        response.release();
+        assertFalse(ch.isOpen());
+    }
+
+    private static FullHttpRequest newRequest(String lastEventId) {
+        FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/sse");
+        if (lastEventId != null) {
+            request.headers().set("Last-Event-ID", lastEventId);
+        }
+        return request;
+    }
+
+    private static String readContent(EmbeddedChannel ch) {
+        HttpContent content = ch.readOutbound();
+        ByteBuf buf = content.content();
+        try {
+            return buf.toString(UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.thinkerwolf.gamer.core.netty.tcp;
+
+import com.thinkerwolf.gamer.common.Constants;
+import com.thinkerwolf.gamer.common.URL;
+import com.thinkerwolf.gamer.core.servlet.*;
+import com.thinkerwolf.gamer.netty.NettyChannel;
+import com.thinkerwolf.gamer.remoting.Content;
+import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import com.thinkerwolf.gamer.remoting.tcp.Packets;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class TcpServletHandlerTests {
+
+    @Test
+    public void testBatchReply() throws Exception {
+        TcpServletHandler handler = new TcpServletHandler();
+        handler.init(newUrl(new EchoServlet()));
+        try {
+            List<Packet> entries = new ArrayList<>();
+            for (int i = 1; i <= 3; i++) {
+                entries.add(packet(Content.CONTENT_TEXT, i, "cmd" + i, "req" + i));
+            }
+            EmbeddedChannel ch = new EmbeddedChannel();
+            handler.received(new NettyChannel(ch, null, null), Packets.newBatch(100, "batch", entries));
+
+            Packet reply = null;
+            long deadline = System.currentTimeMillis() + 5000;
+            while (reply == null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                reply = ch.readOutbound();
+            }
+            // 各条目的响应合并为一个批量包，按请求顺序排列
+            assertNotNull(reply);
+            assertTrue(Packets.isBatch(reply));
+            assertEquals(100, reply.getRequestId());
+            assertEquals("batch", reply.getCommand());
+            List<Packet> replies = Packets.decodeBatch(reply.getContent());
+            assertEquals(3, replies.size());
+            for (int i = 0; i < 3; i++) {
+                Packet r = replies.get(i);
+                assertEquals(i + 1, r.getRequestId());
+                assertEquals("cmd" + (i + 1), r.getCommand());
+                assertEquals("re:req" + (i + 1), new String(r.getContent(), UTF_8));
+            }
+            assertNull(ch.readOutbound());
+        } finally {
+            handler.getExecutor().shutdown();
+        }
+    }
+
+    private static Packet packet(int opcode, int requestId, String command, String content) {
+        Packet packet = new Packet();
+        packet.setOpcode(opcode);
+        packet.setRequestId(requestId);
+        packet.setCommand(command);
+        packet.setContent(content.getBytes(UTF_8));
+        return packet;
+    }
+
+    private static URL newUrl(Servlet servlet) {
+        ServletContext servletContext = new DefaultServletContext();
+        servletContext.setAttribute(ServletContext.ROOT_SERVLET_ATTRIBUTE, servlet);
+        ServletConfig servletConfig = new ServletConfig() {
+            @Override
+            public String getServletName() {
+                return "gamerServlet";
+            }
+
+            @Override
+            public Class<? extends Servlet> servletClass() {
+                return null;
+            }
+
+            @Override
+            public String getInitParam(String key) {
+                return null;
+            }
+
+            @Override
+            public Collection<String> getInitParamNames() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public ServletContext getServletContext() {
+                return servletContext;
+            }
+        };
+        URL url = new URL("localhost", 0);
+        url.setProtocol("tcp");
+        url.setAttach(Constants.SERVLET_CONFIG, servletConfig);
+        return url;
+    }
+
+    /**
+     * 回显请求内容，第一个条目处理较慢
+     */
+    private static class EchoServlet implements Servlet {
+        @Override
+        public void init(ServletConfig servletConfig) {
+        }
+
+        @Override
+        public void service(Request request, Response response) throws Exception {
+            if (request.getRequestId() == 1) {
+                Thread.sleep(50);
+            }
+            response.write(packet(Content.CONTENT_TEXT, request.getRequestId(), request.getCommand(),
+                    "re:" + new String(request.getContent(), UTF_8)));
+        }
+
+        @Override
+        public ServletConfig getServletConfig() {
+            return null;
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public List<Filter> getFilters() {
+            return Collections.emptyList();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.thinkerwolf.gamer.common.URL;
 import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
 import com.thinkerwolf.gamer.common.log.Logger;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -73,6 +74,18 @@ public abstract class AbstractClient implements Client {
         ch.send(message, sent);
     }
 
+    @Override
+    public void sendAll(List<?> messages) throws RemotingException {
+        if (!isConnected()) {
+            connect();
+        }
+        Channel ch = getChannel();
+        if (!ch.isConnected()) {
+            throw new RemotingException("Client not connected to [" + url + "]");
+        }
+        ch.sendAll(messages);
+    }
+
     protected void connect() throws RemotingException {
         if (closed.get()) {
             return;
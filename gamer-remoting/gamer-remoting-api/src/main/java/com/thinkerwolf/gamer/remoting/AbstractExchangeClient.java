@@ -1,35 +1,70 @@
 package com.thinkerwolf.gamer.remoting;
 
+import com.thinkerwolf.gamer.common.DefaultThreadFactory;
 import com.thinkerwolf.gamer.common.URL;
 import com.thinkerwolf.gamer.common.concurrent.DefaultPromise;
+import com.thinkerwolf.gamer.common.concurrent.HashedWheelTimer;
 import com.thinkerwolf.gamer.common.concurrent.Promise;
 import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
 import com.thinkerwolf.gamer.common.log.Logger;
+import com.thinkerwolf.gamer.common.util.StripedIntObjectMap;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.thinkerwolf.gamer.common.Constants.*;
+
+/**
+ * 请求-响应客户端。
+ * <p>
+ * url参数{@code batchSize}大于1时开启批量发送：请求先入队，在{@code batchWindowMicros}窗口结束时，
+ * 或累计到{@code batchSize}个请求、{@code batchBytes}字节后，由{@link #encodeBatch(List)}合并后一次写出并flush。
+ *
+ * @author wukai
+ */
 public abstract class AbstractExchangeClient<T> extends ChannelHandlerAdapter
         implements ExchangeClient<T> {
 
     private static final Logger LOG = InternalLoggerFactory.getLogger(AbstractExchangeClient.class);
 
+    /** 所有客户端共享的请求超时定时器 */
+    private static final HashedWheelTimer TIMEOUT_TIMER =
+            new HashedWheelTimer("Exchange-timeout", 10, TimeUnit.MILLISECONDS, 512);
+
     private URL url;
     private Client client;
+    private volatile boolean closed;
+    /** 本连接的请求id，取值1~Integer.MAX_VALUE循环，0和负数留给推送 */
     private final AtomicInteger idGenerator = new AtomicInteger();
-    private final Map<Object, DefaultPromise<T>> waitResultMap = new ConcurrentHashMap<>();
+    private final StripedIntObjectMap<Pending> waitResultMap = new StripedIntObjectMap<>(16);
+
+    private final int batchSize;
+    private final int batchBytes;
+    private final long batchWindowMicros;
+    private final ConcurrentLinkedQueue<Pending> batchQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger batchCount = new AtomicInteger();
+    private final AtomicInteger batchedBytes = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Runnable flushTask = this::flushBatch;
 
     public AbstractExchangeClient(URL url) {
-        this.url = url;
+        this(url, null);
     }
 
     public AbstractExchangeClient(URL url, Client client) {
         this.url = url;
         this.client = client;
+        this.batchSize = url == null ? 0 : url.getIntParameter(BATCH_SIZE, 0);
+        this.batchBytes = url == null ? 0 : url.getIntParameter(BATCH_BYTES, 64 * 1024);
+        this.batchWindowMicros = url == null ? 0 : url.getLongParameter(BATCH_WINDOW_MICROS, 0L);
     }
 
     public void setClient(Client client) {
@@ -45,6 +80,9 @@ public abstract class AbstractExchangeClient<T> extends ChannelHandlerAdapter
         return request(message, 0, null);
     }
 
+    /**
+     * 发送请求，不阻塞调用线程。超时由时间轮定时器处理，超时后promise以{@link TimeoutException}失败，之后到达的响应被丢弃
+     */
     @Override
     public Promise<T> request(Object message, long timeout, TimeUnit unit) {
         DefaultPromise<T> promise = new DefaultPromise<>();
@@ -55,36 +93,126 @@ public abstract class AbstractExchangeClient<T> extends ChannelHandlerAdapter
             return promise;
         }
 
-        final int requestId = idGenerator.incrementAndGet();
         promise.setAttachment(message);
+        Pending pending = new Pending(promise, timeout > 0 && unit != null ? unit.toMillis(timeout) : 0);
+        final int requestId = register(pending);
         Object msg;
         try {
             msg = encodeRequest(message, requestId);
         } catch (Exception e) {
+            waitResultMap.remove(requestId, pending);
             promise.setFailure(e);
             return promise;
         }
 
-        waitResultMap.put(requestId, promise);
+        if (pending.timeoutMillis > 0) {
+            pending.timeout = TIMEOUT_TIMER.newTimeout(pending, timeout, unit);
+        }
+        if (batchSize > 1) {
+            pending.message = msg;
+            enqueue(pending);
+            return promise;
+        }
         try {
             client.send(msg);
         } catch (RemotingException e) {
-            waitResultMap.remove(requestId);
-            promise.setFailure(e);
+            failSent(pending, e);
         }
+        return promise;
+    }
 
-        if (timeout > 0 && unit != null) {
-            try {
-                promise.await(timeout, unit);
-            } catch (InterruptedException ignored) {
+    private void enqueue(Pending pending) {
+        batchQueue.offer(pending);
+        int count = batchCount.incrementAndGet();
+        int bytes = batchedBytes.addAndGet(sizeOf(pending.message));
+        if (count >= batchSize || bytes >= batchBytes) {
+            // 达到上限，由调用线程直接写出
+            flushBatch();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            if (batchWindowMicros > 0) {
+                BatchFlusher.EXECUTOR.schedule(flushTask, batchWindowMicros, TimeUnit.MICROSECONDS);
+            } else {
+                BatchFlusher.EXECUTOR.execute(flushTask);
             }
-            LOG.debug("Temp result : " + promise.getNow());
-            if (!promise.isDone()) {
-                waitResultMap.remove(requestId);
-                promise.setFailure(new TimeoutException());
+        }
+    }
+
+    /**
+     * 写出队列中的请求，只flush一次
+     */
+    private void flushBatch() {
+        flushScheduled.set(false);
+        List<Pending> pendings = new ArrayList<>(Math.min(batchCount.get(), batchSize));
+        List<Object> messages = new ArrayList<>(Math.min(batchCount.get(), batchSize));
+        for (Pending p = batchQueue.poll(); p != null; p = batchQueue.poll()) {
+            batchCount.decrementAndGet();
+            batchedBytes.addAndGet(-sizeOf(p.message));
+            pendings.add(p);
+            messages.add(p.message);
+            p.message = null;
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            client.sendAll(messages.size() == 1 ? messages : encodeBatch(messages));
+        } catch (Exception e) {
+            for (Pending p : pendings) {
+                failSent(p, e);
+            }
+        }
+    }
+
+    private void failSent(Pending pending, Throwable cause) {
+        if (waitResultMap.remove(pending.requestId, pending)) {
+            pending.cancelTimeout();
+            pending.fail(cause);
+        }
+    }
+
+    /**
+     * 将多个编码后的请求合并为批量包，协议不支持批量包时原样返回，仍然一次flush
+     *
+     * @param messages encoded messages
+     * @return 实际写出的消息
+     * @throws Exception encode error
+     */
+    protected List<?> encodeBatch(List<Object> messages) throws Exception {
+        return messages;
+    }
+
+    /**
+     * 拆分批量响应包
+     *
+     * @param message msg
+     * @return 各条目响应，不是批量包时返回null
+     * @throws Exception decode error
+     */
+    protected List<?> decodeBatch(Object message) throws Exception {
+        return null;
+    }
+
+    /**
+     * 编码后请求的字节数，用于批量发送的字节上限，不能确定时返回0
+     *
+     * @param message encoded message
+     * @return bytes
+     */
+    protected int sizeOf(Object message) {
+        return 0;
+    }
+
+    /**
+     * 分配请求id并登记，跳过仍在等待响应的id
+     */
+    private int register(Pending pending) {
+        while (true) {
+            int id = idGenerator.updateAndGet(i -> i == Integer.MAX_VALUE ? 1 : i + 1);
+            if (waitResultMap.putIfAbsent(id, pending) == null) {
+                pending.requestId = id;
+                return id;
             }
         }
-        return promise;
     }
 
     /**
@@ -101,9 +229,9 @@ public abstract class AbstractExchangeClient<T> extends ChannelHandlerAdapter
      * Decode response id
      *
      * @param message msg
-     * @return requestId
+     * @return requestId, 0 if the message is not a response
      */
-    protected abstract Integer decodeResponseId(Object message);
+    protected abstract int decodeResponseId(Object message);
 
     /**
      * Decode response
@@ -123,20 +251,39 @@ public abstract class AbstractExchangeClient<T> extends ChannelHandlerAdapter
 
     @Override
     public void received(Channel channel, Object message) throws RemotingException {
-        final Integer rid = decodeResponseId(message);
-        if (rid == null || rid == 0) {
+        List<?> entries;
+        try {
+            entries = decodeBatch(message);
+        } catch (Exception e) {
+            throw new RemotingException(e);
+        }
+        if (entries != null) {
+            for (Object entry : entries) {
+                receivedResponse(channel, entry);
+            }
+        } else {
+            receivedResponse(channel, message);
+        }
+    }
+
+    private void receivedResponse(Channel channel, Object message) throws RemotingException {
+        final int rid = decodeResponseId(message);
+        if (rid == 0) {
             handleNullIdResponse(channel, message);
         } else {
-            DefaultPromise<T> promise = waitResultMap.get(rid);
-            if (promise != null) {
+            Pending pending = waitResultMap.remove(rid);
+            if (pending != null) {
+                pending.cancelTimeout();
+                DefaultPromise<T> promise = pending.promise;
+                if (promise.isDone()) {
+                    return;
+                }
                 try {
                     T res = decodeResponse(message, promise);
                     promise.setSuccess(res);
                 } catch (Exception e) {
-                    promise.setFailure(e);
+                    pending.fail(e);
                     throw new RemotingException(e);
-                } finally {
-                    waitResultMap.remove(rid);
                 }
             }
         }
@@ -152,16 +299,88 @@ public abstract class AbstractExchangeClient<T> extends ChannelHandlerAdapter
             } catch (Exception ex) {
                 LOG.warn("Close client exception", ex);
             }
-            for (DefaultPromise<T> promise : waitResultMap.values()) {
-                promise.setFailure(e);
+            for (Pending pending : waitResultMap.clear()) {
+                pending.cancelTimeout();
+                pending.fail(e);
             }
-            waitResultMap.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (client != null) {
+            try {
+                client.close();
+            } catch (Exception e) {
+                LOG.warn("Close client exception", e);
+            }
+        }
+        RemotingException cause = new RemotingException("Client closed");
+        for (Pending pending : waitResultMap.clear()) {
+            pending.cancelTimeout();
+            pending.fail(cause);
         }
     }
 
     private void checkConnection() throws RemotingException {
+        if (closed) {
+            throw new RemotingException("Client closed");
+        }
         if (!client.isConnected()) {
             client.reconnect();
         }
     }
+
+    /**
+     * 等待响应的请求，同时作为超时任务
+     */
+    private final class Pending implements Runnable {
+        final DefaultPromise<T> promise;
+        final long timeoutMillis;
+        int requestId;
+        volatile HashedWheelTimer.Timeout timeout;
+        /** 批量发送时待写出的请求 */
+        Object message;
+
+        Pending(DefaultPromise<T> promise, long timeoutMillis) {
+            this.promise = promise;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void run() {
+            if (waitResultMap.remove(requestId, this)) {
+                fail(new TimeoutException("Request " + requestId + " timeout after " + timeoutMillis + "ms"));
+            }
+        }
+
+        void cancelTimeout() {
+            HashedWheelTimer.Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+
+        void fail(Throwable cause) {
+            if (!promise.isDone()) {
+                try {
+                    promise.setFailure(cause);
+                } catch (IllegalStateException ignored) {
+                    // 已被调用方取消或设置
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量发送的共享flush线程
+     */
+    private static final class BatchFlusher {
+        static final ScheduledExecutorService EXECUTOR =
+                Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("Exchange-batch", true));
+    }
 }
@@ -3,6 +3,7 @@ package com.thinkerwolf.gamer.remoting;
 import com.thinkerwolf.gamer.common.concurrent.Promise;
 
 import java.net.SocketAddress;
+import java.util.List;
 
 /**
  * Channel
@@ -24,6 +25,19 @@ public interface Channel extends Endpoint {
     void setAttr(String key, Object value);
 
     Promise<Channel> sendPromise(Object message);
+
+    /**
+     * 批量发送，实现应全部写入后只flush一次
+     *
+     * @param messages messages
+     * @throws RemotingException e
+     */
+    default void sendAll(List<?> messages) throws RemotingException {
+        for (Object message : messages) {
+            send(message);
+        }
+    }
+
     /**
      * 是否再连接中
      *
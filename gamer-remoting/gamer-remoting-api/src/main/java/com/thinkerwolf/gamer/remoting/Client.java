@@ -1,5 +1,7 @@
 package com.thinkerwolf.gamer.remoting;
 
+import java.util.List;
+
 /**
  * Client端
  *
@@ -20,6 +22,18 @@ public interface Client extends Endpoint {
      */
     Channel getChannel();
 
+    /**
+     * 批量发送，一次flush
+     *
+     * @param messages messages
+     * @throws RemotingException e
+     */
+    default void sendAll(List<?> messages) throws RemotingException {
+        for (Object message : messages) {
+            send(message);
+        }
+    }
+
     /**
      * 断开连接
      */
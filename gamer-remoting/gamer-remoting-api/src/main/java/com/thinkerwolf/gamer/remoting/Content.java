@@ -5,4 +5,12 @@ public final class Content {
     public static Integer CONTENT_JSON = 2;
     public static Integer CONTENT_BYTES = 3;
     public static Integer CONTENT_EXCEPTION = 4;
+    /**
+     * 批量包，内容为多个按Packet格式编码的条目
+     */
+    public static Integer CONTENT_BATCH = 5;
+    /**
+     * Protobuf消息
+     */
+    public static Integer CONTENT_PROTOBUF = 6;
 }
@@ -30,4 +30,10 @@ public interface ExchangeClient<V> {
      * @return promise
      */
     Promise<V> request(Object message, long timeout, TimeUnit unit);
+
+    /**
+     * 关闭客户端，等待中的请求失败，之后的请求不再重连
+     */
+    default void close() {
+    }
 }
@@ -0,0 +1,137 @@
+package com.thinkerwolf.gamer.remoting.tcp;
+
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
+import com.thinkerwolf.gamer.common.buffer.ChannelBuffers;
+import com.thinkerwolf.gamer.remoting.Content;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Packet工具类，批量包的内容由多个条目组成，每个条目与单个Packet的编码格式相同
+ *
+ * @author wukai
+ * @see Packet
+ */
+public final class Packets {
+
+    /**
+     * opcode(4) + requestId(4) + commandLen(4) + contentLen(4)
+     */
+    public static final int HEADER_LENGTH = 16;
+    /**
+     * 单个批量包最大条目数
+     */
+    public static final int MAX_BATCH_SIZE = 128;
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private Packets() {
+    }
+
+    /**
+     * 推送包的requestId，未编号的推送为0，编号的推送为负的序号，超过int范围后从-1重新开始
+     *
+     * @param seq 推送序号
+     * @return requestId
+     */
+    public static int pushRequestId(long seq) {
+        return seq <= 0 ? 0 : -(int) ((seq - 1) % Integer.MAX_VALUE + 1);
+    }
+
+    public static boolean isBatch(Packet packet) {
+        return Content.CONTENT_BATCH.equals(packet.getOpcode());
+    }
+
+    /**
+     * 解析批量包内容
+     *
+     * @param content 批量包内容
+     * @return 条目列表
+     * @throws IOException 内容格式非法
+     */
+    public static List<Packet> decodeBatch(byte[] content) throws IOException {
+        List<Packet> packets = new ArrayList<>();
+        if (content == null) {
+            return packets;
+        }
+        ChannelBuffer buf = ChannelBuffers.wrappedBuffer(content);
+        while (buf.readable()) {
+            if (packets.size() >= MAX_BATCH_SIZE) {
+                throw new IOException("Batch size exceeds " + MAX_BATCH_SIZE);
+            }
+            if (buf.readableBytes() < HEADER_LENGTH) {
+                throw new IOException("Illegal batch entry header");
+            }
+            int opcode = buf.readInt();
+            int requestId = buf.readInt();
+            int commandLen = buf.readInt();
+            int contentLen = buf.readInt();
+            if (commandLen < 0 || contentLen < 0 || buf.readableBytes() < (long) commandLen + contentLen) {
+                throw new IOException("Illegal batch entry len " + commandLen + ", " + contentLen);
+            }
+            byte[] commandBytes = new byte[commandLen];
+            buf.readBytes(commandBytes);
+            byte[] entryContent = new byte[contentLen];
+            buf.readBytes(entryContent);
+
+            Packet packet = new Packet();
+            packet.setOpcode(opcode);
+            packet.setRequestId(requestId);
+            packet.setCommand(new String(commandBytes, UTF_8));
+            packet.setContent(entryContent);
+            packets.add(packet);
+        }
+        return packets;
+    }
+
+    /**
+     * 将多个Packet编码为批量包内容
+     *
+     * @param packets 条目列表
+     * @return 批量包内容
+     */
+    public static byte[] encodeBatch(List<Packet> packets) {
+        int len = 0;
+        byte[][] commands = new byte[packets.size()][];
+        for (int i = 0; i < packets.size(); i++) {
+            Packet packet = packets.get(i);
+            commands[i] = packet.getCommand() == null ? EMPTY_BYTES : packet.getCommand().getBytes(UTF_8);
+            len += HEADER_LENGTH + commands[i].length + (packet.getContent() == null ? 0 : packet.getContent().length);
+        }
+        byte[] content = new byte[len];
+        ChannelBuffer buf = ChannelBuffers.wrappedBuffer(content);
+        buf.clear();
+        for (int i = 0; i < packets.size(); i++) {
+            Packet packet = packets.get(i);
+            byte[] entryContent = packet.getContent() == null ? EMPTY_BYTES : packet.getContent();
+            buf.writeInt(packet.getOpcode());
+            buf.writeInt(packet.getRequestId());
+            buf.writeInt(commands[i].length);
+            buf.writeInt(entryContent.length);
+            buf.writeBytes(commands[i]);
+            buf.writeBytes(entryContent);
+        }
+        return content;
+    }
+
+    /**
+     * 创建批量包
+     *
+     * @param requestId 批量包请求ID
+     * @param command   批量包命令
+     * @param packets   条目列表
+     * @return 批量包
+     */
+    public static Packet newBatch(int requestId, String command, List<Packet> packets) {
+        Packet packet = new Packet();
+        packet.setOpcode(Content.CONTENT_BATCH);
+        packet.setRequestId(requestId);
+        packet.setCommand(command);
+        packet.setContent(encodeBatch(packets));
+        return packet;
+    }
+}
@@ -0,0 +1,158 @@
+package com.thinkerwolf.gamer;
+
+import com.thinkerwolf.gamer.common.URL;
+import com.thinkerwolf.gamer.common.concurrent.DefaultPromise;
+import com.thinkerwolf.gamer.common.concurrent.Promise;
+import com.thinkerwolf.gamer.remoting.AbstractExchangeClient;
+import com.thinkerwolf.gamer.remoting.Channel;
+import com.thinkerwolf.gamer.remoting.Client;
+import com.thinkerwolf.gamer.remoting.RemotingException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.thinkerwolf.gamer.common.Constants.BATCH_SIZE;
+import static com.thinkerwolf.gamer.common.Constants.BATCH_WINDOW_MICROS;
+import static org.junit.Assert.*;
+
+public class ExchangeClientTests {
+
+    @Test
+    public void testBatch() throws Exception {
+        URL url = new URL("localhost", 8777);
+        url.setParameters(new HashMap<>());
+        url.getParameters().put(BATCH_SIZE, 4);
+        url.getParameters().put(BATCH_WINDOW_MICROS, 1000000L);
+        MockClient client = new MockClient(url);
+        EchoExchangeClient exchangeClient = new EchoExchangeClient(url, client);
+
+        List<Promise<String>> promises = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            promises.add(exchangeClient.request("msg" + i, 1, TimeUnit.SECONDS));
+        }
+        // 达到batchSize，4个请求合并为一个批量包一次写出
+        assertEquals(1, client.flushes.size());
+        assertEquals(1, client.flushes.get(0).size());
+        List<?> batch = (List<?>) client.flushes.get(0).get(0);
+        assertEquals(4, batch.size());
+
+        exchangeClient.received(null, batch);
+        for (int i = 0; i < 4; i++) {
+            assertEquals("msg" + i, promises.get(i).get(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        URL url = new URL("localhost", 8777);
+        MockClient client = new MockClient(url);
+        EchoExchangeClient exchangeClient = new EchoExchangeClient(url, client);
+
+        Promise<String> promise = exchangeClient.request("lost", 50, TimeUnit.MILLISECONDS);
+        assertEquals(1, client.flushes.size());
+        try {
+            promise.get(2, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        // 超时后到达的响应被丢弃
+        exchangeClient.received(null, client.flushes.get(0).get(0));
+        assertTrue(promise.cause() instanceof TimeoutException);
+    }
+
+    private static class EchoExchangeClient extends AbstractExchangeClient<String> {
+
+        EchoExchangeClient(URL url, Client client) {
+            super(url, client);
+        }
+
+        @Override
+        protected Object encodeRequest(Object message, int requestId) {
+            return new Object[]{requestId, message};
+        }
+
+        @Override
+        protected List<?> encodeBatch(List<Object> messages) {
+            return Collections.singletonList(new ArrayList<>(messages));
+        }
+
+        @Override
+        protected List<?> decodeBatch(Object message) {
+            return message instanceof List ? (List<?>) message : null;
+        }
+
+        @Override
+        protected int decodeResponseId(Object message) {
+            return (Integer) ((Object[]) message)[0];
+        }
+
+        @Override
+        protected String decodeResponse(Object message, DefaultPromise<String> promise) {
+            return (String) ((Object[]) message)[1];
+        }
+    }
+
+    private static class MockClient implements Client {
+        final URL url;
+        final List<List<?>> flushes = new CopyOnWriteArrayList<>();
+
+        MockClient(URL url) {
+            this.url = url;
+        }
+
+        @Override
+        public void reconnect() {
+        }
+
+        @Override
+        public Channel getChannel() {
+            return null;
+        }
+
+        @Override
+        public void sendAll(List<?> messages) {
+            flushes.add(new ArrayList<>(messages));
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public URL getUrl() {
+            return url;
+        }
+
+        @Override
+        public void send(Object message, boolean sent) throws RemotingException {
+            sendAll(Collections.singletonList(message));
+        }
+
+        @Override
+        public void send(Object message) throws RemotingException {
+            send(message, false);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    }
+}
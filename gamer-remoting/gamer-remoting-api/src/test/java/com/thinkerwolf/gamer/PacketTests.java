@@ -0,0 +1,53 @@
+package com.thinkerwolf.gamer;
+
+import com.thinkerwolf.gamer.remoting.Content;
+import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import com.thinkerwolf.gamer.remoting.tcp.Packets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class PacketTests {
+
+    @Test
+    public void testBatch() throws IOException {
+        List<Packet> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Packet packet = new Packet();
+            packet.setOpcode(Content.CONTENT_JSON);
+            packet.setRequestId(i);
+            packet.setCommand("user@login" + i);
+            packet.setContent(("content" + i).getBytes(UTF_8));
+            entries.add(packet);
+        }
+        Packet batch = Packets.newBatch(100, "batch", entries);
+        Assert.assertTrue(Packets.isBatch(batch));
+
+        List<Packet> decoded = Packets.decodeBatch(batch.getContent());
+        Assert.assertEquals(entries.size(), decoded.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Assert.assertEquals(i, decoded.get(i).getRequestId());
+            Assert.assertEquals("user@login" + i, decoded.get(i).getCommand());
+            Assert.assertArrayEquals(entries.get(i).getContent(), decoded.get(i).getContent());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testIllegalBatch() throws IOException {
+        Packets.decodeBatch(new byte[]{0, 0, 0, 1, 0, 0});
+    }
+
+    @Test(expected = IOException.class)
+    public void testOverflowBatchLength() throws IOException {
+        // commandLen + contentLen 超过int范围
+        ByteBuffer buf = ByteBuffer.allocate(20);
+        buf.putInt(Content.CONTENT_JSON).putInt(1).putInt(Integer.MAX_VALUE).putInt(Integer.MAX_VALUE);
+        Packets.decodeBatch(buf.array());
+    }
+}
@@ -11,6 +11,7 @@ import io.netty.channel.ChannelFutureListener;
 import io.netty.util.AttributeKey;
 
 import java.net.SocketAddress;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -121,6 +122,26 @@ public class NettyChannel extends AbstractChannel {
         }
     }
 
+    @Override
+    public void sendAll(List<?> messages) throws RemotingException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        ChannelFuture last = null;
+        try {
+            for (Object message : messages) {
+                last = ch.write(message);
+            }
+            ch.flush();
+        } catch (Throwable e) {
+            throw new RemotingException(e);
+        }
+        Throwable thrown = last.cause();
+        if (thrown != null) {
+            throw new RemotingException(thrown);
+        }
+    }
+
     @Override
     public Promise<Channel> sendPromise(Object message) {
         DefaultPromise<Channel> promise = new DefaultPromise<>();
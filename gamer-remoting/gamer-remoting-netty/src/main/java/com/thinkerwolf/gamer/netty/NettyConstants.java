@@ -13,6 +13,10 @@ public class NettyConstants {
      * WebSocket包装器
      */
     public static final String WEBSOCKET_DECORATOR = "nettyWebSocket";
+    /**
+     * TCP使用PacketProto编解码
+     */
+    public static final String TCP_CODEC_PROTOBUF = "protobuf";
 
 
     public static final int DEFAULT_TCP_PORT = 8090;
@@ -0,0 +1,97 @@
+package com.thinkerwolf.gamer.netty.tcp;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Parser;
+import com.thinkerwolf.gamer.netty.protobuf.PacketProto;
+import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Protobuf格式的Packet解码器，帧格式为 varint32长度 + PacketProto消息。
+ * 服务端解析RequestPacket，客户端解析ResponsePacket
+ *
+ * @author wukai
+ */
+public class ProtobufPacketDecoder extends ByteToMessageDecoder {
+
+    /**
+     * 500K
+     */
+    private static final int MAX_FRAME_LEN = 500 * 1024 + 1024;
+
+    private static final Parser<PacketProto.RequestPacket> REQUEST_PARSER = PacketProto.RequestPacket.parser();
+
+    private static final Parser<PacketProto.ResponsePacket> RESPONSE_PARSER = PacketProto.ResponsePacket.parser();
+
+    private final boolean server;
+
+    public ProtobufPacketDecoder(boolean server) {
+        this.server = server;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        in.markReaderIndex();
+        int frameLen = readRawVarint32(in);
+        if (frameLen < 0) {
+            in.resetReaderIndex();
+            return;
+        }
+        if (frameLen > MAX_FRAME_LEN) {
+            throw new IOException("Illegal frame len " + frameLen);
+        }
+        if (in.readableBytes() < frameLen) {
+            in.resetReaderIndex();
+            return;
+        }
+
+        CodedInputStream cis = CodedInputStream.newInstance(in.nioBuffer(in.readerIndex(), frameLen));
+        in.skipBytes(frameLen);
+        Packet packet = new Packet();
+        if (server) {
+            PacketProto.RequestPacket proto = REQUEST_PARSER.parseFrom(cis);
+            packet.setRequestId(proto.getRequestId());
+            packet.setCommand(proto.getCommand());
+            packet.setContent(proto.getContent().toByteArray());
+        } else {
+            PacketProto.ResponsePacket proto = RESPONSE_PARSER.parseFrom(cis);
+            packet.setOpcode(parseOpcode(proto.getContentType()));
+            packet.setRequestId((int) proto.getRequestId());
+            packet.setCommand(proto.getCommand());
+            packet.setContent(proto.getContent().toByteArray());
+        }
+        out.add(packet);
+    }
+
+    private static int parseOpcode(String contentType) {
+        try {
+            return contentType.isEmpty() ? 0 : Integer.parseInt(contentType);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 读取varint32长度，数据不完整时返回-1
+     */
+    private static int readRawVarint32(ByteBuf buf) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!buf.isReadable()) {
+                return -1;
+            }
+            byte b = buf.readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new CorruptedFrameException("Malformed varint32");
+    }
+}
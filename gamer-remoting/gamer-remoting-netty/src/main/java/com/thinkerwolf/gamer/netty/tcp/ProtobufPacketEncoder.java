@@ -0,0 +1,56 @@
+package com.thinkerwolf.gamer.netty.tcp;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.UnsafeByteOperations;
+import com.thinkerwolf.gamer.netty.protobuf.PacketProto;
+import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * Protobuf格式的Packet编码器，帧格式为 varint32长度 + PacketProto消息。
+ * 消息直接写入Netty分配的ByteBuf，不产生中间字节数组。
+ * 服务端写出ResponsePacket，客户端写出RequestPacket
+ *
+ * @author wukai
+ */
+public class ProtobufPacketEncoder extends MessageToByteEncoder<Packet> {
+
+    private final boolean server;
+
+    public ProtobufPacketEncoder(boolean server) {
+        this.server = server;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Packet msg, ByteBuf out) throws Exception {
+        ByteString content = msg.getContent() == null ? ByteString.EMPTY : UnsafeByteOperations.unsafeWrap(msg.getContent());
+        String command = msg.getCommand() == null ? "" : msg.getCommand();
+        MessageLite proto;
+        if (server) {
+            proto = PacketProto.ResponsePacket.newBuilder()
+                    .setRequestId(msg.getRequestId())
+                    .setCommand(command)
+                    .setContentType(String.valueOf(msg.getOpcode()))
+                    .setContent(content)
+                    .build();
+        } else {
+            proto = PacketProto.RequestPacket.newBuilder()
+                    .setRequestId(msg.getRequestId())
+                    .setCommand(command)
+                    .setContent(content)
+                    .build();
+        }
+        int bodyLen = proto.getSerializedSize();
+        int frameLen = CodedOutputStream.computeUInt32SizeNoTag(bodyLen) + bodyLen;
+        out.ensureWritable(frameLen);
+        CodedOutputStream cos = CodedOutputStream.newInstance(out.nioBuffer(out.writerIndex(), frameLen));
+        cos.writeUInt32NoTag(bodyLen);
+        proto.writeTo(cos);
+        cos.flush();
+        out.writerIndex(out.writerIndex() + frameLen);
+    }
+}
@@ -3,15 +3,19 @@ package com.thinkerwolf.gamer.netty.tcp;
 import com.thinkerwolf.gamer.common.URL;
 import com.thinkerwolf.gamer.netty.ChannelHandlerConfiger;
 import com.thinkerwolf.gamer.netty.NettyClientHandler;
+import com.thinkerwolf.gamer.netty.NettyConstants;
 import com.thinkerwolf.gamer.netty.NettyServerHandler;
 import com.thinkerwolf.gamer.remoting.ChannelHandler;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelPipeline;
 
+import static com.thinkerwolf.gamer.common.Constants.TCP_CODEC;
+
 public class TcpChannelHandlerConfiger extends ChannelHandlerConfiger<Channel> {
 
     private ChannelHandler handler;
     private io.netty.channel.ChannelHandler lastHandler;
+    private boolean protobuf;
 
     public TcpChannelHandlerConfiger(boolean server, ChannelHandler handler) {
         super(server);
@@ -20,6 +24,7 @@ public class TcpChannelHandlerConfiger extends ChannelHandlerConfiger<Channel> {
 
     @Override
     public void init(URL url) throws Exception {
+        this.protobuf = NettyConstants.TCP_CODEC_PROTOBUF.equals(url.getAttach(TCP_CODEC));
         if (isServer()) {
             lastHandler = new NettyServerHandler(url, handler);
         } else {
@@ -30,8 +35,13 @@ public class TcpChannelHandlerConfiger extends ChannelHandlerConfiger<Channel> {
     @Override
     protected final void initChannel(Channel ch) throws Exception {
         ChannelPipeline pipe = ch.pipeline();
-        pipe.addLast("decoder", new PacketDecoder());
-        pipe.addLast("encoder", new PacketEncoder());
+        if (protobuf) {
+            pipe.addLast("decoder", new ProtobufPacketDecoder(isServer()));
+            pipe.addLast("encoder", new ProtobufPacketEncoder(isServer()));
+        } else {
+            pipe.addLast("decoder", new PacketDecoder());
+            pipe.addLast("encoder", new PacketEncoder());
+        }
         pipe.addLast("handler", lastHandler);
     }
 
@@ -0,0 +1,56 @@
+package com.thinkerwolf.gamer.remoting;
+
+import com.thinkerwolf.gamer.netty.tcp.ProtobufPacketDecoder;
+import com.thinkerwolf.gamer.netty.tcp.ProtobufPacketEncoder;
+import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class ProtobufPacketTests {
+
+    @Test
+    public void testRequest() {
+        EmbeddedChannel client = new EmbeddedChannel(new ProtobufPacketEncoder(false));
+        EmbeddedChannel server = new EmbeddedChannel(new ProtobufPacketDecoder(true));
+
+        client.writeOutbound(newPacket(0, 7, "user@login", "name=wolf"));
+        ByteBuf frame = client.readOutbound();
+        // 半包
+        server.writeInbound(frame.readRetainedSlice(3));
+        Assert.assertNull(server.readInbound());
+        server.writeInbound(frame);
+
+        Packet packet = server.readInbound();
+        Assert.assertEquals(7, packet.getRequestId());
+        Assert.assertEquals("user@login", packet.getCommand());
+        Assert.assertEquals("name=wolf", new String(packet.getContent(), UTF_8));
+    }
+
+    @Test
+    public void testResponse() {
+        EmbeddedChannel server = new EmbeddedChannel(new ProtobufPacketEncoder(true));
+        EmbeddedChannel client = new EmbeddedChannel(new ProtobufPacketDecoder(false));
+
+        server.writeOutbound(newPacket(Content.CONTENT_PROTOBUF, 8, "user@info", "data"));
+        client.writeInbound((ByteBuf) server.readOutbound());
+
+        Packet packet = client.readInbound();
+        Assert.assertEquals(Content.CONTENT_PROTOBUF.intValue(), packet.getOpcode());
+        Assert.assertEquals(8, packet.getRequestId());
+        Assert.assertEquals("user@info", packet.getCommand());
+        Assert.assertEquals("data", new String(packet.getContent(), UTF_8));
+    }
+
+    private static Packet newPacket(int opcode, int requestId, String command, String content) {
+        Packet packet = new Packet();
+        packet.setOpcode(opcode);
+        packet.setRequestId(requestId);
+        packet.setCommand(command);
+        packet.setContent(content.getBytes(UTF_8));
+        return packet;
+    }
+}
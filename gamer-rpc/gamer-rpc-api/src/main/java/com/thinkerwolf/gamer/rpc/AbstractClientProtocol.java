@@ -10,10 +10,11 @@ import static com.thinkerwolf.gamer.common.Constants.RPC_CLIENT_NUM;
 
 public abstract class AbstractClientProtocol extends AbstractProtocol {
     /** 共享的client */
-    private final ConcurrentMap<URL, ExchangeClient> sharedClients = new ConcurrentHashMap<>();
+    private final ConcurrentMap<URL, SharedClient> sharedClients = new ConcurrentHashMap<>();
 
     public ExchangeClient getSharedClient(URL url) {
-        return sharedClients.get(url);
+        SharedClient shared = sharedClients.get(url);
+        return shared == null ? null : shared.client;
     }
 
     protected ExchangeClient[] getClients(URL url) {
@@ -24,20 +25,60 @@ public abstract class AbstractClientProtocol extends AbstractProtocol {
         ExchangeClient[] clients = new ExchangeClient[num];
         if (num == 1) {
             // not thread safe
-            ExchangeClient client = getSharedClient(url);
-            if (client == null) {
-                client = doCreateClient(url);
-                sharedClients.putIfAbsent(url, client);
-            }
-            clients[0] = client;
+            SharedClient shared =
+                    sharedClients.compute(
+                            url,
+                            (u, s) -> {
+                                if (s == null) {
+                                    s = new SharedClient(doCreateClient(u));
+                                }
+                                s.refs++;
+                                return s;
+                            });
+            clients[0] = shared.client;
         } else {
             for (int i = 0; i < num; i++) {
                 clients[i] = doCreateClient(url);
             }
-            sharedClients.put(url, clients[0]);
         }
         return clients;
     }
 
+    /**
+     * 释放{@link #getClients(URL)}获取的client，共享的client在最后一个引用释放时关闭
+     *
+     * @param url     url
+     * @param clients clients
+     */
+    protected void releaseClients(URL url, ExchangeClient[] clients) {
+        if (clients.length == 1) {
+            boolean[] close = {true};
+            sharedClients.computeIfPresent(
+                    url,
+                    (u, s) -> {
+                        if (s.client != clients[0]) {
+                            return s;
+                        }
+                        close[0] = --s.refs <= 0;
+                        return close[0] ? null : s;
+                    });
+            if (!close[0]) {
+                return;
+            }
+        }
+        for (ExchangeClient client : clients) {
+            client.close();
+        }
+    }
+
     protected abstract ExchangeClient doCreateClient(URL url);
+
+    private static final class SharedClient {
+        final ExchangeClient client;
+        int refs;
+
+        SharedClient(ExchangeClient client) {
+            this.client = client;
+        }
+    }
 }
@@ -1,20 +1,62 @@
 package com.thinkerwolf.gamer.rpc;
 
+import com.thinkerwolf.gamer.common.balance.CircuitBreaker;
+import com.thinkerwolf.gamer.common.balance.Measurable;
+import com.thinkerwolf.gamer.common.balance.NodeStats;
+import com.thinkerwolf.gamer.common.concurrent.Future;
+import com.thinkerwolf.gamer.common.concurrent.FutureListener;
 import com.thinkerwolf.gamer.common.concurrent.Promise;
 import com.thinkerwolf.gamer.remoting.ExchangeClient;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public abstract class AbstractInvoker<T> implements Invoker<T> {
+public abstract class AbstractInvoker<T> implements Invoker<T>, Measurable {
+
+    private final NodeStats nodeStats = new NodeStats();
+    private volatile int weight = DEFAULT_WEIGHT;
+    private volatile CircuitBreaker circuitBreaker = new CircuitBreaker();
 
     @Override
     public Result invoke(Object args) throws Throwable {
         Invocation invocation = (Invocation) args;
         ExchangeClient<RpcResponse> client = nextClient();
-        Promise<RpcResponse> promise = client.request(invocation);
+        final CircuitBreaker breaker = circuitBreaker;
+        final long start = nodeStats.begin();
+        breaker.begin();
+        Promise<RpcResponse> promise;
+        try {
+            promise = client.request(invocation, invocation.getRpcMethod().timeout(), TimeUnit.MILLISECONDS);
+        } catch (Throwable t) {
+            nodeStats.end(start);
+            breaker.onFailure(start);
+            throw t;
+        }
+        AtomicBoolean ended = new AtomicBoolean();
+        promise.addListener((FutureListener<Future<RpcResponse>>) f -> {
+            // 完成与添加监听并发时可能通知两次
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            if (f.isSuccess()) {
+                if (breaker.onSuccess(start)) {
+                    // 从熔断恢复，断开前的延迟已不代表当前状态
+                    nodeStats.resetLatency();
+                }
+            } else if (f.isCancelled()) {
+                breaker.onCancel();
+            } else {
+                breaker.onFailure(start);
+            }
+            nodeStats.end(start);
+        });
 
         RpcContext.getContext().setCurrent(promise);
-        if (invocation.isAsync()) {
+        if (invocation.isFutureReturn()) {
+            // 返回future，由响应完成
+            return RpcUtils.processFuture(promise, invocation);
+        } else if (invocation.isAsync()) {
             // 异步
             return RpcUtils.processAsync(promise, invocation);
         } else {
@@ -27,6 +69,36 @@ public abstract class AbstractInvoker<T> implements Invoker<T> {
 
     protected abstract ExchangeClient<RpcResponse> nextClient();
 
+    @Override
+    public NodeStats getNodeStats() {
+        return nodeStats;
+    }
+
+    @Override
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * 熔断期间不可用，到达探测时间后可用
+     */
+    @Override
+    public boolean isUsable() {
+        return circuitBreaker.isAvailable();
+    }
+
     protected int nextIdx(AtomicInteger round, int length) {
         if (length <= 1) {
             return 0;
@@ -1,13 +1,27 @@
 package com.thinkerwolf.gamer.rpc;
 
 import com.thinkerwolf.gamer.common.URL;
+import com.thinkerwolf.gamer.common.balance.CircuitBreaker;
+import com.thinkerwolf.gamer.common.balance.Measurable;
+
+import static com.thinkerwolf.gamer.common.Constants.*;
 
 public abstract class AbstractProtocol implements Protocol {
 
     @Override
     public <T> Invoker<T> invoker(Class<T> interfaceClass, URL url) {
         URL newUrl = processUrl(url);
-        return doInvoker(interfaceClass, newUrl);
+        Invoker<T> invoker = doInvoker(interfaceClass, newUrl);
+        if (invoker instanceof AbstractInvoker) {
+            AbstractInvoker<T> ai = (AbstractInvoker<T>) invoker;
+            ai.setWeight(newUrl.getIntParameter(WEIGHT, Measurable.DEFAULT_WEIGHT));
+            ai.setCircuitBreaker(
+                    new CircuitBreaker(
+                            newUrl.getIntParameter(CIRCUIT_FAILURES, CircuitBreaker.DEFAULT_FAILURES),
+                            newUrl.getIntParameter(CIRCUIT_ERROR_PERCENT, CircuitBreaker.DEFAULT_ERROR_PERCENT),
+                            newUrl.getLongParameter(CIRCUIT_EJECT_MILLIS, CircuitBreaker.DEFAULT_EJECT_MILLIS)));
+        }
+        return invoker;
     }
 
     protected abstract <T> Invoker<T> doInvoker(Class<T> interfaceClass, URL url);
@@ -1,10 +1,14 @@
 package com.thinkerwolf.gamer.rpc;
 
+import com.thinkerwolf.gamer.common.concurrent.Future;
+import com.thinkerwolf.gamer.common.concurrent.Promise;
 import com.thinkerwolf.gamer.common.util.ClassUtils;
 import com.thinkerwolf.gamer.rpc.annotation.RpcMethod;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Rpc invocation
@@ -28,6 +32,10 @@ public class Invocation implements Message {
      * @see com.thinkerwolf.gamer.rpc.annotation.RpcMethod
      */
     private final RpcMethod rpcMethod;
+    /** 返回类型为CompletableFuture/CompletionStage */
+    private final boolean completableReturn;
+    /** 返回类型为Promise/Future */
+    private final boolean promiseReturn;
 
     public Invocation(
             Class<?> interfaceClass,
@@ -39,6 +47,28 @@ public class Invocation implements Message {
         this.parameterTypes = parameterTypes;
         this.parameters = parameters;
         this.rpcMethod = ClassUtils.getAnnotation(method, RpcMethod.class);
+        Class<?> returnType = method.getReturnType();
+        this.completableReturn = returnType == CompletableFuture.class || returnType == CompletionStage.class;
+        this.promiseReturn = returnType == Promise.class || returnType == Future.class;
+    }
+
+    private Invocation(Invocation invocation) {
+        this.interfaceClass = invocation.interfaceClass;
+        this.method = invocation.method;
+        this.parameterTypes = invocation.parameterTypes;
+        this.parameters = invocation.parameters;
+        this.rpcMethod = invocation.rpcMethod;
+        this.completableReturn = true;
+        this.promiseReturn = false;
+    }
+
+    /**
+     * 以CompletableFuture返回结果的副本，集群调用时用于组合多个提供者的调用
+     *
+     * @return invocation
+     */
+    public Invocation toCompletable() {
+        return completableReturn ? this : new Invocation(this);
     }
 
     public int getRequestId() {
@@ -81,6 +111,21 @@ public class Invocation implements Message {
         return rpcMethod.async();
     }
 
+    public boolean isCompletableReturn() {
+        return completableReturn;
+    }
+
+    public boolean isPromiseReturn() {
+        return promiseReturn;
+    }
+
+    /**
+     * 方法返回future，调用不阻塞，由响应完成
+     */
+    public boolean isFutureReturn() {
+        return completableReturn || promiseReturn;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
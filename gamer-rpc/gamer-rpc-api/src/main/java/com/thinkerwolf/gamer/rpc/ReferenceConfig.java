@@ -120,6 +120,8 @@ public class ReferenceConfig<T> extends InterfaceConfig<T> {
             }
         }
 
+        RpcUtils.registerSerialTypes(interfaceClass);
+
         if (urls == null || urls.size() <= 0) {
             urls = new ArrayList<>();
             if (StringUtils.isNotEmpty(url)) {
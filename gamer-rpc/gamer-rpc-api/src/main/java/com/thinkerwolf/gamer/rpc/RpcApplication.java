@@ -1,10 +1,14 @@
 package com.thinkerwolf.gamer.rpc;
 
+import com.thinkerwolf.gamer.common.DefaultThreadFactory;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Rpc application
@@ -15,6 +19,8 @@ public class RpcApplication {
 
     private static final Map<String, List<RpcFilter>> groupRpcFilters = new ConcurrentHashMap<>();
 
+    private static volatile Executor callbackExecutor;
+
     public static void addFilter(String group, RpcFilter filter) {
         if (group == null || filter == null) {
             throw new NullPointerException();
@@ -38,4 +44,34 @@ public class RpcApplication {
         List<RpcFilter> filters = groupRpcFilters.get(group);
         return filters == null ? null : new ArrayList<>(filters);
     }
+
+    /**
+     * 设置future返回值的回调执行器，传入{@code Runnable::run}则直接在IO线程完成
+     *
+     * @param executor executor
+     */
+    public static void setCallbackExecutor(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        callbackExecutor = executor;
+    }
+
+    /**
+     * future返回值的回调执行器，未设置时使用默认的守护线程池
+     */
+    public static Executor getCallbackExecutor() {
+        Executor executor = callbackExecutor;
+        if (executor == null) {
+            synchronized (RpcApplication.class) {
+                executor = callbackExecutor;
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                            new DefaultThreadFactory("Rpc-callback", true));
+                    callbackExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
 }
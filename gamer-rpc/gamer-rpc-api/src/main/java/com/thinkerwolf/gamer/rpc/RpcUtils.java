@@ -1,13 +1,25 @@
 package com.thinkerwolf.gamer.rpc;
 
+import com.thinkerwolf.gamer.common.ServiceLoader;
 import com.thinkerwolf.gamer.common.URL;
+import com.thinkerwolf.gamer.common.concurrent.DefaultPromise;
 import com.thinkerwolf.gamer.common.concurrent.Future;
+import com.thinkerwolf.gamer.common.concurrent.FutureListener;
 import com.thinkerwolf.gamer.common.concurrent.Promise;
+import com.thinkerwolf.gamer.common.serialization.Serializer;
+import com.thinkerwolf.gamer.common.serialization.kryo.KryoRegistry;
+import com.thinkerwolf.gamer.common.serialization.kryo.KryoSerializer;
 import com.thinkerwolf.gamer.common.util.ClassUtils;
+import com.thinkerwolf.gamer.rpc.annotation.RpcMethod;
 import com.thinkerwolf.gamer.rpc.exception.RpcException;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import static com.thinkerwolf.gamer.common.Constants.RPC_HOST;
@@ -21,6 +33,8 @@ public final class RpcUtils {
 
     public static final String RPC_COMMAND_FORMAT = "rpc@%s%s%s";
 
+    private static final Map<Class<?>, Serializer> kryoSerializers = new ConcurrentHashMap<>();
+
     public static String getRpcCommand(Class interfaceClass, Method method) {
         return getRpcCommand(interfaceClass, method.getName(), method.getParameterTypes());
     }
@@ -38,6 +52,48 @@ public final class RpcUtils {
         return getRpcCommand(interfaceClass, method).replace('/', '_');
     }
 
+    /**
+     * 获取服务接口使用的序列化。kryo按服务接口各自建立{@link KryoRegistry}，注册接口中使用kryo序列化的方法的参数、
+     * 返回值类型，客户端和服务端从同一接口得到相同的注册，与进程内其它接口的注册无关
+     *
+     * @param serial         序列化名称
+     * @param interfaceClass 服务接口
+     */
+    public static Serializer getSerializer(String serial, Class<?> interfaceClass) {
+        if (KryoSerializer.NAME.equals(serial) && interfaceClass != null) {
+            return kryoSerializers.computeIfAbsent(interfaceClass, RpcUtils::newKryoSerializer);
+        }
+        return ServiceLoader.getService(serial, Serializer.class);
+    }
+
+    /**
+     * 启动时建立接口的kryo注册，类型id冲突时启动失败
+     *
+     * @param interfaceClass 服务接口
+     */
+    public static void registerSerialTypes(Class<?> interfaceClass) {
+        for (Method method : interfaceClass.getDeclaredMethods()) {
+            RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+            if (rpcMethod != null && KryoSerializer.NAME.equals(rpcMethod.serialize())) {
+                getSerializer(KryoSerializer.NAME, interfaceClass);
+                return;
+            }
+        }
+    }
+
+    private static Serializer newKryoSerializer(Class<?> interfaceClass) {
+        KryoRegistry registry = new KryoRegistry();
+        registry.registerGraph(RpcRequest.class, RpcResponse.class);
+        for (Method method : interfaceClass.getDeclaredMethods()) {
+            RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+            if (rpcMethod != null && KryoSerializer.NAME.equals(rpcMethod.serialize())) {
+                registry.registerGraph(method.getGenericParameterTypes());
+                registry.registerGraph(method.getGenericReturnType());
+            }
+        }
+        return new KryoSerializer(registry);
+    }
+
     public static URL getLookupURL(String group, Class interfaceClass, Method method) {
         URL lookUrl = new URL();
         lookUrl.setParameters(new HashMap<>());
@@ -78,7 +134,13 @@ public final class RpcUtils {
                 return Result.builder().withResult(rpcResponse.getResult()).build();
             }
         } catch (Exception e) {
-            promise.setFailure(e);
+            if (!promise.isDone()) {
+                try {
+                    promise.setFailure(e);
+                } catch (IllegalStateException ignored) {
+                    // 超时定时器或响应已先完成
+                }
+            }
             return Result.builder().withThrown(e).build();
         }
     }
@@ -97,4 +159,75 @@ public final class RpcUtils {
             }
         }
     }
+
+    /**
+     * 返回值为future的调用，不阻塞调用线程。响应到达后在{@link RpcApplication#getCallbackExecutor()}中完成返回的future
+     *
+     * @param promise    请求promise
+     * @param invocation 调用
+     * @return 结果为CompletableFuture或Promise
+     */
+    @SuppressWarnings("unchecked")
+    public static Result processFuture(Promise<RpcResponse> promise, Invocation invocation) {
+        final Executor executor = RpcApplication.getCallbackExecutor();
+        if (invocation.isCompletableReturn()) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            promise.addListener((FutureListener<Future<RpcResponse>>) f -> executor.execute(() -> {
+                Throwable cause = responseCause(f);
+                if (cause != null) {
+                    future.completeExceptionally(cause);
+                } else {
+                    future.complete(f.getNow().getResult());
+                }
+            }));
+            future.whenComplete((r, t) -> {
+                if (future.isCancelled()) {
+                    promise.cancel(false);
+                }
+            });
+            return Result.builder().withResult(future).withPromise(promise).build();
+        }
+        DefaultPromise<Object> result = new DefaultPromise<>();
+        promise.addListener((FutureListener<Future<RpcResponse>>) f -> executor.execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            Throwable cause = responseCause(f);
+            try {
+                if (cause != null) {
+                    result.setFailure(cause);
+                } else {
+                    result.setSuccess(f.getNow().getResult());
+                }
+            } catch (IllegalStateException ignored) {
+                // 已被调用方取消
+            }
+        }));
+        return Result.builder().withResult(result).withPromise(promise).build();
+    }
+
+    /**
+     * 调用失败时返回值为future的方法返回失败的future
+     */
+    public static Object failedFuture(Invocation invocation, Throwable cause) {
+        if (invocation.isCompletableReturn()) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            future.completeExceptionally(cause);
+            return future;
+        }
+        DefaultPromise<Object> promise = new DefaultPromise<>();
+        promise.setFailure(cause);
+        return promise;
+    }
+
+    private static Throwable responseCause(Future<RpcResponse> future) {
+        if (!future.isSuccess()) {
+            return future.isCancelled() ? new CancellationException() : future.cause();
+        }
+        RpcResponse rpcResponse = future.getNow();
+        if (rpcResponse == null) {
+            return new RpcException("Rpc response is null, the service may have errors");
+        }
+        return rpcResponse.getTx();
+    }
 }
@@ -15,7 +15,7 @@ public @interface RpcMethod {
     /** 序列化方式 */
     String serialize() default "hessian2";
 
-    /** 是否异步 */
+    /** 是否异步。返回CompletableFuture/Promise的方法无需设置，总是异步 */
     boolean async() default false;
 
     /**
@@ -32,6 +32,20 @@ public @interface RpcMethod {
      */
     int retries() default 0;
 
+    /**
+     * forking集群并行调用的提供者数
+     *
+     * @return
+     */
+    int forks() default 2;
+
+    /**
+     * hedging集群发出对冲请求的延迟分位数，首个请求耗时超过该分位数时向另一个提供者再发一次
+     *
+     * @return
+     */
+    int hedgePercentile() default 95;
+
     /**
      * 负载均衡
      *
@@ -2,23 +2,50 @@ package com.thinkerwolf.gamer.rpc.cluster;
 
 import com.thinkerwolf.gamer.common.Constants;
 import com.thinkerwolf.gamer.common.ServiceLoader;
+import com.thinkerwolf.gamer.common.balance.CircuitBreaker;
 import com.thinkerwolf.gamer.common.balance.LoadBalancer;
+import com.thinkerwolf.gamer.common.balance.NodeStats;
+import com.thinkerwolf.gamer.common.concurrent.DefaultPromise;
+import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
+import com.thinkerwolf.gamer.common.log.Logger;
+import com.thinkerwolf.gamer.rpc.AbstractInvoker;
 import com.thinkerwolf.gamer.rpc.Invoker;
 import com.thinkerwolf.gamer.rpc.Result;
 import com.thinkerwolf.gamer.rpc.Invocation;
 import com.thinkerwolf.gamer.rpc.RpcUtils;
+import com.thinkerwolf.gamer.rpc.exception.BusinessException;
 import com.thinkerwolf.gamer.rpc.exception.RpcException;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.ArrayUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
 
+    private static final Logger LOG = InternalLoggerFactory.getLogger(AbstractClusterInvoker.class);
+
+    /** 延迟离群检测的间隔 */
+    private static final long OUTLIER_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** 至少有这么多个有延迟数据的invoker时才检测离群 */
+    private static final int OUTLIER_MIN_INVOKERS = 3;
+    /** 延迟超过中位数的倍数视为离群 */
+    private static final double OUTLIER_FACTOR = 3;
+    /** 低于此延迟（微秒）不视为离群 */
+    private static final double OUTLIER_MIN_MICROS = 50000;
+
     private Dictionary<T> dictionary;
 
+    private volatile long nextOutlierCheck = System.nanoTime();
+
     public AbstractClusterInvoker(Dictionary<T> dictionary) {
         this.dictionary = dictionary;
     }
@@ -35,7 +62,104 @@ public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
         if (invokers.size() == 1) {
             return invokers.get(0);
         }
-        return doSelect(invocation, loadBalancer, invokers);
+        return doSelect(invocation, loadBalancer, usable(invokers));
+    }
+
+    /**
+     * 过滤掉熔断中的invoker，负载均衡只在可用的invoker中选择。全部不可用时返回原列表，避免完全不可调用。
+     * 取得探测资格的invoker直接用于本次请求，每个invoker只检查一次可用性
+     */
+    protected List<Invoker<T>> usable(List<Invoker<T>> invokers) {
+        ejectOutliers(invokers);
+        int n = invokers.size();
+        List<Invoker<T>> usable = null;
+        for (int i = 0; i < n; i++) {
+            Invoker<T> invoker = invokers.get(i);
+            boolean probe = invoker instanceof AbstractInvoker
+                    && ((AbstractInvoker<T>) invoker).getCircuitBreaker().getState() != CircuitBreaker.State.CLOSED;
+            if (invoker.isUsable()) {
+                if (probe) {
+                    return Collections.singletonList(invoker);
+                }
+                if (usable != null) {
+                    usable.add(invoker);
+                }
+            } else if (usable == null) {
+                usable = new ArrayList<>(n - 1);
+                usable.addAll(invokers.subList(0, i));
+            }
+        }
+        if (usable == null) {
+            return invokers;
+        }
+        return usable.isEmpty() ? invokers : usable;
+    }
+
+    /**
+     * 定期比较各invoker的延迟（{@link NodeStats}），摘除远慢于中位数的invoker，最多摘除一半
+     */
+    private void ejectOutliers(List<Invoker<T>> invokers) {
+        long now = System.nanoTime();
+        if (invokers.size() < OUTLIER_MIN_INVOKERS || now - nextOutlierCheck < 0) {
+            return;
+        }
+        nextOutlierCheck = now + OUTLIER_INTERVAL_NANOS;
+        int n = invokers.size();
+        CircuitBreaker[] breakers = new CircuitBreaker[n];
+        double[] latencies = new double[n];
+        double[] sorted = new double[n];
+        int count = 0;
+        int ejected = 0;
+        for (int i = 0; i < n; i++) {
+            Invoker<T> invoker = invokers.get(i);
+            if (!(invoker instanceof AbstractInvoker)) {
+                continue;
+            }
+            AbstractInvoker<T> measured = (AbstractInvoker<T>) invoker;
+            CircuitBreaker breaker = measured.getCircuitBreaker();
+            double latency = measured.getNodeStats().getLatencyEwma();
+            if (breaker.getState() != CircuitBreaker.State.CLOSED) {
+                ejected++;
+            } else if (latency > 0) {
+                breakers[i] = breaker;
+                latencies[i] = latency;
+                sorted[count++] = latency;
+            }
+        }
+        if (count < OUTLIER_MIN_INVOKERS) {
+            return;
+        }
+        Arrays.sort(sorted, 0, count);
+        double limit = Math.max(sorted[count / 2] * OUTLIER_FACTOR, OUTLIER_MIN_MICROS);
+        for (int i = 0; i < n && ejected < n / 2; i++) {
+            CircuitBreaker breaker = breakers[i];
+            if (breaker != null && latencies[i] > limit) {
+                LOG.warn("Eject latency outlier " + invokers.get(i)
+                        + ", latency " + (long) latencies[i] + "us, limit " + (long) limit + "us");
+                breaker.eject();
+                ejected++;
+            }
+        }
+    }
+
+    /**
+     * 选择一个不在已调用列表中的invoker，都调用过时在全部invoker中选择
+     */
+    protected Invoker<T> select(
+            Object invocation,
+            LoadBalancer loadBalancer,
+            List<Invoker<T>> invokers,
+            List<Invoker<T>> invoked) {
+        if (invoked.isEmpty() || CollectionUtils.isEmpty(invokers)) {
+            return select(invocation, loadBalancer, invokers);
+        }
+        List<Invoker<T>> candidates = new ArrayList<>(invokers.size());
+        for (Invoker<T> invoker : invokers) {
+            if (!invoked.contains(invoker)) {
+                candidates.add(invoker);
+            }
+        }
+        return select(invocation, loadBalancer, candidates.isEmpty() ? invokers : candidates);
     }
 
     private Invoker<T> doSelect(
@@ -45,6 +169,8 @@ public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
         props.put(
                 Constants.LOADBALANCE_KEY,
                 RpcUtils.getRpcCommand(rpcMsg.getInterfaceClass(), rpcMsg.getMethod()));
+        // 候选可能已排除部分invoker，全部成员用于一致性hash建环
+        props.put(Constants.LOADBALANCE_MEMBERS, dictionary.find(rpcMsg));
         String searchKey = ArrayUtils.toString(rpcMsg.getParameters(), "default");
         return loadBalancer.select(invokers, searchKey, props);
     }
@@ -58,6 +184,75 @@ public abstract class AbstractClusterInvoker<T> implements Invoker<T> {
         return doInvoke(args, loadBalancer, invokers);
     }
 
+    /**
+     * 以CompletableFuture形式调用，调用异常时返回失败的future
+     *
+     * @param invoker    invoker
+     * @param invocation {@link Invocation#toCompletable()}后的调用
+     * @return future
+     */
+    @SuppressWarnings("unchecked")
+    protected static CompletableFuture<Object> invokeFuture(Invoker<?> invoker, Invocation invocation) {
+        try {
+            Result result = invoker.invoke(invocation);
+            if (result.cause() != null) {
+                return failed(result.cause());
+            }
+            return (CompletableFuture<Object>) result.get();
+        } catch (Throwable t) {
+            return failed(t);
+        }
+    }
+
+    /**
+     * 将组合后的future转换为调用方需要的结果，同步调用时等待完成
+     *
+     * @param invocation 原始调用
+     * @param future     组合后的future
+     * @return result
+     */
+    protected static Result toResult(Invocation invocation, CompletableFuture<Object> future) {
+        if (invocation.isCompletableReturn()) {
+            return Result.builder().withResult(future).build();
+        }
+        if (invocation.isPromiseReturn()) {
+            DefaultPromise<Object> promise = new DefaultPromise<>();
+            future.whenComplete((r, t) -> {
+                if (t != null) {
+                    promise.setFailure(unwrap(t));
+                } else {
+                    promise.setSuccess(r);
+                }
+            });
+            return Result.builder().withResult(promise).build();
+        }
+        try {
+            return Result.builder().withResult(future.get()).build();
+        } catch (ExecutionException e) {
+            return Result.builder().withThrown(unwrap(e.getCause())).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.builder().withThrown(new RpcException(e)).build();
+        }
+    }
+
+    /**
+     * 是否可以换一个提供者重试，远程业务异常不重试
+     */
+    protected static boolean isRetryable(Throwable t) {
+        return !(unwrap(t) instanceof BusinessException);
+    }
+
+    protected static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
+    protected static CompletableFuture<Object> failed(Throwable t) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
     public abstract Result doInvoke(
             Object invocation, LoadBalancer loadBalancer, List<Invoker<T>> invokers)
             throws Throwable;
@@ -4,30 +4,46 @@ import com.thinkerwolf.gamer.common.ServiceLoader;
 import com.thinkerwolf.gamer.common.URL;
 import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
 import com.thinkerwolf.gamer.common.log.Logger;
+import com.thinkerwolf.gamer.registry.AbstractRegistry;
+import com.thinkerwolf.gamer.registry.ChildEvent;
+import com.thinkerwolf.gamer.registry.NotifyListenerAdapter;
 import com.thinkerwolf.gamer.registry.Registry;
 import com.thinkerwolf.gamer.rpc.*;
 import com.thinkerwolf.gamer.rpc.cluster.AbstractDictionary;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.lang.reflect.Method;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * 注册中心提供者目录。
+ * <p>
+ * 每个方法（group + method）首次调用时lookup并订阅注册路径，之后由子节点变化通知替换不可变的invoker快照，
+ * 调用时只读取快照。不发送子节点通知的注册中心，按{@link #REFRESH_INTERVAL_MILLIS}从注册中心缓存校对。
+ * 不再被任何方法使用的提供者延迟销毁，关闭其连接。
+ *
  * @author wukai
  * @param <T>
  */
-public class RegistryDictionary<T> extends AbstractDictionary {
+public class RegistryDictionary<T> extends AbstractDictionary<T> {
 
     private static final Logger LOG = InternalLoggerFactory.getLogger(RegistryDictionary.class);
 
-    private Class<T> interfaceClass;
+    /** 未收到通知时的校对间隔 */
+    private static final long REFRESH_INTERVAL_MILLIS = 20000;
+    /** 提供者移除后延迟销毁invoker，等待进行中的请求完成 */
+    private static final long DESTROY_DELAY_MILLIS = 5000;
 
-    private Registry registry;
+    private final Class<T> interfaceClass;
 
-    private Map<URL, Invoker<T>> cachedInvokers = new ConcurrentHashMap<>();
+    private final Registry registry;
+
+    /** 提供者url -> invoker */
+    private final Map<URL, Invoker<T>> cachedInvokers = new ConcurrentHashMap<>();
+
+    private final Map<Method, Directory> directories = new ConcurrentHashMap<>();
 
     public RegistryDictionary(Class<T> interfaceClass, Registry registry) {
         this.interfaceClass = interfaceClass;
@@ -41,25 +57,118 @@ public class RegistryDictionary<T> extends AbstractDictionary {
 
     @Override
     public List<Invoker<T>> find(Invocation invocation) {
-        URL lookUrl =
-                RpcUtils.getLookupURL(
-                        invocation.getRpcMethod().group(), interfaceClass, invocation.getMethod());
-        long start = System.nanoTime();
-        List<URL> urls = registry.lookup(lookUrl);
-        if (LOG.isDebugEnabled()) {
-            long end = System.nanoTime();
-            LOG.debug("Lookup spend time: " + (TimeUnit.NANOSECONDS.toMillis(end - start)) + "ms");
+        Directory directory = directories.get(invocation.getMethod());
+        if (directory == null) {
+            directory = subscribe(invocation);
         }
-        List<Invoker<T>> invokers = new ArrayList<>(urls.size());
-        for (URL url : urls) {
+        if (System.currentTimeMillis() >= directory.refreshAt) {
+            directory.refresh();
+        }
+        return directory.invokers;
+    }
+
+    private synchronized Directory subscribe(Invocation invocation) {
+        Directory directory = directories.get(invocation.getMethod());
+        if (directory == null) {
+            URL lookUrl =
+                    RpcUtils.getLookupURL(
+                            invocation.getRpcMethod().group(), interfaceClass, invocation.getMethod());
+            directory = new Directory(lookUrl);
+            directory.refresh();
+            registry.subscribe(lookUrl, directory);
+            directories.put(invocation.getMethod(), directory);
+        }
+        return directory;
+    }
+
+    /**
+     * 替换方法的invoker快照，销毁不再使用的提供者
+     */
+    private synchronized void update(Directory directory, List<URL> urls) {
+        Set<URL> newUrls = new LinkedHashSet<>(urls);
+        if (newUrls.equals(directory.urls)) {
+            return;
+        }
+        List<Invoker<T>> invokers = new ArrayList<>(newUrls.size());
+        for (Iterator<URL> iter = newUrls.iterator(); iter.hasNext(); ) {
+            URL url = iter.next();
             Invoker<T> invoker = cachedInvokers.get(url);
             if (invoker == null) {
-                Protocol protocol = ServiceLoader.getService(url.getProtocol(), Protocol.class);
-                invoker = protocol.invoker(interfaceClass, url);
+                try {
+                    Protocol protocol = ServiceLoader.getService(url.getProtocol(), Protocol.class);
+                    invoker = protocol.invoker(interfaceClass, url);
+                } catch (Exception e) {
+                    // 下次校对时重试
+                    LOG.warn("Create invoker error " + url, e);
+                    iter.remove();
+                    continue;
+                }
+                cachedInvokers.put(url, invoker);
             }
             invokers.add(invoker);
-            cachedInvokers.put(url, invoker);
         }
-        return invokers;
+        Set<URL> oldUrls = directory.urls;
+        directory.urls = newUrls;
+        directory.invokers = Collections.unmodifiableList(invokers);
+
+        for (URL url : oldUrls) {
+            if (!newUrls.contains(url) && !isReferenced(url)) {
+                Invoker<T> invoker = cachedInvokers.remove(url);
+                if (invoker != null) {
+                    LOG.info("Provider removed " + url);
+                    AbstractRegistry.scheduler.schedule(
+                            invoker::destroy, DESTROY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private boolean isReferenced(URL url) {
+        for (Directory directory : directories.values()) {
+            if (directory.urls.contains(url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 一个方法的提供者
+     */
+    private final class Directory extends NotifyListenerAdapter {
+        final URL lookUrl;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        volatile List<Invoker<T>> invokers = Collections.emptyList();
+        volatile long refreshAt;
+        /** 只在同步块内访问 */
+        Set<URL> urls = Collections.emptySet();
+
+        Directory(URL lookUrl) {
+            this.lookUrl = lookUrl;
+        }
+
+        @Override
+        public void notifyChildChange(ChildEvent event) throws Exception {
+            update(this, event.getChildUrls());
+            refreshAt = System.currentTimeMillis() + REFRESH_INTERVAL_MILLIS;
+        }
+
+        void refresh() {
+            if (!refreshing.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                refreshAt = System.currentTimeMillis() + REFRESH_INTERVAL_MILLIS;
+                long start = System.nanoTime();
+                List<URL> found = registry.lookup(lookUrl);
+                if (LOG.isDebugEnabled()) {
+                    long end = System.nanoTime();
+                    LOG.debug("Lookup spend time: " + (TimeUnit.NANOSECONDS.toMillis(end - start)) + "ms");
+                }
+                update(this, found);
+            } finally {
+                refreshing.set(false);
+            }
+        }
     }
 }
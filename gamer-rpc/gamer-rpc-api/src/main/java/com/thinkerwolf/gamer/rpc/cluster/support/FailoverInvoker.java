@@ -0,0 +1,66 @@
+package com.thinkerwolf.gamer.rpc.cluster.support;
+
+import com.thinkerwolf.gamer.common.balance.LoadBalancer;
+import com.thinkerwolf.gamer.rpc.Invocation;
+import com.thinkerwolf.gamer.rpc.Invoker;
+import com.thinkerwolf.gamer.rpc.Result;
+import com.thinkerwolf.gamer.rpc.cluster.AbstractClusterInvoker;
+import com.thinkerwolf.gamer.rpc.cluster.Dictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 失败转移，调用失败时换一个提供者重试，最多重试{@link com.thinkerwolf.gamer.rpc.annotation.RpcMethod#retries()}次。
+ * 远程业务异常不重试。重试在响应回调中发起，不阻塞调用线程
+ *
+ * @author wukai
+ */
+public class FailoverInvoker<T> extends AbstractClusterInvoker<T> {
+
+    public FailoverInvoker(Dictionary<T> dictionary) {
+        super(dictionary);
+    }
+
+    @Override
+    public Result doInvoke(Object invocation, LoadBalancer loadBalancer, List<Invoker<T>> invokers)
+            throws Throwable {
+        Invocation inv = (Invocation) invocation;
+        int retries = Math.max(inv.getRpcMethod().retries(), 0);
+        if (retries == 0 || (inv.isAsync() && !inv.isFutureReturn())) {
+            // 依赖RpcContext的异步调用无法重试
+            return select(invocation, loadBalancer, invokers).invoke(invocation);
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        attempt(inv, inv.toCompletable(), loadBalancer, invokers, new ArrayList<>(), retries, future);
+        return toResult(inv, future);
+    }
+
+    private void attempt(
+            Invocation invocation,
+            Invocation futureInvocation,
+            LoadBalancer loadBalancer,
+            List<Invoker<T>> invokers,
+            List<Invoker<T>> invoked,
+            int retries,
+            CompletableFuture<Object> future) {
+        Invoker<T> invoker;
+        try {
+            invoker = select(invocation, loadBalancer, invokers, invoked);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            return;
+        }
+        invoked.add(invoker);
+        invokeFuture(invoker, futureInvocation).whenComplete((r, t) -> {
+            if (t == null) {
+                future.complete(r);
+            } else if (retries > 0 && isRetryable(t) && !future.isDone()) {
+                attempt(invocation, futureInvocation, loadBalancer, invokers, invoked, retries - 1, future);
+            } else {
+                future.completeExceptionally(unwrap(t));
+            }
+        });
+    }
+}
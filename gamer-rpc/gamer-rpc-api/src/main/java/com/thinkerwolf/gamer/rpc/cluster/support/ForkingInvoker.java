@@ -0,0 +1,59 @@
+package com.thinkerwolf.gamer.rpc.cluster.support;
+
+import com.thinkerwolf.gamer.common.balance.LoadBalancer;
+import com.thinkerwolf.gamer.rpc.Invocation;
+import com.thinkerwolf.gamer.rpc.Invoker;
+import com.thinkerwolf.gamer.rpc.Result;
+import com.thinkerwolf.gamer.rpc.cluster.AbstractClusterInvoker;
+import com.thinkerwolf.gamer.rpc.cluster.Dictionary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行调用，同时调用{@link com.thinkerwolf.gamer.rpc.annotation.RpcMethod#forks()}个提供者，
+ * 第一个成功的结果返回，全部失败时返回最后一个异常
+ *
+ * @author wukai
+ */
+public class ForkingInvoker<T> extends AbstractClusterInvoker<T> {
+
+    public ForkingInvoker(Dictionary<T> dictionary) {
+        super(dictionary);
+    }
+
+    @Override
+    public Result doInvoke(Object invocation, LoadBalancer loadBalancer, List<Invoker<T>> invokers)
+            throws Throwable {
+        Invocation inv = (Invocation) invocation;
+        int forks = inv.getRpcMethod().forks();
+        if (forks <= 1 || invokers.size() <= 1 || (inv.isAsync() && !inv.isFutureReturn())) {
+            return select(invocation, loadBalancer, invokers).invoke(invocation);
+        }
+        forks = Math.min(forks, invokers.size());
+        List<Invoker<T>> selected = new ArrayList<>(forks);
+        for (int i = 0; i < forks; i++) {
+            Invoker<T> invoker = select(invocation, loadBalancer, invokers, selected);
+            if (selected.contains(invoker)) {
+                break;
+            }
+            selected.add(invoker);
+        }
+
+        Invocation futureInvocation = inv.toCompletable();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(selected.size());
+        for (Invoker<T> invoker : selected) {
+            invokeFuture(invoker, futureInvocation).whenComplete((r, t) -> {
+                if (t == null) {
+                    future.complete(r);
+                } else if (remaining.decrementAndGet() == 0) {
+                    future.completeExceptionally(unwrap(t));
+                }
+            });
+        }
+        return toResult(inv, future);
+    }
+}
@@ -0,0 +1,12 @@
+package com.thinkerwolf.gamer.rpc.cluster.support;
+
+import com.thinkerwolf.gamer.rpc.Invoker;
+import com.thinkerwolf.gamer.rpc.cluster.Cluster;
+import com.thinkerwolf.gamer.rpc.cluster.Dictionary;
+
+public class HedgingCluster implements Cluster {
+    @Override
+    public <T> Invoker<T> combine(Dictionary<T> dictionary) {
+        return new HedgingInvoker<>(dictionary);
+    }
+}
@@ -0,0 +1,115 @@
+package com.thinkerwolf.gamer.rpc.cluster.support;
+
+import com.thinkerwolf.gamer.common.balance.LoadBalancer;
+import com.thinkerwolf.gamer.common.concurrent.HashedWheelTimer;
+import com.thinkerwolf.gamer.rpc.Invocation;
+import com.thinkerwolf.gamer.rpc.Invoker;
+import com.thinkerwolf.gamer.rpc.Result;
+import com.thinkerwolf.gamer.rpc.RpcApplication;
+import com.thinkerwolf.gamer.rpc.cluster.AbstractClusterInvoker;
+import com.thinkerwolf.gamer.rpc.cluster.Dictionary;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对冲请求。首个请求的耗时超过该方法历史耗时的{@link com.thinkerwolf.gamer.rpc.annotation.RpcMethod#hedgePercentile()}
+ * 分位数仍未返回时，向另一个提供者再发一次，先成功的结果返回。
+ * 首个请求在对冲前失败时立即发出对冲请求。每次调用最多一个对冲请求
+ *
+ * @author wukai
+ */
+public class HedgingInvoker<T> extends AbstractClusterInvoker<T> {
+
+    /** 对冲定时器，tick 5ms */
+    private static final HashedWheelTimer HEDGE_TIMER =
+            new HashedWheelTimer("Rpc-hedge", 5, TimeUnit.MILLISECONDS, 512);
+
+    private final Map<Method, LatencyTracker> trackers = new ConcurrentHashMap<>();
+
+    public HedgingInvoker(Dictionary<T> dictionary) {
+        super(dictionary);
+    }
+
+    @Override
+    public Result doInvoke(Object invocation, LoadBalancer loadBalancer, List<Invoker<T>> invokers)
+            throws Throwable {
+        Invocation inv = (Invocation) invocation;
+        if (inv.isAsync() && !inv.isFutureReturn()) {
+            return select(invocation, loadBalancer, invokers).invoke(invocation);
+        }
+        LatencyTracker tracker = trackers.computeIfAbsent(inv.getMethod(), m -> new LatencyTracker());
+        Invoker<T> primary = select(invocation, loadBalancer, invokers);
+        Hedge hedge = new Hedge(inv, loadBalancer, invokers, primary, tracker);
+        hedge.send(primary);
+
+        long delayMicros = invokers.size() > 1 ? tracker.percentile(inv.getRpcMethod().hedgePercentile()) : -1;
+        if (delayMicros >= 0 && !hedge.future.isDone()) {
+            HashedWheelTimer.Timeout timeout = HEDGE_TIMER.newTimeout(
+                    () -> RpcApplication.getCallbackExecutor().execute(hedge::tryHedge),
+                    delayMicros, TimeUnit.MICROSECONDS);
+            hedge.future.whenComplete((r, t) -> timeout.cancel());
+        }
+        return toResult(inv, hedge.future);
+    }
+
+    private final class Hedge {
+        final Invocation invocation;
+        final Invocation futureInvocation;
+        final LoadBalancer loadBalancer;
+        final List<Invoker<T>> invokers;
+        final Invoker<T> primary;
+        final LatencyTracker tracker;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final AtomicBoolean hedged = new AtomicBoolean();
+        final AtomicInteger outstanding = new AtomicInteger();
+
+        Hedge(Invocation invocation, LoadBalancer loadBalancer, List<Invoker<T>> invokers,
+              Invoker<T> primary, LatencyTracker tracker) {
+            this.invocation = invocation;
+            this.futureInvocation = invocation.toCompletable();
+            this.loadBalancer = loadBalancer;
+            this.invokers = invokers;
+            this.primary = primary;
+            this.tracker = tracker;
+        }
+
+        void send(Invoker<T> invoker) {
+            outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            invokeFuture(invoker, futureInvocation).whenComplete((r, t) -> {
+                if (t == null) {
+                    tracker.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                    future.complete(r);
+                    return;
+                }
+                if (isRetryable(t)) {
+                    tryHedge();
+                }
+                if (outstanding.decrementAndGet() == 0) {
+                    future.completeExceptionally(unwrap(t));
+                }
+            });
+        }
+
+        void tryHedge() {
+            if (future.isDone() || invokers.size() <= 1 || !hedged.compareAndSet(false, true)) {
+                return;
+            }
+            Invoker<T> invoker;
+            try {
+                invoker = select(invocation, loadBalancer, invokers, Collections.singletonList(primary));
+            } catch (Throwable t) {
+                return;
+            }
+            send(invoker);
+        }
+    }
+}
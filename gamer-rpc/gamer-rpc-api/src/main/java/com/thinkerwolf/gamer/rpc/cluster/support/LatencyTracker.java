@@ -0,0 +1,87 @@
+package com.thinkerwolf.gamer.rpc.cluster.support;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 调用耗时分布，用于估算延迟分位数。
+ * <p>
+ * 按微秒对数分桶，每个2的幂区间分为4个桶，误差约20%。样本数超过{@link #DECAY_SAMPLES}后所有桶减半，
+ * 使分布跟随最近的耗时变化
+ *
+ * @author wukai
+ */
+final class LatencyTracker {
+
+    /** 样本不足时不估算 */
+    static final int MIN_SAMPLES = 32;
+    static final int DECAY_SAMPLES = 4096;
+
+    private static final int LINEAR = 16;
+    private static final int MAX_LOG = 40;
+    private static final int BUCKETS = LINEAR + (MAX_LOG - 4 + 1) * 4;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicBoolean decaying = new AtomicBoolean();
+
+    void record(long micros) {
+        counts.incrementAndGet(bucket(micros));
+        if (total.incrementAndGet() >= DECAY_SAMPLES && decaying.compareAndSet(false, true)) {
+            try {
+                long sum = 0;
+                for (int i = 0; i < BUCKETS; i++) {
+                    long c = counts.get(i);
+                    long half = c >> 1;
+                    counts.addAndGet(i, half - c);
+                    sum += half;
+                }
+                total.set(sum);
+            } finally {
+                decaying.set(false);
+            }
+        }
+    }
+
+    /**
+     * @param percentile 分位数，1~99
+     * @return 耗时上界，微秒。样本不足时返回-1
+     */
+    long percentile(int percentile) {
+        long n = total.get();
+        if (n < MIN_SAMPLES) {
+            return -1;
+        }
+        long target = (n * percentile + 99) / 100;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    static int bucket(long micros) {
+        if (micros < LINEAR) {
+            return (int) Math.max(micros, 0);
+        }
+        int log = 63 - Long.numberOfLeadingZeros(micros);
+        if (log > MAX_LOG) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (log - 2)) & 3;
+        return LINEAR + (log - 4) * 4 + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket + 1;
+        }
+        int log = (bucket - LINEAR) / 4 + 4;
+        int sub = (bucket - LINEAR) % 4;
+        return (long) (4 + sub + 1) << (log - 2);
+    }
+}
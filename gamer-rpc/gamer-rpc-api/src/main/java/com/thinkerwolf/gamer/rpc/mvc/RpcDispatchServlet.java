@@ -87,6 +87,7 @@ public class RpcDispatchServlet implements MvcServlet {
             Object obj = objectFactory.buildObject(clazz);
             Class<?>[] ifaces = clazz.getInterfaces();
             for (Class<?> iface : ifaces) {
+                RpcUtils.registerSerialTypes(iface);
                 for (Method method : iface.getDeclaredMethods()) {
                     RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
                     if (rpcMethod != null) {
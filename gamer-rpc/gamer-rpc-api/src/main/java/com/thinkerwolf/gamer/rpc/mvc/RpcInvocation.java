@@ -1,15 +1,18 @@
 package com.thinkerwolf.gamer.rpc.mvc;
 
 import com.thinkerwolf.gamer.common.ServiceLoader;
-import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
-import com.thinkerwolf.gamer.common.buffer.ChannelBuffers;
+import com.thinkerwolf.gamer.common.concurrent.Future;
+import com.thinkerwolf.gamer.common.concurrent.FutureListener;
+import com.thinkerwolf.gamer.common.concurrent.Promise;
 import com.thinkerwolf.gamer.common.log.InternalLoggerFactory;
 import com.thinkerwolf.gamer.common.log.Logger;
+import com.thinkerwolf.gamer.common.serialization.ObjectOutput;
 import com.thinkerwolf.gamer.common.serialization.Serializations;
 import com.thinkerwolf.gamer.common.serialization.Serializer;
 import com.thinkerwolf.gamer.core.mvc.AbstractInvocation;
 import com.thinkerwolf.gamer.core.mvc.decorator.Decorator;
 import com.thinkerwolf.gamer.core.mvc.model.ByteModel;
+import com.thinkerwolf.gamer.core.servlet.BatchResponse;
 import com.thinkerwolf.gamer.core.servlet.Request;
 import com.thinkerwolf.gamer.core.servlet.Response;
 import com.thinkerwolf.gamer.remoting.Content;
@@ -22,8 +25,19 @@ import com.thinkerwolf.gamer.rpc.annotation.RpcService;
 import com.thinkerwolf.gamer.rpc.exception.BusinessException;
 import com.thinkerwolf.gamer.rpc.exception.RpcException;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Rpc方法调用。序列化器、方法在初始化时绑定，decorator按协议缓存，
+ * 响应直接序列化到预留了requestId的缓冲中
+ */
 public class RpcInvocation extends AbstractInvocation {
 
     private static final Logger LOG = InternalLoggerFactory.getLogger(RpcInvocation.class);
@@ -33,6 +47,15 @@ public class RpcInvocation extends AbstractInvocation {
     private final Object obj;
     private final RpcService rpcService;
     private final RpcMethod rpcMethod;
+    private final Serializer serializer;
+    /**
+     * decorator名称 -> decorator，每种协议一个
+     */
+    private final Map<String, Decorator> decorators = new ConcurrentHashMap<>(4);
+    /**
+     * 最近一次响应长度，用于预分配响应缓冲
+     */
+    private volatile int lastResponseSize = 256;
 
     public RpcInvocation(
             Class interfaceClass,
@@ -47,6 +70,8 @@ public class RpcInvocation extends AbstractInvocation {
         this.rpcService = rpcService;
         this.rpcMethod = rpcMethod;
         this.command = RpcUtils.getRpcCommand(interfaceClass, method);
+        this.serializer = RpcUtils.getSerializer(rpcMethod.serialize(), interfaceClass);
+        this.method.setAccessible(true);
     }
 
     @Override
@@ -60,15 +85,8 @@ public class RpcInvocation extends AbstractInvocation {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     protected void doHandle(Request request, Response response) throws Exception {
-        Serializer serializer;
-        try {
-            serializer = ServiceLoader.getService(rpcMethod.serialize(), Serializer.class);
-        } catch (Exception e) {
-            LOG.error("Rpc find serializer", e);
-            throw e;
-        }
-
         RpcRequest rpcRequest;
         try {
             rpcRequest =
@@ -95,6 +113,22 @@ public class RpcInvocation extends AbstractInvocation {
             return;
         }
 
+        if (result instanceof CompletionStage) {
+            // 服务返回future，完成后再响应，不占用业务线程
+            Map<String, String> attachments = new HashMap<>(RpcContext.getContext().getAttachments());
+            ((CompletionStage<?>) result).whenComplete((r, t) -> {
+                Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                completeResponse(request, response, r, cause, attachments);
+            });
+            return;
+        }
+        if (result instanceof Promise) {
+            Map<String, String> attachments = new HashMap<>(RpcContext.getContext().getAttachments());
+            ((Promise<Object>) result).addListener((FutureListener<Future<Object>>) f ->
+                    completeResponse(request, response, f.getNow(), f.isSuccess() ? null : f.cause(), attachments));
+            return;
+        }
+
         try {
             handleRpcResponse(request, response, serializer, correctResponse(request, result));
         } catch (Exception e) {
@@ -104,22 +138,60 @@ public class RpcInvocation extends AbstractInvocation {
         }
     }
 
+    private void completeResponse(Request request, Response response, Object result, Throwable cause,
+                                  Map<String, String> attachments) {
+        if (response instanceof BatchResponse) {
+            // 批量包已合并写出，异步完成的条目单独响应
+            response = ((BatchResponse) response).getDelegate();
+        }
+        RpcResponse rpcResponse;
+        if (cause != null) {
+            LOG.error("Rpc execution", cause);
+            rpcResponse = exResponse(request, new BusinessException(cause));
+        } else {
+            rpcResponse = correctResponse(request, result);
+        }
+        rpcResponse.setAttachments(attachments);
+        try {
+            handleRpcResponse(request, response, serializer, rpcResponse);
+        } catch (Exception e) {
+            LOG.error("Rpc internal error", e);
+            try {
+                RpcResponse exResponse = exResponse(request, new RpcException(e));
+                exResponse.setAttachments(attachments);
+                handleRpcResponse(request, response, serializer, exResponse);
+            } catch (Exception ex) {
+                LOG.error("Rpc internal error", ex);
+            }
+        }
+    }
+
     private void handleRpcResponse(
             Request request, Response response, Serializer serializer, RpcResponse rpcResponse)
             throws Exception {
-        byte[] bytes = Serializations.getBytes(serializer, rpcResponse);
-        ChannelBuffer buf = ChannelBuffers.buffer(4 + bytes.length);
-        buf.writeInt(rpcResponse.getRequestId());
-        buf.writeBytes(bytes);
+        ResponseOutputStream os = new ResponseOutputStream(lastResponseSize);
+        ObjectOutput oo = serializer.serialize(os);
+        try {
+            oo.writeObject(rpcResponse);
+            oo.flush();
+        } finally {
+            Serializations.closeQuietly(oo);
+        }
+        byte[] bytes = os.toFrame(rpcResponse.getRequestId());
+        lastResponseSize = bytes.length;
         response.setContentType(Content.CONTENT_BYTES);
-        Decorator decorator =
-                ServiceLoader.getService(
-                        request.getAttribute(
-                                        com.thinkerwolf.gamer.core.servlet.Request
-                                                .DECORATOR_ATTRIBUTE)
-                                .toString(),
-                        Decorator.class);
-        response.write(decorator.decorate(new ByteModel(buf.array()), request, response));
+        Decorator decorator = getDecorator(request);
+        response.write(decorator.decorate(new ByteModel(bytes), request, response));
+    }
+
+    private Decorator getDecorator(Request request) {
+        String name = request.getAttribute(Request.DECORATOR_ATTRIBUTE).toString();
+        Decorator decorator = decorators.get(name);
+        if (decorator == null) {
+            decorator = ServiceLoader.getService(name, Decorator.class);
+            decorators.put(name, decorator);
+        }
+        return decorator;
     }
 
     private RpcResponse exResponse(Request request, Exception e) {
@@ -137,4 +209,23 @@ public class RpcInvocation extends AbstractInvocation {
         rpcResponse.setAttachments(RpcContext.getContext().getAttachments());
         return rpcResponse;
     }
+
+    /**
+     * 响应缓冲，开头预留4字节requestId，长度正好时直接使用内部数组
+     */
+    private static class ResponseOutputStream extends ByteArrayOutputStream {
+
+        ResponseOutputStream(int size) {
+            super(Math.max(size, 64));
+            count = 4;
+        }
+
+        byte[] toFrame(int requestId) {
+            buf[0] = (byte) (requestId >>> 24);
+            buf[1] = (byte) (requestId >>> 16);
+            buf[2] = (byte) (requestId >>> 8);
+            buf[3] = (byte) requestId;
+            return count == buf.length ? buf : Arrays.copyOf(buf, count);
+        }
+    }
 }
@@ -31,14 +31,24 @@ public class InvokerInvocationHandler<T> implements InvocationHandler {
         }
         List<RpcFilter> filters = RpcApplication.getFilters(group);
         Result result = null;
-        if (filters == null || filters.size() == 0) {
-            result = invoker.invoke(invocation);
-        } else {
-            for (RpcFilter filter : filters) {
-                result = filter.invoke(invocation, invoker);
+        try {
+            if (filters == null || filters.size() == 0) {
+                result = invoker.invoke(invocation);
+            } else {
+                for (RpcFilter filter : filters) {
+                    result = filter.invoke(invocation, invoker);
+                }
             }
+        } catch (Throwable t) {
+            if (invocation.isFutureReturn()) {
+                return RpcUtils.failedFuture(invocation, t);
+            }
+            throw t;
         }
         if (result.cause() != null) {
+            if (invocation.isFutureReturn()) {
+                return RpcUtils.failedFuture(invocation, result.cause());
+            }
             throw result.cause();
         }
         return result.get();
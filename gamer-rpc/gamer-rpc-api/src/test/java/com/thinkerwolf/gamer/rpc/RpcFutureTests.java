@@ -0,0 +1,256 @@
+package com.thinkerwolf.gamer.rpc;
+
+import com.thinkerwolf.gamer.common.concurrent.DefaultPromise;
+import com.thinkerwolf.gamer.common.concurrent.Future;
+import com.thinkerwolf.gamer.common.concurrent.Promise;
+import com.thinkerwolf.gamer.common.serialization.Serializations;
+import com.thinkerwolf.gamer.common.serialization.Serializer;
+import com.thinkerwolf.gamer.core.mvc.decorator.Decorator;
+import com.thinkerwolf.gamer.core.mvc.model.Model;
+import com.thinkerwolf.gamer.core.servlet.AbstractChRequest;
+import com.thinkerwolf.gamer.core.servlet.AbstractChResponse;
+import com.thinkerwolf.gamer.core.servlet.Push;
+import com.thinkerwolf.gamer.core.servlet.Request;
+import com.thinkerwolf.gamer.core.servlet.Response;
+import com.thinkerwolf.gamer.remoting.ExchangeClient;
+import com.thinkerwolf.gamer.remoting.Protocol;
+import com.thinkerwolf.gamer.rpc.annotation.RpcMethod;
+import com.thinkerwolf.gamer.rpc.exception.BusinessException;
+import com.thinkerwolf.gamer.rpc.exception.RpcException;
+import com.thinkerwolf.gamer.rpc.mvc.RpcInvocation;
+import com.thinkerwolf.gamer.rpc.proxy.jdk.InvokerInvocationHandler;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RpcFutureTests {
+
+    private static final String CALLBACK_THREAD = "Rpc-test-callback";
+
+    @BeforeClass
+    public static void init() {
+        RpcApplication.setCallbackExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, CALLBACK_THREAD);
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    @Test
+    public void testCompletableOnCallbackExecutor() throws Exception {
+        StubClient client = new StubClient();
+        CompletableFuture<String> future = proxy(client).hello("a");
+        assertFalse(future.isDone());
+        CompletableFuture<String> thread = future.thenApply(r -> Thread.currentThread().getName());
+        client.promise.setSuccess(response("hi", null));
+        assertEquals("hi", future.get(5, TimeUnit.SECONDS));
+        // 响应在回调执行器中完成，后续阶段不占用IO线程
+        assertEquals(CALLBACK_THREAD, thread.get(5, TimeUnit.SECONDS));
+
+        // 服务端异常以失败完成
+        StubClient failClient = new StubClient();
+        CompletableFuture<String> failed = proxy(failClient).hello("b");
+        BusinessException tx = new BusinessException(new IllegalStateException("boom"));
+        failClient.promise.setSuccess(response(null, tx));
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(tx, e.getCause());
+        }
+    }
+
+    @Test
+    public void testFailedFutureOnSendError() throws Exception {
+        StubClient client = new StubClient();
+        client.error = new RpcException("send failed");
+        FutureService service = proxy(client);
+
+        // 发送失败时不抛出，返回失败的future
+        CompletableFuture<String> future = service.hello("a");
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(client.error, e.getCause());
+        }
+
+        Future<String> promise = service.helloPromise("a");
+        assertTrue(promise.isDone());
+        assertSame(client.error, promise.cause());
+    }
+
+    @Test
+    public void testCancelPropagates() {
+        StubClient client = new StubClient();
+        CompletableFuture<String> future = proxy(client).hello("a");
+        assertTrue(future.cancel(true));
+        // 取消返回的future同时取消请求promise
+        assertTrue(client.promise.isCancelled());
+    }
+
+    @Test
+    public void testServiceCompletionStage() throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        RpcInvocation invocation = rpcInvocation(pending);
+        Serializer serializer = RpcUtils.getSerializer("hessian2", FutureService.class);
+
+        StubResponse response = new StubResponse();
+        invocation.handle(request(7, serializer), response);
+        // 服务返回的future完成前不响应
+        assertNull(response.written);
+        pending.complete("hi");
+        RpcResponse rpcResponse = decode(serializer, response.written);
+        assertEquals(7, rpcResponse.getRequestId());
+        assertEquals("hi", rpcResponse.getResult());
+        assertNull(rpcResponse.getTx());
+
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        StubResponse failResponse = new StubResponse();
+        rpcInvocation(failing).handle(request(8, serializer), failResponse);
+        failing.completeExceptionally(new IllegalStateException("boom"));
+        RpcResponse failed = decode(serializer, failResponse.written);
+        assertEquals(8, failed.getRequestId());
+        assertTrue(failed.getTx() instanceof BusinessException);
+    }
+
+    private static FutureService proxy(StubClient client) {
+        StubInvoker invoker = new StubInvoker(client);
+        return (FutureService) Proxy.newProxyInstance(FutureService.class.getClassLoader(),
+                new Class[]{FutureService.class}, new InvokerInvocationHandler<>(FutureService.class, invoker));
+    }
+
+    private static RpcResponse response(Object result, Throwable tx) {
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setResult(result);
+        rpcResponse.setTx(tx);
+        return rpcResponse;
+    }
+
+    private static RpcInvocation rpcInvocation(CompletableFuture<String> result) throws Exception {
+        Method method = FutureService.class.getMethod("hello", String.class);
+        FutureService service = new FutureService() {
+            @Override
+            public CompletableFuture<String> hello(String name) {
+                return result;
+            }
+
+            @Override
+            public Promise<String> helloPromise(String name) {
+                return null;
+            }
+        };
+        return new RpcInvocation(FutureService.class, method, service, null, method.getAnnotation(RpcMethod.class));
+    }
+
+    private static Request request(int requestId, Serializer serializer) throws Exception {
+        RpcRequest rpcRequest = new RpcRequest();
+        rpcRequest.setArgs(new Object[]{"a"});
+        byte[] content = Serializations.getBytes(serializer, rpcRequest);
+        AbstractChRequest request = new AbstractChRequest(requestId, "hello", null, null) {
+            @Override
+            public byte[] getContent() {
+                return content;
+            }
+
+            @Override
+            public Protocol getProtocol() {
+                return Protocol.TCP;
+            }
+
+            @Override
+            public Push newPush() {
+                return null;
+            }
+        };
+        request.setAttribute(Request.DECORATOR_ATTRIBUTE, "rpcTest");
+        return request;
+    }
+
+    private static RpcResponse decode(Serializer serializer, byte[] frame) throws Exception {
+        assertNotNull(frame);
+        // 前4字节为requestId
+        return Serializations.getObject(serializer, Arrays.copyOfRange(frame, 4, frame.length), RpcResponse.class);
+    }
+
+    public interface FutureService {
+
+        @RpcMethod
+        CompletableFuture<String> hello(String name);
+
+        @RpcMethod
+        Promise<String> helloPromise(String name);
+    }
+
+    public static class BytesDecorator implements Decorator {
+        @Override
+        public Object decorate(Model<?> model, Request request, Response response) {
+            return model.getBytes();
+        }
+    }
+
+    private static class StubClient implements ExchangeClient<RpcResponse> {
+        DefaultPromise<RpcResponse> promise;
+        RpcException error;
+
+        @Override
+        public Promise<RpcResponse> request(Object message) {
+            return request(message, 0, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public Promise<RpcResponse> request(Object message, long timeout, TimeUnit unit) {
+            if (error != null) {
+                throw error;
+            }
+            promise = new DefaultPromise<>();
+            return promise;
+        }
+    }
+
+    private static class StubInvoker extends AbstractInvoker<FutureService> {
+        private final StubClient client;
+
+        StubInvoker(StubClient client) {
+            this.client = client;
+        }
+
+        @Override
+        protected ExchangeClient<RpcResponse> nextClient() {
+            return client;
+        }
+    }
+
+    private static class StubResponse extends AbstractChResponse {
+        volatile byte[] written;
+
+        StubResponse() {
+            super(null);
+        }
+
+        @Override
+        public Promise write(Object message) {
+            written = (byte[]) message;
+            return null;
+        }
+
+        @Override
+        public Protocol getProtocol() {
+            return Protocol.TCP;
+        }
+
+        @Override
+        public void addCookie(Object cookie) {
+        }
+    }
+}
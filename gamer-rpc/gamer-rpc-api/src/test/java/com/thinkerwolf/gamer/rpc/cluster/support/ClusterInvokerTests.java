@@ -0,0 +1,264 @@
+package com.thinkerwolf.gamer.rpc.cluster.support;
+
+import com.thinkerwolf.gamer.common.balance.CircuitBreaker;
+import com.thinkerwolf.gamer.common.balance.LoadBalancer;
+import com.thinkerwolf.gamer.common.balance.NodeStats;
+import com.thinkerwolf.gamer.common.concurrent.DefaultPromise;
+import com.thinkerwolf.gamer.common.concurrent.Promise;
+import com.thinkerwolf.gamer.remoting.ExchangeClient;
+import com.thinkerwolf.gamer.rpc.AbstractInvoker;
+import com.thinkerwolf.gamer.rpc.Invocation;
+import com.thinkerwolf.gamer.rpc.Invoker;
+import com.thinkerwolf.gamer.rpc.Result;
+import com.thinkerwolf.gamer.rpc.RpcResponse;
+import com.thinkerwolf.gamer.rpc.annotation.RpcMethod;
+import com.thinkerwolf.gamer.rpc.cluster.AbstractClusterInvoker;
+import com.thinkerwolf.gamer.rpc.cluster.dictionary.StaticDictionary;
+import com.thinkerwolf.gamer.rpc.exception.BusinessException;
+import com.thinkerwolf.gamer.rpc.exception.RpcException;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class ClusterInvokerTests {
+
+    /**
+     * 总是选择第一个候选，排除已调用的invoker后依次选择下一个
+     */
+    private static final LoadBalancer FIRST = new LoadBalancer() {
+        @Override
+        public <T> T select(Collection<T> collection, String searchKey, Map<String, Object> props) {
+            return collection.iterator().next();
+        }
+    };
+
+    @Test
+    public void testFailoverRetries() throws Throwable {
+        List<StubInvoker> stubs = stubs(4, () -> failed(new RpcException("down")));
+        CompletableFuture<Object> future = invoke(new FailoverInvoker<>(dictionary(stubs)), "retry", stubs);
+        assertTrue(future.isCompletedExceptionally());
+        // 首次调用加2次重试，每次换一个提供者
+        assertEquals(Arrays.asList(1, 1, 1, 0), calls(stubs));
+
+        stubs = stubs(4, () -> failed(new RpcException("down")));
+        stubs.get(1).response = () -> CompletableFuture.completedFuture("ok");
+        future = invoke(new FailoverInvoker<>(dictionary(stubs)), "retry", stubs);
+        assertEquals("ok", future.get());
+        assertEquals(Arrays.asList(1, 1, 0, 0), calls(stubs));
+
+        // 远程业务异常不重试
+        stubs = stubs(4, () -> failed(new BusinessException(new IllegalStateException())));
+        future = invoke(new FailoverInvoker<>(dictionary(stubs)), "retry", stubs);
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(Arrays.asList(1, 0, 0, 0), calls(stubs));
+    }
+
+    @Test
+    public void testForkingFirstSuccess() throws Throwable {
+        CompletableFuture<Object> slow = new CompletableFuture<>();
+        List<StubInvoker> stubs = stubs(4, () -> slow);
+        stubs.get(1).response = () -> failed(new RpcException("down"));
+        stubs.get(2).response = () -> CompletableFuture.completedFuture("fast");
+        CompletableFuture<Object> future = invoke(new ForkingInvoker<>(dictionary(stubs)), "fork", stubs);
+        // 同时调用3个提供者，不等待慢的调用，失败的调用不影响结果
+        assertEquals(Arrays.asList(1, 1, 1, 0), calls(stubs));
+        assertEquals("fast", future.get(0, TimeUnit.MILLISECONDS));
+        slow.complete("slow");
+        assertEquals("fast", future.get());
+
+        // 全部失败时以最后一个异常失败
+        RpcException last = new RpcException("last");
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+        stubs = stubs(3, () -> failed(new RpcException("down")));
+        stubs.get(0).response = () -> pending;
+        future = invoke(new ForkingInvoker<>(dictionary(stubs)), "fork", stubs);
+        assertFalse(future.isDone());
+        pending.completeExceptionally(last);
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(last, e.getCause());
+        }
+    }
+
+    @Test
+    public void testHedgeOnce() throws Throwable {
+        // 首个请求失败时立即对冲，对冲也失败时不再发出请求
+        List<StubInvoker> stubs = stubs(4, () -> failed(new RpcException("down")));
+        CompletableFuture<Object> future = invoke(new HedgingInvoker<>(dictionary(stubs)), "hedge", stubs);
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(Arrays.asList(1, 1, 0, 0), calls(stubs));
+
+        // 积累耗时样本后，慢请求超过分位数时对冲一次
+        stubs = stubs(4, () -> CompletableFuture.completedFuture("ok"));
+        HedgingInvoker<Object> hedging = new HedgingInvoker<>(dictionary(stubs));
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            assertEquals("ok", invoke(hedging, "hedge", stubs).get());
+        }
+        assertEquals(LatencyTracker.MIN_SAMPLES, stubs.get(0).calls.get());
+        CompletableFuture<Object> slow = new CompletableFuture<>();
+        stubs.get(0).response = () -> slow;
+        stubs.get(1).response = () -> failed(new RpcException("down"));
+        future = invoke(hedging, "hedge", stubs);
+        assertFalse(future.isDone());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stubs.get(1).calls.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, stubs.get(1).calls.get());
+        Thread.sleep(50);
+        assertEquals(0, stubs.get(2).calls.get() + stubs.get(3).calls.get());
+        assertFalse(future.isDone());
+        slow.complete("slow");
+        assertEquals("slow", future.get());
+    }
+
+    @Test
+    public void testProbeAndOutlier() throws Throwable {
+        List<MeasuredInvoker> invokers = Arrays.asList(new MeasuredInvoker(), new MeasuredInvoker(), new MeasuredInvoker());
+        CircuitBreaker breaker = new CircuitBreaker(1, 50, 10);
+        invokers.get(2).setCircuitBreaker(breaker);
+        breaker.onFailure(System.nanoTime());
+        FailoverInvoker<Object> cluster = new FailoverInvoker<>(dictionary(invokers));
+        invoke(cluster, "hedge", invokers);
+        assertEquals(Arrays.asList(1, 0, 0), calls(invokers));
+
+        // 到达探测时间后，取得探测资格的invoker直接用于本次请求
+        Thread.sleep(20);
+        invoke(cluster, "hedge", invokers);
+        assertEquals(Arrays.asList(1, 0, 1), calls(invokers));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        invoke(cluster, "hedge", invokers);
+        assertEquals(Arrays.asList(2, 0, 1), calls(invokers));
+
+        // 按NodeStats的延迟摘除远慢于中位数的invoker
+        invokers = Arrays.asList(new MeasuredInvoker(), new MeasuredInvoker(), new MeasuredInvoker(), new MeasuredInvoker());
+        for (int i = 0; i < invokers.size(); i++) {
+            NodeStats stats = invokers.get(i).getNodeStats();
+            long latencyNanos = TimeUnit.MILLISECONDS.toNanos(i == 3 ? 500 : 1);
+            stats.end(stats.begin() - latencyNanos);
+        }
+        invoke(new FailoverInvoker<>(dictionary(invokers)), "hedge", invokers);
+        assertEquals(CircuitBreaker.State.OPEN, invokers.get(3).getCircuitBreaker().getState());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(CircuitBreaker.State.CLOSED, invokers.get(i).getCircuitBreaker().getState());
+        }
+    }
+
+    private static CompletableFuture<Object> invoke(AbstractClusterInvoker<Object> cluster, String methodName,
+                                                    List<? extends Invoker<Object>> stubs) throws Throwable {
+        Method method = ClusterService.class.getMethod(methodName);
+        Invocation invocation = new Invocation(ClusterService.class, method, method.getParameterTypes(), new Object[0]);
+        Result result = cluster.doInvoke(invocation, FIRST, new ArrayList<>(stubs));
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Object> future = (CompletableFuture<Object>) result.get();
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StaticDictionary<Object> dictionary(List<? extends Invoker<Object>> stubs) {
+        return new StaticDictionary<>(Object.class, (List<Invoker<Object>>) (List<?>) stubs);
+    }
+
+    private static List<StubInvoker> stubs(int n, Supplier<CompletableFuture<Object>> response) {
+        List<StubInvoker> stubs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            stubs.add(new StubInvoker(response));
+        }
+        return stubs;
+    }
+
+    private static List<Integer> calls(List<? extends Counted> stubs) {
+        List<Integer> calls = new ArrayList<>(stubs.size());
+        for (Counted stub : stubs) {
+            calls.add(stub.calls().get());
+        }
+        return calls;
+    }
+
+    private static CompletableFuture<Object> failed(Throwable t) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+        return future;
+    }
+
+    public interface ClusterService {
+
+        @RpcMethod(retries = 2)
+        CompletableFuture<String> retry();
+
+        @RpcMethod(forks = 3)
+        CompletableFuture<String> fork();
+
+        @RpcMethod
+        CompletableFuture<String> hedge();
+    }
+
+    private interface Counted {
+        AtomicInteger calls();
+    }
+
+    private static class StubInvoker implements Invoker<Object>, Counted {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile Supplier<CompletableFuture<Object>> response;
+
+        StubInvoker(Supplier<CompletableFuture<Object>> response) {
+            this.response = response;
+        }
+
+        @Override
+        public Result invoke(Object args) {
+            calls.incrementAndGet();
+            return Result.builder().withResult(response.get()).build();
+        }
+
+        @Override
+        public AtomicInteger calls() {
+            return calls;
+        }
+    }
+
+    /**
+     * 请求立即成功的invoker，经过熔断器和NodeStats统计
+     */
+    private static class MeasuredInvoker extends AbstractInvoker<Object> implements Counted {
+        final AtomicInteger calls = new AtomicInteger();
+        final ExchangeClient<RpcResponse> client = new ExchangeClient<RpcResponse>() {
+            @Override
+            public Promise<RpcResponse> request(Object message) {
+                return request(message, 0, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public Promise<RpcResponse> request(Object message, long timeout, TimeUnit unit) {
+                calls.incrementAndGet();
+                DefaultPromise<RpcResponse> promise = new DefaultPromise<>();
+                promise.setSuccess(new RpcResponse());
+                return promise;
+            }
+        };
+
+        @Override
+        protected ExchangeClient<RpcResponse> nextClient() {
+            return client;
+        }
+
+        @Override
+        public AtomicInteger calls() {
+            return calls;
+        }
+    }
+}
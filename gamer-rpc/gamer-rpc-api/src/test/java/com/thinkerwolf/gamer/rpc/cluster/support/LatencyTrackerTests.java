@@ -0,0 +1,82 @@
+package com.thinkerwolf.gamer.rpc.cluster.support;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyTrackerTests {
+
+    @Test
+    public void testBucket() {
+        // 16微秒以下每微秒一个桶
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i, LatencyTracker.bucket(i));
+            assertEquals(i + 1, LatencyTracker.upperBound(i));
+        }
+        assertEquals(0, LatencyTracker.bucket(-5));
+        // [16, 20) [20, 24) [24, 28) [28, 32) [32, 40) ...
+        assertEquals(16, LatencyTracker.bucket(16));
+        assertEquals(16, LatencyTracker.bucket(19));
+        assertEquals(17, LatencyTracker.bucket(20));
+        assertEquals(19, LatencyTracker.bucket(31));
+        assertEquals(20, LatencyTracker.bucket(32));
+        assertEquals(20, LatencyTracker.upperBound(16));
+        assertEquals(24, LatencyTracker.upperBound(17));
+        assertEquals(32, LatencyTracker.upperBound(19));
+        assertEquals(40, LatencyTracker.upperBound(20));
+
+        // 超出范围的耗时落入最后一个桶
+        int last = LatencyTracker.bucket(Long.MAX_VALUE);
+        assertEquals(last, LatencyTracker.bucket(1L << 41));
+        assertEquals(last, LatencyTracker.bucket((1L << 41) - 1));
+        assertEquals(last - 3, LatencyTracker.bucket(1L << 40));
+    }
+
+    @Test
+    public void testBucketRange() {
+        int prev = 0;
+        for (long micros = 1; micros < (1L << 40); micros += micros / 7 + 1) {
+            int bucket = LatencyTracker.bucket(micros);
+            assertTrue(bucket >= prev);
+            // 落在桶的区间内，误差不超过25%
+            assertTrue(micros < LatencyTracker.upperBound(bucket));
+            assertTrue(micros >= LatencyTracker.upperBound(bucket - 1));
+            assertTrue(LatencyTracker.upperBound(bucket) <= micros + micros / 4 + 1);
+            prev = bucket;
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyTracker tracker = new LatencyTracker();
+        for (int i = 1; i < LatencyTracker.MIN_SAMPLES; i++) {
+            tracker.record(i);
+        }
+        // 样本不足
+        assertEquals(-1, tracker.percentile(50));
+
+        tracker = new LatencyTracker();
+        for (int i = 1; i <= 100; i++) {
+            tracker.record(i);
+        }
+        // 第50个样本为50，所在桶[48, 56)
+        assertEquals(56, tracker.percentile(50));
+        // 第99个样本为99，所在桶[96, 112)
+        assertEquals(112, tracker.percentile(99));
+        assertEquals(2, tracker.percentile(1));
+    }
+
+    @Test
+    public void testDecay() {
+        LatencyTracker tracker = new LatencyTracker();
+        for (int i = 0; i < LatencyTracker.DECAY_SAMPLES; i++) {
+            tracker.record(1000);
+        }
+        // 衰减后旧样本减半，新的耗时很快占多数
+        for (int i = 0; i < LatencyTracker.DECAY_SAMPLES / 2 + 1; i++) {
+            tracker.record(10);
+        }
+        assertEquals(11, tracker.percentile(50));
+        assertEquals(1024, tracker.percentile(99));
+    }
+}
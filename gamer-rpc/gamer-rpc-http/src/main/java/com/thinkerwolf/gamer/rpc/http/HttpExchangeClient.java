@@ -1,6 +1,5 @@
 package com.thinkerwolf.gamer.rpc.http;
 
-import com.thinkerwolf.gamer.common.ServiceLoader;
 import com.thinkerwolf.gamer.common.URL;
 import com.thinkerwolf.gamer.common.concurrent.DefaultPromise;
 import com.thinkerwolf.gamer.common.concurrent.Promise;
@@ -119,7 +118,7 @@ public class HttpExchangeClient implements ExchangeClient<RpcResponse> {
                 RpcUtils.getRpcCommand(
                         msg.getInterfaceClass(), msg.getMethodName(), msg.getParameterTypes());
 
-        Serializer serializer = ServiceLoader.getService(msg.getSerial(), Serializer.class);
+        Serializer serializer = RpcUtils.getSerializer(msg.getSerial(), msg.getInterfaceClass());
         RpcRequest rpcRequest = new RpcRequest();
         rpcRequest.setArgs(msg.getParameters());
         rpcRequest.setAttachments(RpcContext.getContext().getAttachments());
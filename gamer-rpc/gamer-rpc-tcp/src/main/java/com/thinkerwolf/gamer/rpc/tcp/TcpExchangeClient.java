@@ -1,6 +1,5 @@
 package com.thinkerwolf.gamer.rpc.tcp;
 
-import com.thinkerwolf.gamer.common.ServiceLoader;
 import com.thinkerwolf.gamer.common.URL;
 import com.thinkerwolf.gamer.common.concurrent.DefaultPromise;
 import com.thinkerwolf.gamer.common.serialization.Serializations;
@@ -8,9 +7,13 @@ import com.thinkerwolf.gamer.common.serialization.Serializer;
 import com.thinkerwolf.gamer.netty.NettyClient;
 import com.thinkerwolf.gamer.remoting.AbstractExchangeClient;
 import com.thinkerwolf.gamer.remoting.tcp.Packet;
+import com.thinkerwolf.gamer.remoting.tcp.Packets;
 import com.thinkerwolf.gamer.rpc.*;
 import org.apache.commons.lang.ArrayUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Tcp exchange client
  *
@@ -19,6 +22,9 @@ import org.apache.commons.lang.ArrayUtils;
  */
 public class TcpExchangeClient extends AbstractExchangeClient<RpcResponse> {
 
+    /** 批量请求包的命令，服务端原样返回 */
+    private static final String BATCH_COMMAND = "rpc@batch";
+
     public TcpExchangeClient(URL url) {
         super(url);
         setClient(new NettyClient(url, this));
@@ -36,13 +42,42 @@ public class TcpExchangeClient extends AbstractExchangeClient<RpcResponse> {
         RpcRequest rpcRequest = new RpcRequest();
         rpcRequest.setArgs(msg.getParameters());
         rpcRequest.setAttachments(RpcContext.getContext().getAttachments());
-        Serializer serializer = ServiceLoader.getService(msg.getSerial(), Serializer.class);
+        Serializer serializer = RpcUtils.getSerializer(msg.getSerial(), msg.getInterfaceClass());
         packet.setContent(Serializations.getBytes(serializer, rpcRequest));
         return packet;
     }
 
+    /**
+     * 合并为批量包，每个包不超过{@link Packets#MAX_BATCH_SIZE}个条目。服务端处理完所有条目后以一个批量包响应
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    protected List<?> encodeBatch(List<Object> messages) {
+        List<Object> batches = new ArrayList<>(messages.size() / Packets.MAX_BATCH_SIZE + 1);
+        for (int from = 0; from < messages.size(); from += Packets.MAX_BATCH_SIZE) {
+            int to = Math.min(from + Packets.MAX_BATCH_SIZE, messages.size());
+            List<Packet> packets = (List<Packet>) (List<?>) messages.subList(from, to);
+            batches.add(to - from == 1 ? packets.get(0) : Packets.newBatch(0, BATCH_COMMAND, packets));
+        }
+        return batches;
+    }
+
+    @Override
+    protected List<?> decodeBatch(Object message) throws Exception {
+        Packet packet = (Packet) message;
+        return Packets.isBatch(packet) ? Packets.decodeBatch(packet.getContent()) : null;
+    }
+
+    @Override
+    protected int sizeOf(Object message) {
+        Packet packet = (Packet) message;
+        // command按单字节字符估算
+        return Packets.HEADER_LENGTH + packet.getCommand().length()
+                + (packet.getContent() == null ? 0 : packet.getContent().length);
+    }
+
     @Override
-    protected Integer decodeResponseId(Object message) {
+    protected int decodeResponseId(Object message) {
         Packet packet = (Packet) message;
         return packet.getRequestId();
     }
@@ -53,7 +88,7 @@ public class TcpExchangeClient extends AbstractExchangeClient<RpcResponse> {
         Packet packet = (Packet) message;
         byte[] data = ArrayUtils.subarray(packet.getContent(), 4, packet.getContent().length);
         Invocation rpcMsg = (Invocation) promise.getAttachment();
-        Serializer serializer = ServiceLoader.getService(rpcMsg.getSerial(), Serializer.class);
+        Serializer serializer = RpcUtils.getSerializer(rpcMsg.getSerial(), rpcMsg.getInterfaceClass());
         return Serializations.getObject(serializer, data, RpcResponse.class);
     }
 }
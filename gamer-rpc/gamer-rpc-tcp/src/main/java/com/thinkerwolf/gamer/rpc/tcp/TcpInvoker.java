@@ -4,6 +4,7 @@ import com.thinkerwolf.gamer.remoting.ExchangeClient;
 import com.thinkerwolf.gamer.rpc.AbstractInvoker;
 import com.thinkerwolf.gamer.rpc.RpcResponse;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -16,8 +17,17 @@ public class TcpInvoker<T> extends AbstractInvoker<T> {
 
     private ExchangeClient<RpcResponse>[] clients;
 
+    private final AtomicBoolean destroyed = new AtomicBoolean();
+    /** 释放clients */
+    private final Runnable release;
+
     public TcpInvoker(ExchangeClient<RpcResponse>[] clients) {
+        this(clients, null);
+    }
+
+    public TcpInvoker(ExchangeClient<RpcResponse>[] clients, Runnable release) {
         this.clients = clients;
+        this.release = release;
     }
 
     @Override
@@ -27,6 +37,20 @@ public class TcpInvoker<T> extends AbstractInvoker<T> {
 
     @Override
     public boolean isUsable() {
-        return true;
+        return !destroyed.get() && super.isUsable();
+    }
+
+    @Override
+    public void destroy() {
+        if (!destroyed.compareAndSet(false, true)) {
+            return;
+        }
+        if (release != null) {
+            release.run();
+        } else {
+            for (ExchangeClient<RpcResponse> client : clients) {
+                client.close();
+            }
+        }
     }
 }
@@ -16,7 +16,8 @@ public class TcpProtocol extends AbstractClientProtocol {
 
     @Override
     protected <T> Invoker<T> doInvoker(Class<T> interfaceClass, URL url) {
-        return new TcpInvoker<T>(getClients(url));
+        ExchangeClient[] clients = getClients(url);
+        return new TcpInvoker<T>(clients, () -> releaseClients(url, clients));
     }
 
     @Override
@@ -1,6 +1,5 @@
 package com.thinkerwolf.gamer.rpc.websocket;
 
-import com.thinkerwolf.gamer.common.ServiceLoader;
 import com.thinkerwolf.gamer.common.URL;
 import com.thinkerwolf.gamer.common.buffer.ChannelBuffer;
 import com.thinkerwolf.gamer.common.buffer.ChannelBuffers;
@@ -61,7 +60,7 @@ public class WebsocketExchangeClient extends AbstractExchangeClient<RpcResponse>
         RpcRequest rpcRequest = new RpcRequest();
         rpcRequest.setArgs(msg.getParameters());
         rpcRequest.setAttachments(RpcContext.getContext().getAttachments());
-        Serializer serializer = ServiceLoader.getService(msg.getSerial(), Serializer.class);
+        Serializer serializer = RpcUtils.getSerializer(msg.getSerial(), msg.getInterfaceClass());
         byte[] content = Serializations.getBytes(serializer, rpcRequest);
         buf.writeInt(content.length);
 
@@ -73,7 +72,7 @@ public class WebsocketExchangeClient extends AbstractExchangeClient<RpcResponse>
     }
 
     @Override
-    protected Integer decodeResponseId(Object message) {
+    protected int decodeResponseId(Object message) {
         BinaryWebSocketFrame frame = (BinaryWebSocketFrame) message;
         ByteBuf buf = frame.content();
         return buf.readInt();
@@ -86,7 +85,7 @@ public class WebsocketExchangeClient extends AbstractExchangeClient<RpcResponse>
         ByteBuf buf = frame.content();
         byte[] data = new byte[buf.readableBytes()];
         Invocation rpcMsg = (Invocation) promise.getAttachment();
-        Serializer serializer = ServiceLoader.getService(rpcMsg.getSerial(), Serializer.class);
+        Serializer serializer = RpcUtils.getSerializer(rpcMsg.getSerial(), rpcMsg.getInterfaceClass());
         return Serializations.getObject(serializer, data, RpcResponse.class);
     }
 
@@ -4,6 +4,7 @@ import com.thinkerwolf.gamer.remoting.ExchangeClient;
 import com.thinkerwolf.gamer.rpc.AbstractInvoker;
 import com.thinkerwolf.gamer.rpc.RpcResponse;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -15,8 +16,17 @@ public class WebsocketInvoker<T> extends AbstractInvoker<T> {
     private final ExchangeClient<RpcResponse>[] clients;
     private final AtomicInteger round = new AtomicInteger();
 
+    private final AtomicBoolean destroyed = new AtomicBoolean();
+    /** 释放clients */
+    private final Runnable release;
+
     public WebsocketInvoker(ExchangeClient<RpcResponse>[] clients) {
+        this(clients, null);
+    }
+
+    public WebsocketInvoker(ExchangeClient<RpcResponse>[] clients, Runnable release) {
         this.clients = clients;
+        this.release = release;
     }
 
     @Override
@@ -26,6 +36,20 @@ public class WebsocketInvoker<T> extends AbstractInvoker<T> {
 
     @Override
     public boolean isUsable() {
-        return true;
+        return !destroyed.get() && super.isUsable();
+    }
+
+    @Override
+    public void destroy() {
+        if (!destroyed.compareAndSet(false, true)) {
+            return;
+        }
+        if (release != null) {
+            release.run();
+        } else {
+            for (ExchangeClient<RpcResponse> client : clients) {
+                client.close();
+            }
+        }
     }
 }
@@ -10,7 +10,8 @@ public class WebsocketProtocol extends AbstractClientProtocol {
 
     @Override
     protected <T> Invoker<T> doInvoker(Class<T> interfaceClass, URL url) {
-        return new WebsocketInvoker<T>(getClients(url));
+        ExchangeClient[] clients = getClients(url);
+        return new WebsocketInvoker<T>(clients, () -> releaseClients(url, clients));
     }
 
     @Override